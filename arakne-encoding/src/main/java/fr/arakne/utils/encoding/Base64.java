@@ -25,6 +25,8 @@ import org.checkerframework.common.value.qual.IntRange;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 
+import java.util.Arrays;
+
 /**
  * Utility class for Dofus Pseudo base 64
  */
@@ -33,6 +35,12 @@ public final class Base64 {
         't', 'u', 'v', 'w', 'x', 'y', 'z', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M', 'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U',
         'V', 'W', 'X', 'Y', 'Z', '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '-', '_'};
 
+    /**
+     * Reverse lookup table of {@link Base64#CHARSET}, indexed by the character value
+     * Characters outside the charset are mapped to -1
+     */
+    private static final byte[] ORD = createOrdTable();
+
     /**
      * Disable constructor
      */
@@ -55,27 +63,15 @@ public final class Base64 {
      * @see Base64#decode(String) For decode an int string
      */
     @Pure
+    @SuppressWarnings("return") // The table only contains values in range [-1, 63], and -1 is rejected
     public static @IntRange(from = 0, to = 63) int ord(char c) {
-        if (c >= 'a' && c <= 'z') {
-            return c - 'a';
-        }
-
-        if (c >= 'A' && c <= 'Z') {
-            return c - 'A' + 26;
-        }
+        final int value = c < ORD.length ? ORD[c] : -1;
 
-        if (c >= '0' && c <= '9') {
-            return c - '0' + 52;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid char value");
         }
 
-        switch (c) {
-            case '-':
-                return 62;
-            case '_':
-                return 63;
-            default:
-                throw new IllegalArgumentException("Invalid char value");
-        }
+        return value;
     }
 
     /**
@@ -222,4 +218,44 @@ public final class Base64 {
 
         return decoded;
     }
+
+    /**
+     * Decode a part of a Base 64 char sequence to an existing byte array
+     * Each byte will represents the {@link Base64#ord(char)} value of each characters
+     * The number of decoded characters is the target array length
+     *
+     * Example:
+     * <code>
+     *     final byte[] buffer = new byte[2];
+     *     Base64.toBytes("abcF", 2, buffer); // buffer = {2, 31}
+     * </code>
+     *
+     * @param encoded The encoded char sequence
+     * @param offset The first character to decode
+     * @param target The array to fill
+     *
+     * @throws IllegalArgumentException When an invalid character is found
+     * @throws IndexOutOfBoundsException When the char sequence is too short
+     *
+     * @see Base64#toBytes(String) For decode a whole string to a new array
+     */
+    @SuppressWarnings("argument") // Bounds are checked by the CharSequence
+    public static void toBytes(CharSequence encoded, @NonNegative int offset, byte[] target) {
+        for (int i = 0; i < target.length; ++i) {
+            target[i] = (byte) Base64.ord(encoded.charAt(offset + i));
+        }
+    }
+
+    @SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // All charset characters are ASCII
+    private static byte[] createOrdTable() {
+        final byte[] table = new byte[128];
+
+        Arrays.fill(table, (byte) -1);
+
+        for (int i = 0; i < CHARSET.length; ++i) {
+            table[CHARSET[i]] = (byte) i;
+        }
+
+        return table;
+    }
 }
@@ -19,6 +19,7 @@
 
 package fr.arakne.utils.encoding;
 
+import org.checkerframework.checker.index.qual.IndexOrHigh;
 import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.common.value.qual.MinLen;
 import org.checkerframework.dataflow.qual.Pure;
@@ -99,29 +100,159 @@ public final class XorCipher {
      * @throws NumberFormatException When an invalid hexadecimal string is given
      */
     @SideEffectFree
+    public String decrypt(String value, @NonNegative int keyOffset) {
+        final char[] decrypted = new char[value.length() / 2];
+
+        return new String(decrypted, 0, decrypt(value, keyOffset, decrypted));
+    }
+
+    /**
+     * Decrypt the value into an existing char array, without creating intermediate strings
+     * The hexadecimal decoding, the XOR and the URL unescape are performed on the target array
+     *
+     * <code>
+     *     final char[] buffer = new char[encrypted.length() / 2];
+     *     final int length = cipher.decrypt(encrypted, keyOffset, buffer);
+     *
+     *     // Use buffer[0 .. length[
+     * </code>
+     *
+     * @param value Value to decrypt. Must be a valid hexadecimal string
+     * @param keyOffset Offset to use on the key. Must be the same used for encryption.
+     * @param target The array to fill. Its size must be at least the half of the value length
+     *
+     * @return Number of decrypted characters written in the target
+     *
+     * @throws IllegalArgumentException When an invalid string is given, or if the target is too small
+     * @throws NumberFormatException When an invalid hexadecimal string is given
+     *
+     * @see XorCipher#decrypt(String, int)
+     */
     @SuppressWarnings({
         "cast.unsafe",  // XOR will return an int, so cast to char cannot be checked
-        "array.access.unsafe.high.range" // i / 2 is not correctly resolved
+        "array.access.unsafe.high", // Size of target is checked before
+        "argument", // Bounds of value are checked before
+        "return" // The decrypted value cannot be larger than the target
     })
-    public String decrypt(String value, @NonNegative int keyOffset) {
+    public @IndexOrHigh("#3") int decrypt(CharSequence value, @NonNegative int keyOffset, char[] target) {
         if (value.length() % 2 != 0) {
             throw new IllegalArgumentException("Invalid encrypted value");
         }
 
-        final char[] decrypted = new char[value.length() / 2];
+        final int length = value.length() / 2;
 
-        for (int i = 0; i < value.length() - 1; i += 2) {
-            final char k = key.charAt((i / 2 + keyOffset) % key.length());
-            final char c = (char) Integer.parseInt(value.substring(i, i + 2), 16);
+        if (target.length < length) {
+            throw new IllegalArgumentException("The target array is too small");
+        }
+
+        for (int i = 0; i < length; ++i) {
+            final char k = key.charAt((i + keyOffset) % key.length());
+            final char c = (char) ((hexDigit(value.charAt(2 * i)) << 4) + hexDigit(value.charAt(2 * i + 1)));
 
-            decrypted[i / 2] = (char) (c ^ k);
+            target[i] = (char) (c ^ k);
         }
 
-        try {
-            return URLDecoder.decode(new String(decrypted), StandardCharsets.UTF_8.toString());
-        } catch (UnsupportedEncodingException e) {
-            throw new IllegalArgumentException("Invalid UTF-8 character", e);
+        return unescape(target, length);
+    }
+
+    /**
+     * Parse a single hexadecimal digit
+     *
+     * @throws NumberFormatException When an invalid digit is given
+     */
+    @Pure
+    private static @NonNegative int hexDigit(char c) {
+        final int digit = Character.digit(c, 16);
+
+        if (digit < 0) {
+            throw new NumberFormatException("Invalid hexadecimal character " + c);
         }
+
+        return digit;
+    }
+
+    /**
+     * Perform URL decode in place
+     * The result is the same as {@link URLDecoder#decode(String, String)} with UTF-8 charset
+     *
+     * @param value Value to decode
+     * @param length Number of characters of value to decode
+     *
+     * @return The decoded value length
+     */
+    @SuppressWarnings({"array.access.unsafe.high", "array.access.unsafe.low"}) // The decoded value cannot be larger than the input
+    private static @NonNegative int unescape(char[] value, @NonNegative int length) {
+        int decodedLength = 0;
+        int i = 0;
+
+        while (i < length) {
+            final char c = value[i];
+
+            if (c == '%') {
+                final int end = escapeSequenceEnd(value, i, length);
+
+                decodedLength = decodeEscapeSequence(value, i, end, decodedLength);
+                i = end;
+            } else {
+                value[decodedLength++] = c == '+' ? ' ' : c;
+                ++i;
+            }
+        }
+
+        return decodedLength;
+    }
+
+    /**
+     * Get the end of a sequence of consecutive escaped bytes (i.e. %XX%XX...)
+     *
+     * @throws IllegalArgumentException When the escape sequence is incomplete
+     */
+    @SuppressWarnings("array.access.unsafe.high") // end < length is checked
+    private static @NonNegative int escapeSequenceEnd(char[] value, @NonNegative int start, @NonNegative int length) {
+        int end = start;
+
+        while (end < length && value[end] == '%') {
+            if (end + 2 >= length) {
+                throw new IllegalArgumentException("Incomplete trailing escape (%) pattern");
+            }
+
+            end += 3;
+        }
+
+        return end;
+    }
+
+    /**
+     * Decode the escape sequence [start, end[ and write the decoded characters at the position target
+     *
+     * @return The new target position
+     */
+    @SuppressWarnings({"array.access.unsafe.high", "array.access.unsafe.low", "argument", "array.length.negative"}) // Bounds are checked by escapeSequenceEnd()
+    private static @NonNegative int decodeEscapeSequence(char[] value, @NonNegative int start, @NonNegative int end, @NonNegative int target) {
+        final byte[] bytes = new byte[(end - start) / 3];
+        boolean ascii = true;
+
+        for (int i = 0; i < bytes.length; ++i) {
+            final int position = start + 3 * i;
+            final int b = (hexDigit(value[position + 1]) << 4) + hexDigit(value[position + 2]);
+
+            bytes[i] = (byte) b;
+            ascii &= b < 0x80;
+        }
+
+        if (ascii) {
+            for (byte b : bytes) {
+                value[target++] = (char) b;
+            }
+
+            return target;
+        }
+
+        final String decoded = new String(bytes, StandardCharsets.UTF_8);
+
+        decoded.getChars(0, decoded.length(), value, target);
+
+        return target + decoded.length();
     }
 
     /**
@@ -36,6 +36,8 @@ class Base64Test {
     @Test
     void ordInvalidChar() {
         assertThrows(IllegalArgumentException.class, () -> Base64.ord('#'));
+        assertThrows(IllegalArgumentException.class, () -> Base64.ord('\u00e9'));
+        assertThrows(IllegalArgumentException.class, () -> Base64.ord('\u0161'));
     }
 
     @Test
@@ -123,6 +125,20 @@ class Base64Test {
         assertArrayEquals(new byte[] {2, 31}, Base64.toBytes("cF"));
     }
 
+    @Test
+    void toBytesWithTarget() {
+        byte[] buffer = new byte[2];
+
+        Base64.toBytes("cF", 0, buffer);
+        assertArrayEquals(new byte[] {2, 31}, buffer);
+
+        Base64.toBytes(new StringBuilder("abcdF"), 3, buffer);
+        assertArrayEquals(new byte[] {3, 31}, buffer);
+
+        assertThrows(IllegalArgumentException.class, () -> Base64.toBytes("a#", 0, buffer));
+        assertThrows(IndexOutOfBoundsException.class, () -> Base64.toBytes("abc", 2, buffer));
+    }
+
     @Test
     void encodeWithByteArray() {
         assertEquals("", Base64.encode(new byte[0]));
@@ -21,6 +21,9 @@ package fr.arakne.utils.encoding;
 
 import org.junit.jupiter.api.Test;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class XorCipherTest {
@@ -79,4 +82,61 @@ class XorCipherTest {
             assertEquals(s, cipher.decrypt(cipher.encrypt(s, 0), 0));
         }
     }
+
+    @Test
+    void decryptToBuffer() {
+        XorCipher cipher = new XorCipher("my key");
+        char[] buffer = new char[32];
+
+        assertEquals(13, cipher.decrypt(new StringBuilder("251C4C070A593A16520701594C"), 0, buffer));
+        assertEquals("Hello World !", new String(buffer, 0, 13));
+
+        assertEquals(2, cipher.decrypt("483A134E2440483A134E2449", 0, buffer));
+        assertEquals("éà", new String(buffer, 0, 2));
+
+        assertEquals(12, cipher.decrypt("230015011600210A11035901", 3, buffer));
+        assertEquals("Hello John !", new String(buffer, 0, 12));
+
+        assertThrows(IllegalArgumentException.class, () -> cipher.decrypt("251C4C070A593A16520701594C", 0, new char[12]));
+        assertThrows(IllegalArgumentException.class, () -> cipher.decrypt("invalid", 0, buffer));
+        assertThrows(NumberFormatException.class, () -> cipher.decrypt("####", 0, buffer));
+    }
+
+    @Test
+    void decryptShouldUnescapeLikeUrlDecoder() throws Exception {
+        XorCipher cipher = new XorCipher("my key");
+
+        String[] escaped = new String[] {
+            "a+b",
+            "%41%42c",
+            "%25%2B+",
+            "%C3%A9%C3%A0@%E2%82%AC",
+            "%c3%a9",
+            "",
+        };
+
+        for (String value : escaped) {
+            assertEquals(URLDecoder.decode(value, StandardCharsets.UTF_8.toString()), cipher.decrypt(xor(cipher, value), 0));
+        }
+
+        String[] invalid = new String[] {"%", "ab%4", "%zz", "%-1"};
+
+        for (String value : invalid) {
+            assertThrows(IllegalArgumentException.class, () -> URLDecoder.decode(value, StandardCharsets.UTF_8.toString()));
+            assertThrows(IllegalArgumentException.class, () -> cipher.decrypt(xor(cipher, value), 0));
+        }
+    }
+
+    /**
+     * Apply the XOR on the value without escaping it
+     */
+    private String xor(XorCipher cipher, String value) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < value.length(); ++i) {
+            sb.append(String.format("%02X", value.charAt(i) ^ cipher.key().charAt(i % cipher.key().length())));
+        }
+
+        return sb.toString();
+    }
 }
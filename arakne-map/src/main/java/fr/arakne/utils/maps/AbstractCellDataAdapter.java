@@ -21,6 +21,7 @@ package fr.arakne.utils.maps;
 
 import fr.arakne.utils.maps.serializer.CellData;
 import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.Pure;
@@ -37,6 +38,7 @@ public abstract class AbstractCellDataAdapter<M extends @NonNull DofusMap, C ext
     protected final CellData data;
     private final M map;
     private final @NonNegative int id;
+    private @MonotonicNonNull CoordinateCell<C> coordinate;
 
     /**
      * @param map The container map
@@ -67,6 +69,24 @@ public abstract class AbstractCellDataAdapter<M extends @NonNull DofusMap, C ext
         return map;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The coordinate is computed on the first call, and then kept by the cell
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CoordinateCell<C> coordinate() {
+        CoordinateCell<C> coordinate = this.coordinate;
+
+        if (coordinate == null) {
+            coordinate = new CoordinateCell<>((C) this);
+            this.coordinate = coordinate;
+        }
+
+        return coordinate;
+    }
+
     @Override
     public boolean equals(@Nullable Object o) {
         if (this == o) {
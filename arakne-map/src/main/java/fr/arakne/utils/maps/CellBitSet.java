@@ -0,0 +1,412 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps;
+
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable set of cell ids, stored as a bitset of 64 bits words
+ * A map of 479 cells is stored on 8 longs, so set operations are performed on a few words instead of calling each cells
+ *
+ * Note: This is an immutable value object. All modification methods return a new instance
+ *
+ * <pre>{@code
+ * final CellBitSet walkable = CellBitSet.of(map.size(), id -> map.get(id).walkable());
+ *
+ * walkable.get(cell.id());
+ * walkable.andNot(occupied).cardinality(); // Number of free walkable cells
+ * }</pre>
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Cell ids are considered as valid
+public final class CellBitSet {
+    /**
+     * Value returned by {@link CellBitSet#nextSetBit(int)} when there is no more cells
+     */
+    public static final int NO_CELL = -1;
+
+    private final long[] words;
+    private final @NonNegative int size;
+
+    private CellBitSet(long[] words, @NonNegative int size) {
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+     * @return The number of cells of the set (i.e. the map size), not the number of cells into the set
+     *
+     * @see CellBitSet#cardinality()
+     */
+    @Pure
+    public @NonNegative int size() {
+        return size;
+    }
+
+    /**
+     * Check if the cell is contained into the set
+     *
+     * @param cellId The cell id
+     *
+     * @return true if the bit of the cell is set
+     */
+    @Pure
+    public boolean get(@NonNegative int cellId) {
+        return (words[cellId >>> 6] & (1L << cellId)) != 0;
+    }
+
+    /**
+     * Count the number of cells into the set
+     *
+     * @return The number of set bits
+     */
+    @Pure
+    @SuppressWarnings("return") // bitCount is always positive
+    public @NonNegative int cardinality() {
+        int count = 0;
+
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    /**
+     * Check if the set do not contain any cells
+     *
+     * @return true if no bits are set
+     */
+    @Pure
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the number of 64 bits words used by the set
+     *
+     * @return The number of words
+     */
+    @Pure
+    public @NonNegative int wordsCount() {
+        return words.length;
+    }
+
+    /**
+     * Get a word of the bitset
+     * The cell id of the bit {@code b} of the word {@code w} is {@code w * 64 + b}
+     *
+     * @param index The word index. Must be lower than {@link CellBitSet#wordsCount()}
+     *
+     * @return The word value
+     */
+    @Pure
+    public long word(@NonNegative int index) {
+        return words[index];
+    }
+
+    /**
+     * Get a copy of the words of the bitset
+     *
+     * @return The words. The returned array can be modified without affecting the set
+     */
+    public long[] toLongArray() {
+        return words.clone();
+    }
+
+    /**
+     * Find the next cell contained into the set
+     *
+     * <pre>{@code
+     * for (int id = set.nextSetBit(0); id != CellBitSet.NO_CELL; id = set.nextSetBit(id + 1)) {
+     *     // ...
+     * }
+     * }</pre>
+     *
+     * @param fromCellId The first cell id to check (included)
+     *
+     * @return The cell id, or {@link CellBitSet#NO_CELL} if there is no more cells
+     */
+    @Pure
+    public @GTENegativeOne int nextSetBit(@NonNegative int fromCellId) {
+        int index = fromCellId >>> 6;
+
+        if (index >= words.length) {
+            return NO_CELL;
+        }
+
+        long word = words[index] & (-1L << fromCellId);
+
+        while (word == 0) {
+            if (++index == words.length) {
+                return NO_CELL;
+            }
+
+            word = words[index];
+        }
+
+        return index * 64 + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Apply the action on each cell ids contained into the set, in ascending order
+     *
+     * @param action Action to perform
+     */
+    public void forEach(IntConsumer action) {
+        for (int index = 0; index < words.length; ++index) {
+            long word = words[index];
+
+            while (word != 0) {
+                action.accept(index * 64 + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Get the intersection of the two sets
+     *
+     * @param other The other set. Must have the same size
+     *
+     * @return The new set
+     *
+     * @throws IllegalArgumentException When sets size are different
+     */
+    public CellBitSet and(CellBitSet other) {
+        final long[] result = copyWords(other);
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] &= other.words[i];
+        }
+
+        return new CellBitSet(result, size);
+    }
+
+    /**
+     * Get the union of the two sets
+     *
+     * @param other The other set. Must have the same size
+     *
+     * @return The new set
+     *
+     * @throws IllegalArgumentException When sets size are different
+     */
+    public CellBitSet or(CellBitSet other) {
+        final long[] result = copyWords(other);
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] |= other.words[i];
+        }
+
+        return new CellBitSet(result, size);
+    }
+
+    /**
+     * Remove all cells of the other set from the current one
+     *
+     * <pre>{@code
+     * final CellBitSet free = walkable.andNot(occupied);
+     * }</pre>
+     *
+     * @param other The cells to remove. Must have the same size
+     *
+     * @return The new set
+     *
+     * @throws IllegalArgumentException When sets size are different
+     */
+    public CellBitSet andNot(CellBitSet other) {
+        final long[] result = copyWords(other);
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] &= ~other.words[i];
+        }
+
+        return new CellBitSet(result, size);
+    }
+
+    /**
+     * Get the complement of the set
+     * Only cells lower than {@link CellBitSet#size()} are added
+     *
+     * @return The new set
+     */
+    public CellBitSet not() {
+        final long[] result = new long[words.length];
+
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = ~words[i];
+        }
+
+        clearTail(result, size);
+
+        return new CellBitSet(result, size);
+    }
+
+    /**
+     * Add or remove a cell from the set
+     *
+     * @param cellId The cell id. Must be lower than {@link CellBitSet#size()}
+     * @param value true to add the cell, false to remove it
+     *
+     * @return The new set, or the current instance if the cell state is not modified
+     */
+    public CellBitSet with(@NonNegative int cellId, boolean value) {
+        if (cellId >= size) {
+            throw new IndexOutOfBoundsException("Invalid cell id " + cellId);
+        }
+
+        if (get(cellId) == value) {
+            return this;
+        }
+
+        final long[] result = words.clone();
+
+        result[cellId >>> 6] ^= 1L << cellId;
+
+        return new CellBitSet(result, size);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+        if (!(obj instanceof CellBitSet)) {
+            return false;
+        }
+
+        final CellBitSet other = (CellBitSet) obj;
+
+        return size == other.size && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("{");
+
+        forEach(id -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+
+            sb.append(id);
+        });
+
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Create the set by testing each cells
+     *
+     * <pre>{@code
+     * final CellBitSet walkable = CellBitSet.of(map.size(), id -> map.get(id).walkable());
+     * }</pre>
+     *
+     * @param size The number of cells
+     * @param predicate The predicate. Takes the cell id as parameter, and returns true if the cell should be added to the set
+     *
+     * @return The new set
+     */
+    public static CellBitSet of(@NonNegative int size, IntPredicate predicate) {
+        final long[] words = new long[wordsCount(size)];
+
+        for (int id = 0; id < size; ++id) {
+            if (predicate.test(id)) {
+                words[id >>> 6] |= 1L << id;
+            }
+        }
+
+        return new CellBitSet(words, size);
+    }
+
+    /**
+     * Create the set from the given words
+     *
+     * @param size The number of cells
+     * @param words The bitset words. The array is copied, and bits higher than the size are ignored
+     *
+     * @return The new set
+     *
+     * @throws IllegalArgumentException When the words count do not match with the size
+     *
+     * @see CellBitSet#toLongArray() For the opposite operation
+     */
+    public static CellBitSet of(@NonNegative int size, long[] words) {
+        if (words.length != wordsCount(size)) {
+            throw new IllegalArgumentException("Invalid words count for the size " + size);
+        }
+
+        final long[] copy = words.clone();
+
+        clearTail(copy, size);
+
+        return new CellBitSet(copy, size);
+    }
+
+    /**
+     * Create an empty set
+     *
+     * @param size The number of cells
+     *
+     * @return The new set
+     */
+    public static CellBitSet empty(@NonNegative int size) {
+        return new CellBitSet(new long[wordsCount(size)], size);
+    }
+
+    /**
+     * Copy the words of the current set, after checking that the other set has the same size
+     */
+    private long[] copyWords(CellBitSet other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Sets must have the same size");
+        }
+
+        return words.clone();
+    }
+
+    private static @NonNegative int wordsCount(@NonNegative int size) {
+        return (size + 63) >>> 6;
+    }
+
+    /**
+     * Clear the bits of the last word, higher than the size
+     */
+    private static void clearTail(long[] words, @NonNegative int size) {
+        if (words.length > 0 && size % 64 != 0) {
+            words[words.length - 1] &= -1L >>> (64 - size % 64);
+        }
+    }
+}
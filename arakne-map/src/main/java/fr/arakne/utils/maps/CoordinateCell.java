@@ -34,6 +34,7 @@ import java.util.Objects;
  */
 public final class CoordinateCell<C extends @NonNull MapCell> {
     private final C cell;
+    private final CoordinateIndex index;
 
     private final int x;
     private final int y;
@@ -47,15 +48,20 @@ public final class CoordinateCell<C extends @NonNull MapCell> {
      * @see MapCell#coordinate() For get the {@link CoordinateCell} instance from a cell
      */
     public CoordinateCell(C cell) {
-        this.cell = cell;
-
-        final int width = cell.map().dimensions().width();
-        final int line = cell.id() / (width * 2 - 1);
-        final int column = cell.id() - line * (width * 2 - 1);
-        final int offset = column % width;
+        this(cell, CoordinateIndex.of(cell.map()));
+    }
 
-        this.y = line - offset;
-        this.x = (cell.id() - (width - 1) * this.y) / width;
+    /**
+     * CoordinateCell constructor, using an already resolved coordinate index
+     *
+     * @param cell The cell to wrap
+     * @param index The coordinate index of the cell map
+     */
+    public CoordinateCell(C cell, CoordinateIndex index) {
+        this.cell = cell;
+        this.index = index;
+        this.x = index.x(cell.id());
+        this.y = index.y(cell.id());
     }
 
     /**
@@ -94,6 +100,16 @@ public final class CoordinateCell<C extends @NonNull MapCell> {
         return y;
     }
 
+    /**
+     * Get the coordinate index used by this cell
+     *
+     * @return The index shared by all cells of the map
+     */
+    @Pure
+    public CoordinateIndex index() {
+        return index;
+    }
+
     /**
      * Check if the cell is at the given coordinates
      *
@@ -139,7 +155,7 @@ public final class CoordinateCell<C extends @NonNull MapCell> {
      * @return The direction
      */
     public Direction directionTo(C target) {
-        return directionTo(target.coordinate());
+        return index.directionTo(cell.id(), target.id());
     }
 
     /**
@@ -164,7 +180,7 @@ public final class CoordinateCell<C extends @NonNull MapCell> {
      * @return The distance, in cells number
      */
     public @NonNegative int distance(C target) {
-        return distance(target.coordinate());
+        return index.distance(cell.id(), target.id());
     }
 
     @Override
@@ -0,0 +1,269 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps;
+
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed coordinates of all cells of a map
+ * Coordinates only depends on the map width and size, so a single index is shared by all maps with the same dimensions
+ *
+ * Computing coordinates using this index do not perform any allocation nor division
+ *
+ * <pre>{@code
+ * final CoordinateIndex index = CoordinateIndex.of(map);
+ *
+ * index.x(cell.id());
+ * index.distance(cell.id(), target.id());
+ * }</pre>
+ *
+ * @see CoordinateCell For the object API
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Cell ids are considered as valid
+public final class CoordinateIndex {
+    /**
+     * Value returned by {@link CoordinateIndex#cellId(int, int)} when there is no cell on the coordinates
+     */
+    public static final int NO_CELL = -1;
+
+    /**
+     * All created indexes. New indexes are appended by copying the array
+     */
+    private static volatile CoordinateIndex[] indexes = new CoordinateIndex[0];
+
+    private final @Positive int width;
+    private final @NonNegative int size;
+
+    private final int[] x;
+    private final int[] y;
+
+    /**
+     * Coordinates bounding box
+     */
+    private final int minX;
+    private final int minY;
+    private final @NonNegative int columns;
+
+    /**
+     * Cell ids indexed by {@code (x - minX) * columns + (y - minY)}
+     */
+    private final int[] cells;
+
+    @SuppressWarnings({"assignment", "array.length.negative"}) // max is always greater or equals to min
+    private CoordinateIndex(@Positive int width, @NonNegative int size) {
+        this.width = width;
+        this.size = size;
+        this.x = new int[size];
+        this.y = new int[size];
+
+        int minX = 0;
+        int maxX = 0;
+        int minY = 0;
+        int maxY = 0;
+
+        for (int id = 0; id < size; ++id) {
+            // https://github.com/Emudofus/Dofus/blob/1.29/ank/battlefield/utils/Pathfinding.as#L191
+            final int line = id / (width * 2 - 1);
+            final int column = id - line * (width * 2 - 1);
+            final int offset = column % width;
+
+            y[id] = line - offset;
+            x[id] = (id - (width - 1) * y[id]) / width;
+
+            minX = Math.min(minX, x[id]);
+            maxX = Math.max(maxX, x[id]);
+            minY = Math.min(minY, y[id]);
+            maxY = Math.max(maxY, y[id]);
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = maxY - minY + 1;
+        this.cells = new int[(maxX - minX + 1) * columns];
+
+        Arrays.fill(cells, NO_CELL);
+
+        for (int id = 0; id < size; ++id) {
+            cells[(x[id] - minX) * columns + y[id] - minY] = id;
+        }
+    }
+
+    /**
+     * @return The map width
+     */
+    @Pure
+    public @Positive int width() {
+        return width;
+    }
+
+    /**
+     * @return The number of indexed cells
+     */
+    @Pure
+    public @NonNegative int size() {
+        return size;
+    }
+
+    /**
+     * Get the X coordinate of a cell
+     *
+     * @param cellId The cell id
+     *
+     * @return The X coordinate
+     */
+    @Pure
+    public int x(@NonNegative int cellId) {
+        return x[cellId];
+    }
+
+    /**
+     * Get the Y coordinate of a cell
+     *
+     * @param cellId The cell id
+     *
+     * @return The Y coordinate
+     */
+    @Pure
+    public int y(@NonNegative int cellId) {
+        return y[cellId];
+    }
+
+    /**
+     * Get the cell id at the given coordinates
+     *
+     * @param x The X coordinate
+     * @param y The Y coordinate
+     *
+     * @return The cell id, or {@link CoordinateIndex#NO_CELL} if there is no cell on those coordinates
+     */
+    @Pure
+    @SuppressWarnings("return") // The table contains only valid cell ids or NO_CELL
+    public @GTENegativeOne int cellId(int x, int y) {
+        final int column = y - minY;
+        final int index = (x - minX) * columns + column;
+
+        if (column < 0 || column >= columns || index < 0 || index >= cells.length) {
+            return NO_CELL;
+        }
+
+        return cells[index];
+    }
+
+    /**
+     * Get the cell distance
+     *
+     * @param source The source cell id
+     * @param target The target cell id
+     *
+     * @return The distance, in cells number
+     *
+     * @see CoordinateCell#distance(CoordinateCell)
+     */
+    @Pure
+    @SuppressWarnings("return") // Sum of absolute values is non negative
+    public @NonNegative int distance(@NonNegative int source, @NonNegative int target) {
+        return Math.abs(x[source] - x[target]) + Math.abs(y[source] - y[target]);
+    }
+
+    /**
+     * Compute the direction to the target cell
+     *
+     * @param source The source cell id
+     * @param target The target cell id
+     *
+     * @return The direction
+     *
+     * @see CoordinateCell#directionTo(CoordinateCell)
+     */
+    @Pure
+    public Direction directionTo(@NonNegative int source, @NonNegative int target) {
+        // https://github.com/Emudofus/Dofus/blob/1.29/ank/battlefield/utils/Pathfinding.as#L204
+        if (x[source] == x[target]) {
+            return y[target] > y[source] ? Direction.SOUTH_WEST : Direction.NORTH_EAST;
+        }
+
+        return x[target] > x[source] ? Direction.SOUTH_EAST : Direction.NORTH_WEST;
+    }
+
+    /**
+     * Get the coordinate index of the given map
+     *
+     * @param map The map
+     *
+     * @return The shared index instance
+     */
+    public static CoordinateIndex of(DofusMap<?> map) {
+        return of(map.dimensions().width(), map.size());
+    }
+
+    /**
+     * Get the coordinate index for the given map dimensions
+     * Indexes are created once, and shared between all maps with same dimensions
+     *
+     * @param width The map width
+     * @param size The map size, i.e. number of cells
+     *
+     * @return The shared index instance
+     */
+    public static CoordinateIndex of(@Positive int width, @NonNegative int size) {
+        final CoordinateIndex index = find(indexes, width, size);
+
+        if (index != null) {
+            return index;
+        }
+
+        return create(width, size);
+    }
+
+    @SuppressWarnings("assignment") // Arrays.copyOf result is filled just after
+    private static synchronized CoordinateIndex create(@Positive int width, @NonNegative int size) {
+        final CoordinateIndex[] current = indexes;
+        final CoordinateIndex existing = find(current, width, size);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        final CoordinateIndex index = new CoordinateIndex(width, size);
+        final CoordinateIndex[] newIndexes = Arrays.copyOf(current, current.length + 1);
+
+        newIndexes[current.length] = index;
+        indexes = newIndexes;
+
+        return index;
+    }
+
+    private static @Nullable CoordinateIndex find(CoordinateIndex[] candidates, int width, int size) {
+        for (CoordinateIndex index : candidates) {
+            if (index.width == width && index.size == size) {
+                return index;
+            }
+        }
+
+        return null;
+    }
+}
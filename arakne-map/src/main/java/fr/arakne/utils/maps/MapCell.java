@@ -64,7 +64,9 @@ public interface MapCell<C extends @NonNull MapCell> {
      * Get the coordinate of the current cell
      * This is equivalent to {@code new CoordinateCell<>(cell)}
      *
-     * Note: this method will always recreate a new {@link CoordinateCell} instance
+     * Note: the default implementation will always recreate a new {@link CoordinateCell} instance,
+     *       but {@link AbstractCellDataAdapter} keeps the instance.
+     *       Coordinates themselves are read from the shared {@link CoordinateIndex}
      *
      * <pre>{@code
      * // Compute distance between two cells
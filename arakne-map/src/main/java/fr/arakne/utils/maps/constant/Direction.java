@@ -25,7 +25,7 @@ import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 
 import java.util.Arrays;
-import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 
 /**
  * List of available directions
@@ -53,12 +53,12 @@ public enum Direction {
      */
     private static final Direction[] values = values();
 
-    private final Function<Integer, Integer> computeNextCell;
+    private final IntUnaryOperator computeNextCell;
 
     /**
      * @param computeNextCell The function for compute the next cell id following the direction
      */
-    Direction(Function<Integer, Integer> computeNextCell) {
+    Direction(IntUnaryOperator computeNextCell) {
         this.computeNextCell = computeNextCell;
     }
 
@@ -120,7 +120,7 @@ public enum Direction {
      */
     @Pure
     public int nextCellIncrement(@Positive int mapWidth) {
-        return computeNextCell.apply(mapWidth);
+        return computeNextCell.applyAsInt(mapWidth);
     }
 
     /**
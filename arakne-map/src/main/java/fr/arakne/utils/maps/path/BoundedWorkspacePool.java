@@ -0,0 +1,64 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Thread safe pool of workspaces, with a limited number of idle workspaces
+ * The idle workspaces are stored into a stack, so acquire and release do not allocate
+ *
+ * @see PathfinderWorkspacePool#bounded(int)
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Indexes are bounded by count
+final class BoundedWorkspacePool implements PathfinderWorkspacePool {
+    private final @Nullable PathfinderWorkspace[] idle;
+    private int count = 0;
+
+    BoundedWorkspacePool(@Positive int maxIdle) {
+        this.idle = new PathfinderWorkspace[maxIdle];
+    }
+
+    @Override
+    public synchronized PathfinderWorkspace acquire(@NonNegative int size) {
+        // Search from the top of the stack for a large enough workspace
+        for (int i = count - 1; i >= 0; --i) {
+            final PathfinderWorkspace workspace = idle[i];
+
+            if (workspace != null && workspace.size() >= size) {
+                idle[i] = idle[--count];
+                idle[count] = null;
+
+                return workspace;
+            }
+        }
+
+        return new PathfinderWorkspace(size);
+    }
+
+    @Override
+    public synchronized void release(PathfinderWorkspace workspace) {
+        if (count < idle.length) {
+            idle[count++] = workspace;
+        }
+    }
+}
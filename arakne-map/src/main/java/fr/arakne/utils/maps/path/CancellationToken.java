@@ -0,0 +1,54 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+/**
+ * Allow to cancel a running path search from another thread
+ * The token can be shared by many searches, and is checked regularly during the search
+ *
+ * <pre>{@code
+ * final CancellationToken token = new CancellationToken();
+ *
+ * pathfinder.budget(SearchBudget.unlimited().withCancellation(token));
+ *
+ * // On another thread
+ * token.cancel();
+ * }</pre>
+ *
+ * @see SearchBudget#withCancellation(CancellationToken)
+ */
+public final class CancellationToken {
+    private volatile boolean cancelled = false;
+
+    /**
+     * Request the cancellation of the searches using this token
+     * The cancellation is definitive
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Check if the cancellation has been requested
+     */
+    public boolean cancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Index of the connected components of walkable cells of a map
+ * Two walkable cells are in the same component if a path exists between them
+ *
+ * The index is built once when the map is loaded, and allows to reject an unreachable target without exploring the map.
+ * Cells can be blocked or unblocked during a fight : only the affected components are recomputed.
+ *
+ * Note: this class is not thread safe. An index should be created per fight when the cells are modified.
+ *
+ * <pre>{@code
+ * final ConnectivityIndex index = ConnectivityIndex.of(decoder, bitSets.walkable());
+ *
+ * index.connected(source.id(), target.id()); // false if there is no path between source and target
+ * index.block(fighter.cell().id()); // A fighter is now on the cell
+ *
+ * decoder.pathfinder().connectivity(index).findPath(source, target);
+ * }</pre>
+ *
+ * @see Pathfinder#connectivity(ConnectivityIndex)
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high", "argument"}) // Cell ids are considered as valid
+public final class ConnectivityIndex {
+    /**
+     * Component of a not walkable cell
+     */
+    public static final int NO_COMPONENT = -1;
+
+    private final Decoder<?> decoder;
+
+    /**
+     * Directions followed by the flood fill
+     * Contains the configured directions and their opposites, so a component do not depend on the flood fill start cell
+     */
+    private final Direction[] directions;
+
+    /**
+     * Component label, indexed by cell id
+     */
+    private final int[] components;
+
+    /**
+     * Work queue of the flood fill
+     */
+    private final int[] queue;
+
+    private int nextComponent = 0;
+    private @NonNegative int count = 0;
+
+    private ConnectivityIndex(Decoder<?> decoder, CellBitSet walkable, Direction[] directions) {
+        this.decoder = decoder;
+        this.directions = withOpposites(directions);
+        this.components = new int[walkable.size()];
+        this.queue = new int[walkable.size()];
+
+        Arrays.fill(components, NO_COMPONENT);
+        walkable.forEach(cellId -> components[cellId] = 0);
+
+        for (int cellId = 0; cellId < components.length; ++cellId) {
+            if (components[cellId] == 0) {
+                fill(cellId, newComponent());
+            }
+        }
+    }
+
+    /**
+     * @return The number of indexed cells
+     */
+    @Pure
+    public @NonNegative int size() {
+        return components.length;
+    }
+
+    /**
+     * Get the number of connected components
+     *
+     * @return The number of components
+     */
+    @Pure
+    public @NonNegative int count() {
+        return count;
+    }
+
+    /**
+     * Get the component of a cell
+     * The component value is only valid until the next modification of the index
+     *
+     * @param cellId The cell id
+     *
+     * @return The component, or {@link ConnectivityIndex#NO_COMPONENT} if the cell is not walkable
+     */
+    @Pure
+    @SuppressWarnings("return") // Labels are always positive
+    public @GTENegativeOne int component(@NonNegative int cellId) {
+        final int component = components[cellId];
+
+        return component == NO_COMPONENT ? NO_COMPONENT : component - 1;
+    }
+
+    /**
+     * Check if the cell is walkable
+     *
+     * @param cellId The cell id
+     *
+     * @return true if the cell is walkable
+     */
+    @Pure
+    public boolean walkable(@NonNegative int cellId) {
+        return components[cellId] != NO_COMPONENT;
+    }
+
+    /**
+     * Get the indexed walkable cells
+     *
+     * @return The walkable cells
+     */
+    public CellBitSet walkable() {
+        return CellBitSet.of(components.length, cellId -> walkable(cellId));
+    }
+
+    /**
+     * Check if a path may exist between the two cells
+     *
+     * The source cell is not required to be walkable (i.e. the cell occupied by the moving fighter) :
+     * in this case, its walkable neighbours are checked.
+     * The target cell must be walkable, unless it's the same as the source.
+     *
+     * @param source The source cell id
+     * @param target The target cell id
+     *
+     * @return false if there is no path between the cells
+     */
+    @Pure
+    public boolean connected(@NonNegative int source, @NonNegative int target) {
+        if (source == target) {
+            return true;
+        }
+
+        final int component = components[target];
+
+        if (component == NO_COMPONENT) {
+            return false;
+        }
+
+        if (components[source] == component) {
+            return true;
+        }
+
+        for (Direction direction : directions) {
+            final int next = decoder.neighbour(source, direction);
+
+            if (next != Decoder.NO_NEIGHBOUR && components[next] == component) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Set a cell as not walkable
+     * The component of the cell is recomputed, because it may be split
+     *
+     * @param cellId The cell id
+     *
+     * @return true if the index has been modified, or false if the cell is already blocked
+     */
+    @SuppressWarnings("unary.decrement") // The cell component is counted
+    public boolean block(@NonNegative int cellId) {
+        final int component = components[cellId];
+
+        if (component == NO_COMPONENT) {
+            return false;
+        }
+
+        components[cellId] = NO_COMPONENT;
+        --count;
+
+        for (Direction direction : directions) {
+            final int next = decoder.neighbour(cellId, direction);
+
+            if (next != Decoder.NO_NEIGHBOUR && components[next] == component) {
+                fill(next, newComponent());
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Set a cell as walkable
+     * The components of the adjacent cells are merged
+     *
+     * @param cellId The cell id
+     *
+     * @return true if the index has been modified, or false if the cell is already walkable
+     */
+    @SuppressWarnings("compound.assignment") // count is always greater than the number of replaced components
+    public boolean unblock(@NonNegative int cellId) {
+        if (components[cellId] != NO_COMPONENT) {
+            return false;
+        }
+
+        final int component = newComponent();
+
+        components[cellId] = 0;
+        count -= fill(cellId, component);
+
+        return true;
+    }
+
+    /**
+     * Create the index of a map, following the restricted directions
+     *
+     * @param decoder The map decoder
+     * @param walkable The walkable cells of the map
+     *
+     * @return The index
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the map size
+     *
+     * @see Direction#restrictedDirections()
+     * @see fr.arakne.utils.maps.serializer.CellBitSets#walkable()
+     */
+    public static ConnectivityIndex of(Decoder<?> decoder, CellBitSet walkable) {
+        return of(decoder, walkable, Direction.restrictedDirections());
+    }
+
+    /**
+     * Create the index of a map
+     *
+     * @param decoder The map decoder
+     * @param walkable The walkable cells of the map
+     * @param directions Allowed movement directions. Must be the same as the pathfinder directions
+     *
+     * @return The index
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the map size
+     *
+     * @see Pathfinder#directions(Direction[])
+     */
+    public static ConnectivityIndex of(Decoder<?> decoder, CellBitSet walkable, Direction[] directions) {
+        if (walkable.size() != decoder.map().size()) {
+            throw new IllegalArgumentException("The walkable cells set size must be the same as the map size");
+        }
+
+        return new ConnectivityIndex(decoder, walkable, directions);
+    }
+
+    /**
+     * Create a new component label
+     * Labels are stored with an offset of 1, so 0 can be used for walkable cells which are not yet labelled
+     */
+    private int newComponent() {
+        ++count;
+
+        return ++nextComponent;
+    }
+
+    /**
+     * Set the component of all walkable cells connected to the start cell
+     *
+     * @param start The start cell. Must be walkable
+     * @param component The component label
+     *
+     * @return The number of distinct components replaced by the new one
+     */
+    private int fill(@NonNegative int start, int component) {
+        final int[] queue = this.queue;
+        final int[] replaced = new int[directions.length];
+        int replacedCount = 0;
+        int head = 0;
+        int tail = 0;
+
+        components[start] = component;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            final int cellId = queue[head++];
+
+            for (Direction direction : directions) {
+                final int next = decoder.neighbour(cellId, direction);
+
+                if (next == Decoder.NO_NEIGHBOUR || components[next] == NO_COMPONENT || components[next] == component) {
+                    continue;
+                }
+
+                replacedCount = addReplaced(replaced, replacedCount, components[next]);
+                components[next] = component;
+                queue[tail++] = next;
+            }
+        }
+
+        return replacedCount;
+    }
+
+    /**
+     * Add the component to the replaced components if not already present
+     * Only the components of the start cell neighbours can be replaced, so the array size is bounded by the directions count
+     */
+    private static int addReplaced(int[] replaced, int replacedCount, int component) {
+        if (component == 0) {
+            return replacedCount;
+        }
+
+        for (int i = 0; i < replacedCount; ++i) {
+            if (replaced[i] == component) {
+                return replacedCount;
+            }
+        }
+
+        replaced[replacedCount] = component;
+
+        return replacedCount + 1;
+    }
+
+    private static Direction[] withOpposites(Direction[] directions) {
+        final Set<Direction> all = EnumSet.noneOf(Direction.class);
+
+        for (Direction direction : directions) {
+            all.add(direction);
+            all.add(direction.opposite());
+        }
+
+        return all.toArray(new Direction[0]);
+    }
+}
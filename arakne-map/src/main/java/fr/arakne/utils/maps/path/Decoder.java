@@ -23,6 +23,8 @@ import fr.arakne.utils.encoding.Base64;
 import fr.arakne.utils.maps.DofusMap;
 import fr.arakne.utils.maps.MapCell;
 import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.SideEffectFree;
@@ -33,13 +35,25 @@ import java.util.Optional;
  * Decode map data like paths or directions
  */
 public final class Decoder<C extends @NonNull MapCell> {
+    /**
+     * Value of {@link Decoder#neighbour(int, Direction)} when the next cell is outside the map
+     */
+    public static final int NO_NEIGHBOUR = -1;
+
     private final DofusMap<C> map;
 
+    /**
+     * Adjacent cell ids, indexed by {@code cellId * 8 + direction.ordinal()}
+     * Built once by the constructor, so the decoder can be shared between threads
+     */
+    private final int[] neighbours;
+
     /**
      * @param map The map to handle
      */
     public Decoder(DofusMap<C> map) {
         this.map = map;
+        this.neighbours = computeNeighbours(map);
     }
 
     /**
@@ -51,16 +65,39 @@ public final class Decoder<C extends @NonNull MapCell> {
      *
      * @return The next cell, wrapped into an optional. If the next cell is outside map, return an empty optional
      */
+    @SuppressWarnings("argument") // nextId is checked by neighbour()
     public Optional<C> nextCellByDirection(C start, Direction direction) {
-        final int nextId = start.id() + direction.nextCellIncrement(map.dimensions().width());
+        final int nextId = neighbour(start.id(), direction);
 
-        if (nextId >= map.size() || nextId < 0) {
+        if (nextId == NO_NEIGHBOUR) {
             return Optional.empty();
         }
 
         return Optional.of(map.get(nextId));
     }
 
+    /**
+     * Get the adjacent cell id following the given direction
+     * The result is read from a table computed once for the map, so this method do not allocate
+     *
+     * <pre>{@code
+     * final int next = decoder.neighbour(cell.id(), Direction.EAST);
+     *
+     * if (next != Decoder.NO_NEIGHBOUR) {
+     *     // next is a valid cell id
+     * }
+     * }</pre>
+     *
+     * @param cellId The start cell id. Must be a valid cell id
+     * @param direction The direction to follow
+     *
+     * @return The next cell id, or {@link Decoder#NO_NEIGHBOUR} if the cell is outside the map
+     */
+    @SuppressWarnings({"array.access.unsafe.high", "return"}) // cellId is considered as valid, and the table only contains valid ids or NO_NEIGHBOUR
+    public @GTENegativeOne int neighbour(@NonNegative int cellId, Direction direction) {
+        return neighbours[cellId * 8 + direction.ordinal()];
+    }
+
     /**
      * Decode compressed path
      *
@@ -172,12 +209,26 @@ public final class Decoder<C extends @NonNull MapCell> {
         return new Pathfinder<>(this);
     }
 
+    /**
+     * Get the handled map
+     */
+    DofusMap<C> map() {
+        return map;
+    }
+
+    @SuppressWarnings("argument") // cell is checked by neighbour()
     private void expandRectilinearMove(Path<C> path, C start, C target, Direction direction) throws PathException {
         int stepsLimit =  2 * map.dimensions().width() + 1;
+        int cell = start.id();
+
+        while (cell != target.id()) {
+            cell = neighbour(cell, direction);
 
-        while (!start.equals(target)) {
-            start = nextCellByDirection(start, direction).orElseThrow(() -> new PathException("Invalid cell number"));
-            path.add(new PathStep<>(start, direction));
+            if (cell == NO_NEIGHBOUR) {
+                throw new PathException("Invalid cell number");
+            }
+
+            path.add(new PathStep<>(map.get(cell), direction));
 
             if (--stepsLimit < 0) {
                 throw new PathException("Invalid path : bad direction");
@@ -185,6 +236,31 @@ public final class Decoder<C extends @NonNull MapCell> {
         }
     }
 
+    /**
+     * Compute the adjacent cells table
+     * Out of map cells are set to {@link Decoder#NO_NEIGHBOUR}
+     */
+    @SuppressWarnings({"array.access.unsafe.high", "array.access.unsafe.low"}) // Index is bounded by size * 8
+    private static int[] computeNeighbours(DofusMap<?> map) {
+        final int size = map.size();
+        final int width = map.dimensions().width();
+        final Direction[] directions = Direction.values();
+        final int[] increments = new int[directions.length];
+        final int[] table = new int[size * 8];
+
+        for (Direction direction : directions) {
+            increments[direction.ordinal()] = direction.nextCellIncrement(width);
+        }
+
+        for (int i = 0; i < table.length; ++i) {
+            final int next = (i >> 3) + increments[i & 7];
+
+            table[i] = next >= 0 && next < size ? next : NO_NEIGHBOUR;
+        }
+
+        return table;
+    }
+
     /**
      * Encode the computed path
      *
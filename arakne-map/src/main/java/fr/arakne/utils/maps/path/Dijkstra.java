@@ -0,0 +1,107 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra search from one or several source cells, storing the costs into primitive arrays
+ *
+ * @see ReachableCells
+ * @see DistanceField
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high", "argument"}) // Cell ids are considered as valid
+final class Dijkstra {
+    /**
+     * Cost of not reached cells
+     */
+    static final int NOT_REACHABLE = -1;
+
+    /**
+     * Disable constructor
+     */
+    private Dijkstra() {}
+
+    /**
+     * Compute the cost of each cells from the nearest source
+     *
+     * @param rules The movement rules
+     * @param sources The source cells ids. The sources are not required to be walkable
+     * @param maxCost The maximum cost. Cells with an higher cost are not explored
+     * @param costs The costs array to fill, indexed by cell id. Not reached cells are set to {@link Dijkstra#NOT_REACHABLE}
+     * @param directions Array to fill with the ordinal of the direction of the last move for reaching each cell. Can be null if not required
+     */
+    static void search(MovementRules<?> rules, int[] sources, @NonNegative int maxCost, int[] costs, byte @Nullable [] directions) {
+        final WeightCache weights = new WeightCache(rules, costs.length);
+        final LongHeap heap = new LongHeap(costs.length);
+
+        Arrays.fill(costs, NOT_REACHABLE);
+
+        for (int source : sources) {
+            costs[source] = 0;
+            heap.push(LongHeap.entry(0, source));
+        }
+
+        while (!heap.isEmpty()) {
+            final long entry = heap.poll();
+            final int cellId = LongHeap.cellId(entry);
+            final int cost = LongHeap.cost(entry);
+
+            // The cell has already been reached with a lower cost
+            if (cost > costs[cellId]) {
+                continue;
+            }
+
+            for (Direction direction : rules.directions()) {
+                final int next = rules.neighbour(cellId, direction);
+
+                if (next == Decoder.NO_NEIGHBOUR) {
+                    continue;
+                }
+
+                final int weight = weights.get(next);
+                final int nextCost = cost + weight;
+
+                if (weight == MovementRules.NOT_WALKABLE || nextCost > maxCost || !improves(costs[next], nextCost)) {
+                    continue;
+                }
+
+                costs[next] = nextCost;
+
+                if (directions != null) {
+                    directions[next] = (byte) direction.ordinal();
+                }
+
+                heap.push(LongHeap.entry(nextCost, next));
+            }
+        }
+    }
+
+    /**
+     * Check if the new cost is lower than the current one
+     */
+    private static boolean improves(int currentCost, int newCost) {
+        return currentCost == NOT_REACHABLE || newCost < currentCost;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.MapCell;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Walking distance of each cells from the nearest cell of a set of sources
+ * All the sources are explored in a single search, so the cost does not depend on the number of sources
+ *
+ * The field is computed using the current movement rules of the pathfinder (directions, walkable cells and weight function)
+ *
+ * <code>
+ *     DistanceField enemies = DistanceField.of(pathfinder, enemiesCells);
+ *
+ *     enemies.distance(cell.id()); // Walking distance to the nearest enemy
+ * </code>
+ *
+ * @see DistanceFields For store multiple fields together
+ */
+public final class DistanceField {
+    /**
+     * Distance of cells which cannot be reached from any source
+     */
+    public static final int NOT_REACHABLE = Dijkstra.NOT_REACHABLE;
+
+    private final int[] distances;
+
+    DistanceField(int[] distances) {
+        this.distances = distances;
+    }
+
+    /**
+     * Get the number of cells of the field
+     */
+    public @NonNegative int size() {
+        return distances.length;
+    }
+
+    /**
+     * Get the walking distance of the cell from the nearest source
+     *
+     * @param cellId The cell id
+     *
+     * @return The distance, 0 for a source cell, or {@link DistanceField#NOT_REACHABLE}
+     */
+    @SuppressWarnings("array.access.unsafe.high") // Cell id is considered as valid
+    public int distance(@NonNegative int cellId) {
+        return distances[cellId];
+    }
+
+    /**
+     * Check if the cell can be reached from at least one source
+     *
+     * @param cellId The cell id
+     */
+    public boolean reachable(@NonNegative int cellId) {
+        return distance(cellId) != NOT_REACHABLE;
+    }
+
+    /**
+     * Get a copy of the distances, indexed by cell id
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(distances, distances.length);
+    }
+
+    /**
+     * Compute the distance field from the given source cells
+     *
+     * @param pathfinder The pathfinder. Its movement rules are used for the search
+     * @param sources The source cells. The sources are not required to be walkable
+     * @param <C> The cell type
+     *
+     * @return The distance field
+     */
+    public static <C extends @NonNull MapCell> DistanceField of(Pathfinder<C> pathfinder, Collection<C> sources) {
+        return of(pathfinder, sources, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Compute the distance field from the given source cells, stopping the search at the given distance
+     * Cells farther than the maximum distance are considered as not reachable
+     *
+     * @param pathfinder The pathfinder. Its movement rules are used for the search
+     * @param sources The source cells. The sources are not required to be walkable
+     * @param maxDistance The maximum distance to compute
+     * @param <C> The cell type
+     *
+     * @return The distance field
+     */
+    public static <C extends @NonNull MapCell> DistanceField of(Pathfinder<C> pathfinder, Collection<C> sources, @NonNegative int maxDistance) {
+        final MovementRules<C> rules = pathfinder.rules();
+
+        return new DistanceField(compute(rules, sources, maxDistance));
+    }
+
+    /**
+     * Perform the multi-source search
+     */
+    static <C extends @NonNull MapCell> int[] compute(MovementRules<C> rules, Collection<C> sources, @NonNegative int maxDistance) {
+        final int[] distances = new int[rules.map().size()];
+
+        Dijkstra.search(rules, sources.stream().mapToInt(cell -> cell.id()).toArray(), maxDistance, distances, null);
+
+        return distances;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.MapCell;
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Store multiple distance fields side by side
+ * The distances of a cell for all the fields are stored contiguously, so comparing the fields on a cell,
+ * or scanning all the cells, reads a single sequential array
+ *
+ * <code>
+ *     DistanceFields fields = DistanceFields.builder(pathfinder)
+ *         .add(team1Cells)
+ *         .add(team2Cells)
+ *         .build()
+ *     ;
+ *
+ *     fields.nearest(cell.id()); // 0 if the cell is nearer from the team 1, 1 for the team 2
+ * </code>
+ *
+ * @see DistanceField
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Cell ids and field indexes are considered as valid
+public final class DistanceFields {
+    /**
+     * Returned by {@link DistanceFields#nearest(int)} when the cell cannot be reached from any field
+     */
+    public static final int NO_FIELD = -1;
+
+    private final @NonNegative int count;
+    private final @NonNegative int size;
+
+    /**
+     * Distances, indexed by cellId * count + field
+     */
+    private final int[] distances;
+
+    private DistanceFields(@NonNegative int count, @NonNegative int size, int[] distances) {
+        this.count = count;
+        this.size = size;
+        this.distances = distances;
+    }
+
+    /**
+     * Get the number of fields
+     */
+    public @NonNegative int count() {
+        return count;
+    }
+
+    /**
+     * Get the number of cells of each fields
+     */
+    public @NonNegative int size() {
+        return size;
+    }
+
+    /**
+     * Get the walking distance of the cell from the nearest source of the given field
+     *
+     * @param field The field index, in order of {@link Builder#add(Collection)} calls
+     * @param cellId The cell id
+     *
+     * @return The distance, or {@link DistanceField#NOT_REACHABLE}
+     */
+    public int distance(@NonNegative int field, @NonNegative int cellId) {
+        return distances[cellId * count + field];
+    }
+
+    /**
+     * Get the minimal distance of the cell over all the fields
+     *
+     * @param cellId The cell id
+     *
+     * @return The distance, or {@link DistanceField#NOT_REACHABLE} if the cell cannot be reached from any field
+     */
+    public int minimum(@NonNegative int cellId) {
+        final int field = nearest(cellId);
+
+        return field == NO_FIELD ? DistanceField.NOT_REACHABLE : distance(field, cellId);
+    }
+
+    /**
+     * Get the field with the smallest distance for the cell
+     * On equality, the first field is returned
+     *
+     * @param cellId The cell id
+     *
+     * @return The field index, or {@link DistanceFields#NO_FIELD} if the cell cannot be reached from any field
+     */
+    public @GTENegativeOne int nearest(@NonNegative int cellId) {
+        final int offset = cellId * count;
+        int nearest = NO_FIELD;
+        int min = Integer.MAX_VALUE;
+
+        for (int field = 0; field < count; ++field) {
+            final int distance = distances[offset + field];
+
+            if (distance != DistanceField.NOT_REACHABLE && distance < min) {
+                min = distance;
+                nearest = field;
+            }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * Extract a single field
+     *
+     * @param field The field index
+     *
+     * @return The distance field
+     */
+    public DistanceField field(@NonNegative int field) {
+        final int[] extracted = new int[size];
+
+        for (int cellId = 0; cellId < size; ++cellId) {
+            extracted[cellId] = distance(field, cellId);
+        }
+
+        return new DistanceField(extracted);
+    }
+
+    /**
+     * Create the builder of distance fields
+     *
+     * @param pathfinder The pathfinder. Its movement rules are used for the search
+     * @param <C> The cell type
+     *
+     * @return The builder
+     */
+    public static <C extends @NonNull MapCell> Builder<C> builder(Pathfinder<C> pathfinder) {
+        return new Builder<>(pathfinder.rules());
+    }
+
+    /**
+     * Builder for {@link DistanceFields}
+     * Each added set of sources creates a new field
+     *
+     * @param <C> The cell type
+     */
+    public static final class Builder<C extends @NonNull MapCell> {
+        private final MovementRules<C> rules;
+        private final List<Collection<C>> sources = new ArrayList<>();
+        private @NonNegative int maxDistance = Integer.MAX_VALUE;
+
+        private Builder(MovementRules<C> rules) {
+            this.rules = rules;
+        }
+
+        /**
+         * Add a new field
+         *
+         * @param sources The source cells of the field
+         *
+         * @return this instance
+         */
+        public Builder<C> add(Collection<C> sources) {
+            this.sources.add(sources);
+
+            return this;
+        }
+
+        /**
+         * Define the maximum distance to compute
+         * Cells farther than this distance are considered as not reachable
+         *
+         * @param maxDistance The maximum distance
+         *
+         * @return this instance
+         */
+        public Builder<C> maxDistance(@NonNegative int maxDistance) {
+            this.maxDistance = maxDistance;
+
+            return this;
+        }
+
+        /**
+         * Compute all the fields
+         */
+        public DistanceFields build() {
+            final int count = sources.size();
+            final int size = rules.map().size();
+            final int[] distances = new int[count * size];
+
+            for (int field = 0; field < count; ++field) {
+                final int[] fieldDistances = DistanceField.compute(rules, sources.get(field), maxDistance);
+
+                for (int cellId = 0; cellId < size; ++cellId) {
+                    distances[cellId * count + field] = fieldDistances[cellId];
+                }
+            }
+
+            return new DistanceFields(count, size, distances);
+        }
+    }
+}
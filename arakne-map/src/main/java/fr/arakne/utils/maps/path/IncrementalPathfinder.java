@@ -0,0 +1,388 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.DofusMap;
+import fr.arakne.utils.maps.MapCell;
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pathfinder to a fixed target, keeping its search state between calls
+ *
+ * The search is rooted on the target (like D* Lite, without heuristic), so the source cell can change between calls
+ * without restarting the search. When a cell is blocked or unblocked, only the part of the search depending on this cell is repaired.
+ * This is faster than recomputing the path with {@link Pathfinder#findPath(MapCell, MapCell)} each time a fighter moves.
+ *
+ * The movement rules (directions, walkable cells, weight function, add first cell) are copied from the pathfinder on creation.
+ * The target distance and the explored cell limit are not used.
+ *
+ * <pre>{@code
+ * IncrementalPathfinder<MyCell> planner = IncrementalPathfinder.of(pathfinder, target);
+ *
+ * Path<MyCell> path = planner.findPath(fighter.cell());
+ *
+ * // An invocation blocks a cell : the next search only repairs the affected cells
+ * planner.block(invocation.cell().id());
+ * path = planner.findPath(fighter.cell());
+ * }</pre>
+ *
+ * Note: this class is not thread safe
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high", "argument", "return"}) // Cell ids are considered as valid, and keys are only computed on inconsistent cells
+public final class IncrementalPathfinder<C extends @NonNull MapCell> {
+    /**
+     * Cost of cells from which the target cannot be reached
+     */
+    public static final int NOT_REACHABLE = -1;
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final Decoder<C> decoder;
+    private final MovementRules<C> rules;
+    private final C target;
+    private final boolean addFirstCell;
+    private final WeightCache weights;
+    private final LongHeap heap;
+    private final boolean[] blocked;
+
+    /**
+     * Cost from the cell to the target, computed by the last expansion
+     */
+    private final int[] costs;
+
+    /**
+     * One step lookahead cost, computed from the neighbours costs
+     * A cell is inconsistent when its lookahead differs from its cost, and must be expanded
+     */
+    private final int[] lookahead;
+
+    /**
+     * Last path walk which has visited the cell
+     * Used to not loop between cells with the same cost, when the weight function returns 0
+     */
+    private final int[] visits;
+    private int walk = 0;
+
+    private IncrementalPathfinder(MovementRules<C> rules, C target, boolean addFirstCell) {
+        final int size = rules.map().size();
+
+        this.decoder = rules.decoder();
+        this.rules = rules;
+        this.target = target;
+        this.addFirstCell = addFirstCell;
+        this.weights = new WeightCache(rules, size);
+        this.heap = new LongHeap(size);
+        this.blocked = new boolean[size];
+        this.costs = new int[size];
+        this.lookahead = new int[size];
+        this.visits = new int[size];
+
+        Arrays.fill(costs, INFINITY);
+        Arrays.fill(lookahead, INFINITY);
+
+        lookahead[target.id()] = 0;
+        heap.push(LongHeap.entry(0, target.id()));
+    }
+
+    /**
+     * Get the target cell
+     */
+    public C target() {
+        return target;
+    }
+
+    /**
+     * Mark the cell as not walkable
+     * Does nothing if the cell is already blocked
+     *
+     * @param cellId The cell to block
+     */
+    public void block(@NonNegative int cellId) {
+        if (!blocked[cellId]) {
+            blocked[cellId] = true;
+            updatePredecessors(cellId);
+        }
+    }
+
+    /**
+     * Remove the block on the cell
+     * The cell walkability is then given by the movement rules
+     * Does nothing if the cell is not blocked
+     *
+     * @param cellId The cell to unblock
+     */
+    public void unblock(@NonNegative int cellId) {
+        if (blocked[cellId]) {
+            blocked[cellId] = false;
+            updatePredecessors(cellId);
+        }
+    }
+
+    /**
+     * Check if the cell is blocked
+     *
+     * @param cellId The cell id
+     *
+     * @see IncrementalPathfinder#block(int)
+     */
+    public boolean blocked(@NonNegative int cellId) {
+        return blocked[cellId];
+    }
+
+    /**
+     * Get the cost of the shortest path from the source to the target
+     *
+     * @param source The source cell. It's not required to be walkable
+     *
+     * @return The cost, or {@link IncrementalPathfinder#NOT_REACHABLE}
+     */
+    public int cost(C source) {
+        final int cost = search(source.id());
+
+        return cost == INFINITY ? NOT_REACHABLE : cost;
+    }
+
+    /**
+     * Find the shortest path from the source to the target
+     * The path follows the same rules than {@link Pathfinder#findPath(MapCell, MapCell)}
+     *
+     * @param source The source cell. It's not required to be walkable
+     *
+     * @return The path
+     *
+     * @throws PathException When the target cannot be reached
+     */
+    public Path<C> findPath(C source) {
+        if (search(source.id()) == INFINITY) {
+            throw new PathException("Cannot find any valid path between " + source.id() + " and " + target.id());
+        }
+
+        final DofusMap<C> map = decoder.map();
+        final List<PathStep<C>> path = new ArrayList<>();
+        final int start = addFirstCell ? 1 : 0;
+        final int walk = nextWalk();
+
+        if (addFirstCell) {
+            path.add(new PathStep<>(source, Direction.EAST));
+        }
+
+        visits[source.id()] = walk;
+
+        for (int cellId = source.id(); cellId != target.id();) {
+            final Direction direction = nextDirection(cellId, walk);
+
+            // All the best neighbours are already visited (cells with a zero weight) : go back to the previous cell
+            if (direction == null) {
+                if (path.size() == start) {
+                    throw new PathException("Cannot find any valid path between " + source.id() + " and " + target.id());
+                }
+
+                path.remove(path.size() - 1);
+                cellId = path.size() == start ? source.id() : path.get(path.size() - 1).cell().id();
+                continue;
+            }
+
+            final C cell = map.get(rules.neighbour(cellId, direction));
+
+            // Stop the path on an unwalkable cell, like the pathfinder
+            if (!cell.walkable()) {
+                break;
+            }
+
+            visits[cell.id()] = walk;
+            path.add(new PathStep<>(cell, direction));
+            cellId = cell.id();
+        }
+
+        return new Path<>(decoder, path);
+    }
+
+    /**
+     * Expand the inconsistent cells until the cost of the source is known
+     *
+     * @return The source cost, or {@link IncrementalPathfinder#INFINITY}
+     */
+    private int search(@NonNegative int source) {
+        while (!heap.isEmpty()) {
+            if (costs[source] == lookahead[source] && LongHeap.cost(heap.peek()) >= costs[source]) {
+                break;
+            }
+
+            final long entry = heap.poll();
+            final int cellId = LongHeap.cellId(entry);
+
+            // Outdated entry : the cell is consistent, or has been pushed again with another key
+            if (costs[cellId] == lookahead[cellId] || LongHeap.cost(entry) != key(cellId)) {
+                continue;
+            }
+
+            if (costs[cellId] > lookahead[cellId]) {
+                costs[cellId] = lookahead[cellId];
+            } else {
+                costs[cellId] = INFINITY;
+                update(cellId);
+            }
+
+            updatePredecessors(cellId);
+        }
+
+        return costs[source];
+    }
+
+    /**
+     * Update all cells which can move to the given cell
+     * Called when the cost of the cell, or its walkability, has changed
+     */
+    private void updatePredecessors(@NonNegative int cellId) {
+        for (Direction direction : rules.directions()) {
+            final int predecessor = rules.neighbour(cellId, direction.opposite());
+
+            if (predecessor != Decoder.NO_NEIGHBOUR) {
+                update(predecessor);
+            }
+        }
+    }
+
+    /**
+     * Recompute the lookahead of the cell, and push it on the queue if inconsistent
+     */
+    private void update(@NonNegative int cellId) {
+        if (cellId != target.id()) {
+            lookahead[cellId] = computeLookahead(cellId);
+        }
+
+        if (costs[cellId] != lookahead[cellId]) {
+            heap.push(LongHeap.entry(key(cellId), cellId));
+        }
+    }
+
+    private int computeLookahead(@NonNegative int cellId) {
+        final Direction direction = bestDirection(cellId);
+
+        return direction == null ? INFINITY : moveCost(rules.neighbour(cellId, direction));
+    }
+
+    /**
+     * Get the direction of the neighbour with the lowest cost
+     *
+     * @return The direction, or null if no neighbour can reach the target
+     */
+    private @Nullable Direction bestDirection(@NonNegative int cellId) {
+        Direction best = null;
+        int bestCost = INFINITY;
+
+        for (Direction direction : rules.directions()) {
+            final int next = rules.neighbour(cellId, direction);
+
+            if (next == Decoder.NO_NEIGHBOUR) {
+                continue;
+            }
+
+            final int cost = moveCost(next);
+
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = direction;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Get the direction of the first neighbour with the lowest cost, which is not yet visited by the walk
+     *
+     * Without zero weights, the cost always decreases along the path, so this is the best direction.
+     * With zero weights, neighbours can have the same cost than the cell, so visited cells are skipped
+     * to not loop between them.
+     *
+     * @return The direction, or null if all the best neighbours are visited
+     */
+    private @Nullable Direction nextDirection(@NonNegative int cellId, int walk) {
+        final Direction best = bestDirection(cellId);
+
+        if (best == null) {
+            return null;
+        }
+
+        final int bestCost = moveCost(rules.neighbour(cellId, best));
+
+        for (Direction direction : rules.directions()) {
+            final int next = rules.neighbour(cellId, direction);
+
+            if (next != Decoder.NO_NEIGHBOUR && visits[next] != walk && moveCost(next) == bestCost) {
+                return direction;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Start a new path walk
+     *
+     * @return The walk number, used to mark visited cells
+     */
+    private int nextWalk() {
+        if (++walk == Integer.MAX_VALUE) {
+            Arrays.fill(visits, 0);
+            walk = 1;
+        }
+
+        return walk;
+    }
+
+    /**
+     * Get the cost to reach the target by moving to the given cell
+     */
+    private int moveCost(@NonNegative int cellId) {
+        final int weight = blocked[cellId] ? MovementRules.NOT_WALKABLE : weights.get(cellId);
+
+        if (weight == MovementRules.NOT_WALKABLE || costs[cellId] == INFINITY) {
+            return INFINITY;
+        }
+
+        return weight + costs[cellId];
+    }
+
+    private @NonNegative int key(@NonNegative int cellId) {
+        return Math.min(costs[cellId], lookahead[cellId]);
+    }
+
+    /**
+     * Create the incremental pathfinder, using the current movement rules of the pathfinder
+     *
+     * @param pathfinder The pathfinder
+     * @param target The target cell
+     * @param <C> The cell type
+     *
+     * @return The incremental pathfinder
+     */
+    public static <C extends @NonNull MapCell> IncrementalPathfinder<C> of(Pathfinder<C> pathfinder, C target) {
+        return new IncrementalPathfinder<>(pathfinder.rules(), target, pathfinder.isFirstCellAdded());
+    }
+}
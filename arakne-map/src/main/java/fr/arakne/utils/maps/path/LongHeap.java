@@ -0,0 +1,140 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of primitive longs, used as priority queue by the search algorithms
+ * Entries are generally packed as {@code (cost << 32) | cellId}, so the lower cost is polled first
+ *
+ * @see LongHeap#entry(int, int)
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Indexes are bounded by size
+final class LongHeap {
+    private long[] values;
+    private @NonNegative int size = 0;
+
+    LongHeap(@NonNegative int capacity) {
+        this.values = new long[Math.max(capacity, 8)];
+    }
+
+    @Pure
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Get the lowest value, without removing it
+     * The heap must not be empty
+     */
+    @Pure
+    long peek() {
+        return values[0];
+    }
+
+    /**
+     * Add a new value
+     */
+    void push(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1));
+        }
+
+        int index = size++;
+
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+
+            if (values[parent] <= value) {
+                break;
+            }
+
+            values[index] = values[parent];
+            index = parent;
+        }
+
+        values[index] = value;
+    }
+
+    /**
+     * Remove and return the lowest value
+     * The heap must not be empty
+     */
+    @SuppressWarnings("unary.decrement") // The heap is not empty
+    long poll() {
+        final long result = values[0];
+        final long last = values[--size];
+        final int half = size >>> 1;
+        int index = 0;
+
+        while (index < half) {
+            int child = 2 * index + 1;
+
+            if (child + 1 < size && values[child + 1] < values[child]) {
+                ++child;
+            }
+
+            if (last <= values[child]) {
+                break;
+            }
+
+            values[index] = values[child];
+            index = child;
+        }
+
+        values[index] = last;
+
+        return result;
+    }
+
+    /**
+     * Pack a cell and its cost to a heap entry
+     */
+    @Pure
+    static long entry(@NonNegative int cost, @NonNegative int cellId) {
+        return ((long) cost << 32) | cellId;
+    }
+
+    /**
+     * Extract the cost from a heap entry
+     */
+    @Pure
+    @SuppressWarnings("return") // The cost is a non negative int
+    static @NonNegative int cost(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * Extract the cell id from a heap entry
+     */
+    @Pure
+    @SuppressWarnings("return") // The cell id is a non negative int
+    static @NonNegative int cellId(long entry) {
+        return (int) entry;
+    }
+}
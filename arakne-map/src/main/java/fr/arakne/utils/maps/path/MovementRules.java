@@ -0,0 +1,153 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.DofusMap;
+import fr.arakne.utils.maps.MapCell;
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Movement rules of the pathfinding algorithms : allowed directions, walkable cells and cells weight
+ * This is an immutable object : the rules are captured by each search, so the pathfinder can be reconfigured during a search
+ *
+ * @param <C> The cell type
+ *
+ * @see Pathfinder
+ */
+final class MovementRules<C extends @NonNull MapCell> {
+    /**
+     * Value returned by {@link MovementRules#weight(int)} for not walkable cells
+     */
+    static final int NOT_WALKABLE = -1;
+
+    private final Decoder<C> decoder;
+    private final Direction[] directions;
+    private final Predicate<C> walkablePredicate;
+    private final @Nullable CellBitSet walkableCells;
+    private final Function<C, @NonNegative Integer> weightFunction;
+
+    /**
+     * Create the default rules : restricted directions, walkable cells using {@link MapCell#walkable()}, and weight of 1
+     *
+     * @param decoder The map decoder
+     */
+    MovementRules(Decoder<C> decoder) {
+        this(decoder, Direction.restrictedDirections(), MapCell::walkable, null, cell -> 1);
+    }
+
+    private MovementRules(Decoder<C> decoder, Direction[] directions, Predicate<C> walkablePredicate, @Nullable CellBitSet walkableCells, Function<C, @NonNegative Integer> weightFunction) {
+        this.decoder = decoder;
+        this.directions = directions;
+        this.walkablePredicate = walkablePredicate;
+        this.walkableCells = walkableCells;
+        this.weightFunction = weightFunction;
+    }
+
+    @Pure
+    Decoder<C> decoder() {
+        return decoder;
+    }
+
+    @Pure
+    DofusMap<C> map() {
+        return decoder.map();
+    }
+
+    /**
+     * Get the allowed directions
+     * Note: the array is not copied, so it must not be modified
+     */
+    @Pure
+    Direction[] directions() {
+        return directions;
+    }
+
+    /**
+     * Get the adjacent cell following the direction
+     *
+     * @see Decoder#neighbour(int, Direction)
+     */
+    @Pure
+    @GTENegativeOne int neighbour(@NonNegative int cellId, Direction direction) {
+        return decoder.neighbour(cellId, direction);
+    }
+
+    /**
+     * Compute the cost for moving to the cell
+     * The walkable cells bitset is used if defined, so cell objects are only retrieved for walkable cells
+     *
+     * @param cellId The cell id
+     *
+     * @return The cell weight, or {@link MovementRules#NOT_WALKABLE} if the cell cannot be walked
+     */
+    @SuppressWarnings("argument") // cellId is considered as valid
+    @GTENegativeOne int weight(@NonNegative int cellId) {
+        final CellBitSet walkableCells = this.walkableCells;
+
+        if (walkableCells != null && !walkableCells.get(cellId)) {
+            return NOT_WALKABLE;
+        }
+
+        final C cell = decoder.map().get(cellId);
+
+        if (walkableCells == null && !walkablePredicate.test(cell)) {
+            return NOT_WALKABLE;
+        }
+
+        return weightFunction.apply(cell);
+    }
+
+    MovementRules<C> withDirections(Direction[] directions) {
+        return new MovementRules<>(decoder, directions, walkablePredicate, walkableCells, weightFunction);
+    }
+
+    /**
+     * Define the walkable predicate, and remove the walkable cells bitset
+     */
+    MovementRules<C> withWalkablePredicate(Predicate<C> predicate) {
+        return new MovementRules<>(decoder, directions, predicate, null, weightFunction);
+    }
+
+    /**
+     * Define the walkable cells bitset, which replace the walkable predicate
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the map size
+     */
+    MovementRules<C> withWalkableCells(CellBitSet cells) {
+        if (cells.size() != decoder.map().size()) {
+            throw new IllegalArgumentException("The walkable cells set size must be the same as the map size");
+        }
+
+        return new MovementRules<>(decoder, directions, walkablePredicate, cells, weightFunction);
+    }
+
+    MovementRules<C> withWeightFunction(Function<C, @NonNegative Integer> function) {
+        return new MovementRules<>(decoder, directions, walkablePredicate, walkableCells, function);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+/**
+ * Pool implementation which always creates a new workspace
+ *
+ * @see PathfinderWorkspacePool#none()
+ */
+final class NoWorkspacePool implements PathfinderWorkspacePool {
+    static final NoWorkspacePool INSTANCE = new NoWorkspacePool();
+
+    private NoWorkspacePool() {}
+
+    @Override
+    public PathfinderWorkspace acquire(@NonNegative int size) {
+        return new PathfinderWorkspace(size);
+    }
+
+    @Override
+    public void release(PathfinderWorkspace workspace) {
+        // Do not keep the workspace
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.MapCell;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Source and target cells of a path search
+ *
+ * @param <C> The cell type
+ *
+ * @see PathfinderBatch
+ */
+public final class PathQuery<C extends @NonNull MapCell> {
+    private final C source;
+    private final C target;
+
+    /**
+     * @param source The source (start) cell
+     * @param target The target (end) cell
+     */
+    public PathQuery(C source, C target) {
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * Get the source cell
+     */
+    public C source() {
+        return source;
+    }
+
+    /**
+     * Get the target cell
+     */
+    public C target() {
+        return target;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        final PathQuery<?> query = (PathQuery<?>) o;
+
+        return source.equals(query.source) && target.equals(query.target);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, target);
+    }
+}
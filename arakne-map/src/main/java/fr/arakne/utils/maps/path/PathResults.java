@@ -0,0 +1,122 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.MapCell;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Results of a batch of path searches
+ * Results are indexed in the same order as the queries
+ *
+ * @param <C> The cell type
+ *
+ * @see PathfinderBatch#findPaths(List)
+ */
+public final class PathResults<C extends @NonNull MapCell> {
+    private final List<PathQuery<C>> queries;
+    private final List<@Nullable Path<C>> paths;
+    private final List<@Nullable RuntimeException> errors;
+
+    PathResults(List<PathQuery<C>> queries, List<@Nullable Path<C>> paths, List<@Nullable RuntimeException> errors) {
+        this.queries = Collections.unmodifiableList(queries);
+        this.paths = paths;
+        this.errors = errors;
+    }
+
+    /**
+     * Get the number of results (i.e. the number of queries)
+     */
+    public @NonNegative int size() {
+        return queries.size();
+    }
+
+    /**
+     * Get the query at the given index
+     *
+     * @param index The query index
+     */
+    public PathQuery<C> query(@NonNegative int index) {
+        return queries.get(index);
+    }
+
+    /**
+     * Check if a path has been found for the query
+     *
+     * @param index The query index
+     *
+     * @return true if the path is available
+     */
+    public boolean found(@NonNegative int index) {
+        return paths.get(index) != null;
+    }
+
+    /**
+     * Get the path found for the query
+     *
+     * @param index The query index
+     *
+     * @return The path
+     *
+     * @throws NoSuchElementException When the search has failed
+     */
+    public Path<C> get(@NonNegative int index) {
+        final Path<C> path = paths.get(index);
+
+        if (path == null) {
+            throw new NoSuchElementException("No path found for the query " + index);
+        }
+
+        return path;
+    }
+
+    /**
+     * Get the error of a failed search
+     * The error is generally a {@link PathException} if there is no valid path between the cells
+     *
+     * @param index The query index
+     *
+     * @return The error, or null if the path has been found
+     */
+    public @Nullable RuntimeException error(@NonNegative int index) {
+        return errors.get(index);
+    }
+
+    /**
+     * Get the number of failed searches
+     */
+    public @NonNegative int errorsCount() {
+        int count = 0;
+
+        for (RuntimeException error : errors) {
+            if (error != null) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+}
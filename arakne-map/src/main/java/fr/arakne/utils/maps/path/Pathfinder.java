@@ -19,24 +19,14 @@
 
 package fr.arakne.utils.maps.path;
 
-import fr.arakne.utils.maps.CoordinateCell;
+import fr.arakne.utils.maps.CellBitSet;
 import fr.arakne.utils.maps.MapCell;
 import fr.arakne.utils.maps.constant.Direction;
 import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.index.qual.Positive;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
-import org.checkerframework.checker.nullness.util.NullnessUtil;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.PriorityQueue;
-import java.util.Set;
+
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -59,38 +49,40 @@ public final class Pathfinder<C extends @NonNull MapCell> {
      * Minimal target distance to consider the path as reached
      *
      * @see Pathfinder#targetDistance(int)
-     * @see Automaton#hasReachTarget()
+     * @see PathfinderAutomaton#hasReachTarget(int)
      */
     private @NonNegative int targetDistance = 0;
 
     /**
-     * Predicate for check if the cell is walkable
+     * Walkable cells, cells weight and directions
      */
-    private Predicate<C> walkablePredicated = C::walkable;
+    private MovementRules<C> rules;
 
     /**
-     * Function for compute the cell cost
+     * Index used to reject unreachable targets without exploring the map
+     *
+     * @see Pathfinder#connectivity(ConnectivityIndex)
      */
-    private Function<C, @NonNegative Integer> cellWeightFunction = cell -> 1;
+    private @Nullable ConnectivityIndex connectivity = null;
 
     /**
-     * Available movements directions
+     * Limits of the search, including the maximum number of explored cells
      */
-    private Direction[] directions = Direction.restrictedDirections();
+    private SearchBudget budget = SearchBudget.unlimited();
 
     /**
-     * Maximum number of explored cells
-     * Allow to fail when finding too complex path
+     * Does the first cell (source) should be added to the path ?
      */
-    private @Positive int exploredCellLimit = Integer.MAX_VALUE;
+    private boolean addFirstCell = true;
 
     /**
-     * Does the first cell (source) should be added to the path ?
+     * Pool used to get the search workspace
      */
-    private boolean addFirstCell = true;
+    private PathfinderWorkspacePool workspacePool = PathfinderWorkspacePool.threadLocal();
 
     public Pathfinder(Decoder<C> decoder) {
         this.decoder = decoder;
+        this.rules = new MovementRules<>(decoder);
     }
 
     /**
@@ -115,13 +107,39 @@ public final class Pathfinder<C extends @NonNull MapCell> {
      * Define the predicate for check if the cell is walkable
      *
      * By default the predicate will call {@link MapCell#walkable()}
+     * Calling this method will remove the walkable cells set by {@link Pathfinder#walkableCells(CellBitSet)}
      *
      * @param predicate The predicate to use
      *
      * @return this instance
      */
     public Pathfinder<C> walkablePredicate(Predicate<C> predicate) {
-        this.walkablePredicated = predicate;
+        this.rules = rules.withWalkablePredicate(predicate);
+
+        return this;
+    }
+
+    /**
+     * Define the walkable cells using a precomputed bitset
+     * The bitset is used instead of the walkable predicate, so cells objects are only retrieved for walkable cells
+     *
+     * <pre>{@code
+     * pathfinder
+     *     .walkableCells(bitSets.walkable().andNot(occupiedCells))
+     *     .findPath(fighter.cell(), target)
+     * ;
+     * }</pre>
+     *
+     * @param cells The walkable cells. Must have the same size as the map
+     *
+     * @return this instance
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the map size
+     *
+     * @see fr.arakne.utils.maps.serializer.CellBitSets#walkable()
+     */
+    public Pathfinder<C> walkableCells(CellBitSet cells) {
+        this.rules = rules.withWalkableCells(cells);
 
         return this;
     }
@@ -137,7 +155,7 @@ public final class Pathfinder<C extends @NonNull MapCell> {
      * @return this instance
      */
     public Pathfinder<C> cellWeightFunction(Function<C, @NonNegative Integer> function) {
-        this.cellWeightFunction = function;
+        this.rules = rules.withWeightFunction(function);
 
         return this;
     }
@@ -157,7 +175,7 @@ public final class Pathfinder<C extends @NonNull MapCell> {
      * @see Direction#restricted()
      */
     public Pathfinder<C> directions(Direction[] directions) {
-        this.directions = directions;
+        this.rules = rules.withDirections(directions);
 
         return this;
     }
@@ -171,9 +189,25 @@ public final class Pathfinder<C extends @NonNull MapCell> {
      * @param limit The cells number. Must be a positive integer
      *
      * @return this instance
+     *
+     * @see SearchBudget#withMaxExploredCells(int)
      */
     public Pathfinder<C> exploredCellLimit(@Positive int limit) {
-        this.exploredCellLimit = limit;
+        this.budget = budget.withMaxExploredCells(limit);
+
+        return this;
+    }
+
+    /**
+     * Define the limits of the search : explored cells, path cost, duration and cancellation
+     * The budget replaces the explored cell limit defined by {@link Pathfinder#exploredCellLimit(int)}
+     *
+     * @param budget The budget to use
+     *
+     * @return this instance
+     */
+    public Pathfinder<C> budget(SearchBudget budget) {
+        this.budget = budget;
 
         return this;
     }
@@ -193,286 +227,145 @@ public final class Pathfinder<C extends @NonNull MapCell> {
     }
 
     /**
-     * Find the shortest path between source and target cells
+     * Define the connectivity index of the map
+     * When the target is not connected to the source, the search fails immediately instead of exploring the whole map
      *
-     * @param source The source (start) cell
-     * @param target The target (end) cell
+     * The index must contains all cells accepted by the walkable predicate, and use the same directions as the pathfinder.
+     * The index is only used when the target distance is 0.
      *
-     * @return The path, including source
+     * @param index The index to use
      *
-     * @throws PathException When cannot found any valid path
+     * @return this instance
+     *
+     * @throws IllegalArgumentException When the index size do not match with the map size
      */
-    public Path<C> findPath(C source, C target) {
-        final Automaton automaton = new Automaton(source, target);
-
-        while (!automaton.hasReachTarget()) {
-            automaton.pushPossibleMovements();
-            automaton.move();
+    public Pathfinder<C> connectivity(ConnectivityIndex index) {
+        if (index.size() != decoder.map().size()) {
+            throw new IllegalArgumentException("The connectivity index size must be the same as the map size");
         }
 
-        return new Path<>(decoder, automaton.buildPath());
+        this.connectivity = index;
+
+        return this;
     }
 
     /**
-     * Path finding state
+     * Define the pool used to get the search workspace of {@link Pathfinder#findPath(MapCell, MapCell)}
+     *
+     * By default, a workspace is kept per thread
+     *
+     * @param pool The pool to use
+     *
+     * @return this instance
+     *
+     * @see PathfinderWorkspacePool#threadLocal()
+     * @see PathfinderWorkspacePool#bounded(int)
+     * @see PathfinderWorkspacePool#none()
      */
-    private class Automaton {
-        /**
-         * The start cell of the path
-         */
-        private final CoordinateCell<C> source;
-
-        /**
-         * The end cell of the path
-         */
-        private final CoordinateCell<C> target;
-
-        /**
-         * The current step where automaton is located
-         */
-        private Step current;
-
-        /**
-         * List of possible movements, sorted by the heuristic (distance + cost)
-         * The head of this list is the step with the lowest cost and distance
-         *
-         * This list is also known as "openList" on A* algorithm
-         *
-         * @see Step#heuristic()
-         */
-        private final PriorityQueue<Step> movements = new PriorityQueue<>();
-
-        /**
-         * Store the best (i.e. lowest) Step for a given Cell.
-         * The score is computed in the same way as {@link Automaton#movements}.
-         *
-         * This map is used to ensure that a better step is not present on available movements
-         * when pushing all possible movements.
-         *
-         * This map is always synchronized with {@link Automaton#movements} :
-         * any writes must be applied on both structures.
-         */
-        private final Map<C, Step> bestStepByCell = new HashMap<>();
-
-        /**
-         * Set of already explored steps
-         * This set ensure that the pathfinder will not returns to an already explored cell
-         * which can cause infinity loops
-         *
-         * This set is also known as "closedList" on A* algorithm
-         */
-        private final Set<C> explored = new HashSet<>();
-
-        public Automaton(C source, C target) {
-            this.source = source.coordinate();
-            this.target = target.coordinate();
-
-            this.current = new Step(this.source);
-            explored.add(source);
-        }
-
-        /**
-         * Push all possible movements from the current step
-         *
-         * Will push all walkable adjacent cells, which are not yet explored
-         * The possible moves depends of the possible directions
-         */
-        public void pushPossibleMovements() {
-            for (Direction direction : directions) {
-                nextCellByDirection(direction)
-                    .filter(cell -> !explored.contains(cell))
-                    .filter(walkablePredicated)
-                    .map(cell -> current.next(cell, direction))
-                    .ifPresent(this::push)
-                ;
-            }
-        }
-
-        /**
-         * Move the automaton (i.e. change the current step) to the best step
-         * The selected step cell is added to explored cells
-         *
-         * @throws PathException When cannot found any valid movements
-         */
-        public void move() {
-            if (movements.isEmpty()) {
-                throw new PathException("Cannot find any valid path between " + source.cell().id() + " and " + target.cell().id());
-            }
+    public Pathfinder<C> workspacePool(PathfinderWorkspacePool pool) {
+        this.workspacePool = pool;
 
-            if (explored.size() > exploredCellLimit) {
-                throw new PathException("Limit exceeded for finding path");
-            }
+        return this;
+    }
 
-            current = NullnessUtil.castNonNull(movements.poll());
+    /**
+     * Compute all cells reachable from the source within the given cost
+     * A single search is performed, using the walkable cells, the cells weight and the directions of the pathfinder,
+     * instead of finding a path for each cell
+     *
+     * <pre>{@code
+     * final ReachableCells<FightCell> range = pathfinder.reachable(fighter.cell(), fighter.movementPoints());
+     *
+     * if (range.contains(target.id())) {
+     *     fighter.move(range.pathTo(target));
+     * }
+     * }</pre>
+     *
+     * @param source The source cell. It's not required to be walkable
+     * @param maxCost The maximum cost of the paths. With the default weight function, this is the number of movements
+     *
+     * @return The reachable cells
+     */
+    public ReachableCells<C> reachable(C source, @NonNegative int maxCost) {
+        return ReachableCells.compute(rules, source, maxCost, addFirstCell);
+    }
 
-            final C cell = current.cell.cell();
+    /**
+     * Find the shortest path between source and target cells
+     * The search workspace is acquired from the configured pool
+     *
+     * @param source The source (start) cell
+     * @param target The target (end) cell
+     *
+     * @return The path, including source
+     *
+     * @throws PathException When cannot found any valid path, or when the search budget is exceeded, unless the partial path mode is enabled
+     *
+     * @see Pathfinder#workspacePool(PathfinderWorkspacePool)
+     */
+    public Path<C> findPath(C source, C target) {
+        final PathfinderWorkspace workspace = workspacePool.acquire(decoder.map().size());
 
-            bestStepByCell.remove(cell);
-            explored.add(cell);
+        try {
+            return findPath(source, target, workspace);
+        } finally {
+            workspacePool.release(workspace);
         }
+    }
 
-        /**
-         * Check if the automaton has reach the target cell, or has reach the required minimal distance
-         */
-        public boolean hasReachTarget() {
-            return current.distance <= targetDistance;
+    /**
+     * Find the shortest path between source and target cells, using the given workspace
+     * The workspace can be reused for multiple searches, but must not be shared between concurrent searches
+     *
+     * @param source The source (start) cell
+     * @param target The target (end) cell
+     * @param workspace The search workspace. Must support the map.
+     *
+     * @return The path, including source
+     *
+     * @throws PathException When cannot found any valid path, or when the search budget is exceeded, unless the partial path mode is enabled
+     * @throws IllegalArgumentException When the workspace is too small for the map
+     */
+    public Path<C> findPath(C source, C target, PathfinderWorkspace workspace) {
+        if (!workspace.supports(decoder.map())) {
+            throw new IllegalArgumentException("The workspace is too small for the map");
         }
 
-        /**
-         * Build the path from the current step
-         */
-        public List<PathStep<C>> buildPath() {
-            final List<PathStep<C>> path = new ArrayList<>();
-
-            // Build the path from the end
-            for (Step step = current; step.previous != null; step = step.previous) {
-                // Remove all steps after an unwalkable cell
-                // Do not use the predicate, but the real walkable method,
-                // to ensure that the real walkable state is used
-                if (!step.cell.cell().walkable()) {
-                    path.clear();
-                    continue;
-                }
-
-                path.add(step.toPathStep());
-            }
-
-            // Always add the source cell even if not walkable
-            if (addFirstCell) {
-                path.add(new PathStep<>(source.cell(), Direction.EAST));
-            }
-
-            // The path is in reverse order (starts by the end)
-            Collections.reverse(path);
+        final ConnectivityIndex connectivity = this.connectivity;
 
-            return path;
+        if (connectivity != null && targetDistance == 0 && !budget.partialPath() && !connectivity.connected(source.id(), target.id())) {
+            throw new PathException("Cannot find any valid path between " + source.id() + " and " + target.id());
         }
 
-        /**
-         * Resolve the adjacent cell by a direction
-         * This method can return a null object if the cell is out of the map
-         */
-        private Optional<C> nextCellByDirection(Direction direction) {
-            return decoder.nextCellByDirection(current.cell.cell(), direction);
-        }
-
-        /**
-         * Try to push a new step on possible movements
-         * If a better step (i.e. with lower score) exists, the new step will be ignored
-         *
-         * @param step The new possible step to add
-         */
-        private void push(Step step) {
-            final C cell = step.cell.cell();
-            final Step bestStep = bestStepByCell.get(cell);
-
-            // A step with a lower cost is found (do not compare distance because both steps have the same distance)
-            if (bestStep != null && bestStep.cost <= step.cost) {
-                return;
-            }
+        final PathfinderAutomaton<C> automaton = new PathfinderAutomaton<>(rules, budget, workspace, source, target);
 
-            bestStepByCell.put(cell, step);
-            movements.add(step);
-        }
-
-        /**
-         * Step of the path
-         *
-         * The state contains the previous step (for building path), distance to target and its cost
-         */
-        private class Step implements Comparable<Step> {
-            /**
-             * The step cell
-             */
-            private final CoordinateCell<C> cell;
-
-            /**
-             * Direction used for reach this step
-             */
-            private final Direction direction;
-
-            /**
-             * Previous step
-             * Can be null in case of the first step (with cell = source)
-             */
-            private final @Nullable Step previous;
-
-            /**
-             * Distance to the target cell, in number of cells
-             */
-            private final @NonNegative int distance;
-
-            /**
-             * Cost of the step
-             *
-             * The cost is the sum of the previous step cost and the cell cost
-             * The step cost is used to discourage usage of some cells (ex: cells near enemies, which can tackle),
-             * and to store the total path cost to reach this step
-             */
-            private final @NonNegative int cost;
-
-            /**
-             * Creates the source cell
-             * The cost is set to zero, and without previous step
-             *
-             * @param cell The source cell
-             */
-            public Step(CoordinateCell<C> cell) {
-                this.cell = cell;
-                this.previous = null;
-                this.direction = Direction.EAST;
-                this.cost = 0;
-
-                distance = cell.distance(target);
+        try {
+            while (!automaton.hasReachTarget(targetDistance)) {
+                automaton.pushPossibleMovements();
+                automaton.move();
             }
-
-            /**
-             * Creates a new step, following the current step
-             *
-             * @param cell The step cell
-             * @param previous The current step
-             * @param cost The step cell cost. Should be 1 for normal cell
-             */
-            private Step(CoordinateCell<C> cell, Direction direction, Step previous, @NonNegative int cost) {
-                this.cell = cell;
-                this.direction = direction;
-                this.previous = previous;
-                this.cost = previous.cost + cost;
-
-                distance = cell.distance(target);
+        } catch (PathException e) {
+            if (!budget.partialPath()) {
+                throw e;
             }
 
-            /**
-             * Creates the next step for a given cell
-             *
-             * @param cell The step cell
-             * @param direction The direction use to reach the cell
-             */
-            public Step next(C cell, Direction direction) {
-                return new Step(cell.coordinate(), direction, this, cellWeightFunction.apply(cell));
-            }
+            automaton.moveToClosest();
+        }
 
-            /**
-             * The step heuristic
-             * Steps with lower heuristics are selected first
-             *
-             * The heuristic is the total steps costs (from the begin, to the current step) + the remaining distance
-             */
-            public @NonNegative int heuristic() {
-                return distance + cost;
-            }
+        return new Path<>(decoder, automaton.buildPath(addFirstCell));
+    }
 
-            /**
-             * Convert current pathfinder step to a PathStep
-             */
-            public PathStep<C> toPathStep() {
-                return new PathStep<>(cell.cell(), direction);
-            }
+    /**
+     * Get the current movement rules, used by the other search algorithms
+     */
+    MovementRules<C> rules() {
+        return rules;
+    }
 
-            @Override
-            public int compareTo(Step o) {
-                return heuristic() - o.heuristic();
-            }
-        }
+    /**
+     * Check if the source cell is added to the built paths
+     */
+    boolean isFirstCellAdded() {
+        return addFirstCell;
     }
 }
@@ -0,0 +1,191 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2020 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.CoordinateIndex;
+import fr.arakne.utils.maps.DofusMap;
+import fr.arakne.utils.maps.MapCell;
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Path finding state of {@link Pathfinder}
+ *
+ * The search is performed on cell ids, and the steps are stored on the {@link PathfinderWorkspace}
+ *
+ * @param <C> The cell type
+ */
+@SuppressWarnings({"argument", "array.access.unsafe.low", "array.access.unsafe.high"}) // Cell ids and directions indexes are always valid
+final class PathfinderAutomaton<C extends @NonNull MapCell> {
+    /**
+     * Cache directions values, indexed by the ordinal
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final PathfinderWorkspace workspace;
+    private final DofusMap<C> map;
+    private final CoordinateIndex coordinates;
+    private final MovementRules<C> rules;
+    private final SearchBudget.Tracker budget;
+
+    /**
+     * The start cell of the path
+     */
+    private final C source;
+
+    /**
+     * The end cell of the path
+     */
+    private final @NonNegative int target;
+
+    /**
+     * The current step where automaton is located
+     */
+    private int current;
+
+    /**
+     * The explored step which is the closest to the target
+     */
+    private int closest;
+
+    PathfinderAutomaton(MovementRules<C> rules, SearchBudget budget, PathfinderWorkspace workspace, C source, C target) {
+        this.workspace = workspace;
+        this.map = rules.map();
+        this.coordinates = CoordinateIndex.of(map);
+        this.rules = rules;
+        this.budget = budget.start();
+        this.source = source;
+        this.target = target.id();
+
+        workspace.reset();
+        current = workspace.addStep(source.id(), Direction.EAST.ordinal(), PathfinderWorkspace.NO_PREVIOUS, 0, coordinates.distance(source.id(), this.target));
+        closest = current;
+        workspace.explore(source.id());
+    }
+
+    /**
+     * Push all possible movements from the current step
+     *
+     * Will push all walkable adjacent cells, which are not yet explored, and in the cost budget
+     * The possible moves depends of the possible directions
+     */
+    void pushPossibleMovements() {
+        final int cell = workspace.cell(current);
+
+        for (Direction direction : rules.directions()) {
+            final int next = rules.neighbour(cell, direction);
+
+            if (next == Decoder.NO_NEIGHBOUR || workspace.explored(next)) {
+                continue;
+            }
+
+            final int weight = rules.weight(next);
+            final int cost = workspace.cost(current) + weight;
+
+            if (weight != MovementRules.NOT_WALKABLE && budget.allows(cost)) {
+                workspace.push(
+                    next,
+                    direction.ordinal(),
+                    current,
+                    cost,
+                    coordinates.distance(next, target)
+                );
+            }
+        }
+    }
+
+    /**
+     * Move the automaton (i.e. change the current step) to the best step
+     * The selected step cell is added to explored cells
+     *
+     * @throws PathException When cannot found any valid movements, or when the search budget is exceeded
+     */
+    void move() {
+        if (!workspace.hasMovements()) {
+            throw new PathException("Cannot find any valid path between " + source.id() + " and " + target);
+        }
+
+        budget.check(workspace.exploredCount());
+
+        current = workspace.poll();
+        workspace.explore(workspace.cell(current));
+
+        if (workspace.distance(current) < workspace.distance(closest)) {
+            closest = current;
+        }
+    }
+
+    /**
+     * Move the automaton to the explored step which is the closest to the target
+     * Used to build the best partial path when the target cannot be reached
+     * On equality, the first explored step is kept
+     */
+    void moveToClosest() {
+        current = closest;
+    }
+
+    /**
+     * Check if the automaton has reach the target cell, or has reach the required minimal distance
+     *
+     * @param targetDistance The minimal target distance
+     */
+    boolean hasReachTarget(@NonNegative int targetDistance) {
+        return workspace.distance(current) <= targetDistance;
+    }
+
+    /**
+     * Build the path from the current step
+     *
+     * @param addFirstCell Does the source cell should be added to the path ?
+     */
+    List<PathStep<C>> buildPath(boolean addFirstCell) {
+        final List<PathStep<C>> path = new ArrayList<>();
+
+        // Build the path from the end
+        for (int step = current; workspace.previous(step) != PathfinderWorkspace.NO_PREVIOUS; step = workspace.previous(step)) {
+            final C cell = map.get(workspace.cell(step));
+
+            // Remove all steps after an unwalkable cell
+            // Do not use the predicate, but the real walkable method,
+            // to ensure that the real walkable state is used
+            if (!cell.walkable()) {
+                path.clear();
+                continue;
+            }
+
+            path.add(new PathStep<>(cell, DIRECTIONS[workspace.direction(step)]));
+        }
+
+        // Always add the source cell even if not walkable
+        if (addFirstCell) {
+            path.add(new PathStep<>(source, Direction.EAST));
+        }
+
+        // The path is in reverse order (starts by the end)
+        Collections.reverse(path);
+
+        return path;
+    }
+}
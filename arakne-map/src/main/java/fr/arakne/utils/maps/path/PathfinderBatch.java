@@ -0,0 +1,152 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.MapCell;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Perform many path searches on the same map in parallel
+ *
+ * Searches are executed on a {@link ForkJoinPool} (by default the common pool), by one worker per thread of the pool.
+ * Each worker acquires a single workspace, and uses it for all its searches.
+ * The pathfinder configuration and the map are only read, so no lock is required,
+ * but they must not be modified (including the {@link ConnectivityIndex}) until the batch is done.
+ *
+ * <pre>{@code
+ * final List<PathQuery<MyCell>> queries = groups.stream()
+ *     .map(group -> new PathQuery<>(group.cell(), group.target()))
+ *     .collect(Collectors.toList())
+ * ;
+ *
+ * final PathResults<MyCell> results = new PathfinderBatch<>(pathfinder).findPaths(queries);
+ *
+ * for (int i = 0; i < results.size(); ++i) {
+ *     if (results.found(i)) {
+ *         groups.get(i).move(results.get(i));
+ *     }
+ * }
+ * }</pre>
+ *
+ * @param <C> The cell type
+ */
+public final class PathfinderBatch<C extends @NonNull MapCell> {
+    private final Pathfinder<C> pathfinder;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private PathfinderWorkspacePool workspacePool = PathfinderWorkspacePool.threadLocal();
+
+    /**
+     * @param pathfinder The configured pathfinder to use
+     */
+    public PathfinderBatch(Pathfinder<C> pathfinder) {
+        this.pathfinder = pathfinder;
+    }
+
+    /**
+     * Define the pool used to perform the searches
+     * The number of workers is the parallelism of the pool
+     *
+     * @param pool The pool to use
+     *
+     * @return this instance
+     */
+    public PathfinderBatch<C> pool(ForkJoinPool pool) {
+        this.pool = pool;
+
+        return this;
+    }
+
+    /**
+     * Define the pool of workspaces used by the workers
+     * The pool must be thread safe
+     * By default, a thread local pool is used, so workspaces are reused by the next batches
+     *
+     * @param workspacePool The workspace pool
+     *
+     * @return this instance
+     */
+    public PathfinderBatch<C> workspacePool(PathfinderWorkspacePool workspacePool) {
+        this.workspacePool = workspacePool;
+
+        return this;
+    }
+
+    /**
+     * Find the paths of all the queries
+     * This method blocks until all searches are done
+     *
+     * A failed search does not stop the batch : the error is stored into {@link PathResults#error(int)}
+     *
+     * @param queries The searches to perform
+     *
+     * @return The results, in the same order as the queries
+     */
+    @SuppressWarnings("array.length.negative") // Pool parallelism is always positive
+    public PathResults<C> findPaths(List<PathQuery<C>> queries) {
+        final List<PathQuery<C>> pending = new ArrayList<>(queries);
+        final List<@Nullable Path<C>> paths = new ArrayList<>(Collections.nCopies(pending.size(), null));
+        final List<@Nullable RuntimeException> errors = new ArrayList<>(Collections.nCopies(pending.size(), null));
+        final AtomicInteger next = new AtomicInteger();
+        final int workers = Math.min(pool.getParallelism(), pending.size());
+        final CompletableFuture<?>[] tasks = new CompletableFuture<?>[workers];
+
+        for (int i = 0; i < workers; ++i) {
+            tasks[i] = CompletableFuture.runAsync(() -> work(pending, paths, errors, next), pool);
+        }
+
+        CompletableFuture.allOf(tasks).join();
+
+        return new PathResults<>(pending, paths, errors);
+    }
+
+    /**
+     * Perform searches until all queries are processed
+     * The next query to process is taken from the shared counter, so workers are balanced even if some searches are longer
+     */
+    @SuppressWarnings("argument") // The counter is positive
+    private void work(List<PathQuery<C>> queries, List<@Nullable Path<C>> paths, List<@Nullable RuntimeException> errors, AtomicInteger next) {
+        final PathfinderWorkspace workspace = workspacePool.acquire(pathfinder.rules().map().size());
+
+        try {
+            for (int index = next.getAndIncrement(); index < queries.size(); index = next.getAndIncrement()) {
+                search(queries.get(index), index, paths, errors, workspace);
+            }
+        } finally {
+            workspacePool.release(workspace);
+        }
+    }
+
+    private void search(PathQuery<C> query, @NonNegative int index, List<@Nullable Path<C>> paths, List<@Nullable RuntimeException> errors, PathfinderWorkspace workspace) {
+        try {
+            paths.set(index, pathfinder.findPath(query.source(), query.target(), workspace));
+        } catch (RuntimeException e) {
+            errors.set(index, e);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.DofusMap;
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import java.util.Arrays;
+
+/**
+ * Scratch state of the pathfinder
+ * A workspace can be reused across {@link Pathfinder#findPath(fr.arakne.utils.maps.MapCell, fr.arakne.utils.maps.MapCell, PathfinderWorkspace)} calls
+ * to perform searches without allocating the search state
+ *
+ * Note: a workspace is not thread safe, and must be used by a single search at a time.
+ *       Use {@link PathfinderWorkspacePool} to share workspaces between threads
+ *
+ * <pre>{@code
+ * final PathfinderWorkspace workspace = new PathfinderWorkspace(map);
+ *
+ * for (Monster monster : monsters) {
+ *     Path<MyCell> path = pathfinder.findPath(monster.cell(), target, workspace);
+ * }
+ * }</pre>
+ *
+ * The state is keyed by cell id and stored into primitive arrays, so the search do not allocate
+ * an object per step, and do not need to hash cells.
+ * A step is identified by its index on the step arrays, and the open list is a binary heap of step indexes.
+ *
+ * Explored cells are marked with a generation stamp, which permit to reset the state in constant time.
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Indexes are cell ids or step indexes, which are always valid
+public final class PathfinderWorkspace {
+    /**
+     * Previous step value of the first step (i.e. the source cell)
+     */
+    static final int NO_PREVIOUS = -1;
+
+    private final @NonNegative int size;
+
+    /**
+     * The current search generation
+     * Cells with a stamp different of this value are considered as not visited
+     */
+    private int generation = 0;
+
+    /**
+     * Generation stamp of already explored cells
+     * This array is also known as "closedList" on A* algorithm
+     */
+    private final int[] explored;
+
+    /**
+     * Number of distinct explored cells for the current generation
+     */
+    private @NonNegative int exploredCount = 0;
+
+    /**
+     * Generation stamp of cells which have a step on the open list
+     * Used with {@link PathfinderWorkspace#pendingCost} to ensure that a better step is not present on available movements
+     */
+    private final int[] pending;
+
+    /**
+     * The lowest cost of the pending step for a given cell
+     * The value is valid only if the pending stamp of the cell is equal to the current generation
+     */
+    private final int[] pendingCost;
+
+    /**
+     * Steps data. The step cell, the direction ordinal used for reach the step,
+     * the previous step index, the total cost and the distance to the target
+     */
+    private int[] stepCell;
+    private int[] stepDirection;
+    private int[] stepPrevious;
+    private int[] stepCost;
+    private int[] stepDistance;
+    private @NonNegative int stepCount = 0;
+
+    /**
+     * List of possible movements, sorted by the heuristic (distance + cost)
+     * This is a binary heap of step indexes, with the same ordering as {@link java.util.PriorityQueue}
+     * to ensure that equivalent steps are selected in the same order
+     *
+     * This list is also known as "openList" on A* algorithm
+     */
+    private int[] movements;
+    private int movementsCount = 0;
+
+    /**
+     * @param size The map size (i.e. number of cells). The workspace can be used for any map with a lower or equals size
+     *
+     * @see DofusMap#size()
+     */
+    public PathfinderWorkspace(@NonNegative int size) {
+        this.size = size;
+
+        this.explored = new int[size];
+        this.pending = new int[size];
+        this.pendingCost = new int[size];
+        this.stepCell = new int[size];
+        this.stepDirection = new int[size];
+        this.stepPrevious = new int[size];
+        this.stepCost = new int[size];
+        this.stepDistance = new int[size];
+        this.movements = new int[size];
+    }
+
+    /**
+     * Create a workspace sized for the given map
+     *
+     * @param map The map to handle
+     */
+    public PathfinderWorkspace(DofusMap<?> map) {
+        this(map.size());
+    }
+
+    /**
+     * Get the number of cells handled by the workspace
+     *
+     * @return The maximum map size
+     */
+    public @NonNegative int size() {
+        return size;
+    }
+
+    /**
+     * Check if the workspace can be used for the given map
+     *
+     * @param map The map to check
+     *
+     * @return true if the map size is lower or equals to the workspace size
+     */
+    public boolean supports(DofusMap<?> map) {
+        return map.size() <= size;
+    }
+
+    /**
+     * Start a new search generation
+     * All cells are marked as not explored, and the steps and the open list are cleared
+     */
+    void reset() {
+        if (++generation == 0) {
+            // Stamps overflow : clear all arrays to ensure that old stamps will not be considered as valid
+            Arrays.fill(explored, 0);
+            Arrays.fill(pending, 0);
+            generation = 1;
+        }
+
+        exploredCount = 0;
+        stepCount = 0;
+        movementsCount = 0;
+    }
+
+    /**
+     * Check if the cell is already explored
+     */
+    boolean explored(int cell) {
+        return explored[cell] == generation;
+    }
+
+    /**
+     * Mark the cell as explored
+     */
+    void explore(int cell) {
+        if (explored[cell] != generation) {
+            explored[cell] = generation;
+            ++exploredCount;
+        }
+    }
+
+    /**
+     * Get the number of distinct explored cells
+     */
+    @NonNegative int exploredCount() {
+        return exploredCount;
+    }
+
+    /**
+     * Create a new step, without adding it to the open list
+     *
+     * @return The step index
+     */
+    int addStep(int cell, int direction, int previous, int cost, int distance) {
+        if (stepCount == stepCell.length) {
+            final int newCapacity = stepCount + (stepCount >> 1) + 1;
+
+            stepCell = Arrays.copyOf(stepCell, newCapacity);
+            stepDirection = Arrays.copyOf(stepDirection, newCapacity);
+            stepPrevious = Arrays.copyOf(stepPrevious, newCapacity);
+            stepCost = Arrays.copyOf(stepCost, newCapacity);
+            stepDistance = Arrays.copyOf(stepDistance, newCapacity);
+        }
+
+        final int step = stepCount++;
+
+        stepCell[step] = cell;
+        stepDirection[step] = direction;
+        stepPrevious[step] = previous;
+        stepCost[step] = cost;
+        stepDistance[step] = distance;
+
+        return step;
+    }
+
+    /**
+     * Try to push a new step on possible movements
+     * If a better step (i.e. with lower cost) exists for the cell, the new step will be ignored
+     */
+    void push(int cell, int direction, int previous, int cost, int distance) {
+        // A step with a lower cost is found (do not compare distance because both steps have the same distance)
+        if (pending[cell] == generation && pendingCost[cell] <= cost) {
+            return;
+        }
+
+        pending[cell] = generation;
+        pendingCost[cell] = cost;
+
+        offer(addStep(cell, direction, previous, cost, distance));
+    }
+
+    /**
+     * Check if the open list contains at least one step
+     */
+    boolean hasMovements() {
+        return movementsCount > 0;
+    }
+
+    /**
+     * Remove the best step (i.e. with the lowest heuristic) of the open list
+     * The step cell is also removed from pending cells
+     *
+     * The open list must not be empty
+     *
+     * @return The step index
+     */
+    int poll() {
+        final int result = movements[0];
+        final int last = movements[--movementsCount];
+
+        if (movementsCount > 0) {
+            siftDown(last);
+        }
+
+        pending[stepCell[result]] = 0;
+
+        return result;
+    }
+
+    /**
+     * @return The step cell id
+     */
+    int cell(int step) {
+        return stepCell[step];
+    }
+
+    /**
+     * @return The direction ordinal used to reach the step
+     */
+    int direction(int step) {
+        return stepDirection[step];
+    }
+
+    /**
+     * @return The previous step index, or {@link PathfinderWorkspace#NO_PREVIOUS} for the first step
+     */
+    int previous(int step) {
+        return stepPrevious[step];
+    }
+
+    /**
+     * @return The total cost of the step
+     */
+    int cost(int step) {
+        return stepCost[step];
+    }
+
+    /**
+     * @return The distance between the step cell and the target
+     */
+    int distance(int step) {
+        return stepDistance[step];
+    }
+
+    /**
+     * Compare the heuristic of two steps
+     * Steps with lower heuristics are selected first
+     *
+     * The heuristic is the total steps costs (from the begin, to the current step) + the remaining distance
+     */
+    private int compare(int step, int other) {
+        return (stepCost[step] + stepDistance[step]) - (stepCost[other] + stepDistance[other]);
+    }
+
+    /**
+     * Add a step to the open list
+     */
+    private void offer(int step) {
+        if (movementsCount == movements.length) {
+            movements = Arrays.copyOf(movements, movementsCount + (movementsCount >> 1) + 1);
+        }
+
+        int index = movementsCount++;
+
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            final int parentStep = movements[parent];
+
+            if (compare(step, parentStep) >= 0) {
+                break;
+            }
+
+            movements[index] = parentStep;
+            index = parent;
+        }
+
+        movements[index] = step;
+    }
+
+    /**
+     * Move the step down to the heap, starting from the head
+     */
+    private void siftDown(int step) {
+        final int half = movementsCount >>> 1;
+        int index = 0;
+
+        while (index < half) {
+            int child = 2 * index + 1;
+
+            if (child + 1 < movementsCount && compare(movements[child], movements[child + 1]) > 0) {
+                ++child;
+            }
+
+            if (compare(step, movements[child]) <= 0) {
+                break;
+            }
+
+            movements[index] = movements[child];
+            index = child;
+        }
+
+        movements[index] = step;
+    }
+}
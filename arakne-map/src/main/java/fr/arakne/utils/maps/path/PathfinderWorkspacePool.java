@@ -0,0 +1,100 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+
+/**
+ * Cache of {@link PathfinderWorkspace} instances
+ * Allow to perform many path finding without allocating a new workspace for each search
+ *
+ * A workspace acquired from the pool must be released once the search is done, and must not be used after release :
+ *
+ * <pre>{@code
+ * final PathfinderWorkspace workspace = pool.acquire(map.size());
+ *
+ * try {
+ *     // Perform searches...
+ * } finally {
+ *     pool.release(workspace);
+ * }
+ * }</pre>
+ *
+ * @see Pathfinder#workspacePool(PathfinderWorkspacePool)
+ */
+public interface PathfinderWorkspacePool {
+    /**
+     * Get a workspace which can handle a map of the given size
+     * If there is no available workspace, a new one is created
+     *
+     * @param size The map size
+     *
+     * @return The workspace. Its size is greater or equals to the requested size
+     */
+    public PathfinderWorkspace acquire(@NonNegative int size);
+
+    /**
+     * Give back the workspace to the pool
+     *
+     * @param workspace The workspace acquired by {@link PathfinderWorkspacePool#acquire(int)}
+     */
+    public void release(PathfinderWorkspace workspace);
+
+    /**
+     * Get the pool which keep one workspace per thread
+     * This is the default pool used by the {@link Pathfinder}
+     *
+     * Nested searches on the same thread (ex: a search performed inside the walkable predicate)
+     * are supported : a new workspace is created if the thread's workspace is already in use
+     *
+     * @return The shared thread local pool
+     */
+    public static PathfinderWorkspacePool threadLocal() {
+        return ThreadLocalWorkspacePool.INSTANCE;
+    }
+
+    /**
+     * Create a pool shared between threads, keeping at most the given number of idle workspaces
+     *
+     * <pre>{@code
+     * // Share workspaces between the fight threads
+     * final PathfinderWorkspacePool pool = PathfinderWorkspacePool.bounded(16);
+     *
+     * decoder.pathfinder().workspacePool(pool).findPath(source, target);
+     * }</pre>
+     *
+     * @param maxIdle Maximum number of idle workspaces kept by the pool
+     *
+     * @return The new pool instance
+     */
+    public static PathfinderWorkspacePool bounded(@Positive int maxIdle) {
+        return new BoundedWorkspacePool(maxIdle);
+    }
+
+    /**
+     * Get a pool which do not keep any workspace : a new workspace is created for each search
+     *
+     * @return The pool instance
+     */
+    public static PathfinderWorkspacePool none() {
+        return NoWorkspacePool.INSTANCE;
+    }
+}
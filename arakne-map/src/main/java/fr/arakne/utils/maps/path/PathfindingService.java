@@ -0,0 +1,345 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.MapCell;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Perform path searches asynchronously, so the calling thread (e.g. a network thread) is not blocked
+ *
+ * Identical requests (same source and target) submitted while a search is pending are merged into a single search.
+ * The number of pending searches is limited : when the limit is reached, new requests fail immediately
+ * with a {@link RejectedExecutionException}, instead of delaying all the other tasks.
+ *
+ * The pathfinder configuration must not be modified while the service is used.
+ *
+ * <pre>{@code
+ * final PathfindingService<MyCell> service = new PathfindingService<>(pathfinder, 2, 500);
+ *
+ * service.findPath(fighter.cell(), target).whenComplete((path, error) -> {
+ *     if (error != null) {
+ *         session.send(new MovementFailed());
+ *     } else {
+ *         fighter.move(path);
+ *     }
+ * });
+ *
+ * logger.debug("Pending searches : " + service.pending());
+ * }</pre>
+ *
+ * @param <C> The cell type
+ */
+public final class PathfindingService<C extends @NonNull MapCell> {
+    /**
+     * Factory of the virtual threads executor (Executors.newVirtualThreadPerTaskExecutor()), or null if not available
+     */
+    private static final @Nullable MethodHandle VIRTUAL_EXECUTOR_FACTORY = virtualExecutorFactory();
+
+    private final Pathfinder<C> pathfinder;
+    private final Executor executor;
+    private final @Positive int maxPending;
+    private final boolean ownExecutor;
+
+    /**
+     * Pool of workspaces shared by the searches, when each search runs on a new virtual thread
+     * If null, the pathfinder pool is used
+     */
+    private final @Nullable PathfinderWorkspacePool workspaces;
+
+    private final ConcurrentMap<PathQuery<C>, CompletableFuture<Path<C>>> searches = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger merged = new AtomicInteger();
+
+    /**
+     * Create the service, with a dedicated pool of daemon threads
+     *
+     * @param pathfinder The configured pathfinder to use
+     * @param threads Number of threads of the pool
+     * @param maxPending Maximum number of pending searches (queued and running)
+     */
+    public PathfindingService(Pathfinder<C> pathfinder, @Positive int threads, @Positive int maxPending) {
+        this(pathfinder, createExecutor(threads), maxPending, true, null);
+    }
+
+    /**
+     * Create the service, running each search on a new virtual thread when available (Java 21 or later)
+     * When virtual threads are not supported, a pool of daemon threads is used, with one thread per processor
+     *
+     * A virtual thread is never reused, so the default thread local workspace pool of the pathfinder would allocate
+     * a new workspace for each search. So on virtual threads, the searches share a bounded pool of workspaces instead.
+     *
+     * @param pathfinder The configured pathfinder to use
+     * @param maxPending Maximum number of pending searches (queued and running)
+     */
+    public PathfindingService(Pathfinder<C> pathfinder, @Positive int maxPending) {
+        this(pathfinder, maxPending, createVirtualExecutor());
+    }
+
+    /**
+     * Create the service using the given executor
+     * The executor is not shut down by {@link PathfindingService#shutdown()}
+     *
+     * The workspaces are acquired from the pool of the pathfinder. When the executor runs each task on a new thread
+     * (e.g. virtual threads), the pathfinder should be configured with {@link PathfinderWorkspacePool#bounded(int)},
+     * otherwise a new workspace is allocated for each search.
+     *
+     * @param pathfinder The configured pathfinder to use
+     * @param executor The executor to use
+     * @param maxPending Maximum number of pending searches (queued and running)
+     */
+    public PathfindingService(Pathfinder<C> pathfinder, Executor executor, @Positive int maxPending) {
+        this(pathfinder, executor, maxPending, false, null);
+    }
+
+    @SuppressWarnings("argument") // availableProcessors() is always positive
+    private PathfindingService(Pathfinder<C> pathfinder, @Positive int maxPending, @Nullable ExecutorService virtualExecutor) {
+        this(
+            pathfinder,
+            virtualExecutor != null ? virtualExecutor : createExecutor(Runtime.getRuntime().availableProcessors()),
+            maxPending,
+            true,
+            virtualExecutor != null ? PathfinderWorkspacePool.bounded(maxPending) : null
+        );
+    }
+
+    private PathfindingService(Pathfinder<C> pathfinder, Executor executor, @Positive int maxPending, boolean ownExecutor, @Nullable PathfinderWorkspacePool workspaces) {
+        this.pathfinder = pathfinder;
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.ownExecutor = ownExecutor;
+        this.workspaces = workspaces;
+    }
+
+    /**
+     * Find the shortest path between source and target cells
+     *
+     * If the same search is already pending, its result is shared instead of performing a new search.
+     * Each call returns a distinct future, so cancelling it does not impact the other requests.
+     *
+     * The returned future fails with :
+     * - a {@link PathException} when no valid path can be found
+     * - a {@link RejectedExecutionException} when there is too many pending searches, or if the executor rejects the task
+     *
+     * @param source The source (start) cell
+     * @param target The target (end) cell
+     *
+     * @return The future path
+     *
+     * @see Pathfinder#findPath(MapCell, MapCell)
+     */
+    public CompletableFuture<Path<C>> findPath(C source, C target) {
+        final PathQuery<C> query = new PathQuery<>(source, target);
+        final CompletableFuture<Path<C>> current = searches.get(query);
+
+        if (current != null) {
+            merged.incrementAndGet();
+            return current.thenApply(path -> path);
+        }
+
+        if (!reserve()) {
+            final CompletableFuture<Path<C>> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new RejectedExecutionException("Too many pending path searches"));
+
+            return rejected;
+        }
+
+        return submit(query).thenApply(path -> path);
+    }
+
+    /**
+     * Get the number of pending searches (queued and running)
+     * Merged requests are not counted
+     */
+    @SuppressWarnings("return") // The counter is never negative
+    public @NonNegative int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Get the number of requests merged with a pending search, since the creation of the service
+     */
+    @SuppressWarnings("return") // The counter is never negative
+    public @NonNegative int merged() {
+        return merged.get();
+    }
+
+    /**
+     * Stop the executor, if created by the service
+     * Pending searches are still performed
+     */
+    public void shutdown() {
+        if (ownExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    /**
+     * Register the search and submit it to the executor
+     * A pending slot must be reserved before
+     */
+    private CompletableFuture<Path<C>> submit(PathQuery<C> query) {
+        final CompletableFuture<Path<C>> future = new CompletableFuture<>();
+        final CompletableFuture<Path<C>> current = searches.putIfAbsent(query, future);
+
+        // The same search has been submitted by another thread
+        if (current != null) {
+            pending.decrementAndGet();
+            merged.incrementAndGet();
+
+            return current;
+        }
+
+        try {
+            executor.execute(() -> search(query, future));
+        } catch (RejectedExecutionException e) {
+            release(query, future);
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private void search(PathQuery<C> query, CompletableFuture<Path<C>> future) {
+        final Path<C> path;
+
+        try {
+            path = findPath(query);
+        } catch (Throwable e) {
+            // Errors must also fail the future, otherwise the search stays pending forever
+            release(query, future);
+            future.completeExceptionally(e);
+
+            return;
+        }
+
+        // Release before completing, so a callback can submit the same search again
+        release(query, future);
+        future.complete(path);
+    }
+
+    /**
+     * Perform the search, using the service workspaces pool if defined
+     */
+    private Path<C> findPath(PathQuery<C> query) {
+        final PathfinderWorkspacePool workspaces = this.workspaces;
+
+        if (workspaces == null) {
+            return pathfinder.findPath(query.source(), query.target());
+        }
+
+        final PathfinderWorkspace workspace = workspaces.acquire(pathfinder.rules().map().size());
+
+        try {
+            return pathfinder.findPath(query.source(), query.target(), workspace);
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Get the workspaces pool used by the service, or null if the pathfinder pool is used
+     */
+    @Nullable PathfinderWorkspacePool workspaces() {
+        return workspaces;
+    }
+
+    /**
+     * Try to reserve a pending slot
+     *
+     * @return false if the limit is reached
+     */
+    private boolean reserve() {
+        for (;;) {
+            final int current = pending.get();
+
+            if (current >= maxPending) {
+                return false;
+            }
+
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(PathQuery<C> query, CompletableFuture<Path<C>> future) {
+        searches.remove(query, future);
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Create a virtual thread per task executor if supported
+     *
+     * @return The executor, or null if virtual threads are not available
+     */
+    private static @Nullable ExecutorService createVirtualExecutor() {
+        final MethodHandle factory = VIRTUAL_EXECUTOR_FACTORY;
+
+        if (factory == null) {
+            return null;
+        }
+
+        try {
+            return (ExecutorService) factory.invokeExact();
+        } catch (Throwable e) {
+            // Virtual threads are a preview feature which is not enabled (Java 19 and 20)
+            return null;
+        }
+    }
+
+    private static ExecutorService createExecutor(@Positive int threads) {
+        final AtomicInteger count = new AtomicInteger();
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), task -> {
+            final Thread thread = new Thread(task, "pathfinding-" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+    }
+
+    private static @Nullable MethodHandle virtualExecutorFactory() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.DofusMap;
+import fr.arakne.utils.maps.MapCell;
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * All cells reachable from a source cell within a maximum cost
+ * The costs are computed by a single Dijkstra search, so the path to any reached cell can be rebuilt without a new search
+ *
+ * <pre>{@code
+ * final ReachableCells<FightCell> range = decoder.pathfinder().reachable(fighter.cell(), fighter.movementPoints());
+ *
+ * range.cells(); // All cells reachable by the fighter
+ * range.cost(target.id()); // Number of movement points required to reach the target
+ * range.pathTo(target); // Path to the target
+ * }</pre>
+ *
+ * @param <C> The cell type
+ *
+ * @see Pathfinder#reachable(MapCell, int)
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high", "argument", "return"}) // Cell ids and directions are considered as valid, and costs are positive or NOT_REACHABLE
+public final class ReachableCells<C extends @NonNull MapCell> {
+    /**
+     * Value returned by {@link ReachableCells#cost(int)} for cells which cannot be reached
+     */
+    public static final int NOT_REACHABLE = Dijkstra.NOT_REACHABLE;
+
+    /**
+     * Cache directions values, indexed by the ordinal
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Decoder<C> decoder;
+    private final C source;
+
+    /**
+     * Cost for reaching each cell, indexed by cell id
+     */
+    private final int[] costs;
+
+    /**
+     * Ordinal of the direction of the last move for reaching the cell, indexed by cell id
+     */
+    private final byte[] directions;
+    private final boolean addFirstCell;
+
+    ReachableCells(Decoder<C> decoder, C source, int[] costs, byte[] directions, boolean addFirstCell) {
+        this.decoder = decoder;
+        this.source = source;
+        this.costs = costs;
+        this.directions = directions;
+        this.addFirstCell = addFirstCell;
+    }
+
+    /**
+     * @return The source cell
+     */
+    @Pure
+    public C source() {
+        return source;
+    }
+
+    /**
+     * Get the cost for reaching the cell from the source
+     * The cost of the source cell is 0
+     *
+     * @param cellId The cell id
+     *
+     * @return The cost, or {@link ReachableCells#NOT_REACHABLE}
+     */
+    @Pure
+    public @GTENegativeOne int cost(@NonNegative int cellId) {
+        return costs[cellId];
+    }
+
+    /**
+     * Check if the cell can be reached within the maximum cost
+     *
+     * @param cellId The cell id
+     *
+     * @return true if the cell is reachable
+     */
+    @Pure
+    public boolean contains(@NonNegative int cellId) {
+        return costs[cellId] != NOT_REACHABLE;
+    }
+
+    /**
+     * Get all reachable cells, including the source
+     *
+     * @return The cells bitset
+     */
+    public CellBitSet cells() {
+        return CellBitSet.of(costs.length, cellId -> contains(cellId));
+    }
+
+    /**
+     * Count the reachable cells, including the source
+     *
+     * @return The number of cells
+     */
+    @Pure
+    public @NonNegative int count() {
+        int count = 0;
+
+        for (int cost : costs) {
+            if (cost != NOT_REACHABLE) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Build the path from the source to the given cell
+     * The path is the same as the one computed by the pathfinder, with the same cost, but may follow different cells
+     *
+     * @param target The target cell
+     *
+     * @return The path
+     *
+     * @throws PathException When the target is not reachable
+     */
+    public Path<C> pathTo(C target) {
+        if (!contains(target.id())) {
+            throw new PathException("Cannot find any valid path between " + source.id() + " and " + target.id());
+        }
+
+        final DofusMap<C> map = decoder.map();
+        final List<PathStep<C>> path = new ArrayList<>();
+
+        // Build the path from the end
+        int cellId = target.id();
+
+        while (cellId != source.id()) {
+            final C cell = map.get(cellId);
+            final Direction direction = DIRECTIONS[directions[cellId]];
+
+            // Remove all steps after an unwalkable cell, like the pathfinder
+            if (cell.walkable()) {
+                path.add(new PathStep<>(cell, direction));
+            } else {
+                path.clear();
+            }
+
+            cellId = decoder.neighbour(cellId, direction.opposite());
+        }
+
+        if (addFirstCell) {
+            path.add(new PathStep<>(source, Direction.EAST));
+        }
+
+        Collections.reverse(path);
+
+        return new Path<>(decoder, path);
+    }
+
+    /**
+     * Perform the Dijkstra search from the source cell
+     *
+     * @param rules The movement rules
+     * @param source The source cell. It's not required to be walkable
+     * @param maxCost The maximum cost. Cells with an higher cost are not explored
+     * @param addFirstCell Does the source cell should be added to the built paths ?
+     *
+     * @return The reachable cells
+     */
+    static <C extends @NonNull MapCell> ReachableCells<C> compute(MovementRules<C> rules, C source, @NonNegative int maxCost, boolean addFirstCell) {
+        final int size = rules.map().size();
+        final int[] costs = new int[size];
+        final byte[] directions = new byte[size];
+
+        Dijkstra.search(rules, new int[] {source.id()}, maxCost, costs, directions);
+
+        return new ReachableCells<>(rules.decoder(), source, costs, directions, addFirstCell);
+    }
+}
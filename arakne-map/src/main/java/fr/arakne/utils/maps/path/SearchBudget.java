@@ -0,0 +1,227 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of a path search
+ * When a limit is reached, the search fails with a {@link PathException}, or returns the best partial path if enabled
+ *
+ * This class is immutable : all "with" methods return a new instance, so a budget can be shared between pathfinders and threads
+ *
+ * <pre>{@code
+ * pathfinder.budget(
+ *     SearchBudget.unlimited()
+ *         .withMaxCost(fighter.movementPoints())
+ *         .withTimeout(2, TimeUnit.MILLISECONDS)
+ *         .withPartialPath(true)
+ * );
+ * }</pre>
+ *
+ * @see Pathfinder#budget(SearchBudget)
+ */
+public final class SearchBudget {
+    private static final SearchBudget UNLIMITED = new SearchBudget(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE, null, false);
+
+    /**
+     * Mask of the number of moves between two clock checks
+     * The clock is not checked on each move, because {@link System#nanoTime()} is slower than a move
+     */
+    private static final int CLOCK_CHECK_MASK = 63;
+
+    private final @Positive int maxExploredCells;
+    private final @NonNegative int maxCost;
+    private final @Positive long timeout;
+    private final @Nullable CancellationToken cancellation;
+    private final boolean partialPath;
+
+    private SearchBudget(@Positive int maxExploredCells, @NonNegative int maxCost, @Positive long timeout, @Nullable CancellationToken cancellation, boolean partialPath) {
+        this.maxExploredCells = maxExploredCells;
+        this.maxCost = maxCost;
+        this.timeout = timeout;
+        this.cancellation = cancellation;
+        this.partialPath = partialPath;
+    }
+
+    /**
+     * Get the maximum number of explored cells
+     */
+    public @Positive int maxExploredCells() {
+        return maxExploredCells;
+    }
+
+    /**
+     * Get the maximum cost of the path
+     */
+    public @NonNegative int maxCost() {
+        return maxCost;
+    }
+
+    /**
+     * Get the maximum duration of the search, in nanoseconds
+     */
+    public @Positive long timeout() {
+        return timeout;
+    }
+
+    /**
+     * Get the cancellation token
+     *
+     * @return The token, or null if not defined
+     */
+    public @Nullable CancellationToken cancellation() {
+        return cancellation;
+    }
+
+    /**
+     * Check if the best partial path should be returned instead of failing
+     */
+    public boolean partialPath() {
+        return partialPath;
+    }
+
+    /**
+     * Define the maximum number of cells to explore before fail
+     *
+     * @param maxExploredCells The cells number
+     *
+     * @return The new budget
+     *
+     * @see Pathfinder#exploredCellLimit(int)
+     */
+    public SearchBudget withMaxExploredCells(@Positive int maxExploredCells) {
+        return new SearchBudget(maxExploredCells, maxCost, timeout, cancellation, partialPath);
+    }
+
+    /**
+     * Define the maximum cost of the path
+     * With the default weight function, this is the number of movement points
+     * Cells with an higher cost are not explored, so a target too far will not be reached
+     *
+     * @param maxCost The maximum cost
+     *
+     * @return The new budget
+     */
+    public SearchBudget withMaxCost(@NonNegative int maxCost) {
+        return new SearchBudget(maxExploredCells, maxCost, timeout, cancellation, partialPath);
+    }
+
+    /**
+     * Define the maximum duration of the search
+     * The clock is checked periodically, so the search may take slightly longer than the timeout
+     *
+     * @param duration The duration
+     * @param unit The duration unit
+     *
+     * @return The new budget
+     */
+    @SuppressWarnings("argument") // The duration is at least 1ns
+    public SearchBudget withTimeout(@Positive long duration, TimeUnit unit) {
+        return new SearchBudget(maxExploredCells, maxCost, Math.max(unit.toNanos(duration), 1), cancellation, partialPath);
+    }
+
+    /**
+     * Define the token used to cancel the search
+     *
+     * @param cancellation The token
+     *
+     * @return The new budget
+     */
+    public SearchBudget withCancellation(CancellationToken cancellation) {
+        return new SearchBudget(maxExploredCells, maxCost, timeout, cancellation, partialPath);
+    }
+
+    /**
+     * Enable or disable the partial path mode
+     *
+     * When enabled, the search does not fail when the target cannot be reached or when a limit is exceeded,
+     * but returns the path to the explored cell which is the closest to the target.
+     *
+     * @param partialPath true to enable
+     *
+     * @return The new budget
+     */
+    public SearchBudget withPartialPath(boolean partialPath) {
+        return new SearchBudget(maxExploredCells, maxCost, timeout, cancellation, partialPath);
+    }
+
+    /**
+     * Start tracking the budget of a new search
+     */
+    Tracker start() {
+        return new Tracker();
+    }
+
+    /**
+     * Get the budget without any limit
+     * This is the default budget of the pathfinder
+     */
+    public static SearchBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Check the limits during a search
+     */
+    final class Tracker {
+        /**
+         * Value of {@link System#nanoTime()} when the timeout is reached
+         */
+        private final long deadline;
+        private @NonNegative int moves = 0;
+
+        private Tracker() {
+            this.deadline = timeout == Long.MAX_VALUE ? 0 : System.nanoTime() + timeout;
+        }
+
+        /**
+         * Check if the cost of a step is in the budget
+         */
+        boolean allows(int cost) {
+            return cost <= maxCost;
+        }
+
+        /**
+         * Check the limits before performing a move
+         *
+         * @param exploredCells Current number of explored cells
+         *
+         * @throws PathException When a limit is exceeded
+         */
+        void check(@NonNegative int exploredCells) {
+            if (exploredCells > maxExploredCells) {
+                throw new PathException("Limit exceeded for finding path");
+            }
+
+            if (cancellation != null && cancellation.cancelled()) {
+                throw new PathException("Path finding cancelled");
+            }
+
+            if (timeout != Long.MAX_VALUE && (++moves & CLOCK_CHECK_MASK) == 0 && System.nanoTime() - deadline > 0) {
+                throw new PathException("Time limit exceeded for finding path");
+            }
+        }
+    }
+}
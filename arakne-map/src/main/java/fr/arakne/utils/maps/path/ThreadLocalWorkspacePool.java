@@ -0,0 +1,60 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Keep one workspace per thread
+ * The workspace is removed from the thread slot while in use, to handle nested searches
+ *
+ * @see PathfinderWorkspacePool#threadLocal()
+ */
+final class ThreadLocalWorkspacePool implements PathfinderWorkspacePool {
+    static final ThreadLocalWorkspacePool INSTANCE = new ThreadLocalWorkspacePool();
+
+    private final ThreadLocal<@Nullable PathfinderWorkspace> workspaces = new ThreadLocal<>();
+
+    private ThreadLocalWorkspacePool() {}
+
+    @Override
+    public PathfinderWorkspace acquire(@NonNegative int size) {
+        final PathfinderWorkspace workspace = workspaces.get();
+
+        if (workspace == null || workspace.size() < size) {
+            return new PathfinderWorkspace(size);
+        }
+
+        workspaces.set(null);
+
+        return workspace;
+    }
+
+    @Override
+    public void release(PathfinderWorkspace workspace) {
+        final PathfinderWorkspace current = workspaces.get();
+
+        // Keep the larger workspace, so it can be used for any map
+        if (current == null || current.size() < workspace.size()) {
+            workspaces.set(workspace);
+        }
+    }
+}
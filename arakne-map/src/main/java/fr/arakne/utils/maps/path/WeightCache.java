@@ -0,0 +1,62 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import java.util.Arrays;
+
+/**
+ * Cache the weight of cells during a search
+ * The walkable predicate and the weight function are called at most once per cell
+ *
+ * @see MovementRules#weight(int)
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high", "return"}) // Cell ids are considered as valid, and only computed weights are returned
+final class WeightCache {
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private final MovementRules<?> rules;
+    private final int[] weights;
+
+    WeightCache(MovementRules<?> rules, @NonNegative int size) {
+        this.rules = rules;
+        this.weights = new int[size];
+
+        Arrays.fill(weights, UNKNOWN);
+    }
+
+    /**
+     * Get the weight of the cell
+     *
+     * @return The weight, or {@link MovementRules#NOT_WALKABLE}
+     */
+    @GTENegativeOne int get(@NonNegative int cellId) {
+        int weight = weights[cellId];
+
+        if (weight == UNKNOWN) {
+            weight = rules.weight(cellId);
+            weights[cellId] = weight;
+        }
+
+        return weight;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.common.value.qual.IntRange;
+
+/**
+ * Base type for cells decoded from the raw cell data
+ * The raw data are the 10 Base64 values of the cell data characters, so each value is in range [0 - 63]
+ *
+ * Layers views are created on their first access, and reused by the next ones.
+ * They are immutable, so a concurrent first access can only create a redundant view.
+ *
+ * https://github.com/Emudofus/Dofus/blob/1.29/ank/battlefield/utils/Compressor.as#L54
+ */
+abstract class AbstractRawCellData implements CellData {
+    /**
+     * Number of values of the raw cell data
+     */
+    public static final int LENGTH = 10;
+
+    private @MonotonicNonNull GroundCellData ground;
+    private @MonotonicNonNull CellLayerData layer1;
+    private @MonotonicNonNull InteractiveObjectData layer2;
+
+    @Override
+    public final boolean lineOfSight() {
+        return (data(0) & 1) == 1;
+    }
+
+    @Override
+    public final CellMovement movement() {
+        return CellMovement.byValue((data(2) & 56) >> 3);
+    }
+
+    @Override
+    public final boolean active() {
+        return (data(0) & 32) >> 5 == 1;
+    }
+
+    @Override
+    public final GroundCellData ground() {
+        GroundCellData ground = this.ground;
+
+        if (ground == null) {
+            ground = new Ground();
+            this.ground = ground;
+        }
+
+        return ground;
+    }
+
+    @Override
+    public final CellLayerData layer1() {
+        CellLayerData layer1 = this.layer1;
+
+        if (layer1 == null) {
+            layer1 = new FirstLayer();
+            this.layer1 = layer1;
+        }
+
+        return layer1;
+    }
+
+    @Override
+    public final InteractiveObjectData layer2() {
+        InteractiveObjectData layer2 = this.layer2;
+
+        if (layer2 == null) {
+            layer2 = new SecondLayer();
+            this.layer2 = layer2;
+        }
+
+        return layer2;
+    }
+
+    /**
+     * Get a value of the raw cell data
+     *
+     * @param index The value index. Must be in range [0 - 9]
+     *
+     * @return The value
+     */
+    protected abstract int data(@IntRange(from = 0, to = LENGTH - 1) int index);
+
+    /**
+     * Encode the cell to the raw cell data
+     *
+     * @param cell Cell to encode
+     *
+     * @return The raw data, with values in range [0 - 63]
+     */
+    @SuppressWarnings("assignment") // All assignations are safe
+    static @IntRange(from = 0, to = 63) byte[] encode(CellData cell) {
+        final @IntRange(from = 0, to = 63) byte[] data = new byte[LENGTH];
+
+        data[0] = (byte) ((cell.active() ? (1) : (0)) << 5);
+        data[0] = (byte) (data[0] | (cell.lineOfSight() ? (1) : (0)));
+        data[0] = (byte) (data[0] | (cell.ground().number() & 1536) >> 6);
+        data[0] = (byte) (data[0] | (cell.layer1().number() & 8192) >> 11);
+        data[0] = (byte) (data[0] | (cell.layer2().number() & 8192) >> 12);
+        data[1] = (byte) ((cell.ground().rotation() & 3) << 4);
+        data[1] = (byte) (data[1] | cell.ground().level() & 15);
+        data[2] = (byte) ((cell.movement().ordinal() & 7) << 3);
+        data[2] = (byte) (data[2] | cell.ground().number() >> 6 & 7);
+        data[3] = (byte) (cell.ground().number() & 63);
+        data[4] = (byte) ((cell.ground().slope() & 15) << 2);
+        data[4] = (byte) (data[4] | (cell.ground().flip() ? (1) : (0)) << 1);
+        data[4] = (byte) (data[4] | cell.layer1().number() >> 12 & 1);
+        data[5] = (byte) (cell.layer1().number() >> 6 & 63);
+        data[6] = (byte) (cell.layer1().number() & 63);
+        data[7] = (byte) ((cell.layer1().rotation() & 3) << 4);
+        data[7] = (byte) (data[7] | (cell.layer1().flip() ? (1) : (0)) << 3);
+        data[7] = (byte) (data[7] | (cell.layer2().flip() ? (1) : (0)) << 2);
+        data[7] = (byte) (data[7] | (cell.layer2().interactive() ? (1) : (0)) << 1);
+        data[7] = (byte) (data[7] | cell.layer2().number() >> 12 & 1);
+        data[8] = (byte) (cell.layer2().number() >> 6 & 63);
+        data[9] = (byte) (cell.layer2().number() & 63);
+
+        return data;
+    }
+
+    private final class Ground implements GroundCellData {
+        @Override
+        public int level() {
+            return data(1) & 15;
+        }
+
+        @Override
+        public int slope() {
+            return (data(4) & 60) >> 2;
+        }
+
+        @Override
+        public int number() {
+            return ((data(0) & 24) << 6) + ((data(2) & 7) << 6) + data(3);
+        }
+
+        @Override
+        public int rotation() {
+            return (data(1) & 48) >> 4;
+        }
+
+        @Override
+        public boolean flip() {
+            return (data(4) & 2) >> 1 == 1;
+        }
+    }
+
+    private final class FirstLayer implements CellLayerData {
+        @Override
+        public int number() {
+            return ((data(0) & 4) << 11) + ((data(4) & 1) << 12) + (data(5) << 6) + data(6);
+        }
+
+        @Override
+        public int rotation() {
+            return (data(7) & 48) >> 4;
+        }
+
+        @Override
+        public boolean flip() {
+            return (data(7) & 8) >> 3 == 1;
+        }
+    }
+
+    private final class SecondLayer implements InteractiveObjectData {
+        @Override
+        public boolean interactive() {
+            return (data(7) & 2) >> 1 == 1;
+        }
+
+        @Override
+        public int number() {
+            return ((data(0) & 2) << 12) + ((data(7) & 1) << 12) + (data(8) << 6) + data(9);
+        }
+
+        @Override
+        public boolean flip() {
+            return (data(7) & 4) >> 2 == 1;
+        }
+    }
+}
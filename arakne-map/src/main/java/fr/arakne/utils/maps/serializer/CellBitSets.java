@@ -0,0 +1,160 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.checkerframework.dataflow.qual.Pure;
+
+/**
+ * Precomputed cells flags of a map, stored as {@link CellBitSet}
+ * The sets are computed once when the map is loaded, so pathfinding and line of sight can check cells without calling cell objects
+ *
+ * <pre>{@code
+ * final CellBitSets bitSets = serializer.deserializePacked(mapData).bitSets();
+ *
+ * pathfinder.walkableCells(bitSets.walkable());
+ * new BattlefieldSight<>(map, bitSets.sightBlocking());
+ * }</pre>
+ *
+ * @see PackedMapData#bitSets()
+ * @see CellBitSets#of(CellData[])
+ */
+public final class CellBitSets {
+    private final CellBitSet active;
+    private final CellBitSet walkable;
+    private final CellBitSet lineOfSight;
+    private final CellBitSet sightBlocking;
+    private final CellBitSet interactive;
+    private final CellBitSet trigger;
+
+    private CellBitSets(CellBitSet active, CellBitSet walkable, CellBitSet lineOfSight, CellBitSet interactive, CellBitSet trigger) {
+        this.active = active;
+        this.walkable = walkable;
+        this.lineOfSight = lineOfSight;
+        this.sightBlocking = lineOfSight.not();
+        this.interactive = interactive;
+        this.trigger = trigger;
+    }
+
+    /**
+     * @return Active cells
+     * @see CellData#active()
+     */
+    @Pure
+    public CellBitSet active() {
+        return active;
+    }
+
+    /**
+     * Walkable cells, i.e. active cells with a walkable movement
+     *
+     * @return Walkable cells
+     * @see fr.arakne.utils.maps.AbstractCellDataAdapter#walkable()
+     */
+    @Pure
+    public CellBitSet walkable() {
+        return walkable;
+    }
+
+    /**
+     * @return Cells which do not block the line of sight
+     * @see CellData#lineOfSight()
+     */
+    @Pure
+    public CellBitSet lineOfSight() {
+        return lineOfSight;
+    }
+
+    /**
+     * Cells which block the line of sight
+     * This is the complement of {@link CellBitSets#lineOfSight()}
+     *
+     * Note: only the static map data is used. Dynamic blockers (like fighters) should be added using {@link CellBitSet#or(CellBitSet)}
+     *
+     * @return Sight blocking cells
+     */
+    @Pure
+    public CellBitSet sightBlocking() {
+        return sightBlocking;
+    }
+
+    /**
+     * @return Cells with an interactive object on the layer 2
+     * @see InteractiveObjectData#interactive()
+     */
+    @Pure
+    public CellBitSet interactive() {
+        return interactive;
+    }
+
+    /**
+     * Cells with the {@link CellMovement#TRIGGER} movement
+     * Note: some triggers have the default movement, so this set may not contain all triggers
+     *
+     * @return Trigger cells
+     */
+    @Pure
+    public CellBitSet trigger() {
+        return trigger;
+    }
+
+    /**
+     * Compute the bitsets from the packed map data
+     *
+     * @param data The map data
+     *
+     * @return The cells bitsets
+     *
+     * @see PackedMapData#bitSets()
+     */
+    @SuppressWarnings("argument") // Cell ids are lower than size
+    public static CellBitSets of(PackedMapData data) {
+        final int size = data.size();
+
+        return new CellBitSets(
+            CellBitSet.of(size, id -> data.active(id)),
+            CellBitSet.of(size, id -> data.walkable(id)),
+            CellBitSet.of(size, id -> data.lineOfSight(id)),
+            CellBitSet.of(size, id -> data.layer2Interactive(id)),
+            CellBitSet.of(size, id -> data.movement(id) == CellMovement.TRIGGER)
+        );
+    }
+
+    /**
+     * Compute the bitsets from cells data
+     *
+     * @param cells The map cells, indexed by the cell id
+     *
+     * @return The cells bitsets
+     */
+    @SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Cell ids are lower than size
+    public static CellBitSets of(CellData[] cells) {
+        final int size = cells.length;
+
+        return new CellBitSets(
+            CellBitSet.of(size, id -> cells[id].active()),
+            CellBitSet.of(size, id -> cells[id].active() && cells[id].movement().walkable()),
+            CellBitSet.of(size, id -> cells[id].lineOfSight()),
+            CellBitSet.of(size, id -> cells[id].layer2().interactive()),
+            CellBitSet.of(size, id -> cells[id].movement() == CellMovement.TRIGGER)
+        );
+    }
+}
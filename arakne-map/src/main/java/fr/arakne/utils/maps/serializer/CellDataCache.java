@@ -0,0 +1,124 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Cache of deserialized cells, used by {@link DefaultMapDataSerializer} to share identical cells between maps
+ *
+ * Cells are identified by a packed key : the 10 Base64 values of the cell data are stored on the 60 lower bits
+ * of a long (the first character on the lower bits), so the lookup do not require to create a string.
+ *
+ * Implementations must be thread safe.
+ *
+ * <pre>{@code
+ * // Keep at most 50 000 cells, and let the GC release unused cells
+ * final CellDataCache cache = CellDataCache.lru(50_000, true);
+ *
+ * serializer.enableCache(cache);
+ * // Load maps...
+ *
+ * System.out.println(cache.statistics()); // Display the dedup ratio
+ * }</pre>
+ *
+ * @see DefaultMapDataSerializer#enableCache(CellDataCache)
+ */
+public interface CellDataCache {
+    /**
+     * Get a cell from the cache
+     * The hit or miss counter is incremented
+     *
+     * @param key The packed cell key
+     *
+     * @return The cached cell, or null if not present
+     */
+    public @Nullable CellData get(long key);
+
+    /**
+     * Store a cell into the cache, if not already present
+     *
+     * @param key The packed cell key
+     * @param cell The cell to store
+     *
+     * @return The cell which is present in the cache. Can be different than the given cell if it's already stored
+     */
+    public CellData putIfAbsent(long key, CellData cell);
+
+    /**
+     * Get the number of stored cells
+     *
+     * @return The cache size
+     */
+    public int size();
+
+    /**
+     * Remove all cells from the cache
+     * Note: statistics are not reset
+     */
+    public void clear();
+
+    /**
+     * Get the cache statistics
+     *
+     * @return A snapshot of the statistics
+     */
+    public CellDataCacheStatistics statistics();
+
+    /**
+     * Create a cache without limit of size, which never evict any cell
+     * This is the cache used by {@link DefaultMapDataSerializer#enableCache()}
+     *
+     * @return The new cache instance
+     */
+    public static CellDataCache unbounded() {
+        return new ConcurrentCellDataCache();
+    }
+
+    /**
+     * Create a bounded cache, which evict the least recently used cell when the cache is full
+     *
+     * @param maxSize Maximum number of stored cells
+     *
+     * @return The new cache instance
+     */
+    public static CellDataCache lru(@Positive int maxSize) {
+        return new LruCellDataCache(maxSize, false);
+    }
+
+    /**
+     * Create a bounded cache, which evict the least recently used cell when the cache is full
+     *
+     * When weak values are enabled, cells are only weakly referenced by the cache, so cells which are not used
+     * by any loaded map can be reclaimed by the garbage collector. Reclaimed cells are counted as evictions.
+     *
+     * Caches of at least 4096 cells are split into lock striped segments, so they can be shared by parallel loaders.
+     * In this case the least recently used cell is chosen per segment, and not over the whole cache.
+     *
+     * @param maxSize Maximum number of stored cells. Use {@link Integer#MAX_VALUE} for only rely on the GC
+     * @param weakValues Store weak references to the cells
+     *
+     * @return The new cache instance
+     */
+    public static CellDataCache lru(@Positive int maxSize, boolean weakValues) {
+        return new LruCellDataCache(maxSize, weakValues);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.dataflow.qual.Pure;
+
+/**
+ * Snapshot of the {@link CellDataCache} counters
+ */
+public final class CellDataCacheStatistics {
+    private final @NonNegative long hits;
+    private final @NonNegative long misses;
+    private final @NonNegative long evictions;
+    private final @NonNegative int size;
+
+    public CellDataCacheStatistics(@NonNegative long hits, @NonNegative long misses, @NonNegative long evictions, @NonNegative int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    /**
+     * Number of lookups which found the cell into the cache
+     *
+     * @return The hits count
+     */
+    @Pure
+    public @NonNegative long hits() {
+        return hits;
+    }
+
+    /**
+     * Number of lookups which do not found the cell
+     *
+     * @return The misses count
+     */
+    @Pure
+    public @NonNegative long misses() {
+        return misses;
+    }
+
+    /**
+     * Number of cells removed from the cache, because the cache is full or reclaimed by the garbage collector
+     *
+     * @return The evictions count
+     */
+    @Pure
+    public @NonNegative long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Number of cells stored into the cache
+     *
+     * @return The cache size
+     */
+    @Pure
+    public @NonNegative int size() {
+        return size;
+    }
+
+    /**
+     * Get the ratio of lookups served by the cache
+     * This value can be used to check the dedup ratio of the loaded maps
+     *
+     * @return The hit rate, between 0 and 1. If no lookup is performed, 0 is returned
+     */
+    @Pure
+    public double hitRate() {
+        final long requests = hits + misses;
+
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CellDataCacheStatistics{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + size + ", hitRate=" + hitRate() + "}";
+    }
+}
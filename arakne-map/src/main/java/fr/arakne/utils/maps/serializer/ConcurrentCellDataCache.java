@@ -0,0 +1,131 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Unbounded cell cache, backed by lock striped {@link LongCellTable}
+ *
+ * Keys are dispatched over a fixed number of stripes, each one protected by its own monitor,
+ * so parallel map loading does not contend on a single lock, and lookups do not box the key.
+ *
+ * @see CellDataCache#unbounded()
+ */
+final class ConcurrentCellDataCache implements CellDataCache {
+    /**
+     * Number of stripes. Must be a power of two
+     */
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    ConcurrentCellDataCache() {
+        for (int i = 0; i < STRIPES; ++i) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    public @Nullable CellData get(long key) {
+        final Stripe stripe = stripe(key);
+
+        synchronized (stripe) {
+            final int entry = stripe.table.find(key);
+
+            if (entry == LongCellTable.NO_ENTRY) {
+                ++stripe.misses;
+                return null;
+            }
+
+            ++stripe.hits;
+            return (CellData) stripe.table.value(entry);
+        }
+    }
+
+    @Override
+    public CellData putIfAbsent(long key, CellData cell) {
+        final Stripe stripe = stripe(key);
+
+        synchronized (stripe) {
+            final int entry = stripe.table.find(key);
+
+            if (entry != LongCellTable.NO_ENTRY) {
+                return (CellData) stripe.table.value(entry);
+            }
+
+            stripe.table.put(key, cell);
+
+            return cell;
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.table.size();
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.table.clear();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("argument") // Counters are positive
+    public CellDataCacheStatistics statistics() {
+        long hits = 0;
+        long misses = 0;
+        int size = 0;
+
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+                misses += stripe.misses;
+                size += stripe.table.size();
+            }
+        }
+
+        return new CellDataCacheStatistics(hits, misses, 0, size);
+    }
+
+    @SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // The index is masked by STRIPES - 1
+    private Stripe stripe(long key) {
+        return stripes[(int) (LongCellTable.mix(key) >>> 32) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        private final LongCellTable table = new LongCellTable();
+        private @NonNegative long hits = 0;
+        private @NonNegative long misses = 0;
+    }
+}
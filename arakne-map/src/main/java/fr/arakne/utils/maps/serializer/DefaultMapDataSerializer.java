@@ -21,39 +21,129 @@ package fr.arakne.utils.maps.serializer;
 
 import fr.arakne.utils.encoding.Base64;
 import fr.arakne.utils.encoding.Key;
-import fr.arakne.utils.maps.constant.CellMovement;
+import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.common.value.qual.ArrayLen;
 import org.checkerframework.common.value.qual.IntRange;
 import org.checkerframework.common.value.qual.MinLen;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * Default implementation of the map data serializer, handling the plain (i.e. not crypted) map data format
  *
  * https://github.com/Emudofus/Dofus/blob/1.29/ank/battlefield/utils/Compressor.as#L54
  */
 public final class DefaultMapDataSerializer implements MapDataSerializer {
-    private static final int CELL_DATA_LENGTH = 10;
+    private static final int CELL_DATA_LENGTH = AbstractRawCellData.LENGTH;
 
-    private @Nullable Map<@ArrayLen(CELL_DATA_LENGTH) String, ByteArrayCell> cache;
+    private @Nullable CellDataCache cache;
 
     @Override
-    @SuppressWarnings("argument") // Do not handle substring checks
     public CellData[] deserialize(String mapData) {
-        if (mapData.length() % CELL_DATA_LENGTH != 0) {
-            throw new IllegalArgumentException("Invalid map data");
+        return deserialize(mapData, 0, mapData.length());
+    }
+
+    /**
+     * Parse a part of a map data char sequence to cells
+     * The cells are decoded directly from the characters, without creating intermediate strings,
+     * so map data can be read from a {@link java.nio.CharBuffer} or a {@link StringBuilder} without copy
+     *
+     * @param mapData The char sequence containing the map data
+     * @param offset The first character of the map data
+     * @param length The map data length. Must be a multiple of the cell data length (i.e. 10)
+     *
+     * @return The deserialized cells
+     *
+     * @throws IllegalArgumentException When invalid mapData is given
+     */
+    public CellData[] deserialize(CharSequence mapData, @NonNegative int offset, @NonNegative int length) {
+        final CellData[] cells = new CellData[cellsCount(mapData, offset, length)];
+
+        deserialize(mapData, offset, length, cells);
+
+        return cells;
+    }
+
+    /**
+     * Parse a part of a map data char sequence to an existing cells array
+     * The array can be reused to parse multiple maps. Only the first cells are filled.
+     *
+     * @param mapData The char sequence containing the map data
+     * @param offset The first character of the map data
+     * @param length The map data length. Must be a multiple of the cell data length (i.e. 10)
+     * @param cells The array to fill. Must be large enough to contains all the cells
+     *
+     * @return The number of deserialized cells
+     *
+     * @throws IllegalArgumentException When invalid mapData is given, or when the cells array is too small
+     *
+     * @see DefaultMapDataSerializer#deserialize(CharSequence, int, int) For create a new array
+     */
+    @SuppressWarnings("array.access.unsafe.high") // Size of cells is checked before
+    public @NonNegative int deserialize(CharSequence mapData, @NonNegative int offset, @NonNegative int length, CellData[] cells) {
+        final int size = cellsCount(mapData, offset, length);
+
+        if (cells.length < size) {
+            throw new IllegalArgumentException("The cells array is too small");
         }
 
-        final int size = mapData.length() / CELL_DATA_LENGTH;
-        final CellData[] cells = new CellData[size];
+        for (int i = 0; i < size; ++i) {
+            cells[i] = deserializeCell(mapData, offset + i * CELL_DATA_LENGTH);
+        }
+
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The map data is decoded in one pass directly into the packed arrays, without creating any cell object.
+     * The cell cache is not used by this method.
+     */
+    @Override
+    public PackedMapData deserializePacked(String mapData) {
+        return deserializePacked(mapData, 0, mapData.length());
+    }
+
+    /**
+     * Parse a part of a map data char sequence to the packed representation
+     *
+     * @param mapData The char sequence containing the map data
+     * @param offset The first character of the map data
+     * @param length The map data length. Must be a multiple of the cell data length (i.e. 10)
+     *
+     * @return The deserialized map data
+     *
+     * @throws IllegalArgumentException When invalid mapData is given
+     *
+     * @see DefaultMapDataSerializer#deserializePacked(String)
+     */
+    @SuppressWarnings("argument") // Base64.toBytes() fills the buffer with values in range [0-63]
+    public PackedMapData deserializePacked(CharSequence mapData, @NonNegative int offset, @NonNegative int length) {
+        final int size = cellsCount(mapData, offset, length);
+        final PackedMapData packed = new PackedMapData(size);
+        final byte[] buffer = new byte[CELL_DATA_LENGTH];
 
         for (int i = 0; i < size; ++i) {
-            final int startIndex = i * CELL_DATA_LENGTH;
+            Base64.toBytes(mapData, offset + i * CELL_DATA_LENGTH, buffer);
+            packed.set(i, buffer);
+        }
+
+        return packed;
+    }
 
-            cells[i] = deserializeCell(mapData.substring(startIndex, startIndex + CELL_DATA_LENGTH));
+    /**
+     * {@inheritDoc}
+     *
+     * Only the map data length is checked by this method : an invalid cell data will be reported on the first access of the cell.
+     * The cells keep a reference to the map data string until they are decoded.
+     */
+    @Override
+    public CellData[] deserializeLazy(String mapData) {
+        final int size = cellsCount(mapData, 0, mapData.length());
+        final CellData[] cells = new CellData[size];
+
+        for (int i = 0; i < size; ++i) {
+            cells[i] = new LazyCellData(this, mapData, i * CELL_DATA_LENGTH);
         }
 
         return cells;
@@ -73,9 +163,39 @@ public final class DefaultMapDataSerializer implements MapDataSerializer {
     /**
      * Enable the cell data cache
      * Once enable, deserialize two same cell data will return the same cell instance
+     *
+     * Note: the cache is unbounded. Use {@link DefaultMapDataSerializer#enableCache(CellDataCache)} to limit its size
+     *
+     * @see CellDataCache#unbounded()
      */
     public void enableCache() {
-        cache = new ConcurrentHashMap<>();
+        enableCache(CellDataCache.unbounded());
+    }
+
+    /**
+     * Enable the cell data cache, using the given cache implementation
+     * The cache can be shared between multiple serializers
+     *
+     * <code>
+     *     serializer.enableCache(CellDataCache.lru(50_000, true));
+     * </code>
+     *
+     * @param cache The cache to use
+     *
+     * @see CellDataCache#lru(int, boolean)
+     */
+    public void enableCache(CellDataCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Get the current cell cache
+     * Can be used to retrieve the cache statistics
+     *
+     * @return The cache, or null if the cache is disabled
+     */
+    public @Nullable CellDataCache cache() {
+        return cache;
     }
 
     /**
@@ -113,134 +233,96 @@ public final class DefaultMapDataSerializer implements MapDataSerializer {
         return withKey(Key.parse(key));
     }
 
-    private CellData deserializeCell(@ArrayLen(CELL_DATA_LENGTH) String cellData) {
+    /**
+     * Decode a single cell, using the cache if enabled
+     *
+     * @param mapData The char sequence containing the map data
+     * @param offset The first character of the cell data. The bounds must be checked before
+     *
+     * @return The cell
+     */
+    CellData deserializeCell(CharSequence mapData, @NonNegative int offset) {
+        final CellDataCache cache = this.cache;
+
         if (cache == null) {
-            return new ByteArrayCell(Base64.toBytes(cellData));
+            return new ByteArrayCell(decodeCell(mapData, offset));
+        }
+
+        final long key = cellKey(mapData, offset);
+        final CellData cell = cache.get(key);
+
+        if (cell != null) {
+            return cell;
         }
 
-        return cache.computeIfAbsent(cellData, data -> new ByteArrayCell(Base64.toBytes(data)));
+        return cache.putIfAbsent(key, new ByteArrayCell(decodeCellKey(key)));
     }
 
-    @SuppressWarnings("assignment") // All assignations are safe
-    private String serializeCell(CellData cell) {
-        final @IntRange(from = 0, to = 63) byte[] data = new byte[CELL_DATA_LENGTH];
-
-        data[0] = (byte) ((cell.active() ? (1) : (0)) << 5);
-        data[0] = (byte) (data[0] | (cell.lineOfSight() ? (1) : (0)));
-        data[0] = (byte) (data[0] | (cell.ground().number() & 1536) >> 6);
-        data[0] = (byte) (data[0] | (cell.layer1().number() & 8192) >> 11);
-        data[0] = (byte) (data[0] | (cell.layer2().number() & 8192) >> 12);
-        data[1] = (byte) ((cell.ground().rotation() & 3) << 4);
-        data[1] = (byte) (data[1] | cell.ground().level() & 15);
-        data[2] = (byte) ((cell.movement().ordinal() & 7) << 3);
-        data[2] = (byte) (data[2] | cell.ground().number() >> 6 & 7);
-        data[3] = (byte) (cell.ground().number() & 63);
-        data[4] = (byte) ((cell.ground().slope() & 15) << 2);
-        data[4] = (byte) (data[4] | (cell.ground().flip() ? (1) : (0)) << 1);
-        data[4] = (byte) (data[4] | cell.layer1().number() >> 12 & 1);
-        data[5] = (byte) (cell.layer1().number() >> 6 & 63);
-        data[6] = (byte) (cell.layer1().number() & 63);
-        data[7] = (byte) ((cell.layer1().rotation() & 3) << 4);
-        data[7] = (byte) (data[7] | (cell.layer1().flip() ? (1) : (0)) << 3);
-        data[7] = (byte) (data[7] | (cell.layer2().flip() ? (1) : (0)) << 2);
-        data[7] = (byte) (data[7] | (cell.layer2().interactive() ? (1) : (0)) << 1);
-        data[7] = (byte) (data[7] | cell.layer2().number() >> 12 & 1);
-        data[8] = (byte) (cell.layer2().number() >> 6 & 63);
-        data[9] = (byte) (cell.layer2().number() & 63);
-
-        return Base64.encode(data);
-    }
-
-    private static class ByteArrayCell implements CellData {
-        private final byte @ArrayLen(CELL_DATA_LENGTH) [] data;
+    /**
+     * Compute the packed key of the cell, used by the cache
+     * Each character is stored on 6 bits, starting with the first character on the lower bits
+     *
+     * @see CellDataCache
+     */
+    @SuppressWarnings("argument") // Bounds are checked by cellsCount()
+    private static long cellKey(CharSequence mapData, @NonNegative int offset) {
+        long key = 0;
 
-        public ByteArrayCell(byte @ArrayLen(CELL_DATA_LENGTH) [] data) {
-            this.data = data;
+        for (int i = CELL_DATA_LENGTH - 1; i >= 0; --i) {
+            key = (key << 6) | Base64.ord(mapData.charAt(offset + i));
         }
 
-        @Override
-        public boolean lineOfSight() {
-            return (data[0] & 1) == 1;
-        }
+        return key;
+    }
 
-        @Override
-        public CellMovement movement() {
-            return CellMovement.byValue((data[2] & 56) >> 3);
-        }
+    private static byte @ArrayLen(CELL_DATA_LENGTH) [] decodeCellKey(long key) {
+        final byte[] data = new byte[CELL_DATA_LENGTH];
 
-        @Override
-        public boolean active() {
-            return (data[0] & 32) >> 5 == 1;
+        for (int i = 0; i < CELL_DATA_LENGTH; ++i) {
+            data[i] = (byte) ((key >> (6 * i)) & 63);
         }
 
-        @Override
-        public GroundCellData ground() {
-            return new GroundCellData() {
-                @Override
-                public int level() {
-                    return data[1] & 15;
-                }
-
-                @Override
-                public int slope() {
-                    return (data[4] & 60) >> 2;
-                }
-
-                @Override
-                public int number() {
-                    return ((data[0] & 24) << 6) + ((data[2] & 7) << 6) + data[3];
-                }
-
-                @Override
-                public int rotation() {
-                    return (data[1] & 48) >> 4;
-                }
-
-                @Override
-                public boolean flip() {
-                    return (data[4] & 2) >> 1 == 1;
-                }
-            };
+        return data;
+    }
+
+    private static byte @ArrayLen(CELL_DATA_LENGTH) [] decodeCell(CharSequence mapData, @NonNegative int offset) {
+        final byte[] data = new byte[CELL_DATA_LENGTH];
+
+        Base64.toBytes(mapData, offset, data);
+
+        return data;
+    }
+
+    /**
+     * Check the map data bounds, and compute the number of cells
+     *
+     * @throws IllegalArgumentException When invalid bounds or length are given
+     */
+    private static @NonNegative int cellsCount(CharSequence mapData, @NonNegative int offset, @NonNegative int length) {
+        if (length % CELL_DATA_LENGTH != 0 || offset > mapData.length() || length > mapData.length() - offset) {
+            throw new IllegalArgumentException("Invalid map data");
         }
 
-        @Override
-        public CellLayerData layer1() {
-            return new CellLayerData() {
-                @Override
-                public int number() {
-                    return ((data[0] & 4) << 11) + ((data[4] & 1) << 12) + (data[5] << 6) + data[6];
-                }
-
-                @Override
-                public int rotation() {
-                    return (data[7] & 48) >> 4;
-                }
-
-                @Override
-                public boolean flip() {
-                    return (data[7] & 8) >> 3 == 1;
-                }
-            };
+        return length / CELL_DATA_LENGTH;
+    }
+
+    private String serializeCell(CellData cell) {
+        return Base64.encode(AbstractRawCellData.encode(cell));
+    }
+
+    /**
+     * Cell data backed by the decoded byte array
+     */
+    private static final class ByteArrayCell extends AbstractRawCellData {
+        private final byte @ArrayLen(CELL_DATA_LENGTH) [] data;
+
+        public ByteArrayCell(byte @ArrayLen(CELL_DATA_LENGTH) [] data) {
+            this.data = data;
         }
 
         @Override
-        public InteractiveObjectData layer2() {
-            return new InteractiveObjectData() {
-                @Override
-                public boolean interactive() {
-                    return (data[7] & 2) >> 1 == 1;
-                }
-
-                @Override
-                public int number() {
-                    return ((data[0] & 2) << 12) + ((data[7] & 1) << 12) + (data[8] << 6) + data[9];
-                }
-
-                @Override
-                public boolean flip() {
-                    return (data[7] & 4) >> 2 == 1;
-                }
-            };
+        protected int data(@IntRange(from = 0, to = CELL_DATA_LENGTH - 1) int index) {
+            return data[index];
         }
     }
 }
@@ -21,6 +21,9 @@ package fr.arakne.utils.maps.serializer;
 
 import fr.arakne.utils.encoding.Checksum;
 import fr.arakne.utils.encoding.Key;
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import java.nio.CharBuffer;
 
 /**
  * Implementation of the map serializer for encrypted map data
@@ -37,6 +40,7 @@ import fr.arakne.utils.encoding.Key;
 public final class EncryptedMapDataSerializer implements MapDataSerializer {
     private final Key key;
     private final MapDataSerializer plainDataSerializer;
+    private final @NonNegative int keyOffset;
 
     public EncryptedMapDataSerializer(Key key) {
         this(key, new DefaultMapDataSerializer());
@@ -45,15 +49,57 @@ public final class EncryptedMapDataSerializer implements MapDataSerializer {
     public EncryptedMapDataSerializer(Key key, MapDataSerializer plainDataSerializer) {
         this.key = key;
         this.plainDataSerializer = plainDataSerializer;
+        this.keyOffset = Checksum.integer(key.toString()) * 2;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * When the inner serializer is a {@link DefaultMapDataSerializer}, the map data is decrypted into a char buffer,
+     * and cells are decoded directly from this buffer, without creating intermediate strings
+     */
     @Override
     public CellData[] deserialize(String mapData) {
-        return plainDataSerializer.deserialize(key.cipher().decrypt(mapData, Checksum.integer(key.toString()) * 2));
+        final char[] decrypted = new char[mapData.length() / 2];
+        final int length = key.cipher().decrypt(mapData, keyOffset, decrypted);
+
+        if (plainDataSerializer instanceof DefaultMapDataSerializer) {
+            return ((DefaultMapDataSerializer) plainDataSerializer).deserialize(CharBuffer.wrap(decrypted), 0, length);
+        }
+
+        return plainDataSerializer.deserialize(new String(decrypted, 0, length));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * When the inner serializer is a {@link DefaultMapDataSerializer}, the map data is decrypted into a char buffer,
+     * and cells are decoded directly from this buffer, without creating intermediate strings
+     */
+    @Override
+    public PackedMapData deserializePacked(String mapData) {
+        final char[] decrypted = new char[mapData.length() / 2];
+        final int length = key.cipher().decrypt(mapData, keyOffset, decrypted);
+
+        if (plainDataSerializer instanceof DefaultMapDataSerializer) {
+            return ((DefaultMapDataSerializer) plainDataSerializer).deserializePacked(CharBuffer.wrap(decrypted), 0, length);
+        }
+
+        return plainDataSerializer.deserializePacked(new String(decrypted, 0, length));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The map data is decrypted immediately, and the decrypted data is passed to the inner serializer
+     */
+    @Override
+    public CellData[] deserializeLazy(String mapData) {
+        return plainDataSerializer.deserializeLazy(key.cipher().decrypt(mapData, keyOffset));
     }
 
     @Override
     public String serialize(CellData[] cells) {
-        return key.cipher().encrypt(plainDataSerializer.serialize(cells), Checksum.integer(key.toString()) * 2);
+        return key.cipher().encrypt(plainDataSerializer.serialize(cells), keyOffset);
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Cell decoded on its first access
+ *
+ * The decoded cell is stored on a volatile field, so it's safe to read concurrently.
+ * Concurrent first accesses may decode the cell more than once, but all threads will see a fully decoded cell.
+ * The reference to the map data is released once the cell is decoded.
+ *
+ * @see DefaultMapDataSerializer#deserializeLazy(String)
+ */
+final class LazyCellData implements CellData {
+    private final DefaultMapDataSerializer serializer;
+    private volatile @Nullable String mapData;
+    private final @NonNegative int offset;
+    private volatile @MonotonicNonNull CellData cell;
+
+    LazyCellData(DefaultMapDataSerializer serializer, String mapData, @NonNegative int offset) {
+        this.serializer = serializer;
+        this.mapData = mapData;
+        this.offset = offset;
+    }
+
+    @Override
+    public boolean lineOfSight() {
+        return cell().lineOfSight();
+    }
+
+    @Override
+    public CellMovement movement() {
+        return cell().movement();
+    }
+
+    @Override
+    public boolean active() {
+        return cell().active();
+    }
+
+    @Override
+    public GroundCellData ground() {
+        return cell().ground();
+    }
+
+    @Override
+    public CellLayerData layer1() {
+        return cell().layer1();
+    }
+
+    @Override
+    public InteractiveObjectData layer2() {
+        return cell().layer2();
+    }
+
+    /**
+     * Check if the cell is already decoded
+     */
+    boolean decoded() {
+        return cell != null;
+    }
+
+    /**
+     * Check if the cell still keeps a reference to the map data
+     */
+    boolean holdsMapData() {
+        return mapData != null;
+    }
+
+    /**
+     * Get the decoded cell, and decode it if not yet done
+     *
+     * @throws IllegalArgumentException When the cell data is invalid
+     */
+    private CellData cell() {
+        CellData cell = this.cell;
+
+        if (cell != null) {
+            return cell;
+        }
+
+        final String mapData = this.mapData;
+
+        // Decoded by another thread : the cell is published before the map data is released
+        if (mapData == null) {
+            cell = this.cell;
+
+            if (cell == null) {
+                throw new IllegalStateException("The map data is released before the cell is decoded");
+            }
+
+            return cell;
+        }
+
+        cell = serializer.deserializeCell(mapData, offset);
+        this.cell = cell;
+        this.mapData = null;
+
+        return cell;
+    }
+}
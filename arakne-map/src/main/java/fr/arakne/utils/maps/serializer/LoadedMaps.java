@@ -0,0 +1,106 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Result of {@link MapLoader#load(java.util.Collection)}
+ * Loaded maps and errors are indexed by the map id
+ */
+public final class LoadedMaps {
+    private final Map<Integer, CellData[]> maps;
+    private final Map<Integer, Exception> errors;
+
+    LoadedMaps(Map<Integer, CellData[]> maps, Map<Integer, Exception> errors) {
+        this.maps = Collections.unmodifiableMap(maps);
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * Get the number of successfully loaded maps
+     *
+     * @return The maps count
+     */
+    public @NonNegative int size() {
+        return maps.size();
+    }
+
+    /**
+     * Check if the map has been successfully loaded
+     *
+     * @param mapId The map id
+     *
+     * @return true if the map cells are available
+     */
+    public boolean contains(int mapId) {
+        return maps.containsKey(mapId);
+    }
+
+    /**
+     * Get the cells of a loaded map
+     *
+     * @param mapId The map id
+     *
+     * @return The map cells
+     *
+     * @throws NoSuchElementException When the map is not loaded, or its loading has failed
+     */
+    public CellData[] get(int mapId) {
+        final CellData[] cells = maps.get(mapId);
+
+        if (cells == null) {
+            throw new NoSuchElementException("The map " + mapId + " is not loaded");
+        }
+
+        return cells;
+    }
+
+    /**
+     * Get all loaded maps
+     *
+     * @return Unmodifiable map, with the map id as key, and cells as value
+     */
+    public Map<Integer, CellData[]> maps() {
+        return maps;
+    }
+
+    /**
+     * Get the loading errors
+     *
+     * @return Unmodifiable map, with the map id as key, and the error as value
+     */
+    public Map<Integer, Exception> errors() {
+        return errors;
+    }
+
+    /**
+     * Check if at least one map cannot be loaded
+     *
+     * @return true on error
+     */
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+}
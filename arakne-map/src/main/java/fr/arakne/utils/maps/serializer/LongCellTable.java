@@ -0,0 +1,321 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.GTENegativeOne;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Hash table of cells indexed by a primitive long key, used by the cell caches
+ * The keys are never boxed, so lookups do not allocate any object
+ *
+ * The table uses open addressing with linear probing on an array of entry indexes,
+ * so entries keep the same index until they are removed.
+ * Entries are also linked by insertion or access order, to find the least recently used one.
+ *
+ * This class is not thread safe
+ *
+ * @see ConcurrentCellDataCache
+ * @see LruCellDataCache
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Entry and slot indexes are bounded by the arrays sizes
+final class LongCellTable {
+    /**
+     * Returned by {@link LongCellTable#find(long)} when the key is not found
+     */
+    static final int NO_ENTRY = -1;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Entry index + 1 of each slot, or 0 for an empty slot
+     * The length is a power of two, and at least twice the number of entries
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private @Nullable Object[] values = new Object[INITIAL_CAPACITY];
+
+    /**
+     * Linked list of the entries, from the eldest (head) to the most recent (tail)
+     * The next links are also used for the free entries list
+     */
+    private int[] previous = new int[INITIAL_CAPACITY];
+    private int[] next = new int[INITIAL_CAPACITY];
+
+    private int head = NO_ENTRY;
+    private int tail = NO_ENTRY;
+    private int free = NO_ENTRY;
+    private @NonNegative int allocated = 0;
+    private @NonNegative int size = 0;
+
+    /**
+     * Find the entry of the key
+     *
+     * @param key The key to search
+     *
+     * @return The entry index, or {@link LongCellTable#NO_ENTRY} if not found
+     */
+    @SuppressWarnings("return") // Entry indexes are stored + 1 on slots
+    @GTENegativeOne int find(long key) {
+        final int mask = slots.length - 1;
+
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            final int entry = slots[slot] - 1;
+
+            if (entry == NO_ENTRY || keys[entry] == key) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Get the value of an entry
+     *
+     * @param entry The entry index, returned by find or put
+     */
+    Object value(@NonNegative int entry) {
+        return castNonNull(values[entry]);
+    }
+
+    /**
+     * Replace the value of an entry
+     *
+     * @param entry The entry index, returned by find or put
+     * @param value The new value
+     */
+    void set(@NonNegative int entry, Object value) {
+        values[entry] = value;
+    }
+
+    /**
+     * Get the key of an entry
+     *
+     * @param entry The entry index
+     */
+    long key(@NonNegative int entry) {
+        return keys[entry];
+    }
+
+    /**
+     * Add a new entry, as the most recent one
+     * The key must not be present in the table
+     *
+     * @param key The key
+     * @param value The value
+     *
+     * @return The new entry index
+     */
+    int put(long key, Object value) {
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+
+        final int entry = allocate();
+
+        keys[entry] = key;
+        values[entry] = value;
+        link(entry);
+
+        final int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        slots[slot] = entry + 1;
+        ++size;
+
+        return entry;
+    }
+
+    /**
+     * Mark the entry as the most recently used one
+     *
+     * @param entry The entry index
+     */
+    void touch(@NonNegative int entry) {
+        if (entry != tail) {
+            unlink(entry);
+            link(entry);
+        }
+    }
+
+    /**
+     * Get the least recently used (or inserted) entry
+     *
+     * @return The entry index, or {@link LongCellTable#NO_ENTRY} if the table is empty
+     */
+    @SuppressWarnings("return") // The head is an entry index, or NO_ENTRY
+    @GTENegativeOne int eldest() {
+        return head;
+    }
+
+    /**
+     * Remove an entry
+     * The slots following the removed one are shifted back, so the next lookups do not need tombstones
+     *
+     * @param entry The entry index
+     */
+    @SuppressWarnings("unary.decrement") // The entry is present, so the table is not empty
+    void remove(@NonNegative int entry) {
+        final int mask = slots.length - 1;
+        int slot = hash(keys[entry]) & mask;
+
+        while (slots[slot] != entry + 1) {
+            slot = (slot + 1) & mask;
+        }
+
+        for (int current = (slot + 1) & mask; slots[current] != 0; current = (current + 1) & mask) {
+            final int home = hash(keys[slots[current] - 1]) & mask;
+
+            // The moved entry must stay reachable from its home slot
+            if (((current - home) & mask) >= ((current - slot) & mask)) {
+                slots[slot] = slots[current];
+                slot = current;
+            }
+        }
+
+        slots[slot] = 0;
+        unlink(entry);
+        values[entry] = null;
+        next[entry] = free;
+        free = entry;
+        --size;
+    }
+
+    /**
+     * @return The number of entries
+     */
+    @NonNegative int size() {
+        return size;
+    }
+
+    /**
+     * Remove all entries, and release the memory
+     */
+    void clear() {
+        slots = new int[INITIAL_CAPACITY * 2];
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        previous = new int[INITIAL_CAPACITY];
+        next = new int[INITIAL_CAPACITY];
+        head = tail = free = NO_ENTRY;
+        allocated = 0;
+        size = 0;
+    }
+
+    /**
+     * Mix the bits of the key, so consecutive keys are spread over the table
+     * The 32 lower bits are used by the table, the higher ones can be used to select a stripe
+     */
+    static long mix(long key) {
+        long hash = key;
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+    }
+
+    private static int hash(long key) {
+        return (int) mix(key);
+    }
+
+    @SuppressWarnings("return") // The free list only contains allocated entries
+    private @NonNegative int allocate() {
+        if (free != NO_ENTRY) {
+            final int entry = free;
+
+            free = next[entry];
+            return entry;
+        }
+
+        if (allocated == keys.length) {
+            final int capacity = keys.length * 2;
+
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+
+        return allocated++;
+    }
+
+    private void rehash(@NonNegative int capacity) {
+        final int[] newSlots = new int[capacity];
+        final int mask = capacity - 1;
+
+        for (int entry = head; entry != NO_ENTRY; entry = next[entry]) {
+            int slot = hash(keys[entry]) & mask;
+
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            newSlots[slot] = entry + 1;
+        }
+
+        slots = newSlots;
+    }
+
+    private void link(@NonNegative int entry) {
+        previous[entry] = tail;
+        next[entry] = NO_ENTRY;
+
+        if (tail == NO_ENTRY) {
+            head = entry;
+        } else {
+            next[tail] = entry;
+        }
+
+        tail = entry;
+    }
+
+    private void unlink(@NonNegative int entry) {
+        final int before = previous[entry];
+        final int after = next[entry];
+
+        if (before == NO_ENTRY) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+
+        if (after == NO_ENTRY) {
+            tail = before;
+        } else {
+            previous[after] = before;
+        }
+    }
+
+    @SuppressWarnings("return") // Only called on used entries
+    private static Object castNonNull(@Nullable Object value) {
+        return value;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Bounded cell cache, with least recently used eviction policy
+ * Cells can be stored as weak references, so they can be reclaimed by the GC when no more used by any map
+ *
+ * Cells are stored on primitive long keyed tables, so lookups do not box the key.
+ * Large caches are split into lock striped segments, each one with its own LRU order and a share of the max size,
+ * so parallel map loading does not contend on a single lock. In this case the eviction is an approximation
+ * of the global LRU : the evicted cell is the least recently used of its segment.
+ * Small caches use a single segment, and keep an exact LRU order.
+ *
+ * @see CellDataCache#lru(int, boolean)
+ */
+final class LruCellDataCache implements CellDataCache {
+    /**
+     * Minimal max size for splitting the cache into stripes
+     */
+    static final int STRIPING_THRESHOLD = 4096;
+
+    /**
+     * Number of stripes of large caches. Must be a power of two
+     */
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes;
+    private final @Nullable ReferenceQueue<CellData> queue;
+
+    LruCellDataCache(@Positive int maxSize, boolean weakValues) {
+        final int count = maxSize < STRIPING_THRESHOLD ? 1 : STRIPES;
+
+        this.queue = weakValues ? new ReferenceQueue<>() : null;
+        this.stripes = new Stripe[count];
+
+        for (int i = 0; i < count; ++i) {
+            stripes[i] = new Stripe(Math.max(maxSize / count, 1));
+        }
+    }
+
+    @Override
+    public @Nullable CellData get(long key) {
+        expunge();
+
+        final Stripe stripe = stripe(key);
+
+        synchronized (stripe) {
+            final int entry = stripe.table.find(key);
+
+            if (entry == LongCellTable.NO_ENTRY) {
+                ++stripe.misses;
+                return null;
+            }
+
+            final CellData cell = unwrap(stripe.table.value(entry));
+
+            if (cell == null) {
+                ++stripe.misses;
+                return null;
+            }
+
+            stripe.table.touch(entry);
+            ++stripe.hits;
+
+            return cell;
+        }
+    }
+
+    @Override
+    public CellData putIfAbsent(long key, CellData cell) {
+        expunge();
+
+        final Stripe stripe = stripe(key);
+        final Object value = queue == null ? cell : new WeakCellReference(key, cell, queue);
+
+        synchronized (stripe) {
+            final int entry = stripe.table.find(key);
+
+            if (entry == LongCellTable.NO_ENTRY) {
+                stripe.add(key, value);
+                return cell;
+            }
+
+            stripe.table.touch(entry);
+
+            final CellData existing = unwrap(stripe.table.value(entry));
+
+            if (existing != null) {
+                return existing;
+            }
+
+            // The previous cell has been reclaimed, but its reference is not yet enqueued
+            ++stripe.evictions;
+            stripe.table.set(entry, value);
+
+            return cell;
+        }
+    }
+
+    @Override
+    public int size() {
+        expunge();
+
+        int size = 0;
+
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.table.size();
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.table.clear();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("argument") // Counters are positive
+    public CellDataCacheStatistics statistics() {
+        expunge();
+
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        int size = 0;
+
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                hits += stripe.hits;
+                misses += stripe.misses;
+                evictions += stripe.evictions;
+                size += stripe.table.size();
+            }
+        }
+
+        return new CellDataCacheStatistics(hits, misses, evictions, size);
+    }
+
+    /**
+     * Remove the cells reclaimed by the GC
+     */
+    private void expunge() {
+        if (queue == null) {
+            return;
+        }
+
+        for (Reference<? extends CellData> reference = queue.poll(); reference != null; reference = queue.poll()) {
+            final WeakCellReference cellReference = (WeakCellReference) reference;
+            final Stripe stripe = stripe(cellReference.key);
+
+            synchronized (stripe) {
+                final int entry = stripe.table.find(cellReference.key);
+
+                // The entry may be already replaced or evicted
+                if (entry != LongCellTable.NO_ENTRY && stripe.table.value(entry) == cellReference) {
+                    stripe.table.remove(entry);
+                    ++stripe.evictions;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // The index is masked by the stripes count, which is a power of two
+    private Stripe stripe(long key) {
+        return stripes[(int) (LongCellTable.mix(key) >>> 32) & (stripes.length - 1)];
+    }
+
+    private static @Nullable CellData unwrap(Object value) {
+        if (value instanceof WeakCellReference) {
+            return ((WeakCellReference) value).get();
+        }
+
+        return (CellData) value;
+    }
+
+    /**
+     * Segment of the cache, synchronized on itself
+     * Stored values are CellData if weak values are disabled, or WeakCellReference otherwise
+     */
+    private static final class Stripe {
+        private final LongCellTable table = new LongCellTable();
+        private final @Positive int maxSize;
+
+        private @NonNegative long hits = 0;
+        private @NonNegative long misses = 0;
+        private @NonNegative long evictions = 0;
+
+        private Stripe(@Positive int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Add a new entry, and evict the least recently used one if the stripe is full
+         */
+        @SuppressWarnings("argument") // The table is not empty, so there is an eldest entry
+        private void add(long key, Object value) {
+            table.put(key, value);
+
+            if (table.size() > maxSize) {
+                table.remove(table.eldest());
+                ++evictions;
+            }
+        }
+    }
+
+    private static final class WeakCellReference extends WeakReference<CellData> {
+        private final long key;
+
+        private WeakCellReference(long key, CellData cell, ReferenceQueue<CellData> queue) {
+            super(cell, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.IndexFor;
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Archive of precompiled maps cells
+ * The archive file is memory-mapped, and cells are exposed as {@link CellData} views reading directly the mapped file.
+ * So opening the archive does not decode any map : only the index is loaded.
+ *
+ * The archive is created using {@link MapArchiveWriter}. The format is (all integers are big endian) :
+ * - The header : magic number (int), format version (int), number of maps (int)
+ * - The index, sorted by map id : map id (int), offset of the map data from the start of the file (int), number of cells (int)
+ * - The maps data : each cell is stored on 10 bytes, corresponding to the Base64 values of the cell data characters
+ *
+ * <pre>{@code
+ * final MapArchive archive = MapArchive.open(Paths.get("maps.bin"));
+ *
+ * final CellData[] cells = archive.cells(mapId);
+ * }</pre>
+ *
+ * Instances are thread safe.
+ *
+ * @see MapArchiveWriter
+ */
+@SuppressWarnings({
+    "array.access.unsafe.high", "array.access.unsafe.high.range", "array.length.negative", "argument", "return"
+}) // Index arrays have the same length, and entries are checked when the archive is loaded
+public final class MapArchive {
+    static final int MAGIC = 0x414D4150; // "AMAP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 12;
+    static final int INDEX_ENTRY_SIZE = 12;
+
+    private final ByteBuffer buffer;
+    private final int[] ids;
+    private final int[] offsets;
+    private final int[] sizes;
+
+    private MapArchive(ByteBuffer buffer, int[] ids, int[] offsets, int[] sizes) {
+        this.buffer = buffer;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Get the number of maps stored into the archive
+     *
+     * @return The maps count
+     */
+    public @NonNegative int size() {
+        return ids.length;
+    }
+
+    /**
+     * Get all the stored map ids
+     *
+     * @return The map ids, in ascending order
+     */
+    public int[] ids() {
+        return ids.clone();
+    }
+
+    /**
+     * Check if the map is stored into the archive
+     *
+     * @param mapId The map id
+     *
+     * @return true if the archive contains the map
+     */
+    public boolean contains(int mapId) {
+        return Arrays.binarySearch(ids, mapId) >= 0;
+    }
+
+    /**
+     * Get the number of cells of a map
+     *
+     * @param mapId The map id
+     *
+     * @return The map size
+     *
+     * @throws NoSuchElementException When the map is not stored into the archive
+     */
+    public @NonNegative int cellsCount(int mapId) {
+        return sizes[index(mapId)];
+    }
+
+    /**
+     * Get the cells of a map
+     * Cells are views over the mapped file : no data is decoded nor copied
+     * Note: a new array of views is created on each call, so the result should be kept with the map
+     *
+     * @param mapId The map id
+     *
+     * @return The map cells
+     *
+     * @throws NoSuchElementException When the map is not stored into the archive
+     */
+    public CellData[] cells(int mapId) {
+        final int index = index(mapId);
+        final int offset = offsets[index];
+        final CellData[] cells = new CellData[sizes[index]];
+
+        for (int i = 0; i < cells.length; ++i) {
+            cells[i] = new MappedCellData(buffer, offset + i * AbstractRawCellData.LENGTH);
+        }
+
+        return cells;
+    }
+
+    /**
+     * Decode the map cells to the packed representation
+     *
+     * @param mapId The map id
+     *
+     * @return The packed map data
+     *
+     * @throws NoSuchElementException When the map is not stored into the archive
+     */
+    public PackedMapData packed(int mapId) {
+        final int index = index(mapId);
+        final int offset = offsets[index];
+        final PackedMapData packed = new PackedMapData(sizes[index]);
+        final byte[] data = new byte[AbstractRawCellData.LENGTH];
+
+        for (int i = 0; i < sizes[index]; ++i) {
+            for (int j = 0; j < AbstractRawCellData.LENGTH; ++j) {
+                data[j] = buffer.get(offset + i * AbstractRawCellData.LENGTH + j);
+            }
+
+            packed.set(i, data);
+        }
+
+        return packed;
+    }
+
+    /**
+     * Memory-map the archive file
+     * The file is mapped in read only mode, and the file channel is closed once mapped.
+     *
+     * @param file The archive file
+     *
+     * @return The archive
+     *
+     * @throws IOException When the file cannot be read, or is not a valid archive
+     */
+    public static MapArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The archive is too large");
+            }
+
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Load an archive from a buffer
+     * The buffer content must not be modified after
+     *
+     * @param buffer The archive data
+     *
+     * @return The archive
+     *
+     * @throws IOException When the buffer do not contains a valid archive
+     */
+    public static MapArchive load(ByteBuffer buffer) throws IOException {
+        final ByteBuffer data = buffer.duplicate();
+
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Invalid map archive");
+        }
+
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported map archive version " + data.getInt(4));
+        }
+
+        final int count = data.getInt(8);
+
+        if (count < 0 || count > (data.capacity() - HEADER_SIZE) / INDEX_ENTRY_SIZE) {
+            throw new IOException("Invalid map archive index");
+        }
+
+        final int[] ids = new int[count];
+        final int[] offsets = new int[count];
+        final int[] sizes = new int[count];
+
+        for (int i = 0; i < count; ++i) {
+            final int position = HEADER_SIZE + i * INDEX_ENTRY_SIZE;
+
+            ids[i] = data.getInt(position);
+            offsets[i] = data.getInt(position + 4);
+            sizes[i] = data.getInt(position + 8);
+
+            checkEntry(data, ids, offsets[i], sizes[i], i);
+        }
+
+        return new MapArchive(data, ids, offsets, sizes);
+    }
+
+    private @IndexFor("this.ids") int index(int mapId) {
+        final int index = Arrays.binarySearch(ids, mapId);
+
+        if (index < 0) {
+            throw new NoSuchElementException("The map " + mapId + " is not found in the archive");
+        }
+
+        return index;
+    }
+
+    private static void checkEntry(ByteBuffer data, int[] ids, int offset, int size, @NonNegative int index) throws IOException {
+        if (index > 0 && ids[index - 1] >= ids[index]) {
+            throw new IOException("The map archive index is not sorted");
+        }
+
+        if (offset < 0 || size < 0 || (long) offset + (long) size * AbstractRawCellData.LENGTH > data.capacity()) {
+            throw new IOException("Invalid map archive entry for map " + ids[index]);
+        }
+    }
+}
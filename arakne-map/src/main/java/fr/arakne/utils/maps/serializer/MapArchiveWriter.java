@@ -0,0 +1,139 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Build a {@link MapArchive} file
+ * Maps are encoded when added, so the map cells can be released before writing the archive
+ *
+ * <pre>{@code
+ * final MapArchiveWriter writer = new MapArchiveWriter();
+ *
+ * for (MapEntity map : repository.all()) {
+ *     writer.add(map.id(), serializer.withKey(map.key()).deserialize(map.data()));
+ * }
+ *
+ * writer.write(Paths.get("maps.bin"));
+ * }</pre>
+ *
+ * @see MapArchive#open(Path) For read the archive
+ */
+public final class MapArchiveWriter {
+    private final Map<Integer, byte[]> maps = new TreeMap<>();
+    private long dataSize = 0;
+
+    /**
+     * Add a map to the archive
+     *
+     * @param mapId The map id
+     * @param cells The map cells
+     *
+     * @return this instance
+     *
+     * @throws IllegalArgumentException When the map is already added
+     * @throws IllegalStateException When the archive is too large
+     */
+    @SuppressWarnings("argument") // data is large enough to contains all cells
+    public MapArchiveWriter add(int mapId, CellData[] cells) {
+        if (maps.containsKey(mapId)) {
+            throw new IllegalArgumentException("The map " + mapId + " is already added");
+        }
+
+        final byte[] data = new byte[cells.length * AbstractRawCellData.LENGTH];
+
+        for (int i = 0; i < cells.length; ++i) {
+            System.arraycopy(AbstractRawCellData.encode(cells[i]), 0, data, i * AbstractRawCellData.LENGTH, AbstractRawCellData.LENGTH);
+        }
+
+        if (MapArchive.HEADER_SIZE + (long) MapArchive.INDEX_ENTRY_SIZE * (maps.size() + 1) + dataSize + data.length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The archive is too large");
+        }
+
+        maps.put(mapId, data);
+        dataSize += data.length;
+
+        return this;
+    }
+
+    /**
+     * Get the number of added maps
+     *
+     * @return The maps count
+     */
+    public @NonNegative int size() {
+        return maps.size();
+    }
+
+    /**
+     * Write the archive into the file
+     * If the file already exists, it will be overridden
+     *
+     * @param file The archive file
+     *
+     * @throws IOException When an error occurs during writing the file
+     */
+    public void write(Path file) throws IOException {
+        try (OutputStream output = Files.newOutputStream(file)) {
+            write(output);
+        }
+    }
+
+    /**
+     * Write the archive into the stream
+     * Note: the stream is not closed
+     *
+     * @param output The output stream
+     *
+     * @throws IOException When an error occurs during writing
+     */
+    public void write(OutputStream output) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(MapArchive.HEADER_SIZE + MapArchive.INDEX_ENTRY_SIZE * maps.size());
+
+        header.putInt(MapArchive.MAGIC);
+        header.putInt(MapArchive.VERSION);
+        header.putInt(maps.size());
+
+        int offset = header.capacity();
+
+        for (Map.Entry<Integer, byte[]> entry : maps.entrySet()) {
+            header.putInt(entry.getKey());
+            header.putInt(offset);
+            header.putInt(entry.getValue().length / AbstractRawCellData.LENGTH);
+
+            offset += entry.getValue().length;
+        }
+
+        output.write(header.array());
+
+        for (byte[] data : maps.values()) {
+            output.write(data);
+        }
+    }
+}
@@ -33,6 +33,37 @@ public interface MapDataSerializer {
      */
     public CellData[] deserialize(String mapData);
 
+    /**
+     * Parse serialized map data to lazy cells
+     * Each cell is decoded on its first access, and the decoded value is kept for the next accesses.
+     * This is useful for maps where only few cells are used. The returned cells are safe to read concurrently.
+     *
+     * By default, cells are decoded immediately using {@link MapDataSerializer#deserialize(String)}
+     *
+     * @param mapData The raw map data
+     * @return The cells
+     *
+     * @throws IllegalArgumentException When invalid mapData is given
+     */
+    public default CellData[] deserializeLazy(String mapData) {
+        return deserialize(mapData);
+    }
+
+    /**
+     * Parse serialized map data to the packed representation
+     * By default, the cells are deserialized using {@link MapDataSerializer#deserialize(String)} and then packed
+     *
+     * @param mapData The raw map data
+     * @return The deserialized map data
+     *
+     * @throws IllegalArgumentException When invalid mapData is given
+     *
+     * @see PackedMapData
+     */
+    public default PackedMapData deserializePacked(String mapData) {
+        return PackedMapData.of(deserialize(mapData));
+    }
+
     /**
      * Serialize the cells to a string
      * The result value must be compatible with deserialize()
@@ -0,0 +1,294 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Load many maps in parallel
+ * Maps are deserialized on the configured executor (by default the common {@link ForkJoinPool}),
+ * and all maps share the cell cache of the serializer.
+ *
+ * <pre>{@code
+ * final LoadedMaps maps = new MapLoader()
+ *     .listener(new MapLoader.Listener() {
+ *         public void failed(MapRecord record, Exception error, int done, int total) {
+ *             logger.error("Cannot load map " + record.mapId(), error);
+ *         }
+ *     })
+ *     .load(repository.all().stream().map(entity -> new MapRecord(entity.id(), entity.key(), entity.data())))
+ * ;
+ *
+ * final CellData[] cells = maps.get(10340);
+ * }</pre>
+ */
+public final class MapLoader {
+    private static final Listener NULL_LISTENER = new Listener() { };
+
+    private final DefaultMapDataSerializer serializer;
+    private Executor executor = ForkJoinPool.commonPool();
+    private @NonNegative int parallelism = 0;
+    private Listener listener = NULL_LISTENER;
+
+    /**
+     * Create the loader with a new serializer, using an unbounded cell cache
+     */
+    public MapLoader() {
+        this(new DefaultMapDataSerializer());
+
+        serializer.enableCache();
+    }
+
+    /**
+     * Create the loader using the given serializer
+     * The serializer cache is used as is, so it must be enabled before if needed
+     *
+     * @param serializer The serializer to use
+     */
+    public MapLoader(DefaultMapDataSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    /**
+     * Define the executor used to deserialize maps
+     * This option and {@link MapLoader#parallelism(int)} replace each other : the last call is used
+     *
+     * @param executor The executor
+     *
+     * @return this instance
+     */
+    public MapLoader executor(Executor executor) {
+        this.executor = executor;
+        this.parallelism = 0;
+
+        return this;
+    }
+
+    /**
+     * Define the number of threads used to deserialize maps
+     * A new {@link ForkJoinPool} is created by each call of load(), and shut down once all maps are loaded
+     * This option and {@link MapLoader#executor(Executor)} replace each other : the last call is used
+     *
+     * @param parallelism The number of threads
+     *
+     * @return this instance
+     */
+    public MapLoader parallelism(@Positive int parallelism) {
+        this.parallelism = parallelism;
+
+        return this;
+    }
+
+    /**
+     * Define the progress listener
+     * The listener is called from the executor threads, so it must be thread safe
+     *
+     * Exceptions thrown by the listener do not stop the loading, and do not remove the loaded maps.
+     * An exception thrown by {@link Listener#failed(MapRecord, Exception, int, int)} is added
+     * as suppressed exception of the map error.
+     *
+     * @param listener The listener
+     *
+     * @return this instance
+     */
+    public MapLoader listener(Listener listener) {
+        this.listener = listener;
+
+        return this;
+    }
+
+    /**
+     * Get the serializer used to deserialize maps
+     * Can be used to retrieve the cache statistics
+     *
+     * @return The serializer
+     */
+    public DefaultMapDataSerializer serializer() {
+        return serializer;
+    }
+
+    /**
+     * Load all the maps
+     * This method blocks until all maps are loaded
+     *
+     * A map which cannot be deserialized does not stop the loading :
+     * the error is reported to the listener, and stored into {@link LoadedMaps#errors()}
+     *
+     * @param records Maps to load
+     *
+     * @return The loaded maps
+     *
+     * @throws IllegalArgumentException When the same map id is present more than once
+     */
+    public LoadedMaps load(Collection<MapRecord> records) {
+        final MapRecord[] maps = records.toArray(new MapRecord[0]);
+
+        checkDuplicates(maps);
+
+        if (parallelism == 0) {
+            return load(maps, executor);
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        try {
+            return load(maps, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Load all the maps
+     *
+     * @param records Maps to load
+     *
+     * @return The loaded maps
+     *
+     * @throws IllegalArgumentException When the same map id is present more than once
+     *
+     * @see MapLoader#load(Collection)
+     */
+    public LoadedMaps load(Stream<MapRecord> records) {
+        return load(records.collect(Collectors.toList()));
+    }
+
+    /**
+     * Deserialize the maps on the given executor, and wait for all tasks
+     */
+    private LoadedMaps load(MapRecord[] maps, Executor executor) {
+        final CellData[] @Nullable [] cells = new CellData[maps.length][];
+        final @Nullable Exception[] errors = new Exception[maps.length];
+        final CompletableFuture<?>[] tasks = new CompletableFuture<?>[maps.length];
+        final AtomicInteger done = new AtomicInteger();
+
+        for (int i = 0; i < maps.length; ++i) {
+            final int index = i;
+
+            tasks[i] = CompletableFuture.runAsync(() -> load(maps, index, cells, errors, done), executor);
+        }
+
+        CompletableFuture.allOf(tasks).join();
+
+        return result(maps, cells, errors);
+    }
+
+    @SuppressWarnings({"array.access.unsafe.high", "array.access.unsafe.low", "argument"}) // index is in bounds of all arrays, and done counter is positive
+    private void load(MapRecord[] maps, @NonNegative int index, CellData[] @Nullable [] cells, @Nullable Exception[] errors, AtomicInteger done) {
+        final MapRecord record = maps[index];
+
+        try {
+            cells[index] = deserialize(record);
+        } catch (RuntimeException e) {
+            errors[index] = e;
+
+            try {
+                listener.failed(record, e, done.incrementAndGet(), maps.length);
+            } catch (RuntimeException listenerError) {
+                e.addSuppressed(listenerError);
+            }
+
+            return;
+        }
+
+        try {
+            listener.loaded(record, done.incrementAndGet(), maps.length);
+        } catch (RuntimeException listenerError) {
+            // The map is loaded : a failing listener must not stop the loading
+        }
+    }
+
+    @SuppressWarnings("argument") // Invalid keys are reported as map errors
+    private CellData[] deserialize(MapRecord record) {
+        if (record.encrypted()) {
+            return serializer.withKey(record.key()).deserialize(record.data());
+        }
+
+        return serializer.deserialize(record.data());
+    }
+
+    private static void checkDuplicates(MapRecord[] maps) {
+        final Set<Integer> ids = new HashSet<>();
+
+        for (MapRecord map : maps) {
+            if (!ids.add(map.mapId())) {
+                throw new IllegalArgumentException("Duplicate map " + map.mapId());
+            }
+        }
+    }
+
+    @SuppressWarnings({"array.access.unsafe.high", "array.access.unsafe.low"}) // All arrays have the same length
+    private static LoadedMaps result(MapRecord[] maps, CellData[] @Nullable [] cells, @Nullable Exception[] errors) {
+        final Map<Integer, CellData[]> loaded = new HashMap<>();
+        final Map<Integer, Exception> failed = new HashMap<>();
+
+        for (int i = 0; i < maps.length; ++i) {
+            final CellData @Nullable [] mapCells = cells[i];
+            final Exception error = errors[i];
+
+            if (mapCells != null) {
+                loaded.put(maps[i].mapId(), mapCells);
+            } else if (error != null) {
+                failed.put(maps[i].mapId(), error);
+            }
+        }
+
+        return new LoadedMaps(loaded, failed);
+    }
+
+    /**
+     * Listener for the loading progress
+     * All methods are optional
+     */
+    public interface Listener {
+        /**
+         * A map has been successfully loaded
+         *
+         * @param record The loaded map
+         * @param done Number of processed maps, including failed ones
+         * @param total Total number of maps to load
+         */
+        public default void loaded(MapRecord record, @NonNegative int done, @NonNegative int total) {}
+
+        /**
+         * A map cannot be loaded
+         *
+         * @param record The failed map
+         * @param error The error
+         * @param done Number of processed maps, including failed ones
+         * @param total Total number of maps to load
+         */
+        public default void failed(MapRecord record, Exception error, @NonNegative int done, @NonNegative int total) {}
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.dataflow.qual.Pure;
+
+/**
+ * Map data to load using {@link MapLoader}
+ */
+public final class MapRecord {
+    private final int mapId;
+    private final String key;
+    private final String data;
+
+    /**
+     * @param mapId The map id
+     * @param key The encryption key as hexadecimal string, like sent by the GDM packet. Empty if the map data is not encrypted
+     * @param data The map data
+     */
+    public MapRecord(int mapId, String key, String data) {
+        this.mapId = mapId;
+        this.key = key;
+        this.data = data;
+    }
+
+    /**
+     * Get the map id
+     *
+     * @return The id
+     */
+    @Pure
+    public int mapId() {
+        return mapId;
+    }
+
+    /**
+     * Get the encryption key
+     * The key is parsed by the loader, so an invalid key is reported as a map error
+     *
+     * @return The key as hexadecimal string, or an empty string if the map data is not encrypted
+     */
+    @Pure
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Get the raw map data
+     *
+     * @return The map data, encrypted or not
+     */
+    @Pure
+    public String data() {
+        return data;
+    }
+
+    /**
+     * Check if the map data is encrypted
+     *
+     * @return true if a key is provided
+     */
+    @Pure
+    public boolean encrypted() {
+        return !key.isEmpty();
+    }
+
+    /**
+     * Create a record for a not encrypted map
+     *
+     * @param mapId The map id
+     * @param data The map data
+     *
+     * @return The record
+     */
+    public static MapRecord of(int mapId, String data) {
+        return new MapRecord(mapId, "", data);
+    }
+}
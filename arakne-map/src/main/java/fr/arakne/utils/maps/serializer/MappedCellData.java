@@ -0,0 +1,44 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.common.value.qual.IntRange;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view of a cell stored into a {@link MapArchive}
+ * The raw cell data are read directly from the archive buffer
+ */
+final class MappedCellData extends AbstractRawCellData {
+    private final ByteBuffer buffer;
+    private final @NonNegative int offset;
+
+    MappedCellData(ByteBuffer buffer, @NonNegative int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    @Override
+    protected int data(@IntRange(from = 0, to = LENGTH - 1) int index) {
+        return buffer.get(offset + index);
+    }
+}
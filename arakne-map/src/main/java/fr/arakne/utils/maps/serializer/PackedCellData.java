@@ -0,0 +1,158 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+
+/**
+ * Flyweight {@link CellData} view over a {@link PackedMapData}
+ * All values are read from the packed map data
+ *
+ * The ground and layers views are created on their first access.
+ * They are immutable, so a concurrent first access can only create a redundant view.
+ */
+@SuppressWarnings("argument") // The cell id is checked by PackedMapData#cell()
+final class PackedCellData implements CellData {
+    private final PackedMapData data;
+    private final @NonNegative int id;
+
+    private @MonotonicNonNull GroundCellData ground;
+    private @MonotonicNonNull CellLayerData layer1;
+    private @MonotonicNonNull InteractiveObjectData layer2;
+
+    PackedCellData(PackedMapData data, @NonNegative int id) {
+        this.data = data;
+        this.id = id;
+    }
+
+    @Override
+    public boolean lineOfSight() {
+        return data.lineOfSight(id);
+    }
+
+    @Override
+    public CellMovement movement() {
+        return data.movement(id);
+    }
+
+    @Override
+    public boolean active() {
+        return data.active(id);
+    }
+
+    @Override
+    public GroundCellData ground() {
+        GroundCellData ground = this.ground;
+
+        if (ground == null) {
+            ground = new Ground();
+            this.ground = ground;
+        }
+
+        return ground;
+    }
+
+    @Override
+    public CellLayerData layer1() {
+        CellLayerData layer1 = this.layer1;
+
+        if (layer1 == null) {
+            layer1 = new FirstLayer();
+            this.layer1 = layer1;
+        }
+
+        return layer1;
+    }
+
+    @Override
+    public InteractiveObjectData layer2() {
+        InteractiveObjectData layer2 = this.layer2;
+
+        if (layer2 == null) {
+            layer2 = new SecondLayer();
+            this.layer2 = layer2;
+        }
+
+        return layer2;
+    }
+
+    private final class Ground implements GroundCellData {
+        @Override
+        public int level() {
+            return data.groundLevel(id);
+        }
+
+        @Override
+        public int slope() {
+            return data.groundSlope(id);
+        }
+
+        @Override
+        public int number() {
+            return data.groundNumber(id);
+        }
+
+        @Override
+        public int rotation() {
+            return data.groundRotation(id);
+        }
+
+        @Override
+        public boolean flip() {
+            return data.groundFlip(id);
+        }
+    }
+
+    private final class FirstLayer implements CellLayerData {
+        @Override
+        public int number() {
+            return data.layer1Number(id);
+        }
+
+        @Override
+        public int rotation() {
+            return data.layer1Rotation(id);
+        }
+
+        @Override
+        public boolean flip() {
+            return data.layer1Flip(id);
+        }
+    }
+
+    private final class SecondLayer implements InteractiveObjectData {
+        @Override
+        public boolean interactive() {
+            return data.layer2Interactive(id);
+        }
+
+        @Override
+        public int number() {
+            return data.layer2Number(id);
+        }
+
+        @Override
+        public boolean flip() {
+            return data.layer2Flip(id);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.checkerframework.checker.index.qual.IndexFor;
+import org.checkerframework.checker.index.qual.LengthOf;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.common.value.qual.ArrayLen;
+import org.checkerframework.common.value.qual.IntRange;
+import org.checkerframework.dataflow.qual.Pure;
+
+import java.util.Arrays;
+
+/**
+ * Packed representation of map cells data
+ * Each cell attribute is stored in its own primitive array, indexed by the cell id ("struct of arrays"),
+ * so a map costs 11 bytes per cell without any object per cell
+ *
+ * This representation should be preferred when a lot of maps are kept in memory.
+ * {@link CellData} views can be created using {@link PackedMapData#cell(int)} or {@link PackedMapData#cells()}.
+ * The views are created once, on the first call, and shared by the next calls.
+ *
+ * <pre>{@code
+ * final PackedMapData data = serializer.deserializePacked(mapData);
+ *
+ * data.walkable(15); // Check if the cell 15 is walkable
+ * data.layer2Interactive(15); // Check if the cell 15 has an interactive object
+ *
+ * // CellData[] compatible view
+ * final CellData[] cells = data.cells();
+ * }</pre>
+ *
+ * @see MapDataSerializer#deserializePacked(String)
+ */
+@SuppressWarnings({"array.access.unsafe.high", "array.access.unsafe.low", "return", "argument"}) // Cell ids are considered as valid, and values are stored by the setters
+public final class PackedMapData {
+    private static final int FLAG_ACTIVE = 1;
+    private static final int FLAG_LINE_OF_SIGHT = 2;
+    private static final int FLAG_GROUND_FLIP = 4;
+    private static final int FLAG_LAYER1_FLIP = 8;
+    private static final int FLAG_LAYER2_FLIP = 16;
+    private static final int FLAG_LAYER2_INTERACTIVE = 32;
+
+    /**
+     * Boolean attributes of the cell, as bit flags
+     */
+    private final byte[] flags;
+    private final byte[] movement;
+    private final byte[] groundLevel;
+    private final byte[] groundSlope;
+
+    /**
+     * Rotation of the ground on the two lower bits, and rotation of the layer 1 on the two next bits
+     */
+    private final byte[] rotations;
+    private final short[] groundNumber;
+    private final short[] layer1Number;
+    private final short[] layer2Number;
+
+    /**
+     * Cells views, created by the first call of cell() or cells()
+     * The views are immutable, so a concurrent first call can only create a redundant array
+     */
+    private volatile CellData @MonotonicNonNull [] views;
+
+    /**
+     * Create an empty map data
+     * Cells must be filled using {@link PackedMapData#set(int, byte[])}
+     *
+     * @param size Number of cells
+     */
+    PackedMapData(@NonNegative int size) {
+        this.flags = new byte[size];
+        this.movement = new byte[size];
+        this.groundLevel = new byte[size];
+        this.groundSlope = new byte[size];
+        this.rotations = new byte[size];
+        this.groundNumber = new short[size];
+        this.layer1Number = new short[size];
+        this.layer2Number = new short[size];
+    }
+
+    /**
+     * Get the number of cells
+     *
+     * @return The map size
+     */
+    @Pure
+    public @LengthOf("this") int size() {
+        return flags.length;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return true if the cell is active
+     * @see CellData#active()
+     */
+    @Pure
+    public boolean active(@IndexFor("this") int cellId) {
+        return (flags[cellId] & FLAG_ACTIVE) != 0;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return false if the cell blocks the line of sight
+     * @see CellData#lineOfSight()
+     */
+    @Pure
+    public boolean lineOfSight(@IndexFor("this") int cellId) {
+        return (flags[cellId] & FLAG_LINE_OF_SIGHT) != 0;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The cell movement
+     * @see CellData#movement()
+     */
+    @Pure
+    public CellMovement movement(@IndexFor("this") int cellId) {
+        return CellMovement.byValue(movement[cellId]);
+    }
+
+    /**
+     * Check if the cell is walkable
+     * This is equivalent to {@code active(cellId) && movement(cellId).walkable()}
+     *
+     * @param cellId The cell id
+     * @return true if the cell is walkable
+     */
+    @Pure
+    public boolean walkable(@IndexFor("this") int cellId) {
+        return active(cellId) && movement[cellId] > 1;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The ground elevation level
+     * @see GroundCellData#level()
+     */
+    @Pure
+    public @IntRange(from = 0, to = 15) int groundLevel(@IndexFor("this") int cellId) {
+        return groundLevel[cellId];
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The ground slope
+     * @see GroundCellData#slope()
+     */
+    @Pure
+    public @IntRange(from = 0, to = 15) int groundSlope(@IndexFor("this") int cellId) {
+        return groundSlope[cellId];
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The ground object number
+     * @see GroundCellData#number()
+     */
+    @Pure
+    public int groundNumber(@IndexFor("this") int cellId) {
+        return groundNumber[cellId];
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The ground rotation
+     * @see GroundCellData#rotation()
+     */
+    @Pure
+    public int groundRotation(@IndexFor("this") int cellId) {
+        return rotations[cellId] & 3;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return true if the ground is flipped
+     * @see GroundCellData#flip()
+     */
+    @Pure
+    public boolean groundFlip(@IndexFor("this") int cellId) {
+        return (flags[cellId] & FLAG_GROUND_FLIP) != 0;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The layer 1 object number
+     * @see CellData#layer1()
+     */
+    @Pure
+    public int layer1Number(@IndexFor("this") int cellId) {
+        return layer1Number[cellId];
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The layer 1 rotation
+     * @see CellData#layer1()
+     */
+    @Pure
+    public int layer1Rotation(@IndexFor("this") int cellId) {
+        return (rotations[cellId] >> 2) & 3;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return true if the layer 1 is flipped
+     * @see CellData#layer1()
+     */
+    @Pure
+    public boolean layer1Flip(@IndexFor("this") int cellId) {
+        return (flags[cellId] & FLAG_LAYER1_FLIP) != 0;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return The layer 2 object number
+     * @see CellData#layer2()
+     */
+    @Pure
+    public int layer2Number(@IndexFor("this") int cellId) {
+        return layer2Number[cellId];
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return true if the layer 2 is flipped
+     * @see CellData#layer2()
+     */
+    @Pure
+    public boolean layer2Flip(@IndexFor("this") int cellId) {
+        return (flags[cellId] & FLAG_LAYER2_FLIP) != 0;
+    }
+
+    /**
+     * @param cellId The cell id
+     * @return true if the layer 2 contains an interactive object
+     * @see InteractiveObjectData#interactive()
+     */
+    @Pure
+    public boolean layer2Interactive(@IndexFor("this") int cellId) {
+        return (flags[cellId] & FLAG_LAYER2_INTERACTIVE) != 0;
+    }
+
+    /**
+     * Get a {@link CellData} view of a cell
+     * The view do not copy the data : it reads directly on this object
+     *
+     * @param cellId The cell id
+     *
+     * @return The cell view
+     */
+    public CellData cell(@IndexFor("this") int cellId) {
+        return views()[cellId];
+    }
+
+    /**
+     * Get {@link CellData} views of all cells
+     * Note: a new array is created on each call, but the views are shared
+     *
+     * @return The cells views, indexed by cell id
+     */
+    public CellData[] cells() {
+        final CellData[] views = views();
+
+        return Arrays.copyOf(views, views.length);
+    }
+
+    /**
+     * Compute the cells bitsets of the map
+     * Note: the bitsets are computed on each call, so the result should be kept with the map
+     *
+     * @return The bitsets
+     *
+     * @see CellBitSets
+     */
+    public CellBitSets bitSets() {
+        return CellBitSets.of(this);
+    }
+
+    /**
+     * Pack cells data
+     *
+     * @param cells Cells to pack
+     *
+     * @return The packed map data
+     */
+    public static PackedMapData of(CellData[] cells) {
+        final PackedMapData data = new PackedMapData(cells.length);
+
+        for (int i = 0; i < cells.length; ++i) {
+            data.set(i, cells[i]);
+        }
+
+        return data;
+    }
+
+    /**
+     * Decode the cell from its raw data
+     *
+     * @param cellId The cell id
+     * @param data The cell data. Each byte is the Base64 value of the cell data character
+     *
+     * @see fr.arakne.utils.encoding.Base64#toBytes(String)
+     */
+    void set(@NonNegative int cellId, @IntRange(from = 0, to = 63) byte @ArrayLen(10) [] data) {
+        int cellFlags = ((data[0] & 32) >> 5) * FLAG_ACTIVE;
+
+        cellFlags |= (data[0] & 1) * FLAG_LINE_OF_SIGHT;
+        cellFlags |= ((data[4] & 2) >> 1) * FLAG_GROUND_FLIP;
+        cellFlags |= ((data[7] & 8) >> 3) * FLAG_LAYER1_FLIP;
+        cellFlags |= ((data[7] & 4) >> 2) * FLAG_LAYER2_FLIP;
+        cellFlags |= ((data[7] & 2) >> 1) * FLAG_LAYER2_INTERACTIVE;
+
+        flags[cellId] = (byte) cellFlags;
+        movement[cellId] = (byte) ((data[2] & 56) >> 3);
+        groundLevel[cellId] = (byte) (data[1] & 15);
+        groundSlope[cellId] = (byte) ((data[4] & 60) >> 2);
+        rotations[cellId] = (byte) (((data[1] & 48) >> 4) + ((data[7] & 48) >> 2));
+        groundNumber[cellId] = (short) (((data[0] & 24) << 6) + ((data[2] & 7) << 6) + data[3]);
+        layer1Number[cellId] = (short) (((data[0] & 4) << 11) + ((data[4] & 1) << 12) + (data[5] << 6) + data[6]);
+        layer2Number[cellId] = (short) (((data[0] & 2) << 12) + ((data[7] & 1) << 12) + (data[8] << 6) + data[9]);
+    }
+
+    /**
+     * Copy the cell data
+     *
+     * @param cellId The cell id
+     * @param cell The cell data to copy
+     */
+    private void set(@NonNegative int cellId, CellData cell) {
+        int cellFlags = 0;
+
+        cellFlags |= flag(cell.active(), FLAG_ACTIVE);
+        cellFlags |= flag(cell.lineOfSight(), FLAG_LINE_OF_SIGHT);
+        cellFlags |= flag(cell.ground().flip(), FLAG_GROUND_FLIP);
+        cellFlags |= flag(cell.layer1().flip(), FLAG_LAYER1_FLIP);
+        cellFlags |= flag(cell.layer2().flip(), FLAG_LAYER2_FLIP);
+        cellFlags |= flag(cell.layer2().interactive(), FLAG_LAYER2_INTERACTIVE);
+
+        flags[cellId] = (byte) cellFlags;
+        movement[cellId] = (byte) cell.movement().ordinal();
+        groundLevel[cellId] = (byte) (cell.ground().level() & 15);
+        groundSlope[cellId] = (byte) (cell.ground().slope() & 15);
+        rotations[cellId] = (byte) ((cell.ground().rotation() & 3) + ((cell.layer1().rotation() & 3) << 2));
+        groundNumber[cellId] = (short) cell.ground().number();
+        layer1Number[cellId] = (short) cell.layer1().number();
+        layer2Number[cellId] = (short) cell.layer2().number();
+    }
+
+    /**
+     * Get the cells views, and create them if not yet done
+     */
+    private CellData[] views() {
+        CellData[] views = this.views;
+
+        if (views == null) {
+            final int size = size();
+
+            views = new CellData[size];
+
+            for (int i = 0; i < views.length; ++i) {
+                views[i] = new PackedCellData(this, i);
+            }
+
+            this.views = views;
+        }
+
+        return views;
+    }
+
+    private static int flag(boolean value, int flag) {
+        return value ? flag : 0;
+    }
+}
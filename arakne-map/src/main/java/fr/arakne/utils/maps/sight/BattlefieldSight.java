@@ -20,10 +20,16 @@
 package fr.arakne.utils.maps.sight;
 
 import fr.arakne.utils.maps.BattlefieldCell;
+import fr.arakne.utils.maps.CellBitSet;
 import fr.arakne.utils.maps.CoordinateCell;
+import fr.arakne.utils.maps.CoordinateIndex;
 import fr.arakne.utils.maps.DofusMap;
+import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.index.qual.Positive;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
 
 /**
  * Utility class for compute line of sights
@@ -44,10 +50,89 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 public final class BattlefieldSight<C extends @NonNull BattlefieldCell> {
     private final DofusMap<C> battlefield;
     private final @Positive int width; // store map width for optimisation
+    private final CoordinateIndex coordinates;
+    private final LineRasters rasters;
+    private final @Nullable CellBitSet sightBlocking;
+    private final @Nullable SightMatrix staticSight;
+
+    /**
+     * Visibility sweep of the precomputed sight blocking cells
+     * Lazily created, and only used when the bitset is provided
+     * When the static sight matrix is provided, only the dynamic sight blocking cells are used
+     */
+    private @Nullable VisibilitySweep sweep;
 
     public BattlefieldSight(DofusMap<C> battlefield) {
         this.battlefield = battlefield;
         this.width = battlefield.dimensions().width();
+        this.coordinates = CoordinateIndex.of(battlefield);
+        this.rasters = LineRasters.of(coordinates);
+        this.sightBlocking = null;
+        this.staticSight = null;
+    }
+
+    /**
+     * Create the battlefield sight using precomputed sight blocking cells
+     * The bitset is used instead of {@link BattlefieldCell#sightBlocking()}
+     *
+     * Usage:
+     * <pre>{@code
+     * final BattlefieldSight<FightCell> sight = new BattlefieldSight<>(map, bitSets.sightBlocking().or(fightersCells));
+     * }</pre>
+     *
+     * @param battlefield The battlefield
+     * @param sightBlocking The cells which block the line of sight. Must have the same size as the battlefield
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the battlefield size
+     *
+     * @see fr.arakne.utils.maps.serializer.CellBitSets#sightBlocking()
+     */
+    public BattlefieldSight(DofusMap<C> battlefield, CellBitSet sightBlocking) {
+        if (sightBlocking.size() != battlefield.size()) {
+            throw new IllegalArgumentException("The sight blocking cells set size must be the same as the battlefield size");
+        }
+
+        this.battlefield = battlefield;
+        this.width = battlefield.dimensions().width();
+        this.coordinates = CoordinateIndex.of(battlefield);
+        this.rasters = LineRasters.of(coordinates);
+        this.sightBlocking = sightBlocking;
+        this.staticSight = null;
+    }
+
+    /**
+     * Create the battlefield sight using a precomputed static sight matrix
+     * Only the dynamic sight blocking cells are checked on the line of sight when the static line of sight is free
+     *
+     * Usage:
+     * <pre>{@code
+     * final BattlefieldSight<FightCell> sight = new BattlefieldSight<>(map, template.sightMatrix(), fightersCells);
+     * }</pre>
+     *
+     * @param battlefield The battlefield
+     * @param staticSight The line of sight matrix of the map terrain. Must have the same size as the battlefield
+     * @param dynamicBlocking The cells which block the line of sight in addition to the matrix ones, like fighters. Must have the same size as the battlefield
+     *
+     * @throws IllegalArgumentException When the matrix or the bitset size do not match with the battlefield size
+     *
+     * @see SightMatrix#compute(CoordinateIndex, CellBitSet)
+     */
+    public BattlefieldSight(DofusMap<C> battlefield, SightMatrix staticSight, CellBitSet dynamicBlocking) {
+        this(battlefield, staticSight.blocking().or(dynamicBlocking), staticSight, dynamicBlocking);
+    }
+
+    private BattlefieldSight(DofusMap<C> battlefield, CellBitSet sightBlocking, SightMatrix staticSight, CellBitSet dynamicBlocking) {
+        if (staticSight.size() != battlefield.size() || dynamicBlocking.size() != battlefield.size()) {
+            throw new IllegalArgumentException("The sight matrix and the dynamic sight blocking cells set size must be the same as the battlefield size");
+        }
+
+        this.battlefield = battlefield;
+        this.width = battlefield.dimensions().width();
+        this.coordinates = CoordinateIndex.of(battlefield);
+        this.rasters = LineRasters.of(coordinates);
+        this.sightBlocking = sightBlocking;
+        this.staticSight = staticSight;
+        this.sweep = new VisibilitySweep(coordinates, dynamicBlocking);
     }
 
     /**
@@ -75,6 +160,110 @@ public final class BattlefieldSight<C extends @NonNull BattlefieldCell> {
         return between(source.coordinate(), target.coordinate());
     }
 
+    /**
+     * Check the line of sight from the source to many targets
+     * The results are written into the given buffer, at the same index as the target
+     *
+     * When the sight blocking cells are precomputed (using a bitset or a {@link SightMatrix}),
+     * the same visibility sweep is used for all the targets, and no object is allocated.
+     *
+     * Usage:
+     * <pre>{@code
+     * final int[] targets = candidates.stream().mapToInt(fighter -> fighter.cell().id()).toArray();
+     * final boolean[] visible = new boolean[targets.length];
+     *
+     * if (sight.visible(caster.cell(), targets, visible) > 0) {
+     *     // At least one target is visible
+     * }
+     * }</pre>
+     *
+     * @param source The source cell
+     * @param targetIds The target cells ids
+     * @param results The buffer to fill. Must be at least as large as the targets array
+     *
+     * @return The number of visible targets
+     *
+     * @throws IllegalArgumentException When the results buffer is too small
+     *
+     * @see BattlefieldSight#between(BattlefieldCell, BattlefieldCell)
+     */
+    @SuppressWarnings("argument") // Consider target ids as valid
+    public @NonNegative int visible(C source, int[] targetIds, boolean[] results) {
+        if (results.length < targetIds.length) {
+            throw new IllegalArgumentException("The results buffer is too small");
+        }
+
+        final VisibilitySweep sweep = sightBlocking != null ? sweep() : null;
+        int count = 0;
+
+        for (int i = 0; i < targetIds.length; ++i) {
+            final boolean visible = sweep != null
+                ? visible(sweep, source.id(), targetIds[i])
+                : between(source, battlefield.get(targetIds[i]))
+            ;
+
+            results[i] = visible;
+
+            if (visible) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Check the line of sight from the source to many targets, using bitsets
+     * The visible targets are written into the words buffer, using the same layout as {@link CellBitSet#toLongArray()}
+     *
+     * Usage:
+     * <pre>{@code
+     * final long[] visible = new long[enemiesCells.wordsCount()];
+     *
+     * sight.visible(caster.cell(), enemiesCells, visible);
+     * final CellBitSet targets = CellBitSet.of(map.size(), visible);
+     * }</pre>
+     *
+     * @param source The source cell
+     * @param targets The target cells. Must have the same size as the battlefield
+     * @param results The words to fill. Must contain at least {@link CellBitSet#wordsCount()} words. Other words are not modified.
+     *
+     * @return The number of visible targets
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the battlefield size, or when the results buffer is too small
+     *
+     * @see BattlefieldSight#visible(BattlefieldCell, int[], boolean[])
+     */
+    @SuppressWarnings({"argument", "array.access.unsafe.high.range"}) // nextSetBit() returns valid cell ids, and the results size is checked before
+    public @NonNegative int visible(C source, CellBitSet targets, long[] results) {
+        if (targets.size() != battlefield.size() || results.length < targets.wordsCount()) {
+            throw new IllegalArgumentException("The targets set size must be the same as the battlefield size, and the results buffer must contain all words");
+        }
+
+        final VisibilitySweep sweep = sightBlocking != null ? sweep() : null;
+        int count = 0;
+
+        Arrays.fill(results, 0, targets.wordsCount(), 0L);
+
+        for (int target = targets.nextSetBit(0); target != CellBitSet.NO_CELL; target = targets.nextSetBit(target + 1)) {
+            if (sweep != null ? visible(sweep, source.id(), target) : between(source, battlefield.get(target))) {
+                results[target / Long.SIZE] |= 1L << target;
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the coordinate index of the battlefield
+     *
+     * @return The shared coordinate index
+     */
+    public CoordinateIndex coordinates() {
+        return coordinates;
+    }
+
     /**
      * Check the line of sight between those two cells
      *
@@ -143,11 +332,103 @@ public final class BattlefieldSight<C extends @NonNull BattlefieldCell> {
         return new CellSight<>(this, cell.coordinate());
     }
 
+    /**
+     * Check if the cell block the line of sight, using the precomputed bitset if provided
+     */
+    boolean sightBlocking(C cell) {
+        final CellBitSet sightBlocking = this.sightBlocking;
+
+        return sightBlocking != null ? sightBlocking.get(cell.id()) : cell.sightBlocking();
+    }
+
+    /**
+     * Get the static sight matrix
+     *
+     * @return The matrix, or null if not provided
+     */
+    @Nullable SightMatrix staticSight() {
+        return staticSight;
+    }
+
+    /**
+     * Compute all the cells visible from the source
+     * The static sight matrix is used if provided
+     */
+    CellBitSet visibleCells(@NonNegative int source) {
+        final SightMatrix staticSight = this.staticSight;
+        final CellBitSet visible = sweep().from(source);
+
+        return staticSight != null ? staticSight.from(source).and(visible) : visible;
+    }
+
+    /**
+     * Check the line of sight between two cells ids, using the visibility sweep
+     * The sight blocking cells should be precomputed, otherwise a new sweep is created on each call
+     */
+    boolean visible(@NonNegative int source, @NonNegative int target) {
+        return visible(sweep(), source, target);
+    }
+
+    /**
+     * Check the line of sight using the visibility sweep of the precomputed sight blocking cells, and the static sight matrix if provided
+     */
+    private boolean visible(VisibilitySweep sweep, @NonNegative int source, @NonNegative int target) {
+        final SightMatrix staticSight = this.staticSight;
+
+        return (staticSight == null || staticSight.visible(source, target)) && sweep.visible(source, target);
+    }
+
+    /**
+     * Get the visibility sweep for the current sight blocking cells
+     * When the sight blocking cells are not precomputed, a new sweep is created from the current cells state
+     * When the static sight matrix is provided, the sweep only contains the dynamic sight blocking cells
+     */
+    @SuppressWarnings("argument") // The bitset is created with the battlefield size
+    VisibilitySweep sweep() {
+        final CellBitSet sightBlocking = this.sightBlocking;
+
+        if (sightBlocking == null) {
+            return new VisibilitySweep(coordinates, CellBitSet.of(battlefield.size(), id -> battlefield.get(id).sightBlocking()));
+        }
+
+        VisibilitySweep sweep = this.sweep;
+
+        // The sweep is immutable, so a concurrent initialization is harmless
+        if (sweep == null) {
+            this.sweep = sweep = new VisibilitySweep(coordinates, sightBlocking);
+        }
+
+        return sweep;
+    }
+
+    /**
+     * Get the line rasters of the battlefield dimensions
+     */
+    LineRasters rasters() {
+        return rasters;
+    }
+
+    /**
+     * Get a cell by its id, computed from a line raster
+     * The cell id may be outside the battlefield, like the fallback of {@link BattlefieldSight#getCellByCoordinates(int, int)}
+     */
+    @SuppressWarnings("argument") // Consider the cell id as safe
+    C getCellById(int cellId) {
+        return battlefield.get(cellId);
+    }
+
     /**
      * Get a cell by its coordinates
      */
     @SuppressWarnings("argument") // Consider x and y as safe
     C getCellByCoordinates(int x, int y) {
+        final int cellId = coordinates.cellId(x, y);
+
+        if (cellId != CoordinateIndex.NO_CELL) {
+            return battlefield.get(cellId);
+        }
+
+        // Not a valid cell : keep the original formula
         // https://github.com/Emudofus/Dofus/blob/1.29/ank/battlefield/utils/Pathfinding.as#L550
         return battlefield.get(x * width + y * (width - 1));
     }
@@ -20,6 +20,7 @@
 package fr.arakne.utils.maps.sight;
 
 import fr.arakne.utils.maps.BattlefieldCell;
+import fr.arakne.utils.maps.CellBitSet;
 import fr.arakne.utils.maps.CoordinateCell;
 import fr.arakne.utils.maps.DofusMap;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -69,12 +70,42 @@ public final class CellSight<C extends @NonNull BattlefieldCell> {
             return true;
         }
 
-        final Iterator<C> sight = to(target);
+        final SightMatrix staticSight = battlefield.staticSight();
 
+        if (staticSight != null) {
+            final int sourceId = source.cell().id();
+            final int targetId = target.cell().id();
+
+            return staticSight.visible(sourceId, targetId) && battlefield.sweep().visible(sourceId, targetId);
+        }
+
+        final int[] raster = battlefield.rasters().get(target.x() - source.x(), target.y() - source.y());
+
+        if (raster == null) {
+            return isFree(to(target), target);
+        }
+
+        final int sourceId = source.cell().id();
+
+        for (int offset : raster) {
+            final C cell = battlefield.getCellById(sourceId + offset);
+
+            if (battlefield.sightBlocking(cell) && !cell.equals(target.cell())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check the cells of the line of sight iterator
+     */
+    private boolean isFree(Iterator<C> sight, CoordinateCell<C> target) {
         while (sight.hasNext()) {
             final C cell = sight.next();
 
-            if (cell.sightBlocking() && !cell.equals(target.cell())) {
+            if (battlefield.sightBlocking(cell) && !cell.equals(target.cell())) {
                 return false;
             }
         }
@@ -169,15 +200,34 @@ public final class CellSight<C extends @NonNull BattlefieldCell> {
      */
     public void forEach(BiConsumer<C, Boolean> cellViewConsumer) {
         final DofusMap<C> map = source.cell().map();
+        final CellBitSet visible = visibleCells();
         final int size = map.size();
 
         for (int id = 0; id < size; ++id) {
-            final C target = map.get(id);
-
-            cellViewConsumer.accept(target, isFree(target));
+            cellViewConsumer.accept(map.get(id), visible.get(id));
         }
     }
 
+    /**
+     * Compute all the cells with a free line of sight from the current cell, in a single pass
+     * The result is the same as calling {@link CellSight#isFree(BattlefieldCell)} on each cell, but without creating any cell object
+     *
+     * <pre>{@code
+     * final CellBitSet visible = fighter.cell().sight().visibleCells();
+     *
+     * if (visible.get(target.id())) {
+     *     // The target is visible
+     * }
+     * }</pre>
+     *
+     * @return The visible cells, indexed by cell id
+     *
+     * @see BattlefieldSight#BattlefieldSight(DofusMap, CellBitSet) For reuse the precomputation between calls
+     */
+    public CellBitSet visibleCells() {
+        return battlefield.visibleCells(source.cell().id());
+    }
+
     /**
      * @return Get all accessible cells from the current cell
      */
@@ -0,0 +1,278 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.sight;
+
+import fr.arakne.utils.maps.CoordinateIndex;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of the cells visited by the line of sight, stored as cell id offsets from the source cell
+ * The offsets are computed once for each vector (dx, dy), and shared between all maps with the same dimensions
+ *
+ * Because a cell id is always {@code x * width + y * (width - 1)}, even for coordinates outside the map,
+ * the cells of the line of sight are {@code source.id() + offset} for each offset of the raster.
+ *
+ * The rasters are computed with integer arithmetic, and visit the same cells as {@link SameXLineOfSightIterator}
+ * and {@link NotAlignedLineOfSightIterator}.
+ * When the line of sight crosses exactly the middle of a cell, the result of the iterators depends on the rounding
+ * of the source coordinates, so no raster is provided for those vectors, and the iterators must be used.
+ * This case only occurs when the slope dy / dx, as irreducible fraction p / q, has an odd p and an odd q greater than 1.
+ *
+ * This class is thread safe
+ */
+final class LineRasters {
+    private static volatile LineRasters[] instances = new LineRasters[0];
+
+    /**
+     * Marker for vectors without raster, because the cache cannot store null
+     */
+    private static final int[] NO_RASTER = new int[0];
+
+    private final CoordinateIndex coordinates;
+    private final @Positive int width;
+    private final @NonNegative int maxDx;
+    private final @NonNegative int maxDy;
+
+    /**
+     * Computed rasters, indexed by {@code (dx + maxDx) * (2 * maxDy + 1) + dy + maxDy}
+     */
+    private final AtomicReferenceArray<int @Nullable []> rasters;
+
+    private LineRasters(CoordinateIndex coordinates) {
+        this.coordinates = coordinates;
+        this.width = coordinates.width();
+
+        int minX = 0;
+        int maxX = 0;
+        int minY = 0;
+        int maxY = 0;
+
+        for (int id = 0; id < coordinates.size(); ++id) {
+            minX = Math.min(minX, coordinates.x(id));
+            maxX = Math.max(maxX, coordinates.x(id));
+            minY = Math.min(minY, coordinates.y(id));
+            maxY = Math.max(maxY, coordinates.y(id));
+        }
+
+        this.maxDx = Math.max(maxX - minX, 0);
+        this.maxDy = Math.max(maxY - minY, 0);
+        this.rasters = new AtomicReferenceArray<>((2 * maxDx + 1) * (2 * maxDy + 1));
+    }
+
+    /**
+     * Get the cell id offsets of the line of sight from a source to a target cell
+     * The source is not included, and the last offset is the target
+     *
+     * @param dx The X coordinate of the target, relative to the source
+     * @param dy The Y coordinate of the target, relative to the source
+     *
+     * @return The offsets, or null if the iterators must be used. The array must not be modified.
+     */
+    int @Nullable [] get(int dx, int dy) {
+        if (Math.abs(dx) > maxDx || Math.abs(dy) > maxDy) {
+            return compute(width, dx, dy);
+        }
+
+        final int index = (dx + maxDx) * (2 * maxDy + 1) + dy + maxDy;
+        int[] raster = rasters.get(index);
+
+        if (raster == null) {
+            raster = compute(width, dx, dy);
+            rasters.set(index, raster != null ? raster : NO_RASTER);
+        }
+
+        return raster != NO_RASTER ? raster : null;
+    }
+
+    /**
+     * Get the rasters of the map dimensions
+     * Instances are created once, and shared between all maps with same dimensions
+     *
+     * @param coordinates The coordinates of the map
+     *
+     * @return The shared instance
+     */
+    static LineRasters of(CoordinateIndex coordinates) {
+        final LineRasters rasters = find(instances, coordinates);
+
+        if (rasters != null) {
+            return rasters;
+        }
+
+        return create(coordinates);
+    }
+
+    /**
+     * Compute the raster of the line of sight, without cache
+     *
+     * @param width The map width
+     * @param dx The X coordinate of the target, relative to the source
+     * @param dy The Y coordinate of the target, relative to the source
+     *
+     * @return The offsets, or null if the raster depends on the source coordinates
+     */
+    static int @Nullable [] compute(@Positive int width, int dx, int dy) {
+        if (dx == 0) {
+            return sameX(width, dy);
+        }
+
+        if (dependsOnSource(Math.abs(dx), Math.abs(dy))) {
+            return null;
+        }
+
+        return notAligned(width, dx, dy);
+    }
+
+    /**
+     * Follow the line like {@link SameXLineOfSightIterator}
+     */
+    @SuppressWarnings("array.length.negative") // Absolute value is non negative
+    private static int[] sameX(@Positive int width, int dy) {
+        final int yDirection = dy < 0 ? -1 : 1;
+        final int[] raster = new int[Math.abs(dy)];
+
+        for (int i = 0; i < raster.length; ++i) {
+            raster[i] = (i + 1) * yDirection * (width - 1);
+        }
+
+        return raster;
+    }
+
+    /**
+     * Follow the line like {@link NotAlignedLineOfSightIterator}
+     * The Y value at the middle of each column is (2 * x + xDirection) * dy / (2 * dx), which is computed as exact fraction
+     */
+    @SuppressWarnings({"argument", "array.access.unsafe.high.range"}) // dx is not 0, and the raster is grown before writing
+    private static int[] notAligned(@Positive int width, int dx, int dy) {
+        final int xDirection = dx < 0 ? -1 : 1;
+        final int yDirection = dy < 0 ? -1 : 1;
+        // Denominator of the fraction, made positive
+        final int denominator = 2 * Math.abs(dx);
+
+        int[] raster = new int[Math.abs(dx) + Math.abs(dy) + 1];
+        int length = 0;
+
+        int currentX = 0;
+        int currentY = 0;
+        int numerator = (2 * currentX + xDirection) * dy * xDirection;
+        int lastY = lastY(numerator, denominator, yDirection);
+
+        while (currentX != dx || currentY != dy) {
+            currentY += yDirection;
+
+            // lastY is exceeded : increment the X value
+            if (currentY * yDirection > lastY * yDirection) {
+                currentX += xDirection;
+                currentY = nextY(numerator, denominator, yDirection);
+                numerator = (2 * currentX + xDirection) * dy * xDirection;
+                lastY = lastY(numerator, denominator, yDirection);
+            }
+
+            if (length == raster.length) {
+                raster = Arrays.copyOf(raster, length * 2);
+            }
+
+            raster[length++] = currentX * width + currentY * (width - 1);
+        }
+
+        return Arrays.copyOf(raster, length);
+    }
+
+    /**
+     * Check if the line of sight crosses the middle of a cell, i.e. if the Y value at the middle of a column is a half integer
+     */
+    private static boolean dependsOnSource(@NonNegative int dx, @NonNegative int dy) {
+        int a = dx;
+        int b = dy;
+
+        while (b != 0) {
+            final int remainder = a % b;
+
+            a = b;
+            b = remainder;
+        }
+
+        final int q = dx / a;
+        final int p = dy / a;
+
+        return q > 1 && q % 2 == 1 && p % 2 == 1;
+    }
+
+    /**
+     * Same as {@code Math.round(y)} for the positive direction, or {@code Math.ceil(y - 0.5)} for the negative one
+     */
+    private static int nextY(int numerator, @Positive int denominator, int yDirection) {
+        return yDirection > 0 ? round(numerator, denominator) : ceilMinusHalf(numerator, denominator);
+    }
+
+    /**
+     * Same as {@code Math.ceil(y - 0.5)} for the positive direction, or {@code Math.round(y)} for the negative one
+     */
+    private static int lastY(int numerator, @Positive int denominator, int yDirection) {
+        return yDirection > 0 ? ceilMinusHalf(numerator, denominator) : round(numerator, denominator);
+    }
+
+    /**
+     * Compute floor(numerator / denominator + 1 / 2), which is the definition of {@link Math#round(double)}
+     */
+    private static int round(int numerator, @Positive int denominator) {
+        return Math.floorDiv(2 * numerator + denominator, 2 * denominator);
+    }
+
+    /**
+     * Compute ceil(numerator / denominator - 1 / 2)
+     */
+    private static int ceilMinusHalf(int numerator, @Positive int denominator) {
+        return -Math.floorDiv(denominator - 2 * numerator, 2 * denominator);
+    }
+
+    @SuppressWarnings({"assignment", "array.access.unsafe.high"}) // Arrays.copyOf result is filled just after
+    private static synchronized LineRasters create(CoordinateIndex coordinates) {
+        final LineRasters[] current = instances;
+        final LineRasters existing = find(current, coordinates);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        final LineRasters rasters = new LineRasters(coordinates);
+        final LineRasters[] newInstances = Arrays.copyOf(current, current.length + 1);
+
+        newInstances[current.length] = rasters;
+        instances = newInstances;
+
+        return rasters;
+    }
+
+    private static @Nullable LineRasters find(LineRasters[] candidates, CoordinateIndex coordinates) {
+        for (LineRasters rasters : candidates) {
+            if (rasters.coordinates == coordinates) {
+                return rasters;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.sight;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.CoordinateIndex;
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Precomputed line of sight between all the cells of a map, for the static sight blocking cells (i.e. the map terrain)
+ *
+ * The matrix stores one bit per pair of cells, so about 28 KB for a map of 479 cells.
+ * The matrix is not symmetric : the line of sight drawn from the target may visit other cells than the one drawn from the source.
+ *
+ * The matrix can be shared between all the fights of the map, and only the dynamic blocking cells (i.e. fighters) are checked for each fight
+ *
+ * <pre>{@code
+ * // When loading the map
+ * final SightMatrix matrix = SightMatrix.compute(CoordinateIndex.of(map), bitSets.sightBlocking());
+ *
+ * // For each fight
+ * final BattlefieldSight<FightCell> sight = new BattlefieldSight<>(fight.map(), matrix, fightersCells);
+ * }</pre>
+ *
+ * This class is immutable, and can be shared between threads
+ *
+ * @see BattlefieldSight#BattlefieldSight(fr.arakne.utils.maps.DofusMap, SightMatrix, CellBitSet)
+ */
+public final class SightMatrix {
+    private final CellBitSet blocking;
+    private final @NonNegative int size;
+    private final @NonNegative int stride;
+
+    /**
+     * Visible cells of each source, stored on stride words starting at source * stride
+     */
+    private final long[] words;
+
+    private SightMatrix(CellBitSet blocking, @NonNegative int stride, long[] words) {
+        this.blocking = blocking;
+        this.size = blocking.size();
+        this.stride = stride;
+        this.words = words;
+    }
+
+    /**
+     * @return The number of cells of the map
+     */
+    public @NonNegative int size() {
+        return size;
+    }
+
+    /**
+     * Get the sight blocking cells used to compute the matrix
+     *
+     * @return The static sight blocking cells
+     */
+    public CellBitSet blocking() {
+        return blocking;
+    }
+
+    /**
+     * Check the line of sight between the two cells, considering only the static sight blocking cells
+     * The result is the same as {@link CellSight#isFree(fr.arakne.utils.maps.BattlefieldCell)}
+     *
+     * @param source The source cell id
+     * @param target The target cell id
+     *
+     * @return true if the target is visible
+     */
+    @SuppressWarnings("array.access.unsafe.high") // Consider cell ids as valid
+    public boolean visible(@NonNegative int source, @NonNegative int target) {
+        return (words[source * stride + target / Long.SIZE] & (1L << target)) != 0;
+    }
+
+    /**
+     * Get all the visible cells from the source, considering only the static sight blocking cells
+     *
+     * @param source The source cell id
+     *
+     * @return The visible cells, indexed by cell id
+     */
+    @SuppressWarnings("argument") // Consider cell id as valid
+    public CellBitSet from(@NonNegative int source) {
+        final long[] row = new long[stride];
+
+        System.arraycopy(words, source * stride, row, 0, stride);
+
+        return CellBitSet.of(size, row);
+    }
+
+    /**
+     * Compute the matrix on the current thread
+     *
+     * @param coordinates The coordinates of the map cells
+     * @param sightBlocking The static sight blocking cells. Must have the same size as the map
+     *
+     * @return The computed matrix
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the map size
+     *
+     * @see fr.arakne.utils.maps.serializer.CellBitSets#sightBlocking()
+     */
+    public static SightMatrix compute(CoordinateIndex coordinates, CellBitSet sightBlocking) {
+        final VisibilitySweep sweep = sweep(coordinates, sightBlocking);
+        final int stride = VisibilitySweep.wordsCount(sightBlocking.size());
+        final long[] words = new long[sightBlocking.size() * stride];
+
+        for (int source = 0; source < sightBlocking.size(); ++source) {
+            sweep.fill(source, words, source * stride);
+        }
+
+        return new SightMatrix(sightBlocking, stride, words);
+    }
+
+    /**
+     * Compute the matrix in parallel, using one worker per thread of the pool
+     * This method blocks until the matrix is computed
+     *
+     * <pre>{@code
+     * for (MapTemplate template : catalog) {
+     *     template.setSightMatrix(SightMatrix.compute(CoordinateIndex.of(template.width(), template.size()), template.cellBitSets().sightBlocking(), ForkJoinPool.commonPool()));
+     * }
+     * }</pre>
+     *
+     * @param coordinates The coordinates of the map cells
+     * @param sightBlocking The static sight blocking cells. Must have the same size as the map
+     * @param pool The pool to use
+     *
+     * @return The computed matrix
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the map size
+     */
+    @SuppressWarnings("array.length.negative") // Pool parallelism is always positive
+    public static SightMatrix compute(CoordinateIndex coordinates, CellBitSet sightBlocking, ForkJoinPool pool) {
+        final VisibilitySweep sweep = sweep(coordinates, sightBlocking);
+        final int stride = VisibilitySweep.wordsCount(sightBlocking.size());
+        final long[] words = new long[sightBlocking.size() * stride];
+        final AtomicInteger next = new AtomicInteger();
+        final CompletableFuture<?>[] tasks = new CompletableFuture<?>[Math.min(pool.getParallelism(), sightBlocking.size())];
+
+        for (int i = 0; i < tasks.length; ++i) {
+            tasks[i] = CompletableFuture.runAsync(() -> fill(sweep, words, stride, next), pool);
+        }
+
+        CompletableFuture.allOf(tasks).join();
+
+        return new SightMatrix(sightBlocking, stride, words);
+    }
+
+    /**
+     * Fill the rows until all sources are processed
+     * Each row is written by only one worker, and the join of the tasks publishes the words
+     */
+    @SuppressWarnings("argument") // The counter is positive
+    private static void fill(VisibilitySweep sweep, long[] words, @NonNegative int stride, AtomicInteger next) {
+        final int size = words.length / Math.max(stride, 1);
+
+        for (int source = next.getAndIncrement(); source < size; source = next.getAndIncrement()) {
+            sweep.fill(source, words, source * stride);
+        }
+    }
+
+    private static VisibilitySweep sweep(CoordinateIndex coordinates, CellBitSet sightBlocking) {
+        if (sightBlocking.size() != coordinates.size()) {
+            throw new IllegalArgumentException("The sight blocking cells set size must be the same as the map size");
+        }
+
+        return new VisibilitySweep(coordinates, sightBlocking);
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.sight;
+
+import fr.arakne.utils.maps.BattlefieldCell;
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.CoordinateIndex;
+import fr.arakne.utils.maps.DofusMap;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Line of sight of a battlefield with mutable sight blocking cells, like fighters, and a cache of the visible cells per source
+ *
+ * Each change of the blocking cells increments the version of the overlay.
+ * The cached results of an older version are not dropped : only the targets whose line of sight may cross
+ * a changed cell (i.e. the changed cell is in the rectangle between the source and the target) are computed again.
+ * Changing a cell which is already blocked by the static cells do not change the version.
+ *
+ * <pre>{@code
+ * final SightOverlay<FightCell> overlay = new SightOverlay<>(map, template.sightMatrix(), 32);
+ *
+ * fighters.forEach(fighter -> overlay.block(fighter.cell().id()));
+ *
+ * // During the AI turn, the results are computed once per source
+ * if (overlay.between(caster.cell().id(), target.cell().id())) {
+ *     // ...
+ * }
+ *
+ * // When a fighter moves, only the impacted lines are checked again
+ * overlay.move(from.id(), to.id());
+ * }</pre>
+ *
+ * All operations are synchronized
+ *
+ * @param <C> The battlefield cell type
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Journal indexes are computed modulo its size, and cell ids are valid
+public final class SightOverlay<C extends @NonNull BattlefieldCell> {
+    /**
+     * Number of changes kept for updating the cached results
+     * Results older than this number of changes are fully computed again
+     */
+    private static final int JOURNAL_SIZE = 64;
+
+    private final DofusMap<C> battlefield;
+    private final CoordinateIndex coordinates;
+    private final CellBitSet staticBlocking;
+    private final @Nullable SightMatrix staticSight;
+    private final Map<Integer, Entry> cache;
+
+    /**
+     * Changed cells, indexed by version modulo {@link SightOverlay#JOURNAL_SIZE}
+     */
+    private final @NonNegative int[] journal = new int[JOURNAL_SIZE];
+
+    private CellBitSet blocking;
+    private @NonNegative long version = 0;
+    private @Nullable BattlefieldSight<C> sight;
+
+    private @NonNegative long hits = 0;
+    private @NonNegative long misses = 0;
+    private @NonNegative long updates = 0;
+
+    /**
+     * Create the overlay using the static sight blocking cells
+     *
+     * @param battlefield The battlefield
+     * @param staticBlocking The cells which always block the line of sight. Must have the same size as the battlefield
+     * @param cacheSize The maximum number of cached sources
+     *
+     * @throws IllegalArgumentException When the bitset size do not match with the battlefield size
+     */
+    public SightOverlay(DofusMap<C> battlefield, CellBitSet staticBlocking, @Positive int cacheSize) {
+        this(battlefield, staticBlocking, null, cacheSize);
+    }
+
+    /**
+     * Create the overlay using the precomputed sight matrix of the battlefield
+     *
+     * @param battlefield The battlefield
+     * @param staticSight The line of sight matrix of the map terrain. Must have the same size as the battlefield
+     * @param cacheSize The maximum number of cached sources
+     *
+     * @throws IllegalArgumentException When the matrix size do not match with the battlefield size
+     */
+    public SightOverlay(DofusMap<C> battlefield, SightMatrix staticSight, @Positive int cacheSize) {
+        this(battlefield, staticSight.blocking(), staticSight, cacheSize);
+    }
+
+    private SightOverlay(DofusMap<C> battlefield, CellBitSet staticBlocking, @Nullable SightMatrix staticSight, @Positive int cacheSize) {
+        if (staticBlocking.size() != battlefield.size()) {
+            throw new IllegalArgumentException("The sight blocking cells set size must be the same as the battlefield size");
+        }
+
+        this.battlefield = battlefield;
+        this.coordinates = CoordinateIndex.of(battlefield);
+        this.staticBlocking = staticBlocking;
+        this.staticSight = staticSight;
+        this.blocking = CellBitSet.empty(battlefield.size());
+        this.cache = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Check if the cell is blocked by the overlay
+     * The static sight blocking cells are not considered
+     *
+     * @param cellId The cell id
+     *
+     * @return true if the cell has been blocked
+     */
+    public synchronized boolean blocked(@NonNegative int cellId) {
+        return blocking.get(cellId);
+    }
+
+    /**
+     * Get the cells blocked by the overlay
+     * The static sight blocking cells are not included
+     *
+     * @return The blocked cells
+     */
+    public synchronized CellBitSet blocking() {
+        return blocking;
+    }
+
+    /**
+     * Block the line of sight on the given cell
+     *
+     * @param cellId The cell id
+     */
+    public void block(@NonNegative int cellId) {
+        set(cellId, true);
+    }
+
+    /**
+     * Remove the cell from the blocked cells of the overlay
+     *
+     * @param cellId The cell id
+     */
+    public void unblock(@NonNegative int cellId) {
+        set(cellId, false);
+    }
+
+    /**
+     * Move a blocking cell, like a fighter
+     *
+     * @param from The previous cell id
+     * @param to The new cell id
+     */
+    public synchronized void move(@NonNegative int from, @NonNegative int to) {
+        set(from, false);
+        set(to, true);
+    }
+
+    /**
+     * Define if the cell blocks the line of sight
+     * The version is changed only if the line of sight is impacted
+     *
+     * @param cellId The cell id
+     * @param blocked true to block the line of sight
+     */
+    public synchronized void set(@NonNegative int cellId, boolean blocked) {
+        if (blocking.get(cellId) == blocked) {
+            return;
+        }
+
+        blocking = blocking.with(cellId, blocked);
+
+        if (staticBlocking.get(cellId)) {
+            return;
+        }
+
+        ++version;
+        journal[journalIndex(version)] = cellId;
+        sight = null;
+    }
+
+    /**
+     * Get the current version of the blocking cells
+     * The version is incremented on each change which impacts the line of sight
+     *
+     * @return The version number
+     */
+    public synchronized @NonNegative long version() {
+        return version;
+    }
+
+    /**
+     * Get the line of sight of the current blocking cells
+     * The returned instance is immutable, and is not modified by the next changes of the overlay
+     *
+     * @return The battlefield sight
+     */
+    public synchronized BattlefieldSight<C> sight() {
+        BattlefieldSight<C> sight = this.sight;
+
+        if (sight == null) {
+            final SightMatrix staticSight = this.staticSight;
+
+            this.sight = sight = staticSight != null
+                ? new BattlefieldSight<>(battlefield, staticSight, blocking)
+                : new BattlefieldSight<>(battlefield, staticBlocking.or(blocking))
+            ;
+        }
+
+        return sight;
+    }
+
+    /**
+     * Get all the visible cells from the source, using the cache
+     * The result is the same as {@link CellSight#visibleCells()} using the current blocking cells
+     *
+     * @param source The source cell id
+     *
+     * @return The visible cells
+     */
+    public synchronized CellBitSet visibleCells(@NonNegative int source) {
+        final Entry entry = cache.get(source);
+
+        if (entry != null && entry.version == version) {
+            ++hits;
+            return entry.visible;
+        }
+
+        final CellBitSet visible;
+
+        if (entry != null && version - entry.version <= JOURNAL_SIZE) {
+            ++updates;
+            visible = update(source, entry);
+        } else {
+            ++misses;
+            visible = sight().visibleCells(source);
+        }
+
+        cache.put(source, new Entry(version, visible));
+
+        return visible;
+    }
+
+    /**
+     * Check the line of sight between the two cells, using the cache
+     *
+     * @param source The source cell id
+     * @param target The target cell id
+     *
+     * @return true if the target is visible
+     *
+     * @see SightOverlay#visibleCells(int)
+     */
+    public boolean between(@NonNegative int source, @NonNegative int target) {
+        return visibleCells(source).get(target);
+    }
+
+    /**
+     * @return Number of results returned without any computation
+     */
+    public synchronized @NonNegative long hits() {
+        return hits;
+    }
+
+    /**
+     * @return Number of results fully computed
+     */
+    public synchronized @NonNegative long misses() {
+        return misses;
+    }
+
+    /**
+     * @return Number of results partially computed from an older version
+     */
+    public synchronized @NonNegative long updates() {
+        return updates;
+    }
+
+    /**
+     * Remove all the cached results
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Compute again the visibility of the targets impacted by the changes since the entry version
+     */
+    private CellBitSet update(@NonNegative int source, Entry entry) {
+        final BattlefieldSight<C> sight = sight();
+        final long[] words = entry.visible.toLongArray();
+        final int size = battlefield.size();
+
+        for (int target = 0; target < size; ++target) {
+            if (!crossesChanges(source, target, entry.version)) {
+                continue;
+            }
+
+            if (sight.visible(source, target)) {
+                words[target / Long.SIZE] |= 1L << target;
+            } else {
+                words[target / Long.SIZE] &= ~(1L << target);
+            }
+        }
+
+        return CellBitSet.of(size, words);
+    }
+
+    /**
+     * Check if a cell changed after the given version is in the rectangle between the source and the target
+     * The source cell never blocks its own line of sight, so its changes are ignored
+     */
+    private boolean crossesChanges(@NonNegative int source, @NonNegative int target, @NonNegative long since) {
+        final int sourceX = coordinates.x(source);
+        final int sourceY = coordinates.y(source);
+        final int targetX = coordinates.x(target);
+        final int targetY = coordinates.y(target);
+
+        for (long changeVersion = since + 1; changeVersion <= version; ++changeVersion) {
+            final int changed = journal[journalIndex(changeVersion)];
+
+            if (changed != source && between(coordinates.x(changed), sourceX, targetX) && between(coordinates.y(changed), sourceY, targetY)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean between(int value, int bound1, int bound2) {
+        return value >= Math.min(bound1, bound2) && value <= Math.max(bound1, bound2);
+    }
+
+    private static int journalIndex(@NonNegative long version) {
+        return (int) (version % JOURNAL_SIZE);
+    }
+
+    /**
+     * Cached visible cells, with the version used to compute them
+     */
+    private static final class Entry {
+        private final @NonNegative long version;
+        private final CellBitSet visible;
+
+        private Entry(@NonNegative long version, CellBitSet visible) {
+            this.version = version;
+            this.visible = visible;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.sight;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.CoordinateIndex;
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
+
+/**
+ * Compute the line of sight from a cell to all the cells of the map, using cell ids and a bitset of sight blocking cells
+ * The result is the same as calling {@link CellSight#isFree(fr.arakne.utils.maps.BattlefieldCell)} on each cell
+ *
+ * Algorithm :
+ * - Resolve the cell of each coordinate of the map bounding box, like {@link BattlefieldSight#getCellByCoordinates(int, int)}
+ * - Compute the prefix sum of the blocking cells on this grid
+ * - For each target, if there is no blocking cell (except the source and the target) in the rectangle between the source and the target,
+ *   the line of sight is free, because the line of sight never leave this rectangle
+ * - Otherwise, check the cells of the precomputed line raster (see {@link LineRasters})
+ * - If there is no raster for the line, follow the line of sight like {@link NotAlignedLineOfSightIterator}, without creating any object
+ *
+ * This class is immutable, and can be shared between threads
+ */
+@SuppressWarnings({"array.access.unsafe.low", "array.access.unsafe.high"}) // Coordinates are in the grid bounds
+final class VisibilitySweep {
+    private final CoordinateIndex coordinates;
+    private final CellBitSet blocking;
+    private final LineRasters rasters;
+    private final @Positive int width;
+    private final @NonNegative int size;
+
+    private final int minX;
+    private final int minY;
+    private final @Positive int columns;
+
+    /**
+     * Number of blocking cells in the rectangle [minX, x[ * [minY, y[, indexed by (x - minX) * (columns + 1) + y - minY
+     */
+    private final int[] blockers;
+
+    @SuppressWarnings("method.invocation") // computeBlockers() only uses the fields initialized before
+    VisibilitySweep(CoordinateIndex coordinates, CellBitSet blocking) {
+        this.coordinates = coordinates;
+        this.blocking = blocking;
+        this.rasters = LineRasters.of(coordinates);
+        this.width = coordinates.width();
+        this.size = coordinates.size();
+
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+
+        for (int id = 0; id < size; ++id) {
+            minX = Math.min(minX, coordinates.x(id));
+            maxX = Math.max(maxX, coordinates.x(id));
+            minY = Math.min(minY, coordinates.y(id));
+            maxY = Math.max(maxY, coordinates.y(id));
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = Math.max(maxY - minY + 1, 1);
+        this.blockers = computeBlockers(Math.max(maxX - minX + 1, 0));
+    }
+
+    /**
+     * Compute all the cells visible from the source
+     *
+     * @param source The source cell id
+     *
+     * @return The visible cells
+     */
+    CellBitSet from(@NonNegative int source) {
+        final long[] words = new long[wordsCount(size)];
+
+        fill(source, words, 0);
+
+        return CellBitSet.of(size, words);
+    }
+
+    /**
+     * Write the cells visible from the source into the words array
+     * The words must be cleared before
+     *
+     * @param source The source cell id
+     * @param words The words to fill
+     * @param offset The index of the first word to fill. There must be {@link VisibilitySweep#wordsCount(int)} words available from this offset
+     */
+    void fill(@NonNegative int source, long[] words, @NonNegative int offset) {
+        for (int target = 0; target < size; ++target) {
+            if (visible(source, target)) {
+                words[offset + target / Long.SIZE] |= 1L << target;
+            }
+        }
+    }
+
+    /**
+     * Check the line of sight between the two cells
+     *
+     * @param source The source cell id
+     * @param target The target cell id
+     *
+     * @return true if the target is visible
+     */
+    boolean visible(@NonNegative int source, @NonNegative int target) {
+        if (source == target) {
+            return true;
+        }
+
+        if (candidates(source, target) == 0) {
+            return true;
+        }
+
+        final int sourceX = coordinates.x(source);
+        final int sourceY = coordinates.y(source);
+        final int targetX = coordinates.x(target);
+        final int targetY = coordinates.y(target);
+        final int[] raster = rasters.get(targetX - sourceX, targetY - sourceY);
+
+        return raster != null
+            ? rasterFree(source, target, raster)
+            : notAlignedLineFree(sourceX, sourceY, targetX, targetY, target)
+        ;
+    }
+
+    /**
+     * Count the blocking cells which may be on the line of sight between the two cells
+     * The source and the target never block the line of sight, so they are not counted
+     *
+     * @param source The source cell id
+     * @param target The target cell id
+     *
+     * @return The number of blocking cells in the rectangle between the two cells. If 0, the line of sight is free
+     */
+    int candidates(@NonNegative int source, @NonNegative int target) {
+        return blockersBetween(coordinates.x(source), coordinates.y(source), coordinates.x(target), coordinates.y(target))
+            - (blocking.get(source) ? 1 : 0)
+            - (target != source && blocking.get(target) ? 1 : 0)
+        ;
+    }
+
+    /**
+     * Check the cells of the raster, from the source cell id
+     *
+     * @see LineRasters#get(int, int)
+     */
+    private boolean rasterFree(@NonNegative int source, @NonNegative int target, int[] raster) {
+        for (int offset : raster) {
+            if (blocks(source + offset, target)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Follow the line of sight like {@link NotAlignedLineOfSightIterator}
+     * The same floating point operations are performed, to ensure that the same cells are visited
+     */
+    private boolean notAlignedLineFree(int sourceX, int sourceY, int targetX, int targetY, @NonNegative int target) {
+        final int xDirection = sourceX > targetX ? -1 : 1;
+        final int yDirection = sourceY > targetY ? -1 : 1;
+        final double ySlope = (double) (targetY - sourceY) / (double) (targetX - sourceX);
+        final double yAtZero = sourceY - ySlope * sourceX;
+
+        int currentX = sourceX;
+        int currentY = sourceY;
+        double yAtCurrentX = (currentX + xDirection * 0.5) * ySlope + yAtZero;
+        int lastY = lastY(yAtCurrentX, yDirection);
+
+        while (currentX != targetX || currentY != targetY) {
+            currentY += yDirection;
+
+            // lastY is exceeded : increment the X value
+            if (currentY * yDirection > lastY * yDirection) {
+                currentX += xDirection;
+                currentY = nextY(yAtCurrentX, yDirection);
+                yAtCurrentX = (currentX + xDirection * 0.5) * ySlope + yAtZero;
+                lastY = lastY(yAtCurrentX, yDirection);
+            }
+
+            if (blocks(cellId(currentX, currentY), target)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if the cell on the given coordinates blocks the line of sight
+     * Cells ids outside the map are ignored
+     */
+    private boolean blocks(int cellId, @NonNegative int target) {
+        return cellId != target && cellId >= 0 && cellId < size && blocking.get(cellId);
+    }
+
+    private int cellId(int x, int y) {
+        final int cellId = coordinates.cellId(x, y);
+
+        // Not a valid cell : keep the original formula
+        return cellId != CoordinateIndex.NO_CELL ? cellId : x * width + y * (width - 1);
+    }
+
+    /**
+     * Count the blocking cells in the rectangle between the two coordinates (included)
+     */
+    private int blockersBetween(int x1, int y1, int x2, int y2) {
+        final int fromX = Math.min(x1, x2) - minX;
+        final int toX = Math.max(x1, x2) - minX + 1;
+        final int fromY = Math.min(y1, y2) - minY;
+        final int toY = Math.max(y1, y2) - minY + 1;
+        final int stride = columns + 1;
+
+        return blockers[toX * stride + toY] - blockers[fromX * stride + toY] - blockers[toX * stride + fromY] + blockers[fromX * stride + fromY];
+    }
+
+    private int[] computeBlockers(@NonNegative int rows) {
+        final int stride = columns + 1;
+        final int[] blockers = new int[(rows + 1) * stride];
+
+        for (int x = 0; x < rows; ++x) {
+            for (int y = 0; y < columns; ++y) {
+                final int cellId = cellId(x + minX, y + minY);
+                final int value = cellId >= 0 && cellId < size && blocking.get(cellId) ? 1 : 0;
+
+                blockers[(x + 1) * stride + y + 1] = value
+                    + blockers[x * stride + y + 1]
+                    + blockers[(x + 1) * stride + y]
+                    - blockers[x * stride + y]
+                ;
+            }
+        }
+
+        return blockers;
+    }
+
+    /**
+     * Get the number of words required to store one bit per cell
+     */
+    static @NonNegative int wordsCount(@NonNegative int size) {
+        return (size + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private static int nextY(double yAtCurrentX, int yDirection) {
+        return yDirection > 0 ? (int) Math.round(yAtCurrentX) : (int) Math.ceil(yAtCurrentX - 0.5);
+    }
+
+    private static int lastY(double yAtCurrentX, int yDirection) {
+        return yDirection > 0 ? (int) Math.ceil(yAtCurrentX - 0.5) : (int) Math.round(yAtCurrentX);
+    }
+}
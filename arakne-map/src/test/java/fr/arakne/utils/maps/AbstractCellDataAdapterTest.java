@@ -109,4 +109,14 @@ class AbstractCellDataAdapterTest {
         assertEquals(cell.hashCode(), map.get(123).hashCode());
         assertNotEquals(cell.hashCode(), map.get(321).hashCode());
     }
+
+    @Test
+    void coordinate() {
+        MyDofusCell cell = map.get(157);
+
+        assertSame(cell.coordinate(), cell.coordinate());
+        assertSame(cell, cell.coordinate().cell());
+        assertEquals(17, cell.coordinate().x());
+        assertEquals(-7, cell.coordinate().y());
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CellBitSetTest {
+    @Test
+    void ofPredicate() {
+        CellBitSet set = CellBitSet.of(479, id -> id % 3 == 0);
+
+        assertEquals(479, set.size());
+        assertEquals(8, set.wordsCount());
+        assertEquals(160, set.cardinality());
+        assertFalse(set.isEmpty());
+
+        for (int id = 0; id < 479; ++id) {
+            assertEquals(id % 3 == 0, set.get(id));
+        }
+    }
+
+    @Test
+    void empty() {
+        CellBitSet set = CellBitSet.empty(100);
+
+        assertEquals(100, set.size());
+        assertEquals(2, set.wordsCount());
+        assertEquals(0, set.cardinality());
+        assertTrue(set.isEmpty());
+        assertEquals(CellBitSet.NO_CELL, set.nextSetBit(0));
+        assertEquals("{}", set.toString());
+    }
+
+    @Test
+    void ofWords() {
+        CellBitSet set = CellBitSet.of(70, new long[] {5, -1L});
+
+        assertEquals(8, set.cardinality());
+        assertTrue(set.get(0));
+        assertFalse(set.get(1));
+        assertTrue(set.get(2));
+        assertTrue(set.get(69));
+        assertEquals(63, set.word(1));
+        assertArrayEquals(new long[] {5, 63}, set.toLongArray());
+
+        assertThrows(IllegalArgumentException.class, () -> CellBitSet.of(70, new long[1]));
+    }
+
+    @Test
+    @SuppressWarnings("array.access.unsafe.high.constant")
+    void toLongArrayShouldReturnACopy() {
+        CellBitSet set = CellBitSet.of(10, id -> true);
+        long[] words = set.toLongArray();
+
+        words[0] = 0;
+
+        assertEquals(10, set.cardinality());
+    }
+
+    @Test
+    void nextSetBit() {
+        CellBitSet set = CellBitSet.of(479, id -> id == 5 || id == 64 || id == 300);
+
+        assertEquals(5, set.nextSetBit(0));
+        assertEquals(5, set.nextSetBit(5));
+        assertEquals(64, set.nextSetBit(6));
+        assertEquals(300, set.nextSetBit(65));
+        assertEquals(CellBitSet.NO_CELL, set.nextSetBit(301));
+        assertEquals(CellBitSet.NO_CELL, set.nextSetBit(1000));
+    }
+
+    @Test
+    void forEach() {
+        CellBitSet set = CellBitSet.of(479, id -> id == 5 || id == 63 || id == 64 || id == 478);
+        List<Integer> ids = new ArrayList<>();
+
+        set.forEach(ids::add);
+
+        assertEquals(Arrays.asList(5, 63, 64, 478), ids);
+        assertEquals("{5, 63, 64, 478}", set.toString());
+    }
+
+    @Test
+    void and() {
+        CellBitSet a = CellBitSet.of(479, id -> id % 2 == 0);
+        CellBitSet b = CellBitSet.of(479, id -> id % 3 == 0);
+
+        assertEquals(CellBitSet.of(479, id -> id % 6 == 0), a.and(b));
+        assertEquals(240, a.cardinality());
+    }
+
+    @Test
+    void or() {
+        CellBitSet a = CellBitSet.of(479, id -> id % 2 == 0);
+        CellBitSet b = CellBitSet.of(479, id -> id % 3 == 0);
+
+        assertEquals(CellBitSet.of(479, id -> id % 2 == 0 || id % 3 == 0), a.or(b));
+    }
+
+    @Test
+    void andNot() {
+        CellBitSet a = CellBitSet.of(479, id -> id % 2 == 0);
+        CellBitSet b = CellBitSet.of(479, id -> id % 3 == 0);
+
+        assertEquals(CellBitSet.of(479, id -> id % 2 == 0 && id % 3 != 0), a.andNot(b));
+    }
+
+    @Test
+    void operationsWithDifferentSizeShouldFail() {
+        CellBitSet a = CellBitSet.empty(479);
+        CellBitSet b = CellBitSet.empty(400);
+
+        assertThrows(IllegalArgumentException.class, () -> a.and(b));
+        assertThrows(IllegalArgumentException.class, () -> a.or(b));
+        assertThrows(IllegalArgumentException.class, () -> a.andNot(b));
+    }
+
+    @Test
+    void not() {
+        CellBitSet set = CellBitSet.of(479, id -> id % 2 == 0).not();
+
+        assertEquals(CellBitSet.of(479, id -> id % 2 == 1), set);
+        assertEquals(239, set.cardinality());
+        assertEquals(479, CellBitSet.empty(479).not().cardinality());
+        assertEquals(128, CellBitSet.empty(128).not().cardinality());
+    }
+
+    @Test
+    void with() {
+        CellBitSet set = CellBitSet.empty(479);
+
+        CellBitSet added = set.with(150, true);
+
+        assertNotSame(set, added);
+        assertFalse(set.get(150));
+        assertTrue(added.get(150));
+        assertEquals(1, added.cardinality());
+
+        assertSame(added, added.with(150, true));
+        assertSame(set, set.with(150, false));
+        assertEquals(set, added.with(150, false));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> set.with(479, true));
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void equalsAndHashCode() {
+        CellBitSet set = CellBitSet.of(479, id -> id % 2 == 0);
+
+        assertEquals(set, set);
+        assertEquals(set, CellBitSet.of(479, id -> id % 2 == 0));
+        assertEquals(set.hashCode(), CellBitSet.of(479, id -> id % 2 == 0).hashCode());
+        assertNotEquals(set, CellBitSet.of(479, id -> id % 2 == 1));
+        assertNotEquals(CellBitSet.empty(479), CellBitSet.empty(478));
+        assertNotEquals(set, null);
+        assertNotEquals(set, new Object());
+    }
+}
@@ -29,6 +29,7 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings("initialization.field.uninitialized")
@@ -109,6 +110,14 @@ class CoordinateCellTest {
         assertEquals(Direction.NORTH_EAST, cell.directionTo(map.get(157)));
     }
 
+    @Test
+    void index() {
+        CoordinateCell<MyDofusCell> cell = new CoordinateCell<>(map.get(157));
+
+        assertSame(CoordinateIndex.of(map), cell.index());
+        assertEquals(cell, new CoordinateCell<>(map.get(157), CoordinateIndex.of(map)));
+    }
+
     @Test
     void distance() {
         CoordinateCell<MyDofusCell> cell = new CoordinateCell<>(map.get(157));
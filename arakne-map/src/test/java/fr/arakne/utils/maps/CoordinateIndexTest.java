@@ -0,0 +1,100 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps;
+
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import fr.arakne.utils.maps.constant.Direction;
+import fr.arakne.utils.maps.serializer.CellData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CoordinateIndexTest {
+    @Test
+    void ofShouldShareIndexForSameDimensions() {
+        CoordinateIndex index = CoordinateIndex.of(15, 479);
+
+        assertSame(index, CoordinateIndex.of(15, 479));
+        assertSame(index, CoordinateIndex.of(new MyDofusMap(new CellData[479])));
+        assertNotSame(index, CoordinateIndex.of(15, 400));
+        assertNotSame(index, CoordinateIndex.of(16, 479));
+
+        assertEquals(15, index.width());
+        assertEquals(479, index.size());
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void coordinatesShouldMatchCoordinateCell() {
+        MyDofusMap map = new MyDofusMap(new CellData[479]);
+        CoordinateIndex index = CoordinateIndex.of(map);
+
+        for (int id = 0; id < 479; ++id) {
+            CoordinateCell<MyDofusCell> cell = new CoordinateCell<>(map.get(id));
+
+            assertEquals(cell.x(), index.x(id));
+            assertEquals(cell.y(), index.y(id));
+            assertEquals(id, index.cellId(cell.x(), cell.y()));
+        }
+    }
+
+    @Test
+    void values() {
+        CoordinateIndex index = CoordinateIndex.of(15, 479);
+
+        assertEquals(0, index.x(0));
+        assertEquals(0, index.y(0));
+        assertEquals(17, index.x(157));
+        assertEquals(-7, index.y(157));
+        assertEquals(157, index.cellId(17, -7));
+    }
+
+    @Test
+    void cellIdNotFound() {
+        CoordinateIndex index = CoordinateIndex.of(15, 479);
+
+        assertEquals(CoordinateIndex.NO_CELL, index.cellId(-1, 0));
+        assertEquals(CoordinateIndex.NO_CELL, index.cellId(0, 5));
+        assertEquals(CoordinateIndex.NO_CELL, index.cellId(1000, 1000));
+        assertEquals(CoordinateIndex.NO_CELL, index.cellId(-1000, -1000));
+    }
+
+    @Test
+    void distance() {
+        CoordinateIndex index = CoordinateIndex.of(15, 479);
+
+        assertEquals(0, index.distance(157, 157));
+        assertEquals(5, index.distance(157, 227));
+        assertEquals(5, index.distance(227, 157));
+    }
+
+    @Test
+    void directionTo() {
+        CoordinateIndex index = CoordinateIndex.of(15, 479);
+
+        assertEquals(Direction.SOUTH_EAST, index.directionTo(157, 172));
+        assertEquals(Direction.NORTH_WEST, index.directionTo(172, 157));
+        assertEquals(Direction.SOUTH_WEST, index.directionTo(157, 171));
+        assertEquals(Direction.NORTH_EAST, index.directionTo(171, 157));
+    }
+}
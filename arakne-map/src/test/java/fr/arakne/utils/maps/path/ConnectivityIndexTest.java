@@ -0,0 +1,219 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import fr.arakne.utils.maps.constant.Direction;
+import fr.arakne.utils.maps.serializer.CellData;
+import org.checkerframework.common.value.qual.ArrayLen;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.field.uninitialized", "argument"})
+class ConnectivityIndexTest {
+    private @ArrayLen(479) MyDofusMap map;
+    private Decoder<MyDofusCell> decoder;
+    private CellBitSet walkable;
+    private ConnectivityIndex index;
+
+    @BeforeEach
+    @SuppressWarnings("assignment")
+    void setUp() {
+        map = MyDofusMap.parse("HhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhaae6HaaaHhaae60aaaHhaaeaaaaaHhaae6HaaaHhaaeaaaaaGhaaeaaa7oHhaae6HiaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6SHhgSe6HaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeaaaaaHhGaeaaa6IHhMSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa6THhGaeaaaaaHhGaeaaaaaHhMSe62aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgGhaaeaaa7AHhGaeaaaaaHhGaeaaaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhWaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaHhWae60aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeJgaaaHhaaeaaaaaHhaaeJgaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaa6IGhaaeaaa7hGhaaeaaa7iHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lGhaae8sa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7gGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWae62aaaGhaaeaaa7kGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lHhaaeaaaaaGhaaeaaa7nHhGaeaaaaaGhaaeaaa7lGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaGhaaeaaa7mHhGaeaaaaaGhaaeJga7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMTgJgaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGae8saaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMSeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhgTeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa7dHhaaeaaaaaHhaaeaaa6WHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaGhaaeaaa7yHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6XHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhMVgaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaa");
+        decoder = new Decoder<>(map);
+        walkable = CellBitSet.of(map.size(), id -> map.get(id).walkable());
+        index = ConnectivityIndex.of(decoder, walkable);
+    }
+
+    @Test
+    void of() {
+        assertEquals(479, index.size());
+        assertEquals(walkable, index.walkable());
+        assertEquals(1, index.count());
+
+        for (int id = 0; id < 479; ++id) {
+            assertEquals(walkable.get(id), index.walkable(id));
+            assertEquals(walkable.get(id), index.component(id) != ConnectivityIndex.NO_COMPONENT);
+        }
+    }
+
+    @Test
+    void ofWithInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> ConnectivityIndex.of(decoder, CellBitSet.empty(400)));
+    }
+
+    @Test
+    void connected() {
+        assertTrue(index.connected(336, 384));
+        assertTrue(index.connected(384, 336));
+        assertTrue(index.connected(123, 123));
+        assertFalse(index.connected(107, 225));
+    }
+
+    @Test
+    void connectedShouldMatchPathfinder() {
+        Pathfinder<MyDofusCell> pathfinder = decoder.pathfinder();
+
+        for (int source : new int[] {107, 169, 225, 336}) {
+            for (int target = 0; target < 479; ++target) {
+                assertEquals(hasPath(pathfinder, source, target), index.connected(source, target), "Invalid connectivity between " + source + " and " + target);
+            }
+        }
+    }
+
+    @Test
+    void connectedWithNotWalkableSource() {
+        int source = walkable.nextSetBit(0);
+
+        ConnectivityIndex blocked = ConnectivityIndex.of(decoder, walkable.with(source, false));
+
+        for (int target = 0; target < 479; ++target) {
+            assertEquals(index.connected(source, target), blocked.connected(source, target) || target == source);
+        }
+    }
+
+    @Test
+    void connectedWithNotWalkableTarget() {
+        int target = walkable.not().nextSetBit(0);
+
+        assertFalse(index.connected(336, target));
+    }
+
+    @Test
+    void blockAndUnblock() {
+        assertTrue(index.connected(336, 384));
+
+        assertTrue(index.block(356));
+        assertFalse(index.block(356));
+        assertFalse(index.walkable(356));
+        assertEquals(3, index.count());
+        assertFalse(index.connected(336, 384));
+
+        Pathfinder<MyDofusCell> pathfinder = decoder.pathfinder().walkablePredicate(cell -> cell.walkable() && cell.id() != 356);
+
+        for (int target = 0; target < 479; ++target) {
+            assertEquals(hasPath(pathfinder, 336, target), index.connected(336, target), "Invalid connectivity between 336 and " + target);
+        }
+
+        assertTrue(index.unblock(356));
+        assertFalse(index.unblock(356));
+        assertTrue(index.walkable(356));
+        assertTrue(index.connected(336, 384));
+        assertEquals(1, index.count());
+    }
+
+    @Test
+    void unblockNotWalkableCell() {
+        int cell = walkable.not().nextSetBit(0);
+
+        assertTrue(index.unblock(cell));
+        assertSameComponents(ConnectivityIndex.of(decoder, walkable.with(cell, true)), index);
+        assertTrue(index.block(cell));
+        assertSameComponents(ConnectivityIndex.of(decoder, walkable), index);
+    }
+
+    @Test
+    void incrementalUpdatesShouldMatchRebuiltIndex() {
+        Random random = new Random(42);
+        CellBitSet current = walkable;
+
+        for (int i = 0; i < 200; ++i) {
+            int cell = random.nextInt(479);
+
+            if (random.nextBoolean()) {
+                assertEquals(current.get(cell), index.block(cell));
+                current = current.with(cell, false);
+            } else {
+                assertEquals(!current.get(cell), index.unblock(cell));
+                current = current.with(cell, true);
+            }
+
+            if (i % 20 == 0) {
+                assertSameComponents(ConnectivityIndex.of(decoder, current), index);
+            }
+        }
+
+        assertSameComponents(ConnectivityIndex.of(decoder, current), index);
+    }
+
+    @Test
+    void withAllDirections() {
+        ConnectivityIndex all = ConnectivityIndex.of(decoder, walkable, Direction.values());
+        Pathfinder<MyDofusCell> pathfinder = decoder.pathfinder().directions(Direction.values());
+
+        assertTrue(all.count() <= index.count());
+
+        for (int target = 0; target < 479; ++target) {
+            assertEquals(hasPath(pathfinder, 169, target), all.connected(169, target));
+        }
+    }
+
+    @Test
+    void pathfinderShouldUseTheIndex() {
+        Pathfinder<MyDofusCell> pathfinder = decoder.pathfinder().connectivity(index);
+
+        assertThrows(PathException.class, () -> pathfinder.findPath(map.get(107), map.get(225)));
+        assertEquals(30, pathfinder.findPath(map.get(336), map.get(384)).size());
+
+        index.block(356);
+        assertThrows(PathException.class, () -> pathfinder.findPath(map.get(336), map.get(384)));
+
+        // The exploration is not performed when the target is not connected
+        PathfinderWorkspace workspace = new PathfinderWorkspace(map);
+        assertThrows(PathException.class, () -> pathfinder.findPath(map.get(107), map.get(225), workspace));
+        assertEquals(0, workspace.exploredCount());
+    }
+
+    @Test
+    void pathfinderWithInvalidIndexSize() {
+        MyDofusMap other = new MyDofusMap(new CellData[10]);
+
+        assertThrows(IllegalArgumentException.class, () -> decoder.pathfinder().connectivity(ConnectivityIndex.of(new Decoder<>(other), CellBitSet.empty(10))));
+    }
+
+    private boolean hasPath(Pathfinder<MyDofusCell> pathfinder, int source, int target) {
+        try {
+            pathfinder.findPath(map.get(source), map.get(target));
+            return true;
+        } catch (PathException e) {
+            return false;
+        }
+    }
+
+    private void assertSameComponents(ConnectivityIndex expected, ConnectivityIndex actual) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(expected.walkable(), actual.walkable());
+
+        for (int a = 0; a < 479; ++a) {
+            for (int b = a + 1; b < 479; b += 7) {
+                assertEquals(
+                    expected.walkable(a) && expected.component(a) == expected.component(b),
+                    actual.walkable(a) && actual.component(a) == actual.component(b)
+                );
+            }
+        }
+    }
+}
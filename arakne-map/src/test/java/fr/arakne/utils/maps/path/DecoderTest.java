@@ -27,12 +27,19 @@ import org.checkerframework.common.value.qual.MinLen;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings("initialization.field.uninitialized")
 class DecoderTest {
@@ -66,6 +73,80 @@ class DecoderTest {
         assertFalse(decoder.nextCellByDirection(map.get(0), Direction.WEST).isPresent());
     }
 
+    @Test
+    void neighbour() {
+        assertEquals(101, decoder.neighbour(100, Direction.EAST));
+        assertEquals(115, decoder.neighbour(100, Direction.SOUTH_EAST));
+        assertEquals(129, decoder.neighbour(100, Direction.SOUTH));
+        assertEquals(114, decoder.neighbour(100, Direction.SOUTH_WEST));
+        assertEquals(99, decoder.neighbour(100, Direction.WEST));
+        assertEquals(85, decoder.neighbour(100, Direction.NORTH_WEST));
+        assertEquals(71, decoder.neighbour(100, Direction.NORTH));
+        assertEquals(86, decoder.neighbour(100, Direction.NORTH_EAST));
+        assertEquals(0, decoder.neighbour(1, Direction.WEST));
+    }
+
+    @Test
+    void neighbourOutOfLimit() {
+        assertEquals(Decoder.NO_NEIGHBOUR, decoder.neighbour(470, Direction.SOUTH));
+        assertEquals(Decoder.NO_NEIGHBOUR, decoder.neighbour(478, Direction.EAST));
+        assertEquals(Decoder.NO_NEIGHBOUR, decoder.neighbour(0, Direction.WEST));
+        assertEquals(Decoder.NO_NEIGHBOUR, decoder.neighbour(5, Direction.NORTH));
+    }
+
+    @Test
+    void neighbourShouldMatchNextCellIncrement() {
+        for (int cell = 0; cell < map.size(); ++cell) {
+            for (Direction direction : Direction.values()) {
+                final int expected = cell + direction.nextCellIncrement(map.dimensions().width());
+
+                assertEquals(expected >= 0 && expected < map.size() ? expected : Decoder.NO_NEIGHBOUR, decoder.neighbour(cell, direction));
+            }
+        }
+    }
+
+    @Test
+    void neighbourConcurrentFirstCalls() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            for (int round = 0; round < 20; ++round) {
+                final Decoder<MyDofusCell> shared = new Decoder<>(map);
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<Boolean>> results = new ArrayList<>();
+
+                for (int i = 0; i < 8; ++i) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return matchesNextCellIncrement(shared);
+                    }));
+                }
+
+                start.countDown();
+
+                for (Future<Boolean> result : results) {
+                    assertTrue(result.get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private boolean matchesNextCellIncrement(Decoder<MyDofusCell> decoder) {
+        for (int cell = 0; cell < map.size(); ++cell) {
+            for (Direction direction : Direction.values()) {
+                final int expected = cell + direction.nextCellIncrement(map.dimensions().width());
+
+                if (decoder.neighbour(cell, direction) != (expected >= 0 && expected < map.size() ? expected : Decoder.NO_NEIGHBOUR)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
     @Test
     void decodePathInvalidBadLength() {
         assertThrows(PathException.class, () -> decoder.decode("abcd", map.get(123)), "Invalid path : bad length");
@@ -0,0 +1,222 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.common.value.qual.ArrayLen;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.field.uninitialized", "argument"})
+class IncrementalPathfinderTest {
+    private @ArrayLen(479) MyDofusMap map;
+    private Decoder<MyDofusCell> decoder;
+    private Pathfinder<MyDofusCell> pathfinder;
+
+    @BeforeEach
+    @SuppressWarnings("assignment")
+    void setUp() {
+        map = MyDofusMap.parse("HhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhaae6HaaaHhaae60aaaHhaaeaaaaaHhaae6HaaaHhaaeaaaaaGhaaeaaa7oHhaae6HiaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6SHhgSe6HaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeaaaaaHhGaeaaa6IHhMSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa6THhGaeaaaaaHhGaeaaaaaHhMSe62aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgGhaaeaaa7AHhGaeaaaaaHhGaeaaaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhWaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaHhWae60aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeJgaaaHhaaeaaaaaHhaaeJgaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaa6IGhaaeaaa7hGhaaeaaa7iHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lGhaae8sa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7gGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWae62aaaGhaaeaaa7kGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lHhaaeaaaaaGhaaeaaa7nHhGaeaaaaaGhaaeaaa7lGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaGhaaeaaa7mHhGaeaaaaaGhaaeJga7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMTgJgaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGae8saaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMSeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhgTeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa7dHhaaeaaaaaHhaaeaaa6WHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaGhaaeaaa7yHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6XHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhMVgaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaa");
+        decoder = new Decoder<>(map);
+        pathfinder = decoder.pathfinder();
+    }
+
+    @Test
+    void findPathShouldMatchPathfinder() {
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+
+        assertEquals(map.get(384), planner.target());
+
+        Path<MyDofusCell> path = planner.findPath(map.get(336));
+        Path<MyDofusCell> expected = pathfinder.findPath(map.get(336), map.get(384));
+
+        assertEquals(expected.size(), path.size());
+        assertEquals(30, path.size());
+        assertEquals(map.get(336), path.start());
+        assertEquals(Direction.EAST, path.first().direction());
+        assertEquals(map.get(384), path.target());
+        assertEquals(29, planner.cost(map.get(336)));
+        assertValidPath(path);
+    }
+
+    @Test
+    void movingSourceShouldMatchPathfinder() {
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+
+        for (int source = 0; source < 479; ++source) {
+            assertEquals(expectedCost(new HashSet<>(), source, 384), planner.cost(map.get(source)), "Invalid cost for " + source);
+        }
+    }
+
+    @Test
+    void sourceIsTarget() {
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+
+        Path<MyDofusCell> path = planner.findPath(map.get(384));
+
+        assertEquals(1, path.size());
+        assertEquals(map.get(384), path.start());
+        assertEquals(0, planner.cost(map.get(384)));
+    }
+
+    @Test
+    void notReachable() {
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(225));
+
+        assertEquals(IncrementalPathfinder.NOT_REACHABLE, planner.cost(map.get(107)));
+        assertThrows(PathException.class, () -> planner.findPath(map.get(107)));
+    }
+
+    @Test
+    void blockAndUnblock() {
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+
+        assertEquals(30, planner.findPath(map.get(336)).size());
+
+        planner.block(356);
+        assertTrue(planner.blocked(356));
+        assertEquals(IncrementalPathfinder.NOT_REACHABLE, planner.cost(map.get(336)));
+        assertThrows(PathException.class, () -> planner.findPath(map.get(336)));
+
+        planner.block(356);
+        assertTrue(planner.blocked(356));
+
+        planner.unblock(356);
+        assertFalse(planner.blocked(356));
+        assertEquals(30, planner.findPath(map.get(336)).size());
+
+        planner.unblock(356);
+        assertFalse(planner.blocked(356));
+    }
+
+    @Test
+    void randomChangesShouldMatchPathfinder() {
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+        Set<Integer> blocked = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100; ++i) {
+            final int cell = random.nextInt(479);
+            final int source = random.nextInt(479);
+
+            if (cell != 384 && blocked.add(cell)) {
+                planner.block(cell);
+            } else {
+                blocked.remove(cell);
+                planner.unblock(cell);
+            }
+
+            final int expected = expectedCost(blocked, source, 384);
+
+            assertEquals(expected, planner.cost(map.get(source)), "Invalid cost for " + source + " at iteration " + i);
+
+            if (expected != IncrementalPathfinder.NOT_REACHABLE) {
+                Path<MyDofusCell> path = planner.findPath(map.get(source));
+
+                assertEquals(expected + 1, path.size());
+                assertValidPath(path);
+                path.forEach(step -> assertTrue(step.cell().id() == source || !blocked.contains(step.cell().id())));
+            }
+        }
+    }
+
+    @Test
+    void shouldUsePathfinderRules() {
+        pathfinder.walkableCells(CellBitSet.of(479, id -> map.get(id).walkable() && id != 356));
+
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+
+        assertEquals(IncrementalPathfinder.NOT_REACHABLE, planner.cost(map.get(336)));
+    }
+
+    @Test
+    void withoutFirstCell() {
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder.addFirstCell(false), map.get(384));
+
+        Path<MyDofusCell> path = planner.findPath(map.get(336));
+
+        assertEquals(29, path.size());
+        assertNotEquals(map.get(336), path.start());
+        assertEquals(map.get(384), path.target());
+    }
+
+    @Test
+    void zeroWeightCellsShouldNotLoop() {
+        pathfinder.directions(Direction.restrictedDirections()).cellWeightFunction(cell -> 0);
+
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+        Path<MyDofusCell> path = planner.findPath(map.get(336));
+
+        assertEquals(0, planner.cost(map.get(336)));
+        assertEquals(map.get(336), path.start());
+        assertEquals(map.get(384), path.target());
+        assertValidPath(path);
+        assertEquals(path.size(), path.stream().map(step -> step.cell().id()).distinct().count());
+    }
+
+    @Test
+    void zeroWeightAreaShouldFollowCheapestPath() {
+        pathfinder.directions(Direction.restrictedDirections()).cellWeightFunction(cell -> cell.id() >= 330 && cell.id() <= 360 ? 0 : 1);
+
+        IncrementalPathfinder<MyDofusCell> planner = IncrementalPathfinder.of(pathfinder, map.get(384));
+
+        for (int source : new int[] {336, 337, 340, 345, 350, 355, 100, 200}) {
+            Path<MyDofusCell> path = planner.findPath(map.get(source));
+            int cost = 0;
+
+            for (int i = 1; i < path.size(); ++i) {
+                int cellId = path.get(i).cell().id();
+
+                cost += cellId >= 330 && cellId <= 360 ? 0 : 1;
+            }
+
+            assertEquals(map.get(384), path.target());
+            assertEquals(planner.cost(map.get(source)), cost);
+            assertValidPath(path);
+        }
+    }
+
+    private int expectedCost(Set<Integer> blocked, int source, int target) {
+        try {
+            return decoder.pathfinder()
+                .walkableCells(CellBitSet.of(479, id -> map.get(id).walkable() && !blocked.contains(id)))
+                .findPath(map.get(source), map.get(target))
+                .size() - 1
+            ;
+        } catch (PathException e) {
+            return IncrementalPathfinder.NOT_REACHABLE;
+        }
+    }
+
+    private void assertValidPath(Path<MyDofusCell> path) {
+        for (int i = 1; i < path.size(); ++i) {
+            assertEquals(path.get(i).cell().id(), decoder.neighbour(path.get(i - 1).cell().id(), path.get(i).direction()));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongHeapTest {
+    @Test
+    void pushAndPoll() {
+        LongHeap heap = new LongHeap(4);
+
+        assertTrue(heap.isEmpty());
+
+        heap.push(5);
+        heap.push(1);
+        heap.push(3);
+
+        assertFalse(heap.isEmpty());
+        assertEquals(1, heap.peek());
+        assertEquals(1, heap.poll());
+        assertEquals(3, heap.peek());
+        assertEquals(3, heap.poll());
+        assertEquals(5, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("array.access.unsafe.high")
+    void shouldGrowAndKeepOrder() {
+        LongHeap heap = new LongHeap(0);
+        Random random = new Random(42);
+        long[] values = new long[1000];
+
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = random.nextInt(10000);
+            heap.push(values[i]);
+        }
+
+        Arrays.sort(values);
+
+        for (long value : values) {
+            assertEquals(value, heap.poll());
+        }
+
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void clear() {
+        LongHeap heap = new LongHeap(4);
+
+        heap.push(5);
+        heap.push(1);
+        heap.clear();
+
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void entry() {
+        long entry = LongHeap.entry(15, 478);
+
+        assertEquals(15, LongHeap.cost(entry));
+        assertEquals(478, LongHeap.cellId(entry));
+
+        assertTrue(LongHeap.entry(1, 478) < LongHeap.entry(2, 0));
+        assertTrue(LongHeap.entry(1, 12) < LongHeap.entry(1, 13));
+    }
+}
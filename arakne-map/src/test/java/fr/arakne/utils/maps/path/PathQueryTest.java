@@ -0,0 +1,52 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("argument")
+class PathQueryTest {
+    @Test
+    void getters() {
+        MyDofusMap map = MyDofusMap.parse("HhaaeaaaaaHhGaeaaaaaHhGaeaaaaa");
+        PathQuery<MyDofusCell> query = new PathQuery<>(map.get(1), map.get(2));
+
+        assertEquals(map.get(1), query.source());
+        assertEquals(map.get(2), query.target());
+    }
+
+    @Test
+    void equalsAndHashCode() {
+        MyDofusMap map = MyDofusMap.parse("HhaaeaaaaaHhGaeaaaaaHhGaeaaaaa");
+        PathQuery<MyDofusCell> query = new PathQuery<>(map.get(1), map.get(2));
+
+        assertEquals(query, query);
+        assertEquals(query, new PathQuery<>(map.get(1), map.get(2)));
+        assertEquals(query.hashCode(), new PathQuery<>(map.get(1), map.get(2)).hashCode());
+        assertNotEquals(query, new PathQuery<>(map.get(2), map.get(1)));
+        assertNotEquals(query, new PathQuery<>(map.get(1), map.get(0)));
+        assertNotEquals(query, null);
+        assertNotEquals(query, new Object());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("argument")
+class PathResultsTest {
+    @Test
+    void results() {
+        MyDofusMap map = MyDofusMap.parse("HhaaeaaaaaHhGaeaaaaaHhGaeaaaaa");
+        Decoder<MyDofusCell> decoder = new Decoder<>(map);
+        Path<MyDofusCell> path = new Path<>(decoder);
+        PathException error = new PathException("error");
+
+        List<PathQuery<MyDofusCell>> queries = Arrays.asList(new PathQuery<>(map.get(1), map.get(2)), new PathQuery<>(map.get(0), map.get(2)));
+        List<@Nullable Path<MyDofusCell>> paths = Arrays.asList(path, null);
+        List<@Nullable RuntimeException> errors = Arrays.asList(null, error);
+
+        PathResults<MyDofusCell> results = new PathResults<>(queries, paths, errors);
+
+        assertEquals(2, results.size());
+        assertEquals(1, results.errorsCount());
+
+        assertEquals(queries.get(0), results.query(0));
+        assertTrue(results.found(0));
+        assertSame(path, results.get(0));
+        assertNull(results.error(0));
+
+        assertEquals(queries.get(1), results.query(1));
+        assertFalse(results.found(1));
+        assertThrows(NoSuchElementException.class, () -> results.get(1));
+        assertSame(error, results.error(1));
+    }
+}
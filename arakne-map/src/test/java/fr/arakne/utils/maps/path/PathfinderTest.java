@@ -19,6 +19,7 @@
 
 package fr.arakne.utils.maps.path;
 
+import fr.arakne.utils.maps.CellBitSet;
 import fr.arakne.utils.maps._test.MyDofusCell;
 import fr.arakne.utils.maps._test.MyDofusMap;
 import fr.arakne.utils.maps.constant.Direction;
@@ -28,6 +29,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -209,4 +211,211 @@ class PathfinderTest {
 
         assertThrows(PathException.class, () -> pathfinder.findPath(map.get(44), map.get(18)));
     }
+
+    @Test
+    void findPathWithWorkspace() {
+        PathfinderWorkspace workspace = new PathfinderWorkspace(map);
+
+        assertArrayEquals(
+            new int[] {336, 322, 307, 292, 277, 263, 249, 235, 221, 207, 193, 179, 165, 180, 195, 210, 196, 211, 226, 241, 256, 270, 284, 298, 313, 328, 342, 356, 370, 384},
+            pathfinder.findPath(map.get(336), map.get(384), workspace).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+
+        assertArrayEquals(
+            new int[] {169, 183, 168, 153, 139},
+            pathfinder.findPath(map.get(169), map.get(139), workspace).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+
+        assertThrows(PathException.class, () -> pathfinder.findPath(map.get(107), map.get(225), workspace));
+
+        assertArrayEquals(
+            new int[] {169, 183, 168, 153, 139},
+            pathfinder.findPath(map.get(169), map.get(139), workspace).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+    }
+
+    @Test
+    void findPathWithTooSmallWorkspace() {
+        assertThrows(IllegalArgumentException.class, () -> pathfinder.findPath(map.get(169), map.get(139), new PathfinderWorkspace(100)));
+    }
+
+    @Test
+    void findPathWithLargerWorkspace() {
+        assertArrayEquals(
+            new int[] {169, 183, 168, 153, 139},
+            pathfinder.findPath(map.get(169), map.get(139), new PathfinderWorkspace(1000)).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+    }
+
+    @Test
+    void workspacePool() {
+        PathfinderWorkspacePool pool = PathfinderWorkspacePool.bounded(1);
+        pathfinder.workspacePool(pool);
+
+        assertArrayEquals(
+            new int[] {169, 183, 168, 153, 139},
+            pathfinder.findPath(map.get(169), map.get(139)).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+        assertThrows(PathException.class, () -> pathfinder.findPath(map.get(107), map.get(225)));
+
+        pathfinder.workspacePool(PathfinderWorkspacePool.none());
+
+        assertArrayEquals(
+            new int[] {169, 183, 168, 153, 139},
+            pathfinder.findPath(map.get(169), map.get(139)).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+    }
+
+    @Test
+    void nestedSearchInWalkablePredicate() {
+        Pathfinder<MyDofusCell> inner = new Decoder<>(map).pathfinder();
+
+        Path<MyDofusCell> path = pathfinder
+            .walkablePredicate(cell -> cell.walkable() && inner.findPath(cell, map.get(139)).size() > 0)
+            .findPath(map.get(169), map.get(139))
+        ;
+
+        assertArrayEquals(
+            new int[] {169, 183, 168, 153, 139},
+            path.stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void withWalkableCells() {
+        CellBitSet walkable = CellBitSet.of(map.size(), id -> map.get(id).walkable());
+
+        assertArrayEquals(
+            new int[] {336, 322, 307, 292, 277, 263, 249, 235, 221, 207, 193, 179, 165, 180, 195, 210, 196, 211, 226, 241, 256, 270, 284, 298, 313, 328, 342, 356, 370, 384},
+            pathfinder.walkableCells(walkable).findPath(map.get(336), map.get(384)).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+
+        assertArrayEquals(
+            new int[] {169, 183, 197, 182, 167, 153, 139},
+            pathfinder.walkableCells(walkable.with(168, false)).findPath(map.get(169), map.get(139)).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+
+        assertThrows(PathException.class, () -> pathfinder.walkableCells(walkable.with(33, false)).findPath(map.get(44), map.get(18)));
+    }
+
+    @Test
+    void walkablePredicateShouldReplaceWalkableCells() {
+        pathfinder
+            .walkableCells(CellBitSet.empty(map.size()))
+            .walkablePredicate(cell -> cell.walkable() && cell.id() != 168)
+        ;
+
+        assertArrayEquals(
+            new int[] {169, 183, 197, 182, 167, 153, 139},
+            pathfinder.findPath(map.get(169), map.get(139)).stream().mapToInt(step -> step.cell().id()).toArray()
+        );
+    }
+
+    @Test
+    void walkableCellsWithInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> pathfinder.walkableCells(CellBitSet.empty(400)));
+    }
+
+    @Test
+    void budgetMaxCost() {
+        assertThrows(PathException.class, () -> pathfinder.budget(SearchBudget.unlimited().withMaxCost(28)).findPath(map.get(336), map.get(384)));
+        assertEquals(30, pathfinder.budget(SearchBudget.unlimited().withMaxCost(29)).findPath(map.get(336), map.get(384)).size());
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void budgetShouldReplaceExploredCellLimit() {
+        pathfinder.exploredCellLimit(10).budget(SearchBudget.unlimited());
+
+        assertEquals(30, pathfinder.findPath(map.get(336), map.get(384)).size());
+
+        pathfinder.budget(SearchBudget.unlimited().withMaxCost(100)).exploredCellLimit(10);
+
+        PathException e = assertThrows(PathException.class, () -> pathfinder.findPath(map.get(336), map.get(384)));
+        assertEquals("Limit exceeded for finding path", e.getMessage());
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void budgetTimeout() {
+        pathfinder.budget(SearchBudget.unlimited().withTimeout(1, TimeUnit.NANOSECONDS));
+
+        PathException e = assertThrows(PathException.class, () -> pathfinder.findPath(map.get(107), map.get(225)));
+        assertEquals("Time limit exceeded for finding path", e.getMessage());
+
+        pathfinder.budget(SearchBudget.unlimited().withTimeout(1, TimeUnit.MINUTES));
+        assertEquals(30, pathfinder.findPath(map.get(336), map.get(384)).size());
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void budgetCancellation() {
+        CancellationToken token = new CancellationToken();
+        pathfinder.budget(SearchBudget.unlimited().withCancellation(token));
+
+        assertEquals(30, pathfinder.findPath(map.get(336), map.get(384)).size());
+
+        token.cancel();
+
+        PathException e = assertThrows(PathException.class, () -> pathfinder.findPath(map.get(336), map.get(384)));
+        assertEquals("Path finding cancelled", e.getMessage());
+    }
+
+    @Test
+    void partialPathWithMaxCost() {
+        pathfinder.budget(SearchBudget.unlimited().withMaxCost(10).withPartialPath(true));
+
+        Path<MyDofusCell> path = pathfinder.findPath(map.get(336), map.get(384));
+
+        assertTrue(path.size() <= 11);
+        assertEquals(map.get(336), path.start());
+        assertEquals(closestReachableDistance(336, 384, 10), path.target().coordinate().distance(map.get(384).coordinate()));
+    }
+
+    @Test
+    void partialPathShouldReturnFullPathIfReachable() {
+        pathfinder.budget(SearchBudget.unlimited().withPartialPath(true));
+
+        assertEquals("afqhfcfevhcLbdshdebeadeQbfidga", pathfinder.findPath(map.get(336), map.get(384)).encode());
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void partialPathNotReachableShouldReturnClosestCell() {
+        pathfinder
+            .budget(SearchBudget.unlimited().withPartialPath(true))
+            .connectivity(ConnectivityIndex.of(new Decoder<>(map), CellBitSet.of(479, id -> map.get(id).walkable())))
+        ;
+
+        Path<MyDofusCell> path = pathfinder.findPath(map.get(107), map.get(225));
+
+        assertEquals(map.get(107), path.start());
+        assertNotEquals(map.get(225), path.target());
+        assertEquals(closestReachableDistance(107, 225, 1000), path.target().coordinate().distance(map.get(225).coordinate()));
+    }
+
+    @Test
+    void partialPathWithTimeout() {
+        pathfinder.budget(SearchBudget.unlimited().withTimeout(1, TimeUnit.NANOSECONDS).withPartialPath(true));
+
+        Path<MyDofusCell> path = pathfinder.findPath(map.get(107), map.get(225));
+
+        assertEquals(map.get(107), path.start());
+        assertNotEquals(map.get(225), path.target());
+    }
+
+    @SuppressWarnings("argument")
+    private int closestReachableDistance(int source, int target, int maxCost) {
+        ReachableCells<MyDofusCell> reachable = pathfinder.reachable(map.get(source), maxCost);
+        int minDistance = Integer.MAX_VALUE;
+
+        for (int cell = 0; cell < 479; ++cell) {
+            if (reachable.contains(cell)) {
+                minDistance = Math.min(minDistance, map.get(cell).coordinate().distance(map.get(target).coordinate()));
+            }
+        }
+
+        return minDistance;
+    }
 }
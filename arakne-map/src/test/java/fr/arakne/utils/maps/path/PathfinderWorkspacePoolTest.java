@@ -0,0 +1,113 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathfinderWorkspacePoolTest {
+    @Test
+    void threadLocal() throws ExecutionException, InterruptedException {
+        PathfinderWorkspacePool pool = PathfinderWorkspacePool.threadLocal();
+
+        assertSame(pool, PathfinderWorkspacePool.threadLocal());
+
+        PathfinderWorkspace workspace = pool.acquire(479);
+        assertTrue(workspace.size() >= 479);
+        pool.release(workspace);
+
+        assertSame(workspace, pool.acquire(479));
+        assertNotSame(workspace, pool.acquire(479)); // Nested acquire
+        pool.release(workspace);
+
+        assertSame(workspace, pool.acquire(100));
+        pool.release(workspace);
+
+        assertNotSame(workspace, CompletableFuture.supplyAsync(() -> pool.acquire(479)).get());
+    }
+
+    @Test
+    void threadLocalShouldKeepTheLargerWorkspace() {
+        PathfinderWorkspacePool pool = PathfinderWorkspacePool.threadLocal();
+
+        PathfinderWorkspace large = pool.acquire(2000);
+        PathfinderWorkspace small = new PathfinderWorkspace(10);
+
+        pool.release(large);
+        pool.release(small);
+
+        assertSame(large, pool.acquire(500));
+        pool.release(large);
+    }
+
+    @Test
+    void bounded() {
+        PathfinderWorkspacePool pool = PathfinderWorkspacePool.bounded(2);
+
+        PathfinderWorkspace w1 = pool.acquire(479);
+        PathfinderWorkspace w2 = pool.acquire(479);
+        PathfinderWorkspace w3 = pool.acquire(479);
+
+        assertEquals(479, w1.size());
+        assertNotSame(w1, w2);
+        assertNotSame(w2, w3);
+
+        pool.release(w1);
+        pool.release(w2);
+        pool.release(w3);
+
+        assertSame(w2, pool.acquire(479));
+        assertSame(w1, pool.acquire(479));
+        assertNotSame(w3, pool.acquire(479));
+    }
+
+    @Test
+    void boundedShouldSelectLargeEnoughWorkspace() {
+        PathfinderWorkspacePool pool = PathfinderWorkspacePool.bounded(2);
+
+        PathfinderWorkspace large = new PathfinderWorkspace(1000);
+        PathfinderWorkspace small = new PathfinderWorkspace(100);
+
+        pool.release(large);
+        pool.release(small);
+
+        assertSame(large, pool.acquire(479));
+        assertNotSame(small, pool.acquire(479));
+        assertSame(small, pool.acquire(50));
+    }
+
+    @Test
+    void none() {
+        PathfinderWorkspacePool pool = PathfinderWorkspacePool.none();
+
+        PathfinderWorkspace workspace = pool.acquire(479);
+        pool.release(workspace);
+
+        assertEquals(479, workspace.size());
+        assertNotSame(workspace, pool.acquire(479));
+    }
+}
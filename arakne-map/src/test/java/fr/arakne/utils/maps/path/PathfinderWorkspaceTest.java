@@ -0,0 +1,80 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps._test.MyDofusMap;
+import fr.arakne.utils.maps.serializer.CellData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PathfinderWorkspaceTest {
+    @Test
+    void size() {
+        assertEquals(479, new PathfinderWorkspace(479).size());
+        assertEquals(10, new PathfinderWorkspace(new MyDofusMap(new CellData[10])).size());
+    }
+
+    @Test
+    void supports() {
+        PathfinderWorkspace workspace = new PathfinderWorkspace(10);
+
+        assertTrue(workspace.supports(new MyDofusMap(new CellData[5])));
+        assertTrue(workspace.supports(new MyDofusMap(new CellData[10])));
+        assertFalse(workspace.supports(new MyDofusMap(new CellData[11])));
+    }
+
+    @Test
+    void resetShouldClearExploredCells() {
+        PathfinderWorkspace workspace = new PathfinderWorkspace(10);
+
+        workspace.reset();
+        workspace.explore(3);
+        workspace.explore(3);
+        workspace.explore(5);
+
+        assertTrue(workspace.explored(3));
+        assertEquals(2, workspace.exploredCount());
+
+        workspace.reset();
+
+        assertFalse(workspace.explored(3));
+        assertEquals(0, workspace.exploredCount());
+    }
+
+    @Test
+    void pushShouldOrderByHeuristicAndIgnoreWorseSteps() {
+        PathfinderWorkspace workspace = new PathfinderWorkspace(10);
+        workspace.reset();
+
+        workspace.push(1, 0, -1, 5, 2);
+        workspace.push(2, 0, -1, 1, 3);
+        workspace.push(1, 0, -1, 6, 2); // Ignored : higher cost
+        workspace.push(3, 0, -1, 2, 0);
+
+        assertTrue(workspace.hasMovements());
+        assertEquals(3, workspace.cell(workspace.poll()));
+        assertEquals(2, workspace.cell(workspace.poll()));
+        assertEquals(1, workspace.cell(workspace.poll()));
+        assertFalse(workspace.hasMovements());
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import org.checkerframework.common.value.qual.ArrayLen;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.field.uninitialized", "argument"})
+class PathfindingServiceTest {
+    private @ArrayLen(479) MyDofusMap map;
+    private Pathfinder<MyDofusCell> pathfinder;
+    private List<Runnable> tasks;
+
+    @BeforeEach
+    @SuppressWarnings("assignment")
+    void setUp() {
+        map = MyDofusMap.parse("HhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhaae6HaaaHhaae60aaaHhaaeaaaaaHhaae6HaaaHhaaeaaaaaGhaaeaaa7oHhaae6HiaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6SHhgSe6HaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeaaaaaHhGaeaaa6IHhMSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa6THhGaeaaaaaHhGaeaaaaaHhMSe62aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgGhaaeaaa7AHhGaeaaaaaHhGaeaaaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhWaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaHhWae60aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeJgaaaHhaaeaaaaaHhaaeJgaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaa6IGhaaeaaa7hGhaaeaaa7iHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lGhaae8sa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7gGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWae62aaaGhaaeaaa7kGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lHhaaeaaaaaGhaaeaaa7nHhGaeaaaaaGhaaeaaa7lGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaGhaaeaaa7mHhGaeaaaaaGhaaeJga7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMTgJgaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGae8saaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMSeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhgTeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa7dHhaaeaaaaaHhaaeaaa6WHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaGhaaeaaa7yHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6XHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhMVgaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaa");
+        pathfinder = new Decoder<>(map).pathfinder();
+        tasks = new ArrayList<>();
+    }
+
+    @Test
+    void findPathWithDedicatedThreads() throws Exception {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, 2, 10);
+
+        try {
+            Path<MyDofusCell> path = service.findPath(map.get(336), map.get(384)).get(5, TimeUnit.SECONDS);
+
+            assertEquals("afqhfcfevhcLbdshdebeadeQbfidga", path.encode());
+
+            ExecutionException e = assertThrows(ExecutionException.class, () -> service.findPath(map.get(107), map.get(225)).get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof PathException);
+            assertEquals(0, service.pending());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void findPathWithDefaultExecutor() throws Exception {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, 10);
+
+        try {
+            Path<MyDofusCell> path = service.findPath(map.get(336), map.get(384)).get(5, TimeUnit.SECONDS);
+
+            assertEquals("afqhfcfevhcLbdshdebeadeQbfidga", path.encode());
+            assertEquals(0, service.pending());
+
+            // Workspaces are shared between the virtual threads
+            assertEquals(virtualThreadsAvailable(), service.workspaces() != null);
+            assertNull(new PathfindingService<>(pathfinder, 2, 10).workspaces());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void errorShouldFailTheSearchAndReleaseIt() {
+        AtomicBoolean fail = new AtomicBoolean(true);
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(
+            pathfinder.walkablePredicate(cell -> {
+                if (fail.get()) {
+                    throw new AssertionError("my error");
+                }
+
+                return cell.walkable();
+            }),
+            task -> tasks.add(task),
+            10
+        );
+
+        CompletableFuture<Path<MyDofusCell>> future = service.findPath(map.get(336), map.get(384));
+        runTasks();
+
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof AssertionError);
+        assertEquals(0, service.pending());
+
+        // The failed search must not be merged with the next request
+        fail.set(false);
+        CompletableFuture<Path<MyDofusCell>> next = service.findPath(map.get(336), map.get(384));
+        assertEquals(1, tasks.size());
+        assertEquals(0, service.merged());
+        runTasks();
+
+        assertEquals("afqhfcfevhcLbdshdebeadeQbfidga", next.join().encode());
+    }
+
+    @Test
+    void identicalRequestsShouldBeMerged() throws Exception {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, task -> tasks.add(task), 10);
+
+        CompletableFuture<Path<MyDofusCell>> first = service.findPath(map.get(336), map.get(384));
+        CompletableFuture<Path<MyDofusCell>> second = service.findPath(map.get(336), map.get(384));
+        CompletableFuture<Path<MyDofusCell>> other = service.findPath(map.get(384), map.get(336));
+
+        assertNotSame(first, second);
+        assertEquals(2, tasks.size());
+        assertEquals(2, service.pending());
+        assertEquals(1, service.merged());
+        assertFalse(first.isDone());
+
+        runTasks();
+
+        assertEquals(0, service.pending());
+        assertSame(first.get(), second.get());
+        assertEquals(30, first.get().size());
+        assertEquals(map.get(336), other.get().target());
+    }
+
+    @Test
+    void cancelMergedRequestShouldNotImpactOthers() throws Exception {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, task -> tasks.add(task), 10);
+
+        CompletableFuture<Path<MyDofusCell>> first = service.findPath(map.get(336), map.get(384));
+        CompletableFuture<Path<MyDofusCell>> second = service.findPath(map.get(336), map.get(384));
+
+        second.cancel(false);
+        runTasks();
+
+        assertTrue(second.isCancelled());
+        assertEquals(30, first.get().size());
+    }
+
+    @Test
+    void requestAfterCompletionShouldPerformNewSearch() {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, task -> tasks.add(task), 10);
+
+        service.findPath(map.get(336), map.get(384));
+        runTasks();
+
+        service.findPath(map.get(336), map.get(384));
+        assertEquals(1, tasks.size());
+        assertEquals(1, service.pending());
+        assertEquals(0, service.merged());
+    }
+
+    @Test
+    void tooManyPendingSearches() throws Exception {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, task -> tasks.add(task), 1);
+
+        CompletableFuture<Path<MyDofusCell>> first = service.findPath(map.get(336), map.get(384));
+        CompletableFuture<Path<MyDofusCell>> rejected = service.findPath(map.get(384), map.get(336));
+        CompletableFuture<Path<MyDofusCell>> merged = service.findPath(map.get(336), map.get(384));
+
+        assertEquals(1, tasks.size());
+        assertEquals(1, service.pending());
+
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+        runTasks();
+
+        assertEquals(30, first.get().size());
+        assertEquals(30, merged.get().size());
+
+        // The slot is released : a new search can be performed
+        CompletableFuture<Path<MyDofusCell>> accepted = service.findPath(map.get(384), map.get(336));
+
+        assertEquals(1, tasks.size());
+        runTasks();
+        assertEquals(map.get(336), accepted.get().target());
+    }
+
+    @Test
+    void executorRejection() {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, task -> { throw new RejectedExecutionException("my error"); }, 10);
+
+        CompletableFuture<Path<MyDofusCell>> future = service.findPath(map.get(336), map.get(384));
+
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        assertEquals(0, service.pending());
+    }
+
+    @Test
+    void shutdownShouldNotStopExternalExecutor() {
+        PathfindingService<MyDofusCell> service = new PathfindingService<>(pathfinder, task -> tasks.add(task), 10);
+
+        service.shutdown();
+        service.findPath(map.get(336), map.get(384));
+
+        assertEquals(1, tasks.size());
+    }
+
+    @SuppressWarnings("dereference.of.nullable") // The factory never returns null
+    private boolean virtualThreadsAvailable() {
+        try {
+            ((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null)).shutdown();
+            return true;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private void runTasks() {
+        List<Runnable> toRun = new ArrayList<>(tasks);
+        tasks.clear();
+
+        toRun.forEach(task -> task.run());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import fr.arakne.utils.maps.constant.Direction;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.common.value.qual.ArrayLen;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.field.uninitialized", "argument"})
+class ReachableCellsTest {
+    private @ArrayLen(479) MyDofusMap map;
+    private Decoder<MyDofusCell> decoder;
+    private Pathfinder<MyDofusCell> pathfinder;
+
+    @BeforeEach
+    @SuppressWarnings("assignment")
+    void setUp() {
+        map = MyDofusMap.parse("HhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhaae6HaaaHhaae60aaaHhaaeaaaaaHhaae6HaaaHhaaeaaaaaGhaaeaaa7oHhaae6HiaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6SHhgSe6HaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeaaaaaHhGaeaaa6IHhMSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa6THhGaeaaaaaHhGaeaaaaaHhMSe62aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgGhaaeaaa7AHhGaeaaaaaHhGaeaaaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhWaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaHhWae60aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeJgaaaHhaaeaaaaaHhaaeJgaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaa6IGhaaeaaa7hGhaaeaaa7iHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lGhaae8sa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7gGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWae62aaaGhaaeaaa7kGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lHhaaeaaaaaGhaaeaaa7nHhGaeaaaaaGhaaeaaa7lGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaGhaaeaaa7mHhGaeaaaaaGhaaeJga7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMTgJgaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGae8saaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMSeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhgTeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa7dHhaaeaaaaaHhaaeaaa6WHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaGhaaeaaa7yHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6XHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhMVgaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaa");
+        decoder = new Decoder<>(map);
+        pathfinder = decoder.pathfinder();
+    }
+
+    @Test
+    void sourceOnly() {
+        ReachableCells<MyDofusCell> range = pathfinder.reachable(map.get(336), 0);
+
+        assertEquals(map.get(336), range.source());
+        assertEquals(1, range.count());
+        assertEquals(0, range.cost(336));
+        assertTrue(range.contains(336));
+        assertFalse(range.contains(322));
+        assertEquals(ReachableCells.NOT_REACHABLE, range.cost(322));
+        assertEquals(CellBitSet.empty(479).with(336, true), range.cells());
+
+        Path<MyDofusCell> path = range.pathTo(map.get(336));
+        assertEquals(1, path.size());
+        assertEquals(map.get(336), path.start());
+    }
+
+    @Test
+    void costsShouldMatchPathfinder() {
+        ReachableCells<MyDofusCell> range = pathfinder.reachable(map.get(336), 1000);
+
+        for (int target = 0; target < 479; ++target) {
+            Path<MyDofusCell> path = findPath(336, target);
+
+            if (path == null) {
+                assertFalse(range.contains(target));
+                assertEquals(ReachableCells.NOT_REACHABLE, range.cost(target));
+            } else {
+                assertTrue(range.contains(target));
+                assertEquals(path.size() - 1, range.cost(target), "Invalid cost for " + target);
+            }
+        }
+
+        assertEquals(range.cells().cardinality(), range.count());
+    }
+
+    @Test
+    void maxCost() {
+        ReachableCells<MyDofusCell> all = pathfinder.reachable(map.get(336), 1000);
+        ReachableCells<MyDofusCell> range = pathfinder.reachable(map.get(336), 5);
+
+        assertEquals(CellBitSet.of(479, id -> all.contains(id) && all.cost(id) <= 5), range.cells());
+
+        for (int cell = 0; cell < 479; ++cell) {
+            if (range.contains(cell)) {
+                assertEquals(all.cost(cell), range.cost(cell));
+            }
+        }
+    }
+
+    @Test
+    void pathTo() {
+        ReachableCells<MyDofusCell> range = pathfinder.reachable(map.get(336), 1000);
+
+        for (int target : new int[] {322, 384, 139, 169}) {
+            Path<MyDofusCell> path = range.pathTo(map.get(target));
+
+            assertEquals(map.get(336), path.start());
+            assertEquals(map.get(target), path.target());
+            assertEquals(range.cost(target) + 1, path.size());
+
+            for (int i = 1; i < path.size(); ++i) {
+                assertEquals(path.get(i).cell().id(), decoder.neighbour(path.get(i - 1).cell().id(), path.get(i).direction()));
+                assertTrue(path.get(i).cell().walkable());
+            }
+
+            // The encoded path should be decoded to the same path
+            assertEquals(path.encode(), decoder.decode(path.encode(), map.get(336)).encode());
+        }
+    }
+
+    @Test
+    void pathToNotReachable() {
+        ReachableCells<MyDofusCell> range = pathfinder.reachable(map.get(336), 3);
+
+        assertThrows(PathException.class, () -> range.pathTo(map.get(384)));
+        assertThrows(PathException.class, () -> pathfinder.reachable(map.get(107), 1000).pathTo(map.get(225)));
+    }
+
+    @Test
+    void withoutFirstCell() {
+        ReachableCells<MyDofusCell> range = pathfinder.addFirstCell(false).reachable(map.get(336), 1000);
+
+        assertEquals(range.cost(384), range.pathTo(map.get(384)).size());
+        assertNotEquals(map.get(336), range.pathTo(map.get(384)).start());
+    }
+
+    @Test
+    void withCellWeightFunction() {
+        ReachableCells<MyDofusCell> unit = pathfinder.reachable(map.get(336), 1000);
+        ReachableCells<MyDofusCell> weighted = pathfinder.cellWeightFunction(cell -> 3).reachable(map.get(336), 1000);
+
+        for (int cell = 0; cell < 479; ++cell) {
+            assertEquals(unit.contains(cell) ? unit.cost(cell) * 3 : ReachableCells.NOT_REACHABLE, weighted.cost(cell));
+        }
+    }
+
+    @Test
+    void withWalkableCells() {
+        CellBitSet walkable = CellBitSet.of(479, id -> map.get(id).walkable());
+
+        assertEquals(pathfinder.reachable(map.get(336), 1000).cells(), pathfinder.walkableCells(walkable).reachable(map.get(336), 1000).cells());
+
+        ReachableCells<MyDofusCell> blocked = pathfinder.walkableCells(walkable.with(356, false)).reachable(map.get(336), 1000);
+
+        assertFalse(blocked.contains(356));
+        assertFalse(blocked.contains(384));
+    }
+
+    @Test
+    void withAllDirections() {
+        ReachableCells<MyDofusCell> range = pathfinder.directions(Direction.values()).reachable(map.get(336), 1000);
+
+        for (int target : new int[] {322, 384, 139, 169}) {
+            Path<MyDofusCell> path = findPath(336, target);
+
+            assertNotNull(path);
+            assertEquals(path.size() - 1, range.cost(target));
+        }
+    }
+
+    @Test
+    void withNotWalkableSource() {
+        int source = map.get(0).walkable() ? 1 : 0;
+
+        assertEquals(0, pathfinder.reachable(map.get(source), 10).cost(source));
+    }
+
+    private @Nullable Path<MyDofusCell> findPath(int source, int target) {
+        try {
+            return pathfinder.findPath(map.get(source), map.get(target));
+        } catch (PathException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.path;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("argument")
+class SearchBudgetTest {
+    @Test
+    void unlimited() {
+        SearchBudget budget = SearchBudget.unlimited();
+
+        assertSame(budget, SearchBudget.unlimited());
+        assertEquals(Integer.MAX_VALUE, budget.maxExploredCells());
+        assertEquals(Integer.MAX_VALUE, budget.maxCost());
+        assertEquals(Long.MAX_VALUE, budget.timeout());
+        assertNull(budget.cancellation());
+        assertFalse(budget.partialPath());
+    }
+
+    @Test
+    void withShouldReturnNewInstance() {
+        CancellationToken token = new CancellationToken();
+        SearchBudget budget = SearchBudget.unlimited()
+            .withMaxExploredCells(100)
+            .withMaxCost(6)
+            .withTimeout(2, TimeUnit.MILLISECONDS)
+            .withCancellation(token)
+            .withPartialPath(true)
+        ;
+
+        assertEquals(100, budget.maxExploredCells());
+        assertEquals(6, budget.maxCost());
+        assertEquals(2_000_000, budget.timeout());
+        assertSame(token, budget.cancellation());
+        assertTrue(budget.partialPath());
+
+        assertEquals(Integer.MAX_VALUE, SearchBudget.unlimited().maxCost());
+        assertEquals(5, budget.withMaxCost(5).maxCost());
+        assertEquals(6, budget.maxCost());
+    }
+
+    @Test
+    void trackerAllows() {
+        SearchBudget.Tracker tracker = SearchBudget.unlimited().withMaxCost(5).start();
+
+        assertTrue(tracker.allows(0));
+        assertTrue(tracker.allows(5));
+        assertFalse(tracker.allows(6));
+    }
+
+    @Test
+    void trackerCheckExploredCells() {
+        SearchBudget.Tracker tracker = SearchBudget.unlimited().withMaxExploredCells(10).start();
+
+        tracker.check(10);
+        assertEquals("Limit exceeded for finding path", assertThrows(PathException.class, () -> tracker.check(11)).getMessage());
+    }
+
+    @Test
+    void trackerCheckCancellation() {
+        CancellationToken token = new CancellationToken();
+        SearchBudget.Tracker tracker = SearchBudget.unlimited().withCancellation(token).start();
+
+        tracker.check(1);
+        token.cancel();
+        assertEquals("Path finding cancelled", assertThrows(PathException.class, () -> tracker.check(1)).getMessage());
+    }
+
+    @Test
+    void trackerCheckTimeout() throws InterruptedException {
+        SearchBudget.Tracker tracker = SearchBudget.unlimited().withTimeout(1, TimeUnit.MILLISECONDS).start();
+
+        Thread.sleep(5);
+
+        PathException e = assertThrows(PathException.class, () -> {
+            for (int i = 0; i < 64; ++i) {
+                tracker.check(1);
+            }
+        });
+
+        assertEquals("Time limit exceeded for finding path", e.getMessage());
+    }
+
+    @Test
+    void timeoutShouldBeAtLeastOneNanosecond() {
+        assertEquals(1, SearchBudget.unlimited().withTimeout(1, TimeUnit.DAYS).withTimeout(0, TimeUnit.SECONDS).timeout());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.CellBitSet;
+import org.junit.jupiter.api.Test;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CellBitSetsTest {
+    private static final String DEFAULT_CELL = "HhGaeaaaaa";
+    private static final String TRIGGER_CELL = "Hhqaeqgaaa";
+    private static final String INTERACTIVE_CELL = "HhiTeaad1P";
+    private static final String BLOCKING_CELL = "GhhceaaaWt";
+
+    @Test
+    void ofCells() {
+        CellBitSets bitSets = CellBitSets.of(new DefaultMapDataSerializer().deserialize(mapData()));
+
+        assertBitSets(bitSets);
+    }
+
+    @Test
+    void ofPacked() {
+        CellBitSets bitSets = CellBitSets.of(new DefaultMapDataSerializer().deserializePacked(mapData()));
+
+        assertBitSets(bitSets);
+        assertEquals(bitSets.walkable(), new DefaultMapDataSerializer().deserializePacked(mapData()).bitSets().walkable());
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void shouldMatchCellData() {
+        DefaultMapDataSerializer serializer = new DefaultMapDataSerializer();
+        String mapData = PackedMapDataTest.MAP_DATA;
+        CellData[] cells = serializer.deserialize(mapData);
+        CellBitSets bitSets = serializer.deserializePacked(mapData).bitSets();
+
+        assertEquals(bitSets.walkable(), CellBitSets.of(cells).walkable());
+        assertEquals(bitSets.lineOfSight(), CellBitSets.of(cells).lineOfSight());
+        assertEquals(bitSets.interactive(), CellBitSets.of(cells).interactive());
+
+        for (int id = 0; id < cells.length; ++id) {
+            assertEquals(cells[id].active() && cells[id].movement().walkable(), bitSets.walkable().get(id));
+            assertEquals(cells[id].active(), bitSets.active().get(id));
+            assertEquals(cells[id].lineOfSight(), bitSets.lineOfSight().get(id));
+            assertEquals(!cells[id].lineOfSight(), bitSets.sightBlocking().get(id));
+            assertEquals(cells[id].layer2().interactive(), bitSets.interactive().get(id));
+        }
+    }
+
+    private void assertBitSets(CellBitSets bitSets) {
+        assertEquals(100, bitSets.walkable().size());
+
+        assertEquals(CellBitSet.of(100, id -> true), bitSets.active());
+        assertEquals(CellBitSet.of(100, id -> id != 1 && id != 2 && id != 65), bitSets.walkable());
+        assertEquals(CellBitSet.of(100, id -> id != 2), bitSets.lineOfSight());
+        assertEquals(CellBitSet.of(100, id -> id == 2), bitSets.sightBlocking());
+        assertEquals(CellBitSet.of(100, id -> id == 1 || id == 65), bitSets.interactive());
+        assertEquals(CellBitSet.of(100, id -> id == 0 || id == 70), bitSets.trigger());
+    }
+
+    private String mapData() {
+        StringBuilder sb = new StringBuilder();
+
+        for (int id = 0; id < 100; ++id) {
+            if (id == 0 || id == 70) {
+                sb.append(TRIGGER_CELL);
+            } else if (id == 1 || id == 65) {
+                sb.append(INTERACTIVE_CELL);
+            } else if (id == 2) {
+                sb.append(BLOCKING_CELL);
+            } else {
+                sb.append(DEFAULT_CELL);
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SuppressWarnings("argument")
+class CellDataCacheTest {
+    private final DefaultMapDataSerializer serializer = new DefaultMapDataSerializer();
+
+    @Test
+    void unbounded() {
+        CellDataCache cache = CellDataCache.unbounded();
+        CellData cell = cell("Hhaaeaaaaa");
+
+        assertNull(cache.get(1));
+        assertSame(cell, cache.putIfAbsent(1, cell));
+        assertSame(cell, cache.putIfAbsent(1, cell("Hhaaeaaaaa")));
+        assertSame(cell, cache.get(1));
+        assertSame(cell, cache.get(1));
+        assertEquals(1, cache.size());
+
+        CellDataCacheStatistics statistics = cache.statistics();
+
+        assertEquals(2, statistics.hits());
+        assertEquals(1, statistics.misses());
+        assertEquals(0, statistics.evictions());
+        assertEquals(1, statistics.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(1));
+        assertEquals(2, cache.statistics().misses());
+    }
+
+    @Test
+    void lru() {
+        CellDataCache cache = CellDataCache.lru(2);
+        CellData cell1 = cell("Hhaaeaaaaa");
+        CellData cell2 = cell("Hhaae6Haaa");
+        CellData cell3 = cell("GhhceaaaWt");
+
+        cache.putIfAbsent(1, cell1);
+        cache.putIfAbsent(2, cell2);
+        assertSame(cell1, cache.get(1));
+
+        // 2 is the least recently used
+        cache.putIfAbsent(3, cell3);
+
+        assertEquals(2, cache.size());
+        assertSame(cell1, cache.get(1));
+        assertNull(cache.get(2));
+        assertSame(cell3, cache.get(3));
+
+        CellDataCacheStatistics statistics = cache.statistics();
+
+        assertEquals(3, statistics.hits());
+        assertEquals(1, statistics.misses());
+        assertEquals(1, statistics.evictions());
+        assertEquals(2, statistics.size());
+
+        assertSame(cell1, cache.putIfAbsent(1, cell2));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void lruStripedShouldKeepMaxSize() {
+        CellDataCache cache = CellDataCache.lru(LruCellDataCache.STRIPING_THRESHOLD);
+        CellData cell = cell("Hhaaeaaaaa");
+
+        for (long key = 0; key < 10_000; ++key) {
+            assertSame(cell, cache.putIfAbsent(key, cell));
+        }
+
+        assertTrue(cache.size() <= LruCellDataCache.STRIPING_THRESHOLD);
+        assertEquals(10_000, cache.size() + cache.statistics().evictions());
+
+        // The most recent cells are kept
+        assertSame(cell, cache.get(9_999));
+        assertNull(cache.get(0));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void lruWeakValuesShouldKeepReferencedCells() {
+        CellDataCache cache = CellDataCache.lru(10, true);
+        CellData cell = cell("Hhaaeaaaaa");
+
+        assertSame(cell, cache.putIfAbsent(1, cell));
+
+        System.gc();
+
+        assertSame(cell, cache.get(1));
+        assertSame(cell, cache.putIfAbsent(1, cell("Hhaaeaaaaa")));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.statistics().evictions());
+    }
+
+    @Test
+    void lruWeakValuesShouldReleaseUnusedCells() throws InterruptedException {
+        CellDataCache cache = CellDataCache.lru(Integer.MAX_VALUE, true);
+
+        for (int i = 0; i < 100; ++i) {
+            cache.putIfAbsent(i, cell("Hhaaeaaaaa"));
+        }
+
+        for (int i = 0; i < 10 && cache.size() > 0; ++i) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assumeTrue(cache.size() == 0, "The GC has not reclaimed the cells");
+
+        assertEquals(100, cache.statistics().evictions());
+        assertNull(cache.get(5));
+    }
+
+    @Test
+    void concurrentAccess() throws Exception {
+        CellDataCache[] caches = new CellDataCache[] {CellDataCache.unbounded(), CellDataCache.lru(1000), CellDataCache.lru(1000, true)};
+
+        for (CellDataCache cache : caches) {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<CellData>> results = new ArrayList<>();
+
+            for (int i = 0; i < 100; ++i) {
+                results.add(executor.submit(() -> {
+                    CellData cell = cache.get(42);
+
+                    return cell != null ? cell : cache.putIfAbsent(42, cell("Hhaaeaaaaa"));
+                }));
+            }
+
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            CellData expected = results.get(0).get();
+
+            for (Future<CellData> result : results) {
+                assertSame(expected, result.get());
+            }
+
+            assertEquals(100, cache.statistics().hits() + cache.statistics().misses());
+        }
+    }
+
+    @Test
+    void statistics() {
+        CellDataCacheStatistics statistics = new CellDataCacheStatistics(3, 1, 2, 5);
+
+        assertEquals(3, statistics.hits());
+        assertEquals(1, statistics.misses());
+        assertEquals(2, statistics.evictions());
+        assertEquals(5, statistics.size());
+        assertEquals(0.75, statistics.hitRate());
+        assertEquals(0, new CellDataCacheStatistics(0, 0, 0, 0).hitRate());
+        assertEquals("CellDataCacheStatistics{hits=3, misses=1, evictions=2, size=5, hitRate=0.75}", statistics.toString());
+    }
+
+    @SuppressWarnings("array.access.unsafe.high.constant")
+    private CellData cell(String data) {
+        return serializer.deserialize(data)[0];
+    }
+}
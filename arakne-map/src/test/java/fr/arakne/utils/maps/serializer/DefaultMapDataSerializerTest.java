@@ -23,7 +23,12 @@ import fr.arakne.utils.maps.constant.CellMovement;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.CharBuffer;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @SuppressWarnings({"initialization.field.uninitialized", "array.access.unsafe.high.constant"})
 class DefaultMapDataSerializerTest {
@@ -126,6 +131,41 @@ class DefaultMapDataSerializerTest {
         assertNotEquals(serializer.deserialize(data)[0], serializer.deserialize(data)[0]);
     }
 
+    @Test
+    @SuppressWarnings("argument")
+    void cacheWithCustomImplementation() {
+        String data = "HhaaeaaaaaHhaae6HaaaHhaaeaaaaaGhhceaaaWtHhaae6HaaaHhaaeaaaaa";
+        CellDataCache cache = CellDataCache.lru(2);
+
+        assertNull(serializer.cache());
+        serializer.enableCache(cache);
+        assertSame(cache, serializer.cache());
+
+        CellData[] cells = serializer.deserialize(data);
+
+        assertSame(cells[0], cells[2]);
+        assertNotSame(cells[1], cells[4]); // Evicted by GhhceaaaWt
+        assertNotSame(cells[0], cells[5]); // Evicted by Hhaae6Haaa
+        assertEquals(data, serializer.serialize(cells));
+
+        CellDataCacheStatistics statistics = cache.statistics();
+
+        assertEquals(1, statistics.hits());
+        assertEquals(5, statistics.misses());
+        assertEquals(3, statistics.evictions());
+        assertEquals(2, statistics.size());
+
+        serializer.disableCache();
+        assertNull(serializer.cache());
+    }
+
+    @Test
+    void cacheShouldRejectInvalidCharacters() {
+        serializer.enableCache();
+
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserialize("Hhaae#aaaa"));
+    }
+
     @Test
     void withKey() {
         MapDataSerializer encryptedSerializer = serializer.withKey("682a5a717d49457e73274e3b3023452652224870524b735e6260457e377a4136216f7b5a7b332c55426c7b2776207136333f384333676577377828273860497a36214973525b606b6d3e7c4173716a713c6b232477664f3a6d2f79664f325f655b503e3a6f2c34202330272c4824635349657c2d554a31466a3f7e78667e485d527a203f37495d27664b5333207268452f2532426b74447e3a41215a386a6a5b70223f2d3078335a204543292d496c6366287637525723743f3e4c7155726e262f5f48703b294d4b537b544a4b3f4f7150512670323b6b43295a2e762129393254423944752e74636a6671693a235d34253235677a765841");
@@ -137,4 +177,104 @@ class DefaultMapDataSerializerTest {
             serializer.serialize(cells)
         );
     }
+
+    @Test
+    void deserializeCharSequence() {
+        String data = "HhaaeaaaaaHhaae6HaaaGhhceaaaWt";
+
+        CellData[] cells = serializer.deserialize(new StringBuilder("###").append(data).append("##"), 3, data.length());
+
+        assertEquals(3, cells.length);
+        assertEquals(data, serializer.serialize(cells));
+        assertEquals(450, cells[2].ground().number());
+        assertEquals(3091, cells[2].layer2().number());
+
+        assertEquals(data, serializer.serialize(serializer.deserialize(CharBuffer.wrap(data), 0, data.length())));
+        assertEquals("Hhaae6Haaa", serializer.serialize(serializer.deserialize(data, 10, 10)));
+        assertEquals(0, serializer.deserialize(data, 30, 0).length);
+    }
+
+    @Test
+    void deserializeCharSequenceWithCache() {
+        String data = "HhaaeaaaaaHhaae6HaaaHhaaeaaaaa";
+
+        serializer.enableCache();
+        CellData[] cells = serializer.deserialize(new StringBuilder(data), 0, data.length());
+
+        assertSame(cells[0], cells[2]);
+        assertSame(cells[1], serializer.deserialize(data)[1]);
+        assertEquals(data, serializer.serialize(cells));
+    }
+
+    @Test
+    void deserializeCharSequenceInvalidBounds() {
+        String data = "HhaaeaaaaaHhaae6Haaa";
+
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserialize(data, 0, 15));
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserialize(data, 5, 20));
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserialize(data, 30, 0));
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserialize("Hhaae#aaaa", 0, 10));
+    }
+
+    @Test
+    void deserializeToBuffer() {
+        String data = "HhaaeaaaaaHhaae6HaaaGhhceaaaWt";
+        CellData[] buffer = new CellData[5];
+
+        assertEquals(3, serializer.deserialize(data, 0, data.length(), buffer));
+        assertEquals(data, serializer.serialize(new CellData[] {buffer[0], buffer[1], buffer[2]}));
+        assertNull(buffer[3]);
+        assertNull(buffer[4]);
+
+        assertEquals(1, serializer.deserialize(new StringBuilder(data), 20, 10, buffer));
+        assertEquals(450, buffer[0].ground().number());
+
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserialize(data, 0, data.length(), new CellData[2]));
+    }
+
+    @Test
+    void layersAccessorsShouldReturnSameInstance() {
+        CellData cell = serializer.deserialize("GhhceaaaWt")[0];
+
+        assertSame(cell.ground(), cell.ground());
+        assertSame(cell.layer1(), cell.layer1());
+        assertSame(cell.layer2(), cell.layer2());
+    }
+
+    @Test
+    void layersAccessorsShouldNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        CellData[] cells = serializer.deserialize("HhaaeaaaaaHhaae6HaaaHhaaeaaaaaGhhceaaaWtHxaUeaaaaaHhaSeIWaaa");
+
+        // Warmup
+        readLayers(cells, 10);
+
+        final long threadId = Thread.currentThread().getId();
+        final long start = threadBean.getThreadAllocatedBytes(threadId);
+        final int sum = readLayers(cells, 10000);
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+        assertNotEquals(0, sum);
+        assertTrue(allocated < 1024, "Reading cell layers allocates " + allocated + " bytes");
+    }
+
+    private int readLayers(CellData[] cells, int iterations) {
+        int sum = 0;
+
+        for (int i = 0; i < iterations; ++i) {
+            for (CellData cell : cells) {
+                sum += cell.ground().number() + cell.ground().level() + cell.ground().slope();
+                sum += cell.layer1().number() + cell.layer1().rotation();
+                sum += cell.layer2().number() + (cell.layer2().interactive() ? 1 : 0);
+            }
+        }
+
+        return sum;
+    }
 }
@@ -0,0 +1,188 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.encoding.Key;
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.field.uninitialized", "argument", "array.access.unsafe.high", "array.access.unsafe.high.constant"})
+class LazyCellDataTest {
+    private static final String MAP_DATA = "HhaaeaaaaaHhaae6HaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSeIWaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGaeJgaaaHhGaeaaaaaHhqaeqgaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhGaeaaeaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaadHHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaGhiaeaad1FHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVeaaaaaHhaSez8aaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaaeaaa6EHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaadHHhaSez8aaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhqaeaaaqgHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaWeaaaaaHhaSeaaadHHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGae6HaaaHhaaeaaa6UHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaVeaaaaaHhaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6EHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaWez8aaaHhaWeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaH3aUeaaaaaHhGaeaaaaaHhaaeaaa6YHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaUeaaaaaHhaVeaaaaaHhaVeaaadHH3aUeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaGhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaWeaaaaaHhaWeaaaaaHhaWeaaaaaHhaTeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaaaaGhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaaeaaaaaHhGaeaaaaaHhGae6HaaaHhGaeaaaaaGhaaeaaaaaGhaaeaaa8HHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhiaeaad1PHhaTe8haaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiaeaad1PHhiaeaad1PHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaGhaae6Ha6LHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaa7eHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhaaeaaaaaHhaaeaaaaaHhaaeaaa6XHhGaeaaaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaae6Ha6FHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae6HaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGae8uaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGae8uaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhqae8uaqgHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6IGgaaeaaa7IGgaaeaaa7EHhaaeaaaaaGgaaeaaa7CGgaaeaaa7IHhaaeaaaaa";
+
+    private DefaultMapDataSerializer serializer;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new DefaultMapDataSerializer();
+    }
+
+    @Test
+    void deserializeLazyShouldNotDecodeCells() {
+        CellData[] cells = serializer.deserializeLazy(MAP_DATA);
+
+        assertEquals(479, cells.length);
+
+        for (CellData cell : cells) {
+            assertFalse(((LazyCellData) cell).decoded());
+        }
+
+        assertTrue(cells[102].layer2().interactive());
+        assertEquals(7519, cells[102].layer2().number());
+        assertEquals(CellMovement.NOT_WALKABLE_INTERACTIVE, cells[102].movement());
+
+        assertTrue(((LazyCellData) cells[102]).decoded());
+        assertFalse(((LazyCellData) cells[101]).decoded());
+    }
+
+    @Test
+    void decodeShouldReleaseMapData() {
+        CellData[] cells = serializer.deserializeLazy(MAP_DATA);
+
+        assertTrue(((LazyCellData) cells[102]).holdsMapData());
+
+        cells[102].movement();
+
+        assertFalse(((LazyCellData) cells[102]).holdsMapData());
+        assertTrue(((LazyCellData) cells[101]).holdsMapData());
+        assertEquals(CellMovement.NOT_WALKABLE_INTERACTIVE, cells[102].movement());
+    }
+
+    @Test
+    void deserializeLazyShouldBeSameAsDeserialize() {
+        CellData[] expected = serializer.deserialize(MAP_DATA);
+        CellData[] cells = serializer.deserializeLazy(MAP_DATA);
+
+        assertEquals(MAP_DATA, serializer.serialize(cells));
+
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i].active(), cells[i].active());
+            assertEquals(expected[i].lineOfSight(), cells[i].lineOfSight());
+            assertEquals(expected[i].movement(), cells[i].movement());
+            assertEquals(expected[i].ground().number(), cells[i].ground().number());
+            assertEquals(expected[i].layer1().number(), cells[i].layer1().number());
+            assertEquals(expected[i].layer2().number(), cells[i].layer2().number());
+        }
+    }
+
+    @Test
+    void memoized() {
+        CellData cell = serializer.deserializeLazy("GhhceaaaWt")[0];
+
+        assertSame(cell.ground(), cell.ground());
+        assertSame(cell.layer2(), cell.layer2());
+    }
+
+    @Test
+    void withCache() {
+        CellDataCache cache = CellDataCache.unbounded();
+        serializer.enableCache(cache);
+
+        CellData[] cells = serializer.deserializeLazy("HhaaeaaaaaGhhceaaaWtHhaaeaaaaa");
+
+        assertSame(cells[0].ground(), cells[2].ground());
+        assertEquals(1, cache.statistics().hits());
+    }
+
+    @Test
+    void invalidData() {
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserializeLazy("invalid"));
+
+        CellData[] cells = serializer.deserializeLazy("Hhaaeaaaaa##########");
+
+        assertTrue(cells[0].active());
+        assertThrows(IllegalArgumentException.class, () -> cells[1].active());
+    }
+
+    @Test
+    void concurrentAccess() throws Exception {
+        CellData[] cells = serializer.deserializeLazy(MAP_DATA);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < 32; ++i) {
+                results.add(executor.submit(() -> {
+                    int sum = 0;
+
+                    for (CellData cell : cells) {
+                        sum += cell.ground().number() + cell.layer1().number() + cell.layer2().number();
+                    }
+
+                    return sum;
+                }));
+            }
+
+            int expected = 0;
+
+            for (CellData cell : serializer.deserialize(MAP_DATA)) {
+                expected += cell.ground().number() + cell.layer1().number() + cell.layer2().number();
+            }
+
+            for (Future<Integer> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void encrypted() {
+        Key key = Key.generate();
+        MapDataSerializer encrypted = serializer.withKey(key);
+        String data = encrypted.serialize(serializer.deserialize(MAP_DATA));
+
+        CellData[] cells = encrypted.deserializeLazy(data);
+
+        assertEquals(479, cells.length);
+        assertTrue(cells[0] instanceof LazyCellData);
+        assertEquals(MAP_DATA, serializer.serialize(cells));
+    }
+
+    @Test
+    void defaultImplementationIsEager() {
+        MapDataSerializer other = new MapDataSerializer() {
+            @Override
+            public CellData[] deserialize(String mapData) {
+                return serializer.deserialize(mapData);
+            }
+
+            @Override
+            public String serialize(CellData[] cells) {
+                return serializer.serialize(cells);
+            }
+        };
+
+        CellData[] cells = other.deserializeLazy(MAP_DATA);
+
+        assertFalse(cells[0] instanceof LazyCellData);
+        assertEquals(MAP_DATA, serializer.serialize(cells));
+    }
+}
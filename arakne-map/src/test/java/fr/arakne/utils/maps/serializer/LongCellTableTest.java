@@ -0,0 +1,146 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"argument", "dereference.of.nullable"})
+class LongCellTableTest {
+    @Test
+    void putAndFind() {
+        LongCellTable table = new LongCellTable();
+
+        assertEquals(LongCellTable.NO_ENTRY, table.find(0));
+        assertEquals(0, table.size());
+
+        int entry = table.put(0, "zero");
+
+        assertEquals(entry, table.find(0));
+        assertEquals("zero", table.value(entry));
+        assertEquals(0, table.key(entry));
+        assertEquals(1, table.size());
+        assertEquals(LongCellTable.NO_ENTRY, table.find(1));
+
+        table.set(entry, "other");
+        assertEquals("other", table.value(table.find(0)));
+    }
+
+    @Test
+    void growAndRemove() {
+        LongCellTable table = new LongCellTable();
+
+        for (long key = 0; key < 1000; ++key) {
+            table.put(key << 32, key);
+        }
+
+        assertEquals(1000, table.size());
+
+        for (long key = 0; key < 1000; key += 2) {
+            table.remove(table.find(key << 32));
+        }
+
+        assertEquals(500, table.size());
+
+        for (long key = 0; key < 1000; ++key) {
+            int entry = table.find(key << 32);
+
+            if (key % 2 == 0) {
+                assertEquals(LongCellTable.NO_ENTRY, entry);
+            } else {
+                assertEquals(key, table.value(entry));
+            }
+        }
+    }
+
+    @Test
+    void eldestShouldFollowAccessOrder() {
+        LongCellTable table = new LongCellTable();
+
+        assertEquals(LongCellTable.NO_ENTRY, table.eldest());
+
+        int first = table.put(1, "a");
+        int second = table.put(2, "b");
+        int third = table.put(3, "c");
+
+        assertEquals(first, table.eldest());
+
+        table.touch(first);
+        assertEquals(second, table.eldest());
+
+        table.remove(second);
+        assertEquals(third, table.eldest());
+
+        table.remove(third);
+        assertEquals(first, table.eldest());
+
+        // Removed entries are reused
+        assertEquals(third, table.put(4, "d"));
+        assertEquals(first, table.eldest());
+    }
+
+    @Test
+    void clear() {
+        LongCellTable table = new LongCellTable();
+
+        for (long key = 0; key < 100; ++key) {
+            table.put(key, key);
+        }
+
+        table.clear();
+
+        assertEquals(0, table.size());
+        assertEquals(LongCellTable.NO_ENTRY, table.find(5));
+        assertEquals(LongCellTable.NO_ENTRY, table.eldest());
+
+        table.put(5, "a");
+        assertEquals("a", table.value(table.find(5)));
+    }
+
+    @Test
+    void randomOperationsShouldMatchHashMap() {
+        LongCellTable table = new LongCellTable();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; ++i) {
+            long key = random.nextInt(2000) * 0x1000000001L;
+            int entry = table.find(key);
+
+            assertEquals(expected.containsKey(key), entry != LongCellTable.NO_ENTRY);
+
+            if (entry == LongCellTable.NO_ENTRY) {
+                table.put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                assertEquals(expected.get(key).intValue(), table.value(entry));
+                table.remove(entry);
+                expected.remove(key);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+    }
+}
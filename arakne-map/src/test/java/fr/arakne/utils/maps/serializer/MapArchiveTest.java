@@ -0,0 +1,169 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.field.uninitialized", "argument", "array.access.unsafe.high", "array.access.unsafe.high.constant", "array.length.negative"})
+class MapArchiveTest {
+    private static final String MAP_DATA = "HhaaeaaaaaHhaae6HaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSeIWaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGaeJgaaaHhGaeaaaaaHhqaeqgaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhGaeaaeaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaadHHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaGhiaeaad1FHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVeaaaaaHhaSez8aaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaaeaaa6EHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaadHHhaSez8aaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhqaeaaaqgHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaWeaaaaaHhaSeaaadHHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGae6HaaaHhaaeaaa6UHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaVeaaaaaHhaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6EHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaWez8aaaHhaWeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaH3aUeaaaaaHhGaeaaaaaHhaaeaaa6YHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaUeaaaaaHhaVeaaaaaHhaVeaaadHH3aUeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaGhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaWeaaaaaHhaWeaaaaaHhaWeaaaaaHhaTeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaaaaGhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaaeaaaaaHhGaeaaaaaHhGae6HaaaHhGaeaaaaaGhaaeaaaaaGhaaeaaa8HHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhiaeaad1PHhaTe8haaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiaeaad1PHhiaeaad1PHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaGhaae6Ha6LHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaa7eHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhaaeaaaaaHhaaeaaaaaHhaaeaaa6XHhGaeaaaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaae6Ha6FHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae6HaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGae8uaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGae8uaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhqae8uaqgHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6IGgaaeaaa7IGgaaeaaa7EHhaaeaaaaaGgaaeaaa7CGgaaeaaa7IHhaaeaaaaa";
+
+    private DefaultMapDataSerializer serializer;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new DefaultMapDataSerializer();
+    }
+
+    @Test
+    void openAndRead() throws IOException {
+        Path file = directory.resolve("maps.bin");
+
+        new MapArchiveWriter()
+            .add(10340, serializer.deserialize(MAP_DATA))
+            .add(42, serializer.deserialize("GhhceaaaWtHhaaeaaaaa"))
+            .add(7, new CellData[0])
+            .write(file)
+        ;
+
+        MapArchive archive = MapArchive.open(file);
+
+        assertEquals(3, archive.size());
+        assertArrayEquals(new int[] {7, 42, 10340}, archive.ids());
+        assertTrue(archive.contains(42));
+        assertFalse(archive.contains(43));
+
+        assertEquals(479, archive.cellsCount(10340));
+        assertEquals(2, archive.cellsCount(42));
+        assertEquals(0, archive.cellsCount(7));
+
+        assertEquals(MAP_DATA, serializer.serialize(archive.cells(10340)));
+        assertEquals("GhhceaaaWtHhaaeaaaaa", serializer.serialize(archive.cells(42)));
+        assertEquals(0, archive.cells(7).length);
+
+        CellData cell = archive.cells(42)[0];
+
+        assertEquals(450, cell.ground().number());
+        assertEquals(7, cell.ground().level());
+        assertSame(cell.ground(), cell.ground());
+        assertSame(cell.layer1(), cell.layer1());
+        assertSame(cell.layer2(), cell.layer2());
+        assertSame(cell.ground(), cell.ground());
+    }
+
+    @Test
+    void cellsShouldBeSameAsDeserialized() throws IOException {
+        CellData[] expected = serializer.deserialize(MAP_DATA);
+        MapArchive archive = MapArchive.load(ByteBuffer.wrap(write(new MapArchiveWriter().add(1, expected))));
+        CellData[] cells = archive.cells(1);
+
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i].active(), cells[i].active());
+            assertEquals(expected[i].lineOfSight(), cells[i].lineOfSight());
+            assertEquals(expected[i].movement(), cells[i].movement());
+            assertEquals(expected[i].ground().number(), cells[i].ground().number());
+            assertEquals(expected[i].ground().slope(), cells[i].ground().slope());
+            assertEquals(expected[i].layer1().number(), cells[i].layer1().number());
+            assertEquals(expected[i].layer2().number(), cells[i].layer2().number());
+            assertEquals(expected[i].layer2().interactive(), cells[i].layer2().interactive());
+        }
+    }
+
+    @Test
+    void packed() throws IOException {
+        MapArchive archive = MapArchive.load(ByteBuffer.wrap(write(new MapArchiveWriter().add(1, serializer.deserialize(MAP_DATA)))));
+        PackedMapData packed = archive.packed(1);
+
+        assertEquals(479, packed.size());
+        assertTrue(packed.layer2Interactive(102));
+        assertEquals(MAP_DATA, serializer.serialize(packed.cells()));
+    }
+
+    @Test
+    void mapNotFound() throws IOException {
+        MapArchive archive = MapArchive.load(ByteBuffer.wrap(write(new MapArchiveWriter().add(1, serializer.deserialize(MAP_DATA)))));
+
+        assertThrows(NoSuchElementException.class, () -> archive.cells(2));
+        assertThrows(NoSuchElementException.class, () -> archive.cellsCount(2));
+        assertThrows(NoSuchElementException.class, () -> archive.packed(2));
+    }
+
+    @Test
+    void emptyArchive() throws IOException {
+        MapArchive archive = MapArchive.load(ByteBuffer.wrap(write(new MapArchiveWriter())));
+
+        assertEquals(0, archive.size());
+        assertArrayEquals(new int[0], archive.ids());
+        assertFalse(archive.contains(1));
+    }
+
+    @Test
+    void invalidArchive() throws IOException {
+        byte[] valid = write(new MapArchiveWriter().add(1, serializer.deserialize("GhhceaaaWtHhaaeaaaaa")).add(2, serializer.deserialize("GhhceaaaWt")));
+
+        assertThrows(IOException.class, () -> MapArchive.load(ByteBuffer.wrap(new byte[0])));
+        assertThrows(IOException.class, () -> MapArchive.load(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 0, 0, 0, 1, 0, 0, 0, 0})));
+
+        byte[] invalidVersion = valid.clone();
+        invalidVersion[7] = 2;
+        assertThrows(IOException.class, () -> MapArchive.load(ByteBuffer.wrap(invalidVersion)));
+
+        byte[] invalidCount = valid.clone();
+        invalidCount[11] = 100;
+        assertThrows(IOException.class, () -> MapArchive.load(ByteBuffer.wrap(invalidCount)));
+
+        byte[] invalidSize = valid.clone();
+        invalidSize[23] = 100;
+        assertThrows(IOException.class, () -> MapArchive.load(ByteBuffer.wrap(invalidSize)));
+
+        byte[] notSorted = valid.clone();
+        notSorted[27] = 0;
+        assertThrows(IOException.class, () -> MapArchive.load(ByteBuffer.wrap(notSorted)));
+
+        byte[] truncated = new byte[valid.length - 1];
+        System.arraycopy(valid, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> MapArchive.load(ByteBuffer.wrap(truncated)));
+
+        Path file = directory.resolve("invalid.bin");
+        Files.write(file, new byte[] {1, 2, 3});
+        assertThrows(IOException.class, () -> MapArchive.open(file));
+    }
+
+    private byte[] write(MapArchiveWriter writer) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(output);
+
+        return output.toByteArray();
+    }
+}
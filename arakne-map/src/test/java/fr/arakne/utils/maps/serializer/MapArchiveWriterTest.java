@@ -0,0 +1,81 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("initialization.field.uninitialized")
+class MapArchiveWriterTest {
+    private DefaultMapDataSerializer serializer;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new DefaultMapDataSerializer();
+    }
+
+    @Test
+    void add() {
+        MapArchiveWriter writer = new MapArchiveWriter();
+
+        assertEquals(0, writer.size());
+        assertSame(writer, writer.add(1, serializer.deserialize("GhhceaaaWt")));
+        assertEquals(1, writer.size());
+
+        assertThrows(IllegalArgumentException.class, () -> writer.add(1, serializer.deserialize("Hhaaeaaaaa")));
+    }
+
+    @Test
+    void write() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        new MapArchiveWriter()
+            .add(5, serializer.deserialize("GhhceaaaWtHhaaeaaaaa"))
+            .add(2, serializer.deserialize("Hhaae6Haaa"))
+            .write(output)
+        ;
+
+        ByteBuffer buffer = ByteBuffer.wrap(output.toByteArray());
+
+        assertEquals(12 + 2 * 12 + 3 * 10, buffer.capacity());
+        assertEquals(MapArchive.MAGIC, buffer.getInt());
+        assertEquals(MapArchive.VERSION, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+
+        // Index sorted by map id
+        assertEquals(2, buffer.getInt());
+        assertEquals(36, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        assertEquals(5, buffer.getInt());
+        assertEquals(46, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+
+        // Raw cells data
+        byte[] cell = new byte[10];
+        buffer.get(cell);
+        assertArrayEquals(new byte[] {33, 7, 0, 0, 4, 58, 33, 0, 0, 0}, cell);
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"argument", "array.access.unsafe.high.constant"})
+class MapLoaderTest {
+    private static final String KEY = "682a5a717d49457e73274e3b3023452652224870524b735e6260457e377a4136216f7b5a7b332c55426c7b2776207136333f384333676577377828273860497a36214973525b606b6d3e7c4173716a713c6b232477664f3a6d2f79664f325f655b503e3a6f2c34202330272c4824635349657c2d554a31466a3f7e78667e485d527a203f37495d27664b5333207268452f2532426b74447e3a41215a386a6a5b70223f2d3078335a204543292d496c6366287637525723743f3e4c7155726e262f5f48703b294d4b537b544a4b3f4f7150512670323b6b43295a2e762129393254423944752e74636a6671693a235d34253235677a765841";
+    private static final String ENCRYPTED = "784b244737432911332a3b360301201f561b205769071a3b1e524d34230d334f17411457525e0e047b0f0416521949465901011257402c12333a010a25561d20164722105d0a6b4c16072a0c5d4e1807075a3e043e315f5b0e4d7c484251421a00450232010d1d4c302b50270b5e3910071f2d3c331b17507f213c46037d1b5a4113202d4e4a0e15251f5b206932590b0f3a11435e4c7810743b452422484c28240b074913563336152777562b22304426474e3e00185a48282a321a62030357081035304711535a232b6e3b4b17404858531c2a4825104f15021b0139017d42385544061b1710292f4b3f101c28241f3b4f095a5542244733430f18332a163f030172177f120657440e1a3b1a52643d050d1e461741477f7b577510560604165619604f59012c1b574028121a33270a085f1d20121022195d0a464516072e5b254718072a533e043a317652284d51414251464d004c24322c041d4c342b792e2d5e1b19071f293c1a12775e52283c46072a1b5b67130d0f484a0a150c167d20443b590b0b3a374a5e4c5519523b172d0b416a280902074917561a3f64155a5f2d103413264e683e2d115a482c2a1b13352b2e5e2e1031306e18755a0e22483b4f1769417e5331235825144f3c0b0b0714085b423c556d0f1b173d20094b6c253521021f16462f5a51420d4e15432d11332a123f2a08082d524c7357400e33323c524934230d1a463e483657565e592252062d1f70194d4659017f337e490e12373a010a0c5f342934100f105d0a42453f0e085b084e18072e53170d2a315b5b0e4d45476458464d2d4502327e243445122b54270b5e1f192e160f3c371b415e5628154f072a360568135f2067432c15211f5b20403b70022d3a15435e4c51197b32672426484c285a2a2e402156373642155e5f041912130b474e3e29117c412c2a361a352b7c58071917304311535a0a2261326917444858533523712c324f11020b071008724b1a5540061b17392020423b101828241f1246065377422047334329111a23343f072a221f561b095e660e1e3b1a524d3405041a46134110570455702b740600165619494670080e1b53402812333a28032a5f192012100b107403744512072e5b0c4e310e08533a043a315f5b274473414651464d29452b3b0e041915202b50272d571f19031f293c6510685770283846072a3252681a2f244a4a0a15251f7229403b5d0b0b3a114377457719563b4124224865212b020349175633366b1c785f291034130f4767370f115e482c2a321a1c220c5e2a10313047117a532c224c3b4f174048715a13235c7c004f1502220e26085f156d554406321e1f200d4b3b101c280d1634462b5a514224471a4a0f11372a123f03010d16701b2457400e1a3b335b6b34270d1a461741395e525e5d22520604167f1059465d01281b4746011b153a050a0c5f1d203b192d10590a4245160707522a4e1c072e533e041338795b0a66534142516f440f45063228041d4c1d2276270f5e1f19071f0035151b455e56283c462e231452451309244e4a231c031f5f20403b590b223337435a4c5119523b672d224848280d0251413e5f1536463e585f2d101d1a0f474a3e29115a480523321a31002c5e2e1018396111570d2322483b661e66485c53352358253d4633020f0710085b42155c62061f173920094b12193a28201f12462f5a784b024737432911332a3b362501201f561b205769072c3b1e524d34230d334f31411457525e59227b0f2216521949465901011271402c12333a562225563b2016100b105d0a6b4c30072a5b0c4e1807075a3e043e315f5b0e4d7c486451424d29450232010d3b4c302b50275c763910071f2d3c331b175770213c46032a3252171b202d684a0e15251f5b2069327f0b0f3a11435e4c7810743b450f24484c28240b214913563336421577560b1030130f474e3e0f185a48282a321a63260c572e1035695511055c232b6e3b4b17404858531c2a7e25104f15020b0739017d42385544061b171029094b3f101c28241f3b4f095a5542244733430f18332a163f0301721970122057440e1a3b4c58643d050d1e46174110577b577f22560604165619604f7f012c1b574028121a33270a085f1d20121022196b0a461245072e5b2a4718072a533e046c3b79520e4d514142511044004c24322c041d4c342b792e2d5e1b19071f293c1512415e52283c4651271b5b41130d244e4a0a1503165b20443b590b5d35384a784c5519523b412404414c2809020749415b153f42155a5f2d106218264e683e2d115a482c2a1b13132b2e5e2e1031306e18755a0e22483b4f1769417e5331235825144f3c0b2d0714085b423c556d0f3d173d20094b3b103521021f16462f5a51420d4e15432d11332a123f2508241f521b2057160733323c524934230d1a4631481057565e5922040a2d1f70194d465901281b714928123711070a5a56342934100f105d0a42453f0e085b084e18072e53170d1c315b5b0e4d55416b58604d2d45023228043445122b54270b5e1f192e1605093530475e5628154f212a36524113092467432c15211f5b20171370022d3a15435e4c51197b32672426484c280d022e403156376f50155e5f041934130b474e3e291173410a2a361a352b2a5e071917304311535a0a2261326325444858533523712c324f11020b071008724b1a5540061b17392020423b101828241f1246065377422047334329111a23343f0701241f561b095e660e1e3b1a524d340a043c4613411057525e702b740600165619494670080e1b53402812333a28032a5f192012100b107403644512072e5b0c4e310e2e533a5313315f5b274473414651464d29452b3b0e04194c342b502722573919031f293c331b685770283846072a3252681a09244a4a0a15251f7229403b5d0b0b3a114377457719563b4124224865212b020349175633366b1c785f291034130f4767370f115e482c2a321a13222a5e2a103130111a7a532c224c3b4f171760715a13235c25144f1502220e10085f423c554406321e39200d4b3b104b000d1634462b5a514224471a4a0f11372a123f03010d16701b2457400e1a3b335b6b34270d1a461741395e525e5d22520604167f1049465d01281b5740011b333a050a0c5f1d203b192d10590a4245160707522a4e1c072e533e041c385f5b0a4d554114576f440f45063228041d4c1d2276270f5e1f19071f0035331b455e56286b602e233252451309244e4a231c251f5f20403b590b223337435a4c5119523b682d044848280d0207493e5f153646155e5f2d101d1a0f474a3e29115a480523321a312b2a5e2e1018394711575a0a22483b661e40485c53352358253d4633020f0710085b421a5c44061f1739205f4112193a28201f12462f5a784b024737432911332a3b360301201f561b205769071a3b1e524d34230d334f17411457525e0e047b0f0416521949465901011271402c12333a010a25563b2016100b105d0a6b4c16072a5b0c4e1807075a3e043e315f5b0e4d7c484251424d29450232010d1d4c302b50270b5e3610211f2d3c331b415e7f211a46032a32524113202d684a0e15251f5b2069327f0b0f3a11435e4c7810523b452422484c28240b017c13563336421577562d1030130f474e3e00185a48282a321a352b0357081035304711535a232b483b4b17404858531c2a5825104f15020b0739015b42385544061b171029094b3f101c28241f3b4f2f5a5542244733430018152a163f0301241f7f120657440e1a3b1a52643d050d1e46174110577b577f22560604165619604f59012c1b574028121a33010a085f1d20441522195d0a464516072e5b254718072a533e046d077652284d51414251464d004c02322c041d4c342b792e0b5e1b19071f293c1a12415e52283c46072a1b5b41130d244e4a0a150c165b20443b590b0b3a384a5e4c5519523b41240b416a280902074917561a3f42155a5f2d103413264e4e3e2d115a482c2a1b13132b2e5e2e1031306e18535a0e22483b4f176941585331235825144f330b0b0714085b426a4d6d0f3d173d20094b3b103521021f16462f5a51420d4e15432d11332a123f2a08241f521b2057400e33321a524934230d1a463e481057565e592252062d1f56194d465901281b7e490e12373a010a0c5f342912100f105d0a42453f0e2e5b084e18072e53170d3a315b5b0e4d55416b58604d2d45023228043445342b54270b5e48202e16293c371b415e5628154f212a36524113092467432c15211f5b20403b70022d3a15435e4c51197b32672426484c280d022e401756373642155e5f041934130b474e3e291173410a2a361a352b2a5e07191d074111535a0a2261326917444858533523712c144f11020b071008724b3c5540061b17392020421d101828241f1246065377422047334329111a23343f0701241f561b095e400e1e3b1a524d340a043c4613411057525e702b740600165619494670080e1b53402812333a28030c5f192012100b107403424512072e5b0c4e310e08533a043a315f5b274473414651464d29452b3b0e04194c342b502722573919031f293c331b685756283846072a3252681a2f244a4a0a15251f7229663b5d0b0b3a114377457719563b4124224865210d020349175633366b1c5e5f291034130f47673729115e482c2a321a1c220c5e2a10313047117a530a224c3b4f174048715a35235c25144f1502220e10085f423c554406321e1f200d4b3b101c280d1634462b5a514224471a4a0f11372a123f03010d16561b2457400e1a3b335b4d34270d1a461741395e745e5d22520604167f106f465d01281b5740011b153a050a0c5f1d203b190b10590a4245160707520c4e1c072e533e0413385f5b0a4d554142516f442945063228041d4c1d2250270f5e1f19071f0035331b455e56283c462e233252451309244e4a231c251f5f20403b590b223337435a4c5119523b682d224848280d0207493e5f333646155e5f2d101d1a0f474a3e29115a480523321a312b2a5e2e1018396111575a0a22483b661e40485c53352358253d4615020f0710085b42155c44061f173920094b12191c28201f12462f5a784b244737432911332a3b360301201f561b205769071a3b1e524d34230d334f17411457525e59227b0f2216521949465901011271402c12333a010a25561d2016100b105d0a6b4c16072a5b0c4e1807075a3e043e315f5b0e4d7c484251424d29450232010d1d4c302b50270b5e3610071f2d3c331b415e7f213c46032a32524113202d4e4a0e15251f5b206932590b0f3a11435e4c7810523b452422484c28240b074913563336421577562d1030130f474e3e00187c48282a321a352b03572e1035304711535a232b483b4b17404858531c2a5825104f15020b0739015b42385544061b171029094b3f101c28241f3b4f2f5a5542244733430018332a163f0301241f7f122057440e1a3b1a52643d230d1e46174110577b575922560604165619604f59012c1b574028121a33010a085f1d20121022195d0a464516072e5b254718072a533e043a3176520e4d51414251464d004c02322c041d4c342b792e0b5e1b19071f293c1a12415e52283c46072a1b5b41130d244e4a0a150c165b20443b590b0b3a384a5e4c5519523b41240b414c280902074917561a3f42155a5f2d103413264e4e3e2d115a482c2a1b13352b2e5e2e1031306e18535a0e22483b4f176941585331235825144f3c0b0b0714085b423c556d0f1b173d20094b3b103521241f16462f5a51420d4e33432d11332a123f2a08241f521b2057400e33321a524934230d1a463e481057565e592252062d1f56194d465901281b7e492812373a010a0c5f342912100f105d0a42453f0e2e5b084e18072e53170d3a315b5b0e4d55416b58464d2d45023228043445342b54270b5e1f192e16293c371b415e5628154f072a36524113092467430a15211f5b20403b70020b3a15435e4c51197b32412426484c280d022e401756373642155e5f041934130b474e3e291173412c2a361a352b2a5e071931304311535a0a2261324f17444858533523712c144f11020b071008724b3c5540061b17392020423b101828241f1246065351422047334329111a23123f0701241f561b095e400e1e3b1a524d340a041a4613411057525e702b52060016561949467008281b53402812333a28030c5f192012100b107403424512072e5b0c4e310e2e533a043a315f5b274455414651464d29452b3b2804194c342b502722571f19031f293c331b685756283846072a3252681a09244a4a0a15251f7229403b5d0b0b3a114377455119563b4124224865210d020349175633366b1c5e5f291034130f47673729115e482c2a321a1c222a5e2a10313047117a530a224c3b4f174048715a35235c25144f1502220e10085f423c554406321e39200d4b3b101c280d1612462b5a514224471a4a2911372a123f03010d16561b2457400e1a3b335b4d34270d1a461741395e525e5d22520604167f1049465d01281b5740011b333a050a0c5f1d203b190b10590a4245160707520c4e1c072e533e0413385f5b0a4d554142516f442945063228041d4c1d2250270f5e1f19071f0035331b455e56283c462e233252451309244e4a231c251f5f20403b590b223311435a4c5119523b";
+
+    @Test
+    void load() {
+        LoadedMaps maps = new MapLoader().load(Arrays.asList(
+            MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"),
+            new MapRecord(2, KEY, ENCRYPTED),
+            new MapRecord(3, "", "GhhceaaaWt")
+        ));
+
+        assertFalse(maps.hasErrors());
+        assertEquals(3, maps.size());
+        assertTrue(maps.contains(1));
+        assertTrue(maps.contains(2));
+        assertTrue(maps.contains(3));
+        assertFalse(maps.contains(4));
+        assertEquals(3, maps.maps().size());
+
+        assertEquals(2, maps.get(1).length);
+        assertEquals(479, maps.get(2).length);
+        assertEquals(CellMovement.DEFAULT, maps.get(2)[230].movement());
+        assertEquals(450, maps.get(3)[0].ground().number());
+
+        assertThrows(NoSuchElementException.class, () -> maps.get(4));
+    }
+
+    @Test
+    void loadShouldShareCache() {
+        MapLoader loader = new MapLoader();
+        LoadedMaps maps = loader.load(Stream.of(
+            MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"),
+            MapRecord.of(2, "Hhaae6HaaaHhaaeaaaaa")
+        ));
+
+        assertSame(maps.get(1)[0], maps.get(2)[1]);
+        assertSame(maps.get(1)[1], maps.get(2)[0]);
+
+        CellDataCache cache = loader.serializer().cache();
+        assertNotNull(cache);
+        assertEquals(2, cache.size());
+        assertEquals(4, cache.statistics().hits() + cache.statistics().misses());
+    }
+
+    @Test
+    void loadWithErrors() {
+        Set<Integer> failed = ConcurrentHashMap.newKeySet();
+        AtomicInteger loaded = new AtomicInteger();
+
+        LoadedMaps maps = new MapLoader()
+            .listener(new MapLoader.Listener() {
+                @Override
+                public void loaded(MapRecord record, int done, int total) {
+                    assertEquals(4, total);
+                    loaded.incrementAndGet();
+                }
+
+                @Override
+                public void failed(MapRecord record, Exception error, int done, int total) {
+                    assertEquals(4, total);
+                    failed.add(record.mapId());
+                }
+            })
+            .load(Arrays.asList(
+                MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"),
+                MapRecord.of(2, "invalid"),
+                new MapRecord(3, "zz", ENCRYPTED),
+                new MapRecord(4, KEY, ENCRYPTED)
+            ))
+        ;
+
+        assertTrue(maps.hasErrors());
+        assertEquals(2, maps.size());
+        assertEquals(2, loaded.get());
+        assertEquals(new java.util.HashSet<>(Arrays.asList(2, 3)), failed);
+        assertEquals(2, maps.errors().size());
+        assertTrue(maps.errors().get(2) instanceof IllegalArgumentException);
+        assertTrue(maps.errors().containsKey(3));
+        assertFalse(maps.contains(2));
+        assertTrue(maps.contains(4));
+    }
+
+    @Test
+    void loadDuplicateIds() {
+        assertThrows(IllegalArgumentException.class, () -> new MapLoader().load(Arrays.asList(
+            MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"),
+            MapRecord.of(1, "Hhaaeaaaaa")
+        )));
+    }
+
+    @Test
+    void loadEmpty() {
+        LoadedMaps maps = new MapLoader().load(Collections.emptyList());
+
+        assertEquals(0, maps.size());
+        assertFalse(maps.hasErrors());
+    }
+
+    @Test
+    void loadWithCustomExecutorAndSerializer() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        DefaultMapDataSerializer serializer = new DefaultMapDataSerializer();
+        serializer.enableCache(CellDataCache.lru(100));
+
+        List<MapRecord> records = new ArrayList<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < 100; ++i) {
+            records.add(new MapRecord(i, KEY, ENCRYPTED));
+        }
+
+        try {
+            LoadedMaps maps = new MapLoader(serializer)
+                .executor(executor)
+                .listener(new MapLoader.Listener() {
+                    @Override
+                    public void loaded(MapRecord record, int done, int total) {
+                        threads.add(Thread.currentThread().getName());
+                    }
+                })
+                .load(records)
+            ;
+
+            assertEquals(100, maps.size());
+            assertSame(serializer, new MapLoader(serializer).serializer());
+            assertFalse(threads.contains(Thread.currentThread().getName()));
+
+            for (int i = 1; i < 100; ++i) {
+                assertEquals(serializer.serialize(maps.get(0)), serializer.serialize(maps.get(i)));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void parallelism() {
+        LoadedMaps maps = new MapLoader().parallelism(2).load(Arrays.asList(
+            MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"),
+            MapRecord.of(2, "GhhceaaaWt")
+        ));
+
+        assertEquals(2, maps.size());
+    }
+
+    @Test
+    @SuppressWarnings("dereference.of.nullable")
+    void failingListenerShouldNotStopLoading() {
+        LoadedMaps maps = new MapLoader()
+            .listener(new MapLoader.Listener() {
+                @Override
+                public void loaded(MapRecord record, int done, int total) {
+                    throw new IllegalStateException("loaded");
+                }
+
+                @Override
+                public void failed(MapRecord record, Exception error, int done, int total) {
+                    throw new IllegalStateException("failed");
+                }
+            })
+            .load(Arrays.asList(
+                MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"),
+                MapRecord.of(2, "invalid"),
+                MapRecord.of(3, "GhhceaaaWt")
+            ))
+        ;
+
+        assertEquals(2, maps.size());
+        assertEquals(2, maps.get(1).length);
+        assertEquals(1, maps.get(3).length);
+
+        assertEquals(1, maps.errors().get(2).getSuppressed().length);
+        assertEquals("failed", maps.errors().get(2).getSuppressed()[0].getMessage());
+    }
+
+    @Test
+    void lastExecutorOptionShouldBeUsed() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            new MapLoader()
+                .executor(executor)
+                .parallelism(2)
+                .listener(new MapLoader.Listener() {
+                    @Override
+                    public void loaded(MapRecord record, int done, int total) {
+                        threads.add(Thread.currentThread());
+                    }
+                })
+                .load(Arrays.asList(MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"), MapRecord.of(2, "GhhceaaaWt")))
+            ;
+
+            assertFalse(threads.isEmpty());
+
+            for (Thread thread : threads) {
+                assertTrue(thread.getName().startsWith("ForkJoinPool"), thread.getName());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void parallelismShouldShutdownThePool() throws InterruptedException {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        MapLoader loader = new MapLoader().parallelism(2).listener(new MapLoader.Listener() {
+            @Override
+            public void loaded(MapRecord record, int done, int total) {
+                threads.add(Thread.currentThread());
+            }
+        });
+
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(2, loader.load(Arrays.asList(
+                MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"),
+                MapRecord.of(2, "GhhceaaaWt")
+            )).size());
+        }
+
+        assertFalse(threads.isEmpty());
+
+        for (Thread thread : threads) {
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    @Test
+    void executorShouldOverrideParallelism() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            new MapLoader()
+                .parallelism(4)
+                .executor(executor)
+                .listener(new MapLoader.Listener() {
+                    @Override
+                    public void loaded(MapRecord record, int done, int total) {
+                        threads.add(Thread.currentThread());
+                    }
+                })
+                .load(Arrays.asList(MapRecord.of(1, "HhaaeaaaaaHhaae6Haaa"), MapRecord.of(2, "GhhceaaaWt")))
+            ;
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, threads.size());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2021 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.serializer;
+
+import fr.arakne.utils.maps.constant.CellMovement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings({"initialization.field.uninitialized", "argument"})
+class PackedMapDataTest {
+    static final String MAP_DATA = "HhaaeaaaaaHhaae6HaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSeIWaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGaeJgaaaHhGaeaaaaaHhqaeqgaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhGaeaaeaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaadHHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaGhiaeaad1FHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeIWaaaHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHxaVeaaaaaHhaSez8aaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaaeaaa6EHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHxaWeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaadHHhaSez8aaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHxaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhqaeaaaqgHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHxaWeaaaaaHhaSeaaadHHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSedIaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaHhGae6HaaaHhaaeaaa6UHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaUeaaaaaHhaVeaaaaaHhaVeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaadHHhaSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6EHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaWez8aaaHhaWeaaaaaHhaUeaaaaaHhaSeaaaaaHhaSeaaaaaHhaSeaaaaaH3aUeaaaaaHhGaeaaaaaHhaaeaaa6YHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaUeaaaaaHhaVeaaaaaHhaVeaaadHH3aUeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaGhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaWeaaaaaHhaWeaaaaaHhaWeaaaaaHhaTeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaaaaGhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaaeaaaaaHhGaeaaaaaHhGae6HaaaHhGaeaaaaaGhaaeaaaaaGhaaeaaa8HHhGaeaaaaaHhiTeaad1PHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiTeaad1PHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhiaeaad1PHhaTe8haaaHhaTeaaaaaHhiTeaad1PHhaaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaTeaaaaaHhaTeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhiaeaad1PHhiaeaad1PHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaGhaae6Ha6LHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaa7eHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhaaeaaaaaHhaaeaaaaaHhaaeaaa6XHhGaeaaaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaae6Ha6FHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae6HaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGae8uaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGae8uaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhqae8uaqgHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6IGgaaeaaa7IGgaaeaaa7EHhaaeaaaaaGgaaeaaa7CGgaaeaaa7IHhaaeaaaaa";
+
+    private DefaultMapDataSerializer serializer;
+
+    @BeforeEach
+    void setUp() {
+        serializer = new DefaultMapDataSerializer();
+    }
+
+    @Test
+    void deserializePacked() {
+        PackedMapData packed = serializer.deserializePacked(MAP_DATA);
+        CellData[] cells = serializer.deserialize(MAP_DATA);
+
+        assertEquals(479, packed.size());
+
+        for (int i = 0; i < cells.length; ++i) {
+            assertCell(cells[i], packed, i);
+        }
+    }
+
+    @Test
+    void deserializePackedCell() {
+        PackedMapData packed = serializer.deserializePacked("GhhceaaaWt");
+
+        assertEquals(1, packed.size());
+        assertFalse(packed.lineOfSight(0));
+        assertEquals(CellMovement.NOT_WALKABLE, packed.movement(0));
+        assertTrue(packed.active(0));
+        assertFalse(packed.walkable(0));
+        assertEquals(450, packed.groundNumber(0));
+        assertFalse(packed.groundFlip(0));
+        assertEquals(0, packed.groundRotation(0));
+        assertEquals(7, packed.groundLevel(0));
+        assertEquals(1, packed.groundSlope(0));
+        assertEquals(0, packed.layer1Number(0));
+        assertEquals(0, packed.layer1Rotation(0));
+        assertFalse(packed.layer1Flip(0));
+        assertFalse(packed.layer2Interactive(0));
+        assertEquals(3091, packed.layer2Number(0));
+        assertFalse(packed.layer2Flip(0));
+    }
+
+    @Test
+    void deserializePackedInteractiveObject() {
+        PackedMapData packed = serializer.deserializePacked(MAP_DATA);
+
+        assertTrue(packed.layer2Interactive(102));
+        assertEquals(7519, packed.layer2Number(102));
+        assertEquals(CellMovement.NOT_WALKABLE_INTERACTIVE, packed.movement(102));
+        assertFalse(packed.walkable(102));
+    }
+
+    @Test
+    void walkable() {
+        PackedMapData packed = serializer.deserializePacked(MAP_DATA);
+        CellData[] cells = serializer.deserialize(MAP_DATA);
+
+        for (int i = 0; i < cells.length; ++i) {
+            assertEquals(cells[i].active() && cells[i].movement().walkable(), packed.walkable(i));
+        }
+    }
+
+    @Test
+    void deserializePackedBadData() {
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserializePacked("invalid"));
+        assertThrows(IllegalArgumentException.class, () -> serializer.deserializePacked("##########"));
+    }
+
+    @Test
+    void cellsSerialize() {
+        PackedMapData packed = serializer.deserializePacked(MAP_DATA);
+
+        assertEquals(MAP_DATA, serializer.serialize(packed.cells()));
+    }
+
+    @Test
+    void cellViewShouldNotAllocateLayers() {
+        PackedMapData packed = serializer.deserializePacked(MAP_DATA);
+        CellData cell = packed.cell(102);
+
+        assertSame(cell.ground(), cell.ground());
+        assertSame(cell.layer1(), cell.layer1());
+        assertSame(cell.layer2(), cell.layer2());
+        assertTrue(cell.layer2().interactive());
+        assertEquals(7519, cell.layer2().number());
+    }
+
+    @Test
+    @SuppressWarnings("array.access.unsafe.high.constant")
+    void cellViewsShouldBeShared() {
+        PackedMapData packed = serializer.deserializePacked(MAP_DATA);
+        CellData[] cells = packed.cells();
+
+        assertSame(packed.cell(102), packed.cell(102));
+        assertSame(packed.cell(102), cells[102]);
+        assertNotSame(cells, packed.cells());
+        assertSame(cells[5], packed.cells()[5]);
+    }
+
+    @Test
+    void of() {
+        CellData[] cells = serializer.deserialize(MAP_DATA);
+        PackedMapData packed = PackedMapData.of(cells);
+
+        assertEquals(cells.length, packed.size());
+
+        for (int i = 0; i < cells.length; ++i) {
+            assertCell(cells[i], packed, i);
+        }
+
+        assertEquals(MAP_DATA, serializer.serialize(packed.cells()));
+    }
+
+    @Test
+    void deserializePackedDefaultImplementation() {
+        MapDataSerializer other = new MapDataSerializer() {
+            @Override
+            public CellData[] deserialize(String mapData) {
+                return serializer.deserialize(mapData);
+            }
+
+            @Override
+            public String serialize(CellData[] cells) {
+                return serializer.serialize(cells);
+            }
+        };
+
+        assertEquals(MAP_DATA, serializer.serialize(other.deserializePacked(MAP_DATA).cells()));
+    }
+
+    private void assertCell(CellData expected, PackedMapData packed, int id) {
+        CellData actual = packed.cell(id);
+
+        assertEquals(expected.active(), packed.active(id));
+        assertEquals(expected.lineOfSight(), packed.lineOfSight(id));
+        assertEquals(expected.movement(), packed.movement(id));
+        assertEquals(expected.ground().level(), packed.groundLevel(id));
+        assertEquals(expected.ground().slope(), packed.groundSlope(id));
+        assertEquals(expected.ground().number(), packed.groundNumber(id));
+        assertEquals(expected.ground().rotation(), packed.groundRotation(id));
+        assertEquals(expected.ground().flip(), packed.groundFlip(id));
+        assertEquals(expected.layer1().number(), packed.layer1Number(id));
+        assertEquals(expected.layer1().rotation(), packed.layer1Rotation(id));
+        assertEquals(expected.layer1().flip(), packed.layer1Flip(id));
+        assertEquals(expected.layer2().number(), packed.layer2Number(id));
+        assertEquals(expected.layer2().flip(), packed.layer2Flip(id));
+        assertEquals(expected.layer2().interactive(), packed.layer2Interactive(id));
+
+        assertEquals(expected.active(), actual.active());
+        assertEquals(expected.lineOfSight(), actual.lineOfSight());
+        assertEquals(expected.movement(), actual.movement());
+        assertEquals(expected.ground().level(), actual.ground().level());
+        assertEquals(expected.ground().slope(), actual.ground().slope());
+        assertEquals(expected.ground().number(), actual.ground().number());
+        assertEquals(expected.ground().rotation(), actual.ground().rotation());
+        assertEquals(expected.ground().flip(), actual.ground().flip());
+        assertEquals(expected.layer1().number(), actual.layer1().number());
+        assertEquals(expected.layer1().rotation(), actual.layer1().rotation());
+        assertEquals(expected.layer1().flip(), actual.layer1().flip());
+        assertEquals(expected.layer2().number(), actual.layer2().number());
+        assertEquals(expected.layer2().rotation(), actual.layer2().rotation());
+        assertEquals(expected.layer2().flip(), actual.layer2().flip());
+        assertEquals(expected.layer2().interactive(), actual.layer2().interactive());
+    }
+}
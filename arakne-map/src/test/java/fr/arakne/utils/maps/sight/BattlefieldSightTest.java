@@ -19,6 +19,7 @@
 
 package fr.arakne.utils.maps.sight;
 
+import fr.arakne.utils.maps.CellBitSet;
 import fr.arakne.utils.maps.CoordinateCell;
 import fr.arakne.utils.maps._test.MyDofusCell;
 import fr.arakne.utils.maps._test.MyDofusMap;
@@ -116,4 +117,128 @@ class BattlefieldSightTest {
             lineOfSight.from(map.get(123)).accessible()
         );
     }
+
+    @Test
+    @SuppressWarnings("argument")
+    void withSightBlockingCellsShouldMatchCells() {
+        BattlefieldSight<MyDofusCell> bitSetSight = new BattlefieldSight<>(map, CellBitSet.of(map.size(), id -> map.get(id).sightBlocking()));
+
+        for (int cellId : new int[] {0, 14, 123, 136, 177, 365, 384}) {
+            assertIterableEquals(lineOfSight.from(map.get(cellId)).accessible(), bitSetSight.from(map.get(cellId)).accessible());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void withSightBlockingCellsShouldUseTheBitSet() {
+        CellBitSet blocking = CellBitSet.of(map.size(), id -> map.get(id).sightBlocking());
+
+        assertTrue(new BattlefieldSight<>(map, blocking).between(map.get(177), map.get(210)));
+        assertFalse(new BattlefieldSight<>(map, blocking.with(194, true)).between(map.get(177), map.get(210)));
+        assertTrue(new BattlefieldSight<>(map, CellBitSet.empty(map.size())).between(map.get(127), map.get(169)));
+    }
+
+    @Test
+    void withSightBlockingCellsWithInvalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new BattlefieldSight<>(map, CellBitSet.empty(400)));
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void withSightMatrixShouldMatchBitSet() {
+        final CellBitSet terrain = CellBitSet.of(map.size(), id -> map.get(id).sightBlocking());
+        final CellBitSet fighters = CellBitSet.empty(map.size()).with(194, true).with(241, true).with(300, true);
+        final SightMatrix matrix = SightMatrix.compute(lineOfSight.coordinates(), terrain);
+
+        final BattlefieldSight<MyDofusCell> matrixSight = new BattlefieldSight<>(map, matrix, fighters);
+        final BattlefieldSight<MyDofusCell> bitSetSight = new BattlefieldSight<>(map, terrain.or(fighters));
+
+        for (int source = 0; source < map.size(); ++source) {
+            assertEquals(bitSetSight.from(map.get(source)).visibleCells(), matrixSight.from(map.get(source)).visibleCells());
+
+            for (int target = 0; target < map.size(); ++target) {
+                assertEquals(bitSetSight.between(map.get(source), map.get(target)), matrixSight.between(map.get(source), map.get(target)));
+            }
+        }
+    }
+
+    @Test
+    void withSightMatrixShouldCheckDynamicBlockingCells() {
+        final SightMatrix matrix = SightMatrix.compute(lineOfSight.coordinates(), CellBitSet.empty(map.size()));
+
+        assertTrue(new BattlefieldSight<>(map, matrix, CellBitSet.empty(map.size())).between(map.get(177), map.get(210)));
+        assertFalse(new BattlefieldSight<>(map, matrix, CellBitSet.empty(map.size()).with(194, true)).between(map.get(177), map.get(210)));
+        assertTrue(new BattlefieldSight<>(map, matrix, CellBitSet.empty(map.size()).with(210, true)).between(map.get(177), map.get(210)));
+    }
+
+    @Test
+    void withSightMatrixWithInvalidSize() {
+        final SightMatrix matrix = SightMatrix.compute(lineOfSight.coordinates(), CellBitSet.empty(map.size()));
+
+        assertThrows(IllegalArgumentException.class, () -> new BattlefieldSight<>(map, matrix, CellBitSet.empty(400)));
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void visibleBatch() {
+        final CellBitSet terrain = CellBitSet.of(map.size(), id -> map.get(id).sightBlocking());
+        final CellBitSet fighters = CellBitSet.empty(map.size()).with(194, true).with(241, true);
+        final int[] targets = {210, 13, 123, 177, 241, 300, 478, 0, 210};
+
+        final List<BattlefieldSight<MyDofusCell>> sights = Arrays.asList(
+            lineOfSight,
+            new BattlefieldSight<>(map, terrain),
+            new BattlefieldSight<>(map, terrain.or(fighters)),
+            new BattlefieldSight<>(map, SightMatrix.compute(lineOfSight.coordinates(), terrain), fighters)
+        );
+
+        for (BattlefieldSight<MyDofusCell> sight : sights) {
+            for (int source : new int[] {0, 123, 177, 384}) {
+                final boolean[] results = new boolean[targets.length + 1];
+                int expectedCount = 0;
+
+                results[targets.length] = true;
+                final int count = sight.visible(map.get(source), targets, results);
+
+                for (int i = 0; i < targets.length; ++i) {
+                    final boolean expected = sight.between(map.get(source), map.get(targets[i]));
+
+                    assertEquals(expected, results[i]);
+                    expectedCount += expected ? 1 : 0;
+                }
+
+                assertEquals(expectedCount, count);
+                assertTrue(results[targets.length]);
+            }
+        }
+    }
+
+    @Test
+    void visibleBatchWithTooSmallBuffer() {
+        assertThrows(IllegalArgumentException.class, () -> lineOfSight.visible(map.get(123), new int[] {12, 13}, new boolean[1]));
+    }
+
+    @Test
+    @SuppressWarnings("argument")
+    void visibleBitSet() {
+        final CellBitSet terrain = CellBitSet.of(map.size(), id -> map.get(id).sightBlocking());
+        final CellBitSet targets = CellBitSet.of(map.size(), id -> id % 7 == 0);
+
+        for (BattlefieldSight<MyDofusCell> sight : Arrays.asList(lineOfSight, new BattlefieldSight<>(map, terrain))) {
+            final long[] results = new long[targets.wordsCount()];
+
+            Arrays.fill(results, -1L);
+            final int count = sight.visible(map.get(123), targets, results);
+            final CellBitSet visible = CellBitSet.of(map.size(), results);
+
+            assertEquals(sight.from(map.get(123)).visibleCells().and(targets), visible);
+            assertEquals(visible.cardinality(), count);
+        }
+    }
+
+    @Test
+    void visibleBitSetInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> lineOfSight.visible(map.get(123), CellBitSet.empty(400), new long[8]));
+        assertThrows(IllegalArgumentException.class, () -> lineOfSight.visible(map.get(123), CellBitSet.empty(map.size()), new long[2]));
+    }
 }
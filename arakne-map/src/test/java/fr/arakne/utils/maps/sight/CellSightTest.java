@@ -19,6 +19,7 @@
 
 package fr.arakne.utils.maps.sight;
 
+import fr.arakne.utils.maps.CellBitSet;
 import fr.arakne.utils.maps.CoordinateCell;
 import fr.arakne.utils.maps.MapCell;
 import fr.arakne.utils.maps._test.MyDofusCell;
@@ -97,6 +98,18 @@ class CellSightTest {
         return lineOfSight.from(map.get(cellId)).blocked().stream().map(MapCell::id).sorted().collect(Collectors.toList());
     }
 
+    @Test
+    void visibleCells() {
+        final CellBitSet visible = lineOfSight.from(map.get(123)).visibleCells();
+
+        assertEquals(map.size(), visible.size());
+        assertEquals(dumpAccessible(123).size(), visible.cardinality());
+        assertTrue(visible.get(123));
+        assertTrue(visible.get(124));
+        assertFalse(visible.get(11));
+        assertFalse(visible.get(449));
+    }
+
     @Test
     void to() {
         assertIterableEquals(cells(178, 163, 177, 162, 147), (Iterable<MyDofusCell>) () -> lineOfSight.from(map.get(193)).to(map.get(147)));
@@ -0,0 +1,191 @@
+/*
+ * This file is part of ArakneUtils.
+ *
+ * ArakneUtils is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ArakneUtils is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with ArakneUtils.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2017-2020 Vincent Quatrevieux
+ */
+
+package fr.arakne.utils.maps.sight;
+
+import fr.arakne.utils.maps.CellBitSet;
+import fr.arakne.utils.maps.CoordinateIndex;
+import fr.arakne.utils.maps._test.MyDofusCell;
+import fr.arakne.utils.maps._test.MyDofusMap;
+import org.checkerframework.common.value.qual.ArrayLen;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("initialization.field.uninitialized")
+class SightOverlayTest {
+    private @ArrayLen(479) MyDofusMap map;
+    private CellBitSet terrain;
+
+    @BeforeEach
+    @SuppressWarnings({"assignment", "argument"})
+    public void setUp() throws Exception {
+        map = MyDofusMap.parse("HhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhaae6HaaaHhaae60aaaHhaaeaaaaaHhaae6HaaaHhaaeaaaaaGhaaeaaa7oHhaae6HiaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6SHhgSe6HaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeaaaaaHhGaeaaa6IHhMSeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa6THhGaeaaaaaHhGaeaaaaaHhMSe62aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhqaeaaaqgGhaaeaaa7AHhGaeaaaaaHhGaeaaaaaHhaae6Ha7eHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhWaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGae8uaaaHhWae60aaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhqaeaaaqgHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7iHhGaeJgaaaHhaaeaaaaaHhaaeJgaaaHhGae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaa6IGhaaeaaa7hGhaaeaaa7iHhGaeaaaaaHhGaeaaaaaHhGaeJgaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lGhaae8sa7gHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7gGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhWae62aaaGhaaeaaa7kGhaaeaaa7hHhGaeaaaaaHhGaeaaaaaGhaaeaaa7lHhaaeaaaaaGhaaeaaa7nHhGaeaaaaaGhaaeaaa7lGhaaeaaa7jHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7hHhGaeaaaaaGhaaeaaa7mHhGaeaaaaaGhaaeJga7hHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMTgJgaaaHhGaeaaaaaHhGaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGae8saaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhMSeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaae6HaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7jHhGaeaaa6IHhGaeaaaaaHhaaeaaaaaHhaaeaaa6IHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaGhaaeaaa7gHhGaeaaaaaHhGaeaaaaaHhaaeaaa6GHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaGhaaeaaa7kHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaa6GHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhgTeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaa7dHhaaeaaaaaHhaaeaaa6WHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaGhaaeaaa7yHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaa6XHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhMVgaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhGaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaaHhaaeaaaaa");
+        terrain = CellBitSet.of(map.size(), id -> map.get(id).sightBlocking());
+    }
+
+    @Test
+    void blockAndUnblock() {
+        final SightOverlay<MyDofusCell> overlay = new SightOverlay<>(map, terrain, 8);
+
+        assertFalse(overlay.blocked(194));
+        assertEquals(0, overlay.version());
+
+        overlay.block(194);
+        assertTrue(overlay.blocked(194));
+        assertEquals(CellBitSet.empty(map.size()).with(194, true), overlay.blocking());
+        assertEquals(1, overlay.version());
+
+        overlay.block(194);
+        assertEquals(1, overlay.version());
+
+        overlay.move(194, 210);
+        assertFalse(overlay.blocked(194));
+        assertTrue(overlay.blocked(210));
+        assertEquals(3, overlay.version());
+
+        overlay.unblock(210);
+        assertEquals(CellBitSet.empty(map.size()), overlay.blocking());
+        assertEquals(4, overlay.version());
+    }
+
+    @Test
+    @SuppressWarnings("argument") // The terrain contains blocking cells
+    void changeOnStaticBlockingCellShouldNotChangeVersion() {
+        final SightOverlay<MyDofusCell> overlay = new SightOverlay<>(map, terrain, 8);
+        final int cell = terrain.nextSetBit(0);
+
+        overlay.block(cell);
+        assertTrue(overlay.blocked(cell));
+        assertEquals(0, overlay.version());
+    }
+
+    @Test
+    void sight() {
+        final SightOverlay<MyDofusCell> overlay = new SightOverlay<>(map, terrain, 8);
+        final BattlefieldSight<MyDofusCell> sight = overlay.sight();
+
+        assertSame(sight, overlay.sight());
+        assertTrue(sight.between(map.get(177), map.get(210)));
+
+        overlay.block(194);
+        assertNotSame(sight, overlay.sight());
+        assertTrue(sight.between(map.get(177), map.get(210)));
+        assertFalse(overlay.sight().between(map.get(177), map.get(210)));
+    }
+
+    @Test
+    void visibleCellsShouldUseCache() {
+        final SightOverlay<MyDofusCell> overlay = new SightOverlay<>(map, terrain, 8);
+
+        assertSame(overlay.visibleCells(177), overlay.visibleCells(177));
+        assertTrue(overlay.between(177, 210));
+        assertEquals(1, overlay.misses());
+        assertEquals(2, overlay.hits());
+
+        overlay.block(194);
+
+        assertFalse(overlay.between(177, 210));
+        assertEquals(1, overlay.misses());
+        assertEquals(1, overlay.updates());
+
+        overlay.clear();
+        assertFalse(overlay.between(177, 210));
+        assertEquals(2, overlay.misses());
+    }
+
+    @Test
+    void visibleCellsShouldEvictLeastRecentlyUsed() {
+        final SightOverlay<MyDofusCell> overlay = new SightOverlay<>(map, terrain, 2);
+
+        overlay.visibleCells(123);
+        overlay.visibleCells(177);
+        overlay.visibleCells(123);
+        overlay.visibleCells(384);
+        overlay.visibleCells(123);
+        assertEquals(3, overlay.misses());
+
+        overlay.visibleCells(177);
+        assertEquals(4, overlay.misses());
+    }
+
+    @Test
+    void visibleCellsShouldBeComputedAgainWhenTooManyChanges() {
+        final SightOverlay<MyDofusCell> overlay = new SightOverlay<>(map, terrain, 8);
+
+        overlay.visibleCells(123);
+
+        for (int i = 0; i < 40; ++i) {
+            overlay.block(400 + i);
+            overlay.unblock(400 + i);
+        }
+
+        assertEquals(new BattlefieldSight<>(map, terrain).from(map.get(123)).visibleCells(), overlay.visibleCells(123));
+        assertEquals(2, overlay.misses());
+        assertEquals(0, overlay.updates());
+    }
+
+    @Test
+    void visibleCellsShouldMatchSightWithRandomMoves() {
+        assertSameAsSight(new SightOverlay<>(map, terrain, 16));
+    }
+
+    @Test
+    void visibleCellsShouldMatchSightWithRandomMovesUsingMatrix() {
+        assertSameAsSight(new SightOverlay<>(map, SightMatrix.compute(CoordinateIndex.of(map), terrain), 16));
+    }
+
+    @Test
+    void invalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> new SightOverlay<>(map, CellBitSet.empty(400), 8));
+    }
+
+    @SuppressWarnings("argument")
+    private void assertSameAsSight(SightOverlay<MyDofusCell> overlay) {
+        final Random random = new Random(42);
+        final int[] fighters = {123, 177, 210, 300, 384, 241};
+        final int[] sources = {123, 177, 200, 384, 0, 450};
+
+        for (int fighter : fighters) {
+            overlay.block(fighter);
+        }
+
+        for (int turn = 0; turn < 30; ++turn) {
+            final int fighter = random.nextInt(fighters.length);
+            final int destination = random.nextInt(map.size());
+
+            if (!overlay.blocked(destination)) {
+                overlay.move(fighters[fighter], destination);
+                fighters[fighter] = destination;
+            }
+
+            final BattlefieldSight<MyDofusCell> expected = new BattlefieldSight<>(map, terrain.or(overlay.blocking()));
+
+            for (int source : sources) {
+                assertEquals(expected.from(map.get(source)).visibleCells(), overlay.visibleCells(source), "Invalid visible cells for " + source + " on turn " + turn);
+            }
+        }
+
+        assertEquals(sources.length, overlay.misses());
+        assertTrue(overlay.updates() > 0);
+    }
+}